@@ -0,0 +1,37 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.config;
+
+import java.nio.file.Path;
+
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.BenchmarkHarness;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeService;
+
+@Configuration
+@ConditionalOnProperty(prefix = "code-generator.benchmark", name = "run", havingValue = "true")
+public class BenchmarkConfiguration {
+
+    @Bean
+    public BenchmarkHarness benchmarkHarness(CodeService codeService, JdbcTemplate jdbcTemplate,
+                                             CodeGeneratorProperties properties, ObjectMapper objectMapper) {
+        return new BenchmarkHarness(codeService, jdbcTemplate, properties, objectMapper);
+    }
+
+    // Runs the matrix once the context is up, writes the baselines and closes the context; without a web
+    // server that ends the process. A failed run propagates and fails the startup instead
+    @Bean
+    public ApplicationRunner benchmarkRunner(BenchmarkHarness harness, CodeGeneratorProperties properties,
+                                             ConfigurableApplicationContext context) {
+        return args -> {
+            harness.write(harness.run(), Path.of(properties.getBenchmark().getBaselinesFile()));
+            SpringApplication.exit(context);
+        };
+    }
+}
@@ -0,0 +1,10 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+// In-memory caches of small aggregates, see GenerationRequestService.getStats
+@Configuration
+@EnableCaching
+public class CacheConfiguration {
+}
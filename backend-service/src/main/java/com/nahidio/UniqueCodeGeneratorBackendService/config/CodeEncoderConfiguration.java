@@ -0,0 +1,28 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.config;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeEncoder;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.FeistelCodeEncoder;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.RandomCodeEncoder;
+
+// Picks the CodeEncoder implementation from code-generator.encoder.type
+@Configuration
+@EnableConfigurationProperties(CodeGeneratorProperties.class)
+public class CodeEncoderConfiguration {
+
+    @Bean
+    public CodeEncoder codeEncoder(CodeGeneratorProperties properties) {
+        String type = properties.getEncoder().getType();
+        switch (type.toLowerCase()) {
+            case "feistel":
+                return new FeistelCodeEncoder(properties.getEncoder().getKey());
+            case "random":
+                return new RandomCodeEncoder();
+            default:
+                throw new IllegalStateException("Unknown code-generator.encoder.type: " + type);
+        }
+    }
+}
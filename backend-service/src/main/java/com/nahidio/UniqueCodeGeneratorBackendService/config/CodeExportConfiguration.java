@@ -0,0 +1,17 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeExporter;
+
+@Configuration
+public class CodeExportConfiguration {
+
+    @Bean
+    public CodeExporter codeExporter(DataSource dataSource, CodeGeneratorProperties properties) {
+        return new CodeExporter(dataSource, properties.getExport().getPageSize(), properties.getStorage().getType());
+    }
+}
@@ -0,0 +1,56 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.config;
+
+import java.util.Map;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.repository.CounterReservationRepository;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeEncoder;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeFormat;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeFormats;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeStorage;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CounterRangeAllocator;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.FeistelCodeEncoder;
+
+// The built-in base62 format and those of code-generator.formats, each with its own counter sequence
+@Configuration
+public class CodeFormatConfiguration {
+
+    @Bean
+    public CodeFormats codeFormats(CodeGeneratorProperties properties, CodeEncoder codeEncoder,
+                                   CounterRangeAllocator counterRangeAllocator,
+                                   CounterReservationRepository reservationRepository,
+                                   PlatformTransactionManager transactionManager) {
+        CodeFormats codeFormats = new CodeFormats(codeEncoder, counterRangeAllocator);
+        if (properties.getFormats().isEmpty()) {
+            return codeFormats;
+        }
+        // A BIGINT column only holds the value, which does not tell the formats apart
+        if (properties.getStorage().getType() == CodeStorage.BIGINT) {
+            throw new IllegalStateException("code-generator.formats need code-generator.storage.type=char");
+        }
+        // Collisions between formats are only caught by the unique index on code alone, which retention replaces
+        if (properties.getRetention().isEnabled()) {
+            throw new IllegalStateException("code-generator.formats cannot be combined with code-generator.retention");
+        }
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        CodeGeneratorProperties.Counter counter = properties.getCounter();
+        for (Map.Entry<String, CodeGeneratorProperties.Format> entry : properties.getFormats().entrySet()) {
+            CodeGeneratorProperties.Format settings = entry.getValue();
+            CodeFormat format = new CodeFormat(entry.getKey(), settings.getAlphabet(), settings.getLength(),
+                    settings.isCheckDigit());
+            // Leased blocks left unused by a restart are skipped: at most a thousandth of a small format per lease
+            long blockSize = Math.max(1, Math.min(counter.getBlockSize(), format.getCapacity() / 1000));
+            codeFormats.add(format, new FeistelCodeEncoder(properties.getEncoder().getKey(), format),
+                    new CounterRangeAllocator(reservationRepository, transactionTemplate,
+                            CounterRangeAllocator.CODE_COUNTER + ":" + format.getName(), blockSize,
+                            counter.getInitialValue()));
+        }
+        return codeFormats;
+    }
+}
@@ -0,0 +1,267 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.config;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.service.Base62;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeStorage;
+
+import lombok.Data;
+
+/**
+ * Tunables of the code generator, bound from the {@code code-generator.*} keys of application.yml.
+ */
+@Data
+@ConfigurationProperties(prefix = "code-generator")
+public class CodeGeneratorProperties {
+
+    private Encoder encoder = new Encoder();
+
+    private Sink sink = new Sink();
+
+    private Pipeline pipeline = new Pipeline();
+
+    private Jobs jobs = new Jobs();
+
+    private Insertion insertion = new Insertion();
+
+    private Counter counter = new Counter();
+
+    private Reservoir reservoir = new Reservoir();
+
+    private Export export = new Export();
+
+    private Storage storage = new Storage();
+
+    private Retention retention = new Retention();
+
+    private Staging staging = new Staging();
+
+    private Resume resume = new Resume();
+
+    private Benchmark benchmark = new Benchmark();
+
+    private Tuning tuning = new Tuning();
+
+    private Scheduler scheduler = new Scheduler();
+
+    private Coalescing coalescing = new Coalescing();
+
+    private Streaming streaming = new Streaming();
+
+    private Journal journal = new Journal();
+
+    private Collisions collisions = new Collisions();
+
+    // Code formats requests can pick by name besides the built-in base62
+    private Map<String, Format> formats = new LinkedHashMap<>();
+
+    public enum ThreadKind {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    @Data
+    public static class Encoder {
+        // Which CodeEncoder to use: "feistel" (bijective, reversible) or "random" (legacy UUID XOR)
+        private String type = "feistel";
+        // Secret the Feistel round keys are derived from. Changing it changes every future code.
+        private long key = 0x5DEECE66DL;
+    }
+
+    @Data
+    public static class Sink {
+        // Default CodeSink: "jdbc" (multi-row INSERT), "bulk" (native bulk load) or "hibernate" (StatelessSession)
+        private String type = "jdbc";
+        // Rows carried by each multi-row INSERT of the jdbc sink
+        private int rowsPerStatement = 1000;
+        // Offer the bulk sink; on MySQL it needs allowLoadLocalInfile=true in the url, both set by the bulk profile
+        private boolean bulkEnabled = false;
+    }
+
+    @Data
+    public static class Pipeline {
+        // Codes per chunk of a request; chunks run one after the other and are the unit of checkpoints
+        private long chunkSize = 1_000_000L;
+        // Codes per insertion batch, which is also the unit handed from generators to writers
+        private int batchSize = 10000;
+        // Batches the queue holds before generators block; bounds memory to queueCapacity * batchSize codes
+        private int queueCapacity = 16;
+        private int generatorThreads = 2;
+        // Writers of a single chunk, at most the InsertionScheduler's concurrent writes, which bound the total
+        private int writerThreads = 40;
+    }
+
+    @Data
+    public static class Jobs {
+        // Generation requests submitted through the asynchronous API that are in progress at the same time;
+        // their chunks take turns on the scheduler's chunk slots, only chunks holding or suspending one start writers
+        private int concurrency = 32;
+    }
+
+    @Data
+    public static class Insertion {
+        // Thread kind of the shared insertion executor; virtual needs Java 21 and falls back to platform
+        private ThreadKind threads = ThreadKind.PLATFORM;
+        // Pool connections kept out of the insertion budget (maximum-pool-size minus this)
+        private int reservedConnections = 4;
+    }
+
+    @Data
+    public static class Counter {
+        // Counters a node leases from the reservation table per round trip
+        private long blockSize = 10_000_000L;
+        // First counter when the reservation row is created; set it above counters already used
+        private long initialValue = 1L;
+    }
+
+    @Data
+    public static class Reservoir {
+        // Keep persisted, unassigned codes ready for the claim endpoint
+        private boolean enabled = false;
+        // Refill starts when fewer codes than this are left
+        private long lowWatermark = 50_000L;
+        // Refill stops at this many codes
+        private long highWatermark = 200_000L;
+        // Upper bound on the refill rate, so refills do not crowd out regular requests
+        private long refillCodesPerSecond = 100_000L;
+        // Largest number of codes a single claim may ask for
+        private int maxClaim = 100_000;
+    }
+
+    @Data
+    public static class Export {
+        // Rows read per keyset page of the code export; also the number of codes held in memory
+        private int pageSize = 10_000;
+    }
+
+    @Data
+    public static class Storage {
+        // Column type of generated_codes.code: char (CHAR(7) string) or bigint (numeric code value).
+        // bigint needs the matching mapping, activate the bigint profile instead of setting this alone.
+        private CodeStorage type = CodeStorage.CHAR;
+    }
+
+    @Data
+    public static class Retention {
+        // Drop the codes of old requests; enable with the retention profile, which also adapts the schema
+        private boolean enabled = false;
+        // Age after which the codes of a finished request are dropped
+        private Duration ttl = Duration.ofDays(30);
+        // Request ids per partition of generated_codes, the unit that is dropped
+        private long requestsPerPartition = 1000;
+        // Pause between retention runs; ISO-8601, as @Scheduled reads it
+        private Duration checkInterval = Duration.ofHours(1);
+    }
+
+    @Data
+    public static class Staging {
+        // Default for requests that do not pass staged: load into a staging table and publish all codes at once
+        private boolean enabled = false;
+    }
+
+    @Data
+    public static class Resume {
+        // Continue RUNNING requests whose lease expired, at startup and every lease-duration after it
+        private boolean onStartup = false;
+        // Time a request stays leased to its process without a heartbeat; renewed every third of it
+        private Duration leaseDuration = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Benchmark {
+        // Run the benchmark matrix at startup and exit; set by the benchmark profile
+        private boolean run = false;
+        // Measured baselines, written by the benchmark run and served by /api/benchmarks/baselines
+        private String baselinesFile = "benchmark-baselines.json";
+        // The matrix: every request size with every chunk size and writer count
+        private List<Long> requestSizes = List.of(10_000L, 100_000L, 1_000_000L);
+        private List<Long> chunkSizes = List.of(100_000L, 1_000_000L);
+        private List<Integer> writerThreads = List.of(1, 8, 40);
+        // Runs per cell; the run with the median wall time is kept
+        private int repetitions = 3;
+        // Codes generated once before the matrix and not recorded, so the first cell does not pay for warm-up
+        private long warmupCodes = 100_000L;
+    }
+
+    @Data
+    public static class Tuning {
+        // Adjust batch size and writers of each request while it runs, starting from the pipeline settings
+        private boolean enabled = false;
+        private int minBatchSize = 1_000;
+        private int maxBatchSize = 50_000;
+        // Added to the batch size after every window that stayed under the latency bound
+        private int batchSizeStep = 1_000;
+        private int minWriterThreads = 1;
+        // Also the most writers a tuned pipeline starts
+        private int maxWriterThreads = 64;
+        // Batches per measurement window
+        private int windowBatches = 8;
+        // Mean write time of a window above which both settings are halved
+        private Duration maxBatchLatency = Duration.ofSeconds(2);
+        // Relative throughput drop that reverses the direction of the writer search
+        private double throughputTolerance = 0.05;
+    }
+
+    @Data
+    public static class Scheduler {
+        // Chunks generated at the same time across all requests, handed out in weighted fair order
+        private int chunkSlots = 4;
+        // Codes of unfinished requests above which new requests are rejected with 429
+        private long maxBacklogCodes = 2_000_000_000L;
+        // Tenant of requests that do not name one
+        private String defaultTenant = "default";
+    }
+
+    @Data
+    public static class Coalescing {
+        // Write concurrent small requests of the default sink in shared batches instead of one transaction each
+        private boolean enabled = true;
+        // Largest request that is coalesced; it has to fit into one batch
+        private int maxRequestCodes = 5000;
+        // Codes of a shared batch at most; a batch is written as soon as this many are pending
+        private int maxBatchCodes = 50000;
+        // Time the first request of a batch waits for others to join
+        private Duration window = Duration.ofMillis(5);
+    }
+
+    @Data
+    public static class Streaming {
+        // Batches held for a streaming client that is behind before the writers wait for it; the buffer holds
+        // twice as many events, the codes of each batch and its acknowledgement
+        private int bufferedBatches = 4;
+    }
+
+    @Data
+    public static class Journal {
+        // Offer the "journal" sink: codes are durable once in the local journal and loaded into the database behind
+        private boolean enabled = false;
+        // Directory of the segment files; segments left there by a crash are replayed on startup
+        private String directory = "journal";
+        // Size of one memory-mapped segment file, at most 2GB
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+        // Time the drainer waits for new records once the journal is drained
+        private Duration drainIdle = Duration.ofMillis(100);
+    }
+
+    @Data
+    public static class Collisions {
+        // Times the colliding codes of a batch are replaced by fresh ones before the batch fails
+        private int maxRounds = 10;
+    }
+
+    @Data
+    public static class Format {
+        // Characters of 0-9, A-Z and a-z in digit order, e.g. without look-alikes such as 0/O and 1/I/l
+        private String alphabet = Base62.ALPHANUMERIC;
+        // Digits of a code; with the check digit at most 7, the width of generated_codes.code
+        private int length = Base62.LENGTH;
+        // Append a Luhn mod N check character, which catches single typos and most swapped neighbours
+        private boolean checkDigit = false;
+    }
+}
@@ -0,0 +1,34 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.config;
+
+import javax.sql.DataSource;
+
+import org.hibernate.SessionFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.service.BulkLoadCodeSink;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.HibernateCodeSink;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.JdbcCodeSink;
+
+// Every CodeSink bean can be selected by its name(); code-generator.sink.type picks the default
+@Configuration
+public class CodeSinkConfiguration {
+
+    @Bean
+    public JdbcCodeSink jdbcCodeSink(DataSource dataSource, CodeGeneratorProperties properties) {
+        return new JdbcCodeSink(dataSource, properties.getSink().getRowsPerStatement(), properties.getStorage().getType());
+    }
+
+    @Bean
+    public HibernateCodeSink hibernateCodeSink(SessionFactory sessionFactory) {
+        return new HibernateCodeSink(sessionFactory);
+    }
+
+    // LOAD DATA LOCAL INFILE lets the server read client files, so the driver flag it needs is off unless asked for
+    @Bean
+    @ConditionalOnProperty(prefix = "code-generator.sink", name = "bulk-enabled", havingValue = "true")
+    public BulkLoadCodeSink bulkLoadCodeSink(DataSource dataSource, CodeGeneratorProperties properties) {
+        return new BulkLoadCodeSink(dataSource, properties.getStorage().getType());
+    }
+}
@@ -0,0 +1,20 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeFormats;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CollisionResolver;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Replacement codes come from the same encoder and counter sequence as every other code of their format
+@Configuration
+public class CollisionResolverConfiguration {
+
+    @Bean
+    public CollisionResolver collisionResolver(CodeGeneratorProperties properties, CodeFormats codeFormats,
+                                               MeterRegistry meterRegistry) {
+        return new CollisionResolver(codeFormats, properties.getCollisions().getMaxRounds(), meterRegistry);
+    }
+}
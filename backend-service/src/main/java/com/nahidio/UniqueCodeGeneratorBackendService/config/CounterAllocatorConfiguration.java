@@ -0,0 +1,26 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.repository.CounterReservationRepository;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CounterRangeAllocator;
+
+@Configuration
+public class CounterAllocatorConfiguration {
+
+    @Bean
+    public CounterRangeAllocator counterRangeAllocator(CodeGeneratorProperties properties,
+                                                       CounterReservationRepository reservationRepository,
+                                                       PlatformTransactionManager transactionManager) {
+        // Leases commit on their own, independent of any transaction of the caller
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        CodeGeneratorProperties.Counter counter = properties.getCounter();
+        return new CounterRangeAllocator(reservationRepository, transactionTemplate,
+                counter.getBlockSize(), counter.getInitialValue());
+    }
+}
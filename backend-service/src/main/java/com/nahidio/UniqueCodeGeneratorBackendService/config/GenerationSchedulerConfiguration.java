@@ -0,0 +1,18 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.service.GenerationScheduler;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Configuration
+public class GenerationSchedulerConfiguration {
+
+    @Bean
+    public GenerationScheduler generationScheduler(CodeGeneratorProperties properties, MeterRegistry meterRegistry) {
+        CodeGeneratorProperties.Scheduler scheduler = properties.getScheduler();
+        return new GenerationScheduler(scheduler.getChunkSlots(), scheduler.getMaxBacklogCodes(), meterRegistry);
+    }
+}
@@ -0,0 +1,24 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.service.InsertionScheduler;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// One InsertionScheduler for the whole application, sized from the Hikari pool
+@Configuration
+public class InsertionSchedulerConfiguration {
+
+    @Bean(destroyMethod = "shutdown")
+    public InsertionScheduler insertionScheduler(CodeGeneratorProperties properties, MeterRegistry meterRegistry,
+                                                 @Value("${spring.datasource.hikari.maximum-pool-size:10}") int maximumPoolSize) {
+        CodeGeneratorProperties.Insertion insertion = properties.getInsertion();
+        // Leave some connections for request bookkeeping and reads
+        int maxConcurrentWrites = Math.max(1, maximumPoolSize - insertion.getReservedConnections());
+        boolean virtualThreads = insertion.getThreads() == CodeGeneratorProperties.ThreadKind.VIRTUAL;
+        return new InsertionScheduler(maxConcurrentWrites, virtualThreads, meterRegistry);
+    }
+}
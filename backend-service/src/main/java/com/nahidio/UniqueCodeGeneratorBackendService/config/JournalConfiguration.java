@@ -0,0 +1,53 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.config;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.service.JdbcCodeSink;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.JournalCodeSink;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.JournalDrainer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// The "journal" sink and its drainer, only with code-generator.journal.enabled
+@Configuration
+@ConditionalOnProperty(prefix = "code-generator.journal", name = "enabled", havingValue = "true")
+public class JournalConfiguration {
+
+    @Bean(destroyMethod = "shutdown")
+    public JournalCodeSink journalCodeSink(CodeGeneratorProperties properties, MeterRegistry meterRegistry)
+            throws IOException {
+        // Reservoir claims move rows of the default sink, which have to be in generated_codes at once
+        if (JournalCodeSink.NAME.equalsIgnoreCase(properties.getSink().getType())) {
+            throw new IllegalStateException("The journal sink can only be chosen per request, not as code-generator.sink.type");
+        }
+        // A drained record cannot replace colliding codes any more, its request already completed
+        if (!"feistel".equalsIgnoreCase(properties.getEncoder().getType())) {
+            throw new IllegalStateException("code-generator.journal needs the feistel encoder");
+        }
+        // Nor codes that coincide with those of another format
+        if (!properties.getFormats().isEmpty()) {
+            throw new IllegalStateException("code-generator.journal cannot be combined with code-generator.formats");
+        }
+        CodeGeneratorProperties.Journal journal = properties.getJournal();
+        long segmentSize = journal.getSegmentSize().toBytes();
+        if (segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalStateException("code-generator.journal.segment-size cannot exceed 2GB");
+        }
+        return new JournalCodeSink(Path.of(journal.getDirectory()), (int) segmentSize, meterRegistry);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public JournalDrainer journalDrainer(JournalCodeSink journalCodeSink, JdbcCodeSink jdbcCodeSink,
+                                         DataSource dataSource, CodeGeneratorProperties properties,
+                                         MeterRegistry meterRegistry) {
+        return new JournalDrainer(journalCodeSink, jdbcCodeSink, dataSource,
+                properties.getJournal().getDrainIdle().toNanos(), meterRegistry);
+    }
+}
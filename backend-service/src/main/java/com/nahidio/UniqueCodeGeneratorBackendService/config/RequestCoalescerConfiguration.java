@@ -0,0 +1,37 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.config;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeEncoder;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeSink;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CollisionResolver;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CounterRangeAllocator;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.GenerationMetrics;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.InsertionScheduler;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.RequestCoalescer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Shared batches are written with the default sink, code-generator.sink.type
+@Configuration
+public class RequestCoalescerConfiguration {
+
+    @Bean(destroyMethod = "shutdown")
+    public RequestCoalescer requestCoalescer(CodeGeneratorProperties properties, List<CodeSink> codeSinks,
+                                             CodeEncoder codeEncoder, CounterRangeAllocator counterRangeAllocator,
+                                             InsertionScheduler insertionScheduler, GenerationMetrics generationMetrics,
+                                             CollisionResolver collisionResolver, MeterRegistry meterRegistry) {
+        String sinkType = properties.getSink().getType();
+        CodeSink sink = codeSinks.stream()
+                .filter(candidate -> candidate.name().equalsIgnoreCase(sinkType))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown code sink: " + sinkType));
+        CodeGeneratorProperties.Coalescing coalescing = properties.getCoalescing();
+        return new RequestCoalescer(sink, codeEncoder, counterRangeAllocator, insertionScheduler, generationMetrics,
+                collisionResolver, coalescing.getMaxRequestCodes(), coalescing.getMaxBatchCodes(), coalescing.getWindow().toNanos(),
+                meterRegistry);
+    }
+}
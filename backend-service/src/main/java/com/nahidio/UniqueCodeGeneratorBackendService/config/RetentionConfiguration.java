@@ -0,0 +1,34 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.config;
+
+import java.time.Clock;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeEncoder;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeRetention;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+// Scheduled expiry of old codes, only with code-generator.retention.enabled (see the retention profile)
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(prefix = "code-generator.retention", name = "enabled", havingValue = "true")
+public class RetentionConfiguration {
+
+    @Bean
+    public CodeRetention codeRetention(CodeGeneratorProperties properties, JdbcTemplate jdbcTemplate,
+                                       CodeEncoder codeEncoder, MeterRegistry meterRegistry) {
+        // Without a unique index on code alone, uniqueness rests on the bijective encoder; codes already stored
+        // are checked against it before the table is converted
+        if (!"feistel".equalsIgnoreCase(properties.getEncoder().getType())) {
+            throw new IllegalStateException("code-generator.retention needs the feistel encoder");
+        }
+        CodeGeneratorProperties.Retention retention = properties.getRetention();
+        return new CodeRetention(jdbcTemplate, retention.getTtl(), retention.getRequestsPerPartition(),
+                Clock.systemDefaultZone(), codeEncoder, properties.getStorage().getType(), meterRegistry);
+    }
+}
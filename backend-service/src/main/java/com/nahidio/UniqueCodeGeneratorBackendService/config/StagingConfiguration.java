@@ -0,0 +1,22 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeFormats;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeStaging;
+
+// Colliding staged codes are replaced like those of written batches, within code-generator.collisions.max-rounds
+@Configuration
+public class StagingConfiguration {
+
+    @Bean
+    public CodeStaging codeStaging(CodeGeneratorProperties properties, JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager, CodeFormats codeFormats) {
+        return new CodeStaging(jdbcTemplate, new TransactionTemplate(transactionManager), codeFormats,
+                properties.getStorage().getType(), properties.getCollisions().getMaxRounds());
+    }
+}
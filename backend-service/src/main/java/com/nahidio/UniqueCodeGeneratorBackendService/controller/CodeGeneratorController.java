@@ -1,19 +1,57 @@
 package com.nahidio.UniqueCodeGeneratorBackendService.controller;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.BenchmarkBaselines;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.ClaimedCodes;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationOptions;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationPriority;
 import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequest;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequestSummary;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationStats;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationStatusResponse;
 import com.nahidio.UniqueCodeGeneratorBackendService.error.CodeGenerationErrorException;
+import com.nahidio.UniqueCodeGeneratorBackendService.error.GenerationBacklogFullException;
+import com.nahidio.UniqueCodeGeneratorBackendService.error.GenerationRequestNotFoundException;
+import com.nahidio.UniqueCodeGeneratorBackendService.error.GenerationRequestNotResumableException;
 import com.nahidio.UniqueCodeGeneratorBackendService.error.InvalidNumberOfCodeRequestedException;
+import com.nahidio.UniqueCodeGeneratorBackendService.error.StagingNotSupportedException;
+import com.nahidio.UniqueCodeGeneratorBackendService.error.UnknownCodeFormatException;
+import com.nahidio.UniqueCodeGeneratorBackendService.error.UnknownCodeSinkException;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.BenchmarkBaselineService;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeExporter;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeFormat;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeReservoir;
 import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeService;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeSink;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeStream;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.ExportFormat;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.GenerationJobService;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.GenerationMetrics;
 import com.nahidio.UniqueCodeGeneratorBackendService.service.GenerationRequestService;
 
 // Controller to handle endpoints related to code generation
@@ -29,42 +67,264 @@ public class CodeGeneratorController {
     @Autowired
     private GenerationRequestService requestService;
 
-    // Constant representing the maximum possible unique codes for a 7 character base-62 code
-    static final long MAX_CODES = (long) Math.pow(62, 7);
+    @Autowired
+    private GenerationJobService jobService;
+
+    @Autowired
+    private CodeReservoir codeReservoir;
 
-    // Endpoint to trigger code generation
+    @Autowired
+    private CodeExporter codeExporter;
+
+    @Autowired
+    private BenchmarkBaselineService baselineService;
+
+    @Autowired
+    private GenerationMetrics generationMetrics;
+
+    // Endpoint to trigger code generation, optionally with another CodeSink than the configured one,
+    // all-or-nothing through a staging table, scheduled for a tenant at a priority, and in another code format;
+    // those options are bound from the sink, staged, tenant, priority and codeFormat parameters
     @GetMapping("/generateCodes")
-    public ResponseEntity<GenerationRequest> generateCodes(@RequestParam long number)
-              throws CodeGenerationErrorException, InvalidNumberOfCodeRequestedException  {
-        // Input validation: Ensure requested number of codes is greater than 0
-        if (number <= 0) {
-            throw new InvalidNumberOfCodeRequestedException( "Number should be greater than 0");
+    public ResponseEntity<GenerationRequest> generateCodes(@RequestParam long number, GenerationOptions options)
+              throws CodeGenerationErrorException, InvalidNumberOfCodeRequestedException, GenerationBacklogFullException,
+              UnknownCodeFormatException, UnknownCodeSinkException, StagingNotSupportedException {
+        validateNumberOfCodes(number, findFormat(options.getCodeFormat()));
+        validateSink(options);
+        generationMetrics.recordRequest("generate", number);
+
+        try {
+            // Generate the codes on this thread; the run is tracked like a job, so it can be followed and cancelled
+            GenerationRequest request = jobService.generate(number, options);
+            return ResponseEntity.ok(request);
+        } catch (GenerationBacklogFullException e) {
+            throw e;
+        } catch (Exception e) {
+            // Catching all exceptions for simplicity. In a real-world scenario, 
+            // exceptions should be handled more granularly based on their type and expected behavior.
+            throw new CodeGenerationErrorException(e.getMessage());
         }
-        
-        // Input validation: Ensure requested number of codes does not exceed the maximum possible unique codes
-        if (number > MAX_CODES) {
-            throw new InvalidNumberOfCodeRequestedException( "Number exceeds maximum allowed limit of unique codes.");
+    }
+
+    // Endpoint to start code generation in the background, with the options of generateCodes; answers 202 with
+    // the saved GenerationRequest
+    @PostMapping("/generationRequests")
+    public ResponseEntity<GenerationRequest> submitGenerationRequest(@RequestParam long number,
+                                                                     GenerationOptions options)
+              throws CodeGenerationErrorException, InvalidNumberOfCodeRequestedException, GenerationBacklogFullException,
+              UnknownCodeFormatException, UnknownCodeSinkException, StagingNotSupportedException {
+        validateNumberOfCodes(number, findFormat(options.getCodeFormat()));
+        validateSink(options);
+        generationMetrics.recordRequest("submit", number);
+
+        try {
+            GenerationRequest request = jobService.submit(number, options);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/generationRequests/" + request.getId() + "/status"))
+                    .body(request);
+        } catch (GenerationBacklogFullException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CodeGenerationErrorException(e.getMessage());
         }
+    }
 
-        // Input validation: Ensure requested number of codes is a whole number.
-        if (number != Math.floor(number)) {
-            throw new InvalidNumberOfCodeRequestedException("Number should be a whole number.");
+    // Endpoint to poll the progress of a generation request
+    @GetMapping("/generationRequests/{id}/status")
+    public ResponseEntity<GenerationStatusResponse> getGenerationStatus(@PathVariable long id)
+              throws GenerationRequestNotFoundException {
+        return ResponseEntity.ok(jobService.getStatus(id));
+    }
+
+    // Endpoint to stop a running generation request before its next chunk
+    @PostMapping("/generationRequests/{id}/cancel")
+    public ResponseEntity<GenerationStatusResponse> cancelGenerationRequest(@PathVariable long id)
+              throws GenerationRequestNotFoundException {
+        boolean cancelled = jobService.cancel(id);
+        GenerationStatusResponse status = jobService.getStatus(id);
+        return cancelled ? ResponseEntity.accepted().body(status) : ResponseEntity.status(HttpStatus.CONFLICT).body(status);
+    }
+
+    // Endpoint to continue an interrupted, failed or cancelled request after its last completed chunk
+    @PostMapping("/generationRequests/{id}/resume")
+    public ResponseEntity<GenerationStatusResponse> resumeGenerationRequest(@PathVariable long id)
+              throws GenerationRequestNotFoundException, GenerationRequestNotResumableException, GenerationBacklogFullException {
+        jobService.resume(id);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/generationRequests/" + id + "/status"))
+                .body(jobService.getStatus(id));
+    }
+
+    // Endpoint to claim a small number of codes, served from the pre-generated reservoir when possible
+    @PostMapping("/codes/claim")
+    public ResponseEntity<ClaimedCodes> claimCodes(@RequestParam int number)
+              throws CodeGenerationErrorException, InvalidNumberOfCodeRequestedException  {
+        // The reservoir only holds codes of the built-in format
+        validateNumberOfCodes(number, CodeFormat.DEFAULT);
+        if (number > codeReservoir.getMaxClaim()) {
+            throw new InvalidNumberOfCodeRequestedException(
+                    "Claims are limited to " + codeReservoir.getMaxClaim() + " codes, use /generationRequests instead.");
         }
 
+        generationMetrics.recordRequest("claim", number);
+
         try {
-            // Call the service method to generate the codes
-            GenerationRequest request = codeService.generateCodes(number);
-            return ResponseEntity.ok(request);
+            return ResponseEntity.ok(codeReservoir.claim(number));
         } catch (Exception e) {
-            // Catching all exceptions for simplicity. In a real-world scenario, 
-            // exceptions should be handled more granularly based on their type and expected behavior.
             throw new CodeGenerationErrorException(e.getMessage());
         }
     }
 
+    // Endpoint streaming codes while they are generated: every batch is sent when it is generated and acknowledged
+    // once committed, as Server-Sent Events for Accept: text/event-stream and as NDJSON otherwise.
+    // A slow client slows the run down.
+    @GetMapping("/codes/stream")
+    public ResponseEntity<StreamingResponseBody> streamCodes(@RequestParam long number,
+              @RequestParam(required = false) String tenant,
+              @RequestParam(required = false) GenerationPriority priority,
+              @RequestParam(required = false) String codeFormat,
+              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept)
+              throws InvalidNumberOfCodeRequestedException, GenerationBacklogFullException, UnknownCodeFormatException {
+        validateNumberOfCodes(number, findFormat(codeFormat));
+        generationMetrics.recordRequest("stream", number);
+
+        boolean serverSentEvents = accept != null && accept.contains(MediaType.TEXT_EVENT_STREAM_VALUE);
+        // Streamed runs are never staged, and use the configured sink
+        GenerationOptions options = GenerationOptions.unstaged();
+        options.setTenant(tenant);
+        options.setPriority(priority);
+        options.setCodeFormat(codeFormat);
+        CodeStream stream = jobService.stream(number, options);
+        // Runs after the handler returns; a client that goes away cancels the run
+        StreamingResponseBody body = out -> stream.writeTo(out, serverSentEvents);
+
+        return ResponseEntity.ok()
+                .contentType(serverSentEvents ? MediaType.TEXT_EVENT_STREAM : MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .header(HttpHeaders.LOCATION, "/api/generationRequests/" + stream.getRequest().getId() + "/status")
+                .body(body);
+    }
+
+    // Endpoint to download the codes of a request as CSV, NDJSON or packed binary, picked from the Accept header
+    @GetMapping("/generationRequests/{id}/codes")
+    public ResponseEntity<StreamingResponseBody> exportCodes(@PathVariable long id,
+              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+              @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
+              throws GenerationRequestNotFoundException, HttpMediaTypeNotAcceptableException, UnknownCodeFormatException {
+        GenerationRequest request = requestService.findRequest(id);
+        ExportFormat format = ExportFormat.fromAcceptHeader(accept);
+        // CSV and NDJSON copy the codes as stored; the binary export parses them back with the request's format,
+        // so one that is no longer configured fails here, not midway
+        CodeFormat codeFormat = format == ExportFormat.BINARY ? findRequestFormat(request) : CodeFormat.DEFAULT;
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+
+        // Runs after the handler returns, writing straight to the response as pages are read
+        StreamingResponseBody body = out -> {
+            OutputStream target = gzip ? new GZIPOutputStream(out, 64 * 1024) : out;
+            try {
+                codeExporter.export(id, format, codeFormat, target);
+            } catch (SQLException e) {
+                throw new IOException("Export of generation request " + id + " failed", e);
+            }
+            if (target instanceof GZIPOutputStream gzipStream) {
+                gzipStream.finish();
+            }
+        };
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"codes-" + id + "." + format.getFileExtension() + "\"");
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    // Endpoint for one page of the generation history, e.g. ?page=0&size=20&sort=startedAt,desc
     @GetMapping("/generationRequests")
-    public ResponseEntity<List<GenerationRequest>> getGenerationRequests() {
-        List<GenerationRequest> requests = requestService.findAllRequests();
-        return ResponseEntity.ok(requests);
+    public ResponseEntity<Page<GenerationRequestSummary>> getGenerationRequests(
+              @PageableDefault(size = 20, sort = "id", direction = Sort.Direction.DESC) Pageable pageable) {
+        return ResponseEntity.ok(requestService.findRequests(pageable));
+    }
+
+    // Endpoint for total codes and throughput percentiles over all completed requests
+    @GetMapping("/generationRequests/stats")
+    public ResponseEntity<GenerationStats> getGenerationStats() {
+        return ResponseEntity.ok(requestService.getStats());
+    }
+
+    // Endpoint for the measured benchmark baselines closest to the running pipeline settings, or to the given ones
+    @GetMapping("/benchmarks/baselines")
+    public ResponseEntity<BenchmarkBaselines> getBenchmarkBaselines(@RequestParam(required = false) Long chunkSize,
+                                                                    @RequestParam(required = false) Integer writerThreads) {
+        return ResponseEntity.ok(baselineService.findBaselines(chunkSize, writerThreads));
+    }
+
+    // The named format, or the built-in base62 one without a name
+    private CodeFormat findFormat(String codeFormat) throws UnknownCodeFormatException {
+        if (codeFormat == null) {
+            return CodeFormat.DEFAULT;
+        }
+        try {
+            return codeService.getFormat(codeFormat);
+        } catch (IllegalArgumentException e) {
+            throw new UnknownCodeFormatException(e.getMessage());
+        }
+    }
+
+    // The format a saved request was generated in, which may have been removed from code-generator.formats since
+    private CodeFormat findRequestFormat(GenerationRequest request) throws UnknownCodeFormatException {
+        try {
+            return codeService.getFormat(request.getCodeFormat());
+        } catch (IllegalArgumentException e) {
+            throw new UnknownCodeFormatException("Generation request " + request.getId() + " was generated in code format "
+                    + request.getCodeFormat() + ", which is no longer configured; export it as CSV or NDJSON instead");
+        }
+    }
+
+    // Fails before a request is saved, instead of as a failed run: sinks that are not registered, and staged
+    // runs (asked for, or by code-generator.staging.enabled) of sinks that cannot write to a staging table
+    private void validateSink(GenerationOptions options) throws UnknownCodeSinkException, StagingNotSupportedException {
+        boolean stagedRun = codeService.isStaged(options.getStaged());
+        if (options.getSink() == null && !stagedRun) {
+            return;
+        }
+        CodeSink codeSink;
+        try {
+            codeSink = codeService.getSink(options.getSink());
+        } catch (IllegalArgumentException e) {
+            throw new UnknownCodeSinkException(e.getMessage());
+        }
+        if (stagedRun && !codeSink.supportsStaging()) {
+            throw new StagingNotSupportedException("The " + codeSink.name() + " sink cannot write staged runs");
+        }
+    }
+
+    private void validateNumberOfCodes(long number, CodeFormat format) throws InvalidNumberOfCodeRequestedException {
+        // Input validation: Ensure requested number of codes is greater than 0
+        if (number <= 0) {
+            throw new InvalidNumberOfCodeRequestedException( "Number should be greater than 0");
+        }
+        
+        // Input validation: Ensure requested number of codes does not exceed the unique codes of the format
+        if (number > format.getCapacity()) {
+            throw new InvalidNumberOfCodeRequestedException("Number exceeds the " + format.getCapacity()
+                    + " unique codes of format " + format.getName() + ".");
+        }
+
+        // Input validation: Ensure a configured format has that many counters left; the 62^7 of base62 are not looked up
+        if (format != CodeFormat.DEFAULT) {
+            long remaining = codeService.getRemainingCodes(format);
+            if (number > remaining) {
+                throw new InvalidNumberOfCodeRequestedException("Number exceeds the " + remaining
+                        + " codes format " + format.getName() + " has left.");
+            }
+        }
+
+        // Input validation: Ensure requested number of codes is a whole number.
+        if (number != Math.floor(number)) {
+            throw new InvalidNumberOfCodeRequestedException("Number should be a whole number.");
+        }
     }
 }
\ No newline at end of file
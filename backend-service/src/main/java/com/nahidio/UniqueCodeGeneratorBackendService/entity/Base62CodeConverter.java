@@ -0,0 +1,21 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.entity;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.service.Base62;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+// Stores GeneratedCode.code as its numeric value when the bigint storage mode maps the column as BIGINT
+@Converter
+public class Base62CodeConverter implements AttributeConverter<String, Long> {
+
+    @Override
+    public Long convertToDatabaseColumn(String code) {
+        return code == null ? null : Base62.parse(code);
+    }
+
+    @Override
+    public String convertToEntityAttribute(Long value) {
+        return value == null ? null : Base62.format(value);
+    }
+}
@@ -0,0 +1,21 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Measured run of one cell of the benchmark matrix, the repetition with the median wall time
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BenchmarkBaseline {
+
+    private long numberOfCodes;
+    private long chunkSize;
+    private int writerThreads;
+    private double wallSeconds;
+    // Busy time of the generator and writer stages summed over their workers; they overlap within the wall time
+    private double generateSeconds;
+    private double writeSeconds;
+    private double codesPerSecond;
+}
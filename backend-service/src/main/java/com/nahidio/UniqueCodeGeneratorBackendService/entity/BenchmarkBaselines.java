@@ -0,0 +1,27 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.entity;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Result of a benchmark run: the measured cells and the setup they were measured with
+@Data
+@NoArgsConstructor
+public class BenchmarkBaselines {
+
+    private Instant measuredAt;
+    // Database product and version the codes were written to
+    private String database;
+    // Set when served: the database product this backend writes to, and whether the baselines were measured on it
+    private String servingDatabase;
+    private boolean sameDatabase;
+    private String sink;
+    private String encoder;
+    private int batchSize;
+    private int generatorThreads;
+    private int repetitions;
+    private List<BenchmarkBaseline> baselines = new ArrayList<>();
+}
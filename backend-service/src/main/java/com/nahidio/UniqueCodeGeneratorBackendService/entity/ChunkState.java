@@ -0,0 +1,9 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.entity;
+
+// Lifecycle of a GenerationChunk checkpoint
+public enum ChunkState {
+    // Counter range leased, codes possibly partly written
+    RUNNING,
+    // Every code of the range written
+    COMPLETED
+}
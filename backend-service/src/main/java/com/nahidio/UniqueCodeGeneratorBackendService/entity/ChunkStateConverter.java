@@ -0,0 +1,19 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+// Stores ChunkState by name in a VARCHAR column
+@Converter
+public class ChunkStateConverter implements AttributeConverter<ChunkState, String> {
+
+    @Override
+    public String convertToDatabaseColumn(ChunkState state) {
+        return state == null ? null : state.name();
+    }
+
+    @Override
+    public ChunkState convertToEntityAttribute(String name) {
+        return name == null ? null : ChunkState.valueOf(name);
+    }
+}
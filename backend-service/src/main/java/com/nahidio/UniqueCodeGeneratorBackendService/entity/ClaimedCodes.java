@@ -0,0 +1,19 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.entity;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Codes handed out by the claim endpoint together with the GenerationRequest they are now assigned to
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClaimedCodes {
+
+    private Long generationRequestId;
+    private List<String> codes;
+    // false when the reservoir could not serve the claim and the codes were generated on the spot
+    private boolean fromReservoir;
+}
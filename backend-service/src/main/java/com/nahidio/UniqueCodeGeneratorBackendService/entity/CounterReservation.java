@@ -0,0 +1,33 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * High-water mark of a counter shared by all backend instances.
+ *
+ * Every counter value below nextValue has been leased to some node and must never be handed out again.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "counterReservation")
+public class CounterReservation {
+
+    @Id
+    private String name;
+
+    @Column(nullable = false)
+    private long nextValue;
+
+    private LocalDateTime updatedAt;
+
+}
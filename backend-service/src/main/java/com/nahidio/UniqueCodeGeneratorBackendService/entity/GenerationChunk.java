@@ -0,0 +1,61 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Checkpoint of one chunk of a GenerationRequest.
+ *
+ * Saved RUNNING with its counter range before the first code of the chunk is written and marked
+ * COMPLETED once every code is, so an interrupted request can continue after its last completed chunk.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "generationChunk",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"generationRequestId", "chunkIndex"}))
+public class GenerationChunk {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private long generationRequestId;
+
+    // Position of the chunk within its request, from 0
+    @Column(nullable = false)
+    private int chunkIndex;
+
+    // The chunk covers the counters [startCounter, startCounter + numberOfCodes)
+    @Column(nullable = false)
+    private long startCounter;
+
+    @Column(nullable = false)
+    private long numberOfCodes;
+
+    @Convert(converter = ChunkStateConverter.class)
+    @Column(length = 16, nullable = false)
+    private ChunkState state;
+
+    // Codes written, set on completion
+    private Long codesPersisted;
+
+    // Highest generated_codes id of the request once the chunk completed; rows above it belong to later chunks
+    private Long maxCodeId;
+
+    private LocalDateTime updatedAt;
+
+}
@@ -0,0 +1,31 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// How a generation request is run, as asked for by the caller; bound from the query parameters of the generation
+// endpoints, every field null for its default
+@Data
+@NoArgsConstructor
+public class GenerationOptions {
+
+    // Name of the CodeSink the codes are written to, null for code-generator.sink.type
+    private String sink;
+    // Publish every code or none through a staging table, null for code-generator.staging.enabled
+    private Boolean staged;
+    // Caller the request is accounted to by the scheduler, null for the default tenant
+    private String tenant;
+    // Weight of the request within its tenant's share, null for NORMAL
+    private GenerationPriority priority;
+    // Name of the CodeFormat of the codes, null for the built-in base62
+    private String codeFormat;
+
+    /**
+     * @return Options of a run that is never staged, whatever code-generator.staging.enabled says.
+     */
+    public static GenerationOptions unstaged() {
+        GenerationOptions options = new GenerationOptions();
+        options.setStaged(false);
+        return options;
+    }
+}
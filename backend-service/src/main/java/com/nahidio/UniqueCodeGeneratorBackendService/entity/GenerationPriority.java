@@ -0,0 +1,18 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.entity;
+
+// Share of the chunk slots a request gets while others wait, relative to the other priorities
+public enum GenerationPriority {
+    LOW(1),
+    NORMAL(2),
+    HIGH(4);
+
+    private final int weight;
+
+    GenerationPriority(int weight) {
+        this.weight = weight;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+}
@@ -0,0 +1,19 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+// Stores GenerationPriority by name in a VARCHAR column
+@Converter
+public class GenerationPriorityConverter implements AttributeConverter<GenerationPriority, String> {
+
+    @Override
+    public String convertToDatabaseColumn(GenerationPriority priority) {
+        return priority == null ? null : priority.name();
+    }
+
+    @Override
+    public GenerationPriority convertToEntityAttribute(String name) {
+        return name == null ? null : GenerationPriority.valueOf(name);
+    }
+}
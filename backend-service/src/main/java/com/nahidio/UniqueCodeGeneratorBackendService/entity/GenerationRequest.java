@@ -7,10 +7,12 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import jakarta.persistence.Id;
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
+import jakarta.persistence.Index;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
@@ -21,7 +23,7 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "generationRequest")
+@Table(name = "generationRequest", indexes = @Index(columnList = "owner"))
 public class GenerationRequest {
 
     @Id
@@ -36,6 +38,67 @@ public class GenerationRequest {
     @Column(nullable = false)
     private long numberOfCodes;
 
+    // Converted by hand: @Enumerated would become a native MySQL ENUM column that ddl-auto never widens
+    @Convert(converter = GenerationStatusConverter.class)
+    @Column(length = 16)
+    private GenerationStatus status;
+
+    // Codes actually written, stored when the run ends
+    private Long codesPersisted;
+
+    // CodeSink the codes are written to, null for requests that cannot be resumed
+    @Column(length = 16)
+    private String sink;
+
+    private Boolean staged;
+
+    // CodeFormat of the codes, null for requests from before formats, which are base62
+    @Column(length = 32)
+    private String codeFormat;
+
+    // Last time an interrupted run was continued
+    private LocalDateTime resumedAt;
+
+    // Pipeline settings of the last run; with autoTuned, what the tuner had settled on when it ended
+    private Long chunkSize;
+
+    private Integer batchSize;
+
+    private Integer writerThreads;
+
+    private Boolean autoTuned;
+
+    // Caller the request is accounted to by the scheduler, and its weight there
+    @Column(length = 64)
+    private String tenant;
+
+    @Convert(converter = GenerationPriorityConverter.class)
+    @Column(length = 8)
+    private GenerationPriority priority;
+
+    // Time the chunks of the last run waited for a scheduler slot
+    private Double queueWaitSeconds;
+
+    // Codes of the last run that collided with persisted ones and were replaced, and the extra writes it took
+    private Long codeCollisions;
+
+    private Long collisionRetries;
+
+    // Codes of a RESERVOIR request not claimed yet, as of its last refill or shutdown
+    private Long codesUnclaimed;
+
+    // Codes of a journal request loaded into generated_codes so far; only the JournalDrainer writes it
+    @Column(insertable = false, updatable = false)
+    private Long codesInDatabase;
+
+    // Process working on the request and until when it may, see GenerationLeaseService; only set on insert
+    // and by its SQL, so a save of the entity never moves a lease another process holds
+    @Column(length = 64, updatable = false)
+    private String owner;
+
+    @Column(updatable = false)
+    private LocalDateTime leaseExpiresAt;
+
     @OneToMany(mappedBy = "generationRequest", fetch = FetchType.LAZY)
     @JsonIgnore  // To prevent serialization of this side of the relationship
     private List<GeneratedCode> generatedCodes;
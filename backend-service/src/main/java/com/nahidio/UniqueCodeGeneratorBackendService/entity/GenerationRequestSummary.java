@@ -0,0 +1,59 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.entity;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Closed projection of a GenerationRequest for the history view: only these columns are selected
+ * and no entity is managed. Duration and throughput are derived from them.
+ */
+public interface GenerationRequestSummary {
+
+    Long getId();
+
+    LocalDateTime getStartedAt();
+
+    LocalDateTime getEndedAt();
+
+    long getNumberOfCodes();
+
+    GenerationStatus getStatus();
+
+    Long getCodesPersisted();
+
+    Integer getBatchSize();
+
+    Integer getWriterThreads();
+
+    Boolean getAutoTuned();
+
+    String getTenant();
+
+    GenerationPriority getPriority();
+
+    Double getQueueWaitSeconds();
+
+    Long getCodesInDatabase();
+
+    Long getCodeCollisions();
+
+    Long getCollisionRetries();
+
+    // Wall time of the request in seconds, null while it runs
+    default Double getDurationSeconds() {
+        if (getStartedAt() == null || getEndedAt() == null) {
+            return null;
+        }
+        return Duration.between(getStartedAt(), getEndedAt()).toNanos() / 1_000_000_000.0;
+    }
+
+    // Codes persisted per second of wall time, null while it runs
+    default Double getCodesPerSecond() {
+        Double duration = getDurationSeconds();
+        if (duration == null || duration <= 0) {
+            return null;
+        }
+        long codes = getCodesPersisted() != null ? getCodesPersisted() : getNumberOfCodes();
+        return codes / duration;
+    }
+}
@@ -0,0 +1,18 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Aggregates over all completed generation requests
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GenerationStats {
+
+    private long completedRequests;
+    private long totalCodes;
+    // Median and 95th percentile of codes per second across requests
+    private double p50CodesPerSecond;
+    private double p95CodesPerSecond;
+}
@@ -0,0 +1,16 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.entity;
+
+// Lifecycle of a GenerationRequest
+public enum GenerationStatus {
+    RUNNING,
+    COMPLETED,
+    CANCELLED,
+    FAILED,
+    // Outcome of a staged run: every code published at once, or none of them
+    COMMITTED,
+    ABORTED,
+    // Holds pre-generated codes of the CodeReservoir until they are claimed
+    RESERVOIR,
+    // Codes dropped by the retention job after code-generator.retention.ttl
+    EXPIRED
+}
@@ -0,0 +1,19 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+// Stores GenerationStatus by name in a VARCHAR column
+@Converter
+public class GenerationStatusConverter implements AttributeConverter<GenerationStatus, String> {
+
+    @Override
+    public String convertToDatabaseColumn(GenerationStatus status) {
+        return status == null ? null : status.name();
+    }
+
+    @Override
+    public GenerationStatus convertToEntityAttribute(String name) {
+        return name == null ? null : GenerationStatus.valueOf(name);
+    }
+}
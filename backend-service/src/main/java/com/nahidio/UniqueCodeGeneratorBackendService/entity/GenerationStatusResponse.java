@@ -0,0 +1,41 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.entity;
+
+import java.time.LocalDateTime;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Progress of a generation job as reported by the status endpoint; filled through its setters, it has too many
+// fields of the same types for a positional constructor
+@Data
+@NoArgsConstructor
+public class GenerationStatusResponse {
+
+    private Long id;
+    private GenerationStatus status;
+    private long numberOfCodes;
+    private long codesPersisted;
+    private double codesPerSecond;
+    // Estimated seconds until completion, null when unknown or finished
+    private Long etaSeconds;
+    private LocalDateTime startedAt;
+    private LocalDateTime endedAt;
+    // Whether the run continued after an interruption, and when it last did
+    private boolean resumed;
+    private LocalDateTime resumedAt;
+    private String tenant;
+    private GenerationPriority priority;
+    // Whether a chunk is waiting for a scheduler slot right now, and how many chunks wait in total
+    private boolean queued;
+    private Integer queueDepth;
+    // Time the chunks of the run waited for a slot so far
+    private Double queueWaitSeconds;
+    // codesPersisted are durable; with the journal sink they reach generated_codes later, counted here
+    private long codesInDatabase;
+    // Whether every code of the request is durable, and whether every durable code is in the database
+    private boolean durable;
+    private boolean inDatabase;
+    // Codes that were already persisted and got replaced, and the extra batch writes that took
+    private long codeCollisions;
+    private long collisionRetries;
+}
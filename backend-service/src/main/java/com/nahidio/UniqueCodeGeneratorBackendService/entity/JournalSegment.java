@@ -0,0 +1,33 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Drain checkpoint of one journal segment.
+ *
+ * Updated in the transaction that loads a record of the segment into generated_codes, so after a
+ * crash the drainer continues behind the last record that is in the database. Deleted with the segment.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "journalSegment")
+public class JournalSegment {
+
+    // Random id written into the segment header, unique across instances sharing the database
+    @Id
+    @Column(length = 16)
+    private String segmentId;
+
+    // Byte offset in the segment up to which every record is loaded
+    @Column(nullable = false)
+    private long drainedPosition;
+
+}
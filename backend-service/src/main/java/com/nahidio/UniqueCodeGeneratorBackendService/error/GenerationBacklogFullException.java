@@ -0,0 +1,24 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.error;
+
+public class GenerationBacklogFullException extends Exception{
+
+    public GenerationBacklogFullException() {
+        super();
+    }
+
+    public GenerationBacklogFullException(String message) {
+        super(message);
+    }
+
+    public GenerationBacklogFullException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public GenerationBacklogFullException(Throwable cause) {
+        super(cause);
+    }
+
+    protected GenerationBacklogFullException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
\ No newline at end of file
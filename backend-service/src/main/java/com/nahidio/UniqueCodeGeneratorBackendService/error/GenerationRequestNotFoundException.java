@@ -0,0 +1,24 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.error;
+
+public class GenerationRequestNotFoundException extends Exception{
+
+    public GenerationRequestNotFoundException() {
+        super();
+    }
+
+    public GenerationRequestNotFoundException(String message) {
+        super(message);
+    }
+
+    public GenerationRequestNotFoundException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public GenerationRequestNotFoundException(Throwable cause) {
+        super(cause);
+    }
+
+    protected GenerationRequestNotFoundException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.error;
+
+public class GenerationRequestNotResumableException extends Exception{
+
+    public GenerationRequestNotResumableException() {
+        super();
+    }
+
+    public GenerationRequestNotResumableException(String message) {
+        super(message);
+    }
+
+    public GenerationRequestNotResumableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public GenerationRequestNotResumableException(Throwable cause) {
+        super(cause);
+    }
+
+    protected GenerationRequestNotResumableException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.nahidio.UniqueCodeGeneratorBackendService.error;
 
+import org.springframework.data.mapping.PropertyReferenceException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -34,4 +35,80 @@ public class RestResponseEntityExceptionHandler
         return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                 .body(message);
     }
-}
\ No newline at end of file
+
+    // A codeFormat that is not the built-in base62 nor one of code-generator.formats, also when a request's
+    // format was removed from them and its codes are exported as binary
+    @ExceptionHandler(UnknownCodeFormatException.class)
+    public ResponseEntity<ErrorMessage> unknownCodeFormat(UnknownCodeFormatException exception,
+                                                    WebRequest request) {
+        ErrorMessage message = new ErrorMessage(HttpStatus.BAD_REQUEST,
+                exception.getMessage());
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(message);
+    }
+
+    // A staged run of a sink that cannot write to a staging table, e.g. hibernate or journal
+    @ExceptionHandler(StagingNotSupportedException.class)
+    public ResponseEntity<ErrorMessage> stagingNotSupported(StagingNotSupportedException exception,
+                                                    WebRequest request) {
+        ErrorMessage message = new ErrorMessage(HttpStatus.BAD_REQUEST,
+                exception.getMessage());
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(message);
+    }
+
+    // A sink that is not registered, e.g. bulk without code-generator.sink.bulk-enabled
+    @ExceptionHandler(UnknownCodeSinkException.class)
+    public ResponseEntity<ErrorMessage> unknownCodeSink(UnknownCodeSinkException exception,
+                                                    WebRequest request) {
+        ErrorMessage message = new ErrorMessage(HttpStatus.BAD_REQUEST,
+                exception.getMessage());
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(message);
+    }
+
+    @ExceptionHandler(GenerationRequestNotFoundException.class)
+    public ResponseEntity<ErrorMessage> generationRequestNotFound(GenerationRequestNotFoundException exception,
+                                                    WebRequest request) {
+        ErrorMessage message = new ErrorMessage(HttpStatus.NOT_FOUND,
+                exception.getMessage());
+
+        return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(message);
+    }
+
+    @ExceptionHandler(GenerationRequestNotResumableException.class)
+    public ResponseEntity<ErrorMessage> generationRequestNotResumable(GenerationRequestNotResumableException exception,
+                                                    WebRequest request) {
+        ErrorMessage message = new ErrorMessage(HttpStatus.CONFLICT,
+                exception.getMessage());
+
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(message);
+    }
+
+    // The scheduler's backlog has no room for the request's codes; the caller should back off and retry
+    @ExceptionHandler(GenerationBacklogFullException.class)
+    public ResponseEntity<ErrorMessage> generationBacklogFull(GenerationBacklogFullException exception,
+                                                    WebRequest request) {
+        ErrorMessage message = new ErrorMessage(HttpStatus.TOO_MANY_REQUESTS,
+                exception.getMessage());
+
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .body(message);
+    }
+
+    // Sorting the history by a property GenerationRequest does not have
+    @ExceptionHandler(PropertyReferenceException.class)
+    public ResponseEntity<ErrorMessage> unknownSortProperty(PropertyReferenceException exception,
+                                                    WebRequest request) {
+        ErrorMessage message = new ErrorMessage(HttpStatus.BAD_REQUEST,
+                exception.getMessage());
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(message);
+    }
+}
@@ -0,0 +1,24 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.error;
+
+public class StagingNotSupportedException extends Exception{
+
+    public StagingNotSupportedException() {
+        super();
+    }
+
+    public StagingNotSupportedException(String message) {
+        super(message);
+    }
+
+    public StagingNotSupportedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public StagingNotSupportedException(Throwable cause) {
+        super(cause);
+    }
+
+    protected StagingNotSupportedException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
\ No newline at end of file
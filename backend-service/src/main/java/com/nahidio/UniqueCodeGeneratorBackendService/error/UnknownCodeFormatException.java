@@ -0,0 +1,24 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.error;
+
+public class UnknownCodeFormatException extends Exception{
+
+    public UnknownCodeFormatException() {
+        super();
+    }
+
+    public UnknownCodeFormatException(String message) {
+        super(message);
+    }
+
+    public UnknownCodeFormatException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public UnknownCodeFormatException(Throwable cause) {
+        super(cause);
+    }
+
+    protected UnknownCodeFormatException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
\ No newline at end of file
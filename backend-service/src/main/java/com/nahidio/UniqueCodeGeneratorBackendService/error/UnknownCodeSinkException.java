@@ -0,0 +1,24 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.error;
+
+public class UnknownCodeSinkException extends Exception{
+
+    public UnknownCodeSinkException() {
+        super();
+    }
+
+    public UnknownCodeSinkException(String message) {
+        super(message);
+    }
+
+    public UnknownCodeSinkException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public UnknownCodeSinkException(Throwable cause) {
+        super(cause);
+    }
+
+    protected UnknownCodeSinkException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
+}
\ No newline at end of file
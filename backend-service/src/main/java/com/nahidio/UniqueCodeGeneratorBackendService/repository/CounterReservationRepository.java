@@ -0,0 +1,20 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.repository;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.CounterReservation;
+
+import jakarta.persistence.LockModeType;
+
+public interface CounterReservationRepository extends JpaRepository<CounterReservation, String> {
+
+    // SELECT ... FOR UPDATE, so leases of concurrent nodes are serialized on the row
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM CounterReservation r WHERE r.name = :name")
+    Optional<CounterReservation> findForUpdate(@Param("name") String name);
+}
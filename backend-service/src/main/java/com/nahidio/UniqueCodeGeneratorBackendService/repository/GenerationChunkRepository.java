@@ -0,0 +1,12 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationChunk;
+
+public interface GenerationChunkRepository extends JpaRepository<GenerationChunk, Long> {
+
+    List<GenerationChunk> findByGenerationRequestIdOrderByChunkIndex(long generationRequestId);
+}
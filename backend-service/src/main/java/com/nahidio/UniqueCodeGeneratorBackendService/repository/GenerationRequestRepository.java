@@ -1,8 +1,30 @@
 package com.nahidio.UniqueCodeGeneratorBackendService.repository;
 
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequest;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequestSummary;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationStatus;
 
 public interface GenerationRequestRepository extends JpaRepository<GenerationRequest, Long> {
+
+    // One page of the history, leaving out the reservoir's holding requests
+    Page<GenerationRequestSummary> findByStatusIsNullOrStatusNot(GenerationStatus status, Pageable pageable);
+
+    // Requests a stopped process left unfinished
+    List<GenerationRequest> findByStatusAndEndedAtIsNull(GenerationStatus status);
+
+    // Reservoir requests that may still hold unclaimed codes; null for those from before the count was kept
+    @Query("SELECT r FROM GenerationRequest r WHERE r.status = :status"
+            + " AND (r.codesUnclaimed IS NULL OR r.codesUnclaimed > 0) ORDER BY r.id")
+    List<GenerationRequest> findWithUnclaimedCodes(@Param("status") GenerationStatus status);
+
+    List<GenerationRequestSummary> findByStatusIn(Collection<GenerationStatus> statuses);
 }
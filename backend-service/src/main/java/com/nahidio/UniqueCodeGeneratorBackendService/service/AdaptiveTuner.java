@@ -0,0 +1,157 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.time.Duration;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.config.CodeGeneratorProperties;
+
+/**
+ * Adjusts the batch size and writer concurrency of one generation request while it runs.
+ *
+ * Writers report every batch with its commit latency. After each window of batches the tuner looks at
+ * the window's rows per second and mean latency:
+ * <ul>
+ * <li>a failed batch or a mean latency above the bound halves both settings (multiplicative decrease);</li>
+ * <li>otherwise the batch size grows by one step (additive increase), and the writer limit moves one
+ * writer further in the direction that last improved throughput, reversing when throughput drops
+ * (hill climbing).</li>
+ * </ul>
+ * Both stay within the configured bounds. The tuner lives for one run of a request, across its chunks.
+ */
+public class AdaptiveTuner {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveTuner.class);
+
+    private final CodeGeneratorProperties.Tuning bounds;
+    private final long maxLatencyNanos;
+
+    // Guarded by this
+    private int batchSize;
+    private int writerLimit;
+    private int activeWriters;
+    // +1 while adding writers pays off, -1 while removing them does
+    private int direction = 1;
+    private double lastRowsPerSecond;
+    private long windowStart = System.nanoTime();
+    private int windowBatches;
+    private long windowRows;
+    private long windowLatencyNanos;
+    private int windowFailures;
+    private int adjustments;
+
+    /**
+     * @param bounds The code-generator.tuning settings.
+     * @param initialBatchSize Batch size to start with, clamped into the bounds.
+     * @param initialWriterThreads Writer limit to start with, clamped into the bounds.
+     */
+    public AdaptiveTuner(CodeGeneratorProperties.Tuning bounds, int initialBatchSize, int initialWriterThreads) {
+        this.bounds = bounds;
+        this.maxLatencyNanos = bounds.getMaxBatchLatency().toNanos();
+        this.batchSize = clamp(initialBatchSize, bounds.getMinBatchSize(), bounds.getMaxBatchSize());
+        this.writerLimit = clamp(initialWriterThreads, bounds.getMinWriterThreads(), bounds.getMaxWriterThreads());
+    }
+
+    /**
+     * @return Size of the next batch a generator fills.
+     */
+    public synchronized int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return Writers of the request allowed to write at the same time.
+     */
+    public synchronized int getWriterLimit() {
+        return writerLimit;
+    }
+
+    /**
+     * @return Most writers a pipeline starts, as getWriterLimit() grows.
+     */
+    public int getMaxWriterThreads() {
+        return bounds.getMaxWriterThreads();
+    }
+
+    /**
+     * @return Number of times the settings were reconsidered.
+     */
+    public synchronized int getAdjustments() {
+        return adjustments;
+    }
+
+    /**
+     * Wait until fewer than getWriterLimit() writers of the request are writing.
+     *
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public synchronized void acquireWriteSlot() throws InterruptedException {
+        while (activeWriters >= writerLimit) {
+            wait();
+        }
+        activeWriters++;
+    }
+
+    public synchronized void releaseWriteSlot() {
+        activeWriters--;
+        notifyAll();
+    }
+
+    /**
+     * Record a written batch and adjust the settings at the end of a window.
+     *
+     * @param codes Codes in the batch.
+     * @param latencyNanos Time the write took.
+     * @param success Whether the batch was committed.
+     */
+    public synchronized void record(int codes, long latencyNanos, boolean success) {
+        windowBatches++;
+        windowLatencyNanos += latencyNanos;
+        if (success) {
+            windowRows += codes;
+        } else {
+            windowFailures++;
+        }
+        if (windowBatches < bounds.getWindowBatches()) {
+            return;
+        }
+        long now = System.nanoTime();
+        double seconds = Math.max(1, now - windowStart) / 1_000_000_000.0;
+        adjust(windowRows / seconds, windowLatencyNanos / windowBatches, windowFailures);
+        windowStart = now;
+        windowBatches = 0;
+        windowRows = 0;
+        windowLatencyNanos = 0;
+        windowFailures = 0;
+    }
+
+    /**
+     * Apply the policy to one window.
+     *
+     * @param rowsPerSecond Codes committed per second during the window.
+     * @param meanLatencyNanos Mean write time of the window's batches.
+     * @param failures Batches of the window that failed.
+     */
+    synchronized void adjust(double rowsPerSecond, long meanLatencyNanos, int failures) {
+        adjustments++;
+        if (failures > 0 || meanLatencyNanos > maxLatencyNanos) {
+            batchSize = clamp(batchSize / 2, bounds.getMinBatchSize(), bounds.getMaxBatchSize());
+            writerLimit = clamp(writerLimit / 2, bounds.getMinWriterThreads(), bounds.getMaxWriterThreads());
+            direction = 1;
+        } else {
+            batchSize = clamp(batchSize + bounds.getBatchSizeStep(), bounds.getMinBatchSize(), bounds.getMaxBatchSize());
+            if (lastRowsPerSecond > 0 && rowsPerSecond < lastRowsPerSecond * (1 - bounds.getThroughputTolerance())) {
+                direction = -direction;
+            }
+            writerLimit = clamp(writerLimit + direction, bounds.getMinWriterThreads(), bounds.getMaxWriterThreads());
+        }
+        lastRowsPerSecond = rowsPerSecond;
+        notifyAll();
+        logger.debug("{} rows/s, {} ms per batch, {} failed: batch size {}, {} writers", Math.round(rowsPerSecond),
+                Duration.ofNanos(meanLatencyNanos).toMillis(), failures, batchSize, writerLimit);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
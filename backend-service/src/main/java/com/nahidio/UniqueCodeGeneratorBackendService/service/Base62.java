@@ -0,0 +1,48 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+/**
+ * Fixed-width base 62 conversion between numeric code values and their 7 character form,
+ * the conversion of CodeFormat.DEFAULT.
+ */
+public final class Base62 {
+
+    // A string representation of alphanumeric characters (base 62: 0-9, A-Z, a-z).
+    public static final String ALPHANUMERIC = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    // The length of every code string.
+    public static final int LENGTH = 7;
+    // Number of distinct codes of LENGTH characters: 62^7.
+    public static final long CAPACITY = 3_521_614_606_208L;
+
+    private Base62() {
+    }
+
+    /**
+     * Render a value in [0, CAPACITY) as exactly LENGTH characters, most significant digit first.
+     *
+     * @param value The numeric code value.
+     * @return The code string, left padded with '0'.
+     */
+    public static String format(long value) {
+        return CodeFormat.DEFAULT.format(value);
+    }
+
+    /**
+     * Write the LENGTH characters of a value into a caller owned buffer, so hot loops can reuse it.
+     *
+     * @param value The numeric code value.
+     * @param digits Buffer of at least LENGTH characters.
+     */
+    public static void write(long value, char[] digits) {
+        CodeFormat.DEFAULT.write(value, digits);
+    }
+
+    /**
+     * Parse a LENGTH character code back into its numeric value.
+     *
+     * @param code The code string.
+     * @return The numeric code value.
+     */
+    public static long parse(String code) {
+        return CodeFormat.DEFAULT.parse(code);
+    }
+}
@@ -0,0 +1,93 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nahidio.UniqueCodeGeneratorBackendService.config.CodeGeneratorProperties;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.BenchmarkBaseline;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.BenchmarkBaselines;
+
+@Service
+public class BenchmarkBaselineService {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CodeGeneratorProperties properties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile String servingDatabase;
+
+    /**
+     * Baselines measured with the pipeline settings closest to the given ones: the nearest measured
+     * chunk size, then the nearest writer count measured with it.
+     *
+     * The file is read on every call, so a new benchmark run shows up without a restart. The result is
+     * labelled with the database product of this backend, and whether the baselines were measured on the
+     * same one; baselines of an embedded H2 say little about a MySQL deployment.
+     *
+     * @param chunkSize Chunk size to compare against, null for code-generator.pipeline.chunk-size.
+     * @param writerThreads Writer count to compare against, null for code-generator.pipeline.writer-threads.
+     * @return The matching baselines ordered by request size; none if no benchmark has been run.
+     */
+    public BenchmarkBaselines findBaselines(Long chunkSize, Integer writerThreads) {
+        BenchmarkBaselines baselines = load();
+        baselines.setServingDatabase(getServingDatabase());
+        baselines.setSameDatabase(baselines.getDatabase() != null
+                && baselines.getDatabase().startsWith(baselines.getServingDatabase() + " "));
+        List<BenchmarkBaseline> measured = baselines.getBaselines();
+        if (measured.isEmpty()) {
+            return baselines;
+        }
+        long targetChunkSize = chunkSize != null ? chunkSize : properties.getPipeline().getChunkSize();
+        int targetWriterThreads = writerThreads != null ? writerThreads : properties.getPipeline().getWriterThreads();
+
+        long nearestChunkSize = measured.stream()
+                .min(Comparator.comparingLong(baseline -> Math.abs(baseline.getChunkSize() - targetChunkSize)))
+                .get().getChunkSize();
+        int nearestWriterThreads = measured.stream()
+                .filter(baseline -> baseline.getChunkSize() == nearestChunkSize)
+                .min(Comparator.comparingInt(baseline -> Math.abs(baseline.getWriterThreads() - targetWriterThreads)))
+                .get().getWriterThreads();
+        baselines.setBaselines(measured.stream()
+                .filter(baseline -> baseline.getChunkSize() == nearestChunkSize
+                        && baseline.getWriterThreads() == nearestWriterThreads)
+                .sorted(Comparator.comparingLong(BenchmarkBaseline::getNumberOfCodes))
+                .toList());
+        return baselines;
+    }
+
+    // Product name only, as the first part of what the benchmark harness records
+    private String getServingDatabase() {
+        if (servingDatabase == null) {
+            servingDatabase = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+        }
+        return servingDatabase;
+    }
+
+    private BenchmarkBaselines load() {
+        Path file = Path.of(properties.getBenchmark().getBaselinesFile());
+        if (!Files.exists(file)) {
+            return new BenchmarkBaselines();
+        }
+        try {
+            return objectMapper.readValue(file.toFile(), BenchmarkBaselines.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read benchmark baselines from " + file, e);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.DatabaseMetaData;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nahidio.UniqueCodeGeneratorBackendService.config.CodeGeneratorProperties;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.BenchmarkBaseline;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.BenchmarkBaselines;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationOptions;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequest;
+
+/**
+ * End-to-end benchmark of the generation path: every cell of the code-generator.benchmark matrix
+ * (request size x chunk size x writer count) is generated through CodeService against the configured
+ * database, and the repetition with the median wall time is kept together with its stage times.
+ *
+ * Each run deletes its codes again, so every cell starts from the same table size.
+ */
+public class BenchmarkHarness {
+    private static final Logger logger = LoggerFactory.getLogger(BenchmarkHarness.class);
+
+    private final CodeService codeService;
+    private final JdbcTemplate jdbcTemplate;
+    private final CodeGeneratorProperties properties;
+    private final ObjectMapper objectMapper;
+
+    public BenchmarkHarness(CodeService codeService, JdbcTemplate jdbcTemplate, CodeGeneratorProperties properties,
+                            ObjectMapper objectMapper) {
+        this.codeService = codeService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Measure every cell of the matrix. The pipeline settings are changed per cell and restored afterwards.
+     *
+     * @return The measured baselines.
+     * @throws Exception If a run fails.
+     */
+    public BenchmarkBaselines run() throws Exception {
+        CodeGeneratorProperties.Benchmark settings = properties.getBenchmark();
+        CodeGeneratorProperties.Pipeline pipeline = properties.getPipeline();
+        long configuredChunkSize = pipeline.getChunkSize();
+        int configuredWriterThreads = pipeline.getWriterThreads();
+
+        BenchmarkBaselines result = new BenchmarkBaselines();
+        result.setDatabase(jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            return metaData.getDatabaseProductName() + " " + metaData.getDatabaseProductVersion();
+        }));
+        result.setSink(codeService.getSink(null).name());
+        result.setEncoder(properties.getEncoder().getType());
+        result.setBatchSize(pipeline.getBatchSize());
+        result.setGeneratorThreads(pipeline.getGeneratorThreads());
+        result.setRepetitions(Math.max(1, settings.getRepetitions()));
+
+        try {
+            if (settings.getWarmupCodes() > 0) {
+                measure(settings.getWarmupCodes());
+            }
+            for (long numberOfCodes : settings.getRequestSizes()) {
+                for (long chunkSize : settings.getChunkSizes()) {
+                    for (int writerThreads : settings.getWriterThreads()) {
+                        pipeline.setChunkSize(chunkSize);
+                        pipeline.setWriterThreads(writerThreads);
+                        BenchmarkBaseline baseline = measureCell(numberOfCodes, result.getRepetitions());
+                        logger.info("Benchmark of {} codes, chunks of {}, {} writers: {} seconds, {} codes/s",
+                                numberOfCodes, chunkSize, writerThreads, baseline.getWallSeconds(),
+                                Math.round(baseline.getCodesPerSecond()));
+                        result.getBaselines().add(baseline);
+                    }
+                }
+            }
+        } finally {
+            pipeline.setChunkSize(configuredChunkSize);
+            pipeline.setWriterThreads(configuredWriterThreads);
+        }
+        result.setMeasuredAt(Instant.now());
+        return result;
+    }
+
+    /**
+     * Write baselines as JSON, replacing the file.
+     *
+     * @param baselines The baselines.
+     * @param file Target file, e.g. code-generator.benchmark.baselines-file.
+     * @throws IOException If the file could not be written.
+     */
+    public void write(BenchmarkBaselines baselines, Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), baselines);
+        logger.info("Wrote {} benchmark baselines to {}", baselines.getBaselines().size(), file.toAbsolutePath());
+    }
+
+    private BenchmarkBaseline measureCell(long numberOfCodes, int repetitions) throws Exception {
+        List<BenchmarkBaseline> runs = new ArrayList<>(repetitions);
+        for (int i = 0; i < repetitions; i++) {
+            runs.add(measure(numberOfCodes));
+        }
+        runs.sort(Comparator.comparingDouble(BenchmarkBaseline::getWallSeconds));
+        return runs.get(runs.size() / 2);
+    }
+
+    private BenchmarkBaseline measure(long numberOfCodes) throws Exception {
+        CodeSink sink = codeService.getSink(null);
+        GenerationRequest request = codeService.createRequest(numberOfCodes, sink, GenerationOptions.unstaged());
+        GenerationProgress progress = new GenerationProgress(numberOfCodes);
+        long started = System.nanoTime();
+        long wallNanos;
+        try {
+            codeService.runGeneration(request, sink, progress, false);
+        } finally {
+            wallNanos = System.nanoTime() - started;
+            jdbcTemplate.update("DELETE FROM generated_codes WHERE generation_request_id = ?", request.getId());
+            jdbcTemplate.update("DELETE FROM generation_chunk WHERE generation_request_id = ?", request.getId());
+        }
+
+        CodeGeneratorProperties.Pipeline pipeline = properties.getPipeline();
+        double wallSeconds = toSeconds(wallNanos);
+        return new BenchmarkBaseline(numberOfCodes, pipeline.getChunkSize(), pipeline.getWriterThreads(), wallSeconds,
+                toSeconds(progress.getGenerateNanos()), toSeconds(progress.getWriteNanos()),
+                progress.getCodesPersisted() / wallSeconds);
+    }
+
+    private static double toSeconds(long nanos) {
+        return nanos / 1_000_000_000.0;
+    }
+}
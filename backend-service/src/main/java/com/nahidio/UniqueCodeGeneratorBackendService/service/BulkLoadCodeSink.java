@@ -0,0 +1,150 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import com.mysql.cj.jdbc.JdbcStatement;
+
+/**
+ * Writes batches through the database's native bulk import instead of INSERT statements.
+ *
+ * On MySQL the block is streamed as tab separated rows from an in-memory InputStream into
+ * LOAD DATA LOCAL INFILE (the URL needs allowLoadLocalInfile=true and the server local_infile=ON).
+ * On H2 the codes are bound as one array and loaded with a single set-based INSERT ... SELECT.
+ * No temporary files are written in either case.
+ */
+public class BulkLoadCodeSink implements CodeSink {
+
+    public static final String NAME = "bulk";
+
+    private static final String MYSQL_LOAD_SQL = "LOAD DATA LOCAL INFILE 'generated_codes.tsv' INTO TABLE %s"
+            + " CHARACTER SET ascii FIELDS TERMINATED BY '\\t' LINES TERMINATED BY '\\n' (code, generation_request_id)";
+    private static final String H2_LOAD_SQL = "INSERT INTO %s (code, generation_request_id)"
+            + " SELECT C, ? FROM UNNEST(?) AS T(C)";
+    // Rows of a shared block bring their own request id
+    private static final String H2_SHARED_LOAD_SQL = "INSERT INTO %s (code, generation_request_id)"
+            + " SELECT C, R FROM UNNEST(?, ?) AS T(C, R)";
+
+    // Error code of a duplicate key on MySQL
+    private static final int MYSQL_DUPLICATE_ENTRY = 1062;
+
+    private enum Dialect { MYSQL, H2 }
+
+    private final DataSource dataSource;
+    private final CodeStorage storage;
+    private final String mySqlLoadSql;
+    private final String h2LoadSql;
+    private final String h2SharedLoadSql;
+    private volatile Dialect dialect;
+
+    public BulkLoadCodeSink(DataSource dataSource) {
+        this(dataSource, CodeStorage.CHAR);
+    }
+
+    public BulkLoadCodeSink(DataSource dataSource, CodeStorage storage) {
+        this(dataSource, storage, "generated_codes");
+    }
+
+    private BulkLoadCodeSink(DataSource dataSource, CodeStorage storage, String table) {
+        this.dataSource = dataSource;
+        this.storage = storage;
+        this.mySqlLoadSql = String.format(MYSQL_LOAD_SQL, table);
+        this.h2LoadSql = String.format(H2_LOAD_SQL, table);
+        this.h2SharedLoadSql = String.format(H2_SHARED_LOAD_SQL, table);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supportsStaging() {
+        return true;
+    }
+
+    @Override
+    public CodeSink withTable(String table) {
+        return new BulkLoadCodeSink(dataSource, storage, table);
+    }
+
+    @Override
+    public void write(CodeBlock block) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                if (dialect(connection) == Dialect.MYSQL) {
+                    loadMySql(connection, block);
+                } else {
+                    loadH2(connection, block);
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private void loadMySql(Connection connection, CodeBlock block) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            // The driver reads the rows from this stream instead of the file named in the statement
+            statement.unwrap(JdbcStatement.class).setLocalInfileInputStream(new CodeBlockInputStream(block, storage));
+            statement.execute(mySqlLoadSql);
+            // LOCAL makes MySQL skip duplicate keys with a warning; fail like an INSERT would, the caller rolls back
+            long loaded = statement.getLargeUpdateCount();
+            if (loaded != block.size()) {
+                throw new SQLIntegrityConstraintViolationException("Loaded " + loaded + " of " + block.size()
+                        + " codes, the others are duplicates", "23000", MYSQL_DUPLICATE_ENTRY);
+            }
+        }
+    }
+
+    private void loadH2(Connection connection, CodeBlock block) throws SQLException {
+        Object[] codes = new Object[block.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = storage.toParameter(block.get(i), block.getFormat());
+        }
+        if (block.isShared()) {
+            Object[] requestIds = new Object[block.size()];
+            for (int i = 0; i < requestIds.length; i++) {
+                requestIds[i] = block.getGenerationRequestId(i);
+            }
+            try (PreparedStatement statement = connection.prepareStatement(h2SharedLoadSql)) {
+                statement.setObject(1, codes);
+                statement.setObject(2, requestIds);
+                statement.executeUpdate();
+            }
+            return;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(h2LoadSql)) {
+            statement.setLong(1, block.getGenerationRequestId());
+            statement.setObject(2, codes);
+            statement.executeUpdate();
+        }
+    }
+
+    private Dialect dialect(Connection connection) throws SQLException {
+        Dialect detected = dialect;
+        if (detected == null) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            if (product.toLowerCase().contains("mysql")) {
+                detected = Dialect.MYSQL;
+            } else if (product.toLowerCase().contains("h2")) {
+                detected = Dialect.H2;
+            } else {
+                throw new SQLException("Bulk load is not supported on " + product);
+            }
+            dialect = detected;
+        }
+        return detected;
+    }
+}
@@ -0,0 +1,109 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A packed run of numeric code values belonging to one GenerationRequest, or to several when
+ * small requests share a batch (see RequestCoalescer).
+ *
+ * Codes are kept as 42 bit values in a shared long[] instead of GeneratedCode entities, so a chunk
+ * of a million codes is a single 8 MB array. Slices are views over the same array, nothing is copied.
+ * All codes of a block are of one CodeFormat, which the sinks render them with.
+ */
+public class CodeBlock {
+
+    private final long generationRequestId;
+    private final CodeFormat format;
+    // Request id of every row of a shared block, null when all rows belong to generationRequestId
+    private final long[] generationRequestIds;
+    private final long[] values;
+    private final int offset;
+    private final int size;
+
+    public CodeBlock(long generationRequestId, int size) {
+        this(generationRequestId, size, CodeFormat.DEFAULT);
+    }
+
+    public CodeBlock(long generationRequestId, int size, CodeFormat format) {
+        this(generationRequestId, format, null, new long[size], 0, size);
+    }
+
+    /**
+     * Shared block with one row per entry of generationRequestIds, each row tagged with its entry.
+     */
+    public CodeBlock(long[] generationRequestIds) {
+        this(0L, CodeFormat.DEFAULT, generationRequestIds, new long[generationRequestIds.length], 0,
+                generationRequestIds.length);
+    }
+
+    private CodeBlock(long generationRequestId, CodeFormat format, long[] generationRequestIds, long[] values,
+                      int offset, int size) {
+        this.generationRequestId = generationRequestId;
+        this.format = format;
+        this.generationRequestIds = generationRequestIds;
+        this.values = values;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    /**
+     * @return The request every row belongs to.
+     * @throws IllegalStateException If the block is shared by several requests.
+     */
+    public long getGenerationRequestId() {
+        if (generationRequestIds != null) {
+            throw new IllegalStateException("The rows of a shared block belong to different generation requests");
+        }
+        return generationRequestId;
+    }
+
+    /**
+     * @return The request the row at index belongs to.
+     */
+    public long getGenerationRequestId(int index) {
+        return generationRequestIds != null ? generationRequestIds[offset + index] : generationRequestId;
+    }
+
+    // Whether the rows carry their own request ids
+    public boolean isShared() {
+        return generationRequestIds != null;
+    }
+
+    public CodeFormat getFormat() {
+        return format;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long get(int index) {
+        return values[offset + index];
+    }
+
+    public void set(int index, long value) {
+        values[offset + index] = value;
+    }
+
+    /**
+     * View of [from, to) of this block backed by the same array.
+     */
+    public CodeBlock slice(int from, int to) {
+        if (from < 0 || to > size || from > to) {
+            throw new IndexOutOfBoundsException("Slice [" + from + ", " + to + ") of block of size " + size);
+        }
+        return new CodeBlock(generationRequestId, format, generationRequestIds, values, offset + from, to - from);
+    }
+
+    /**
+     * Split the block into consecutive views of at most sliceSize codes.
+     */
+    public List<CodeBlock> slices(int sliceSize) {
+        List<CodeBlock> slices = new ArrayList<>();
+        for (int i = 0; i < size; i += sliceSize) {
+            slices.add(slice(i, Math.min(i + sliceSize, size)));
+        }
+        return slices;
+    }
+}
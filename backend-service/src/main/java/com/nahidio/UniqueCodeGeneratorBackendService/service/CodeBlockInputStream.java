@@ -0,0 +1,82 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams the codes of a block as tab separated "code\tgenerationRequestId\n" rows, with the code
+ * in the text form of the configured CodeStorage.
+ * Rows are rendered one at a time into a small buffer, so the block is never copied as text.
+ */
+class CodeBlockInputStream extends InputStream {
+
+    private final CodeBlock block;
+    private final CodeStorage storage;
+    // "\tgenerationRequestId\n" of the current row; rows of one request are contiguous in a shared block
+    private byte[] suffix;
+    private long suffixRequestId;
+    private final byte[] row;
+    private int nextCode;
+    private int position;
+    private int limit;
+
+    CodeBlockInputStream(CodeBlock block) {
+        this(block, CodeStorage.CHAR);
+    }
+
+    CodeBlockInputStream(CodeBlock block, CodeStorage storage) {
+        this.block = block;
+        this.storage = storage;
+        this.suffixRequestId = block.size() > 0 ? block.getGenerationRequestId(0) : 0L;
+        this.suffix = suffix(suffixRequestId);
+        // Room for the longest request id
+        this.row = new byte[CodeStorage.MAX_TEXT_LENGTH + suffix(Long.MIN_VALUE).length];
+    }
+
+    @Override
+    public int read() {
+        if (!fill()) {
+            return -1;
+        }
+        return row[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        int copied = 0;
+        while (copied < length && fill()) {
+            int count = Math.min(length - copied, limit - position);
+            System.arraycopy(row, position, buffer, offset + copied, count);
+            position += count;
+            copied += count;
+        }
+        return copied == 0 ? -1 : copied;
+    }
+
+    // Render the next row once the current one is consumed; false at the end of the block
+    private boolean fill() {
+        if (position < limit) {
+            return true;
+        }
+        if (nextCode >= block.size()) {
+            return false;
+        }
+        long requestId = block.getGenerationRequestId(nextCode);
+        if (requestId != suffixRequestId) {
+            suffixRequestId = requestId;
+            suffix = suffix(requestId);
+        }
+        int length = storage.render(block.get(nextCode++), block.getFormat(), row);
+        System.arraycopy(suffix, 0, row, length, suffix.length);
+        position = 0;
+        limit = length + suffix.length;
+        return true;
+    }
+
+    private static byte[] suffix(long generationRequestId) {
+        return ("\t" + generationRequestId + "\n").getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,35 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+/**
+ * Maps values of the code counter onto codes, 7 character base 62 ones unless built for another CodeFormat.
+ * The implementation of the built-in format is chosen with code-generator.encoder.type.
+ */
+public interface CodeEncoder {
+
+    /**
+     * Map a counter value onto its numeric code value in [0, capacity) of the encoder's format.
+     *
+     * @param counter The counter value.
+     * @return The numeric code value.
+     */
+    long toCodeValue(long counter);
+
+    /**
+     * Map a code back onto the counter value it was generated from.
+     *
+     * @param code The code string.
+     * @return The counter value.
+     * @throws UnsupportedOperationException If the encoder is not reversible.
+     */
+    long decode(String code);
+
+    /**
+     * Convert a counter value into its code string.
+     *
+     * @param counter The counter value.
+     * @return The code string.
+     */
+    default String encode(long counter) {
+        return Base62.format(toCodeValue(counter));
+    }
+}
@@ -0,0 +1,101 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+/**
+ * Streams the codes of a GenerationRequest without loading them as entities.
+ *
+ * Rows are read in pages of pageSize with keyset pagination on id, so every page is an index range
+ * scan however deep into the request it is. A connection is only held while a page is read; the
+ * page is written to the output after it is released, so a slow client never pins a pool connection.
+ * Memory is one page of codes whatever the size of the request.
+ */
+public class CodeExporter {
+
+    private static final String PAGE_SQL = "SELECT id, code FROM generated_codes"
+            + " WHERE generation_request_id = ? AND id > ? ORDER BY id LIMIT ?";
+
+    private final DataSource dataSource;
+    private final int pageSize;
+    private final CodeStorage storage;
+
+    public CodeExporter(DataSource dataSource, int pageSize) {
+        this(dataSource, pageSize, CodeStorage.CHAR);
+    }
+
+    public CodeExporter(DataSource dataSource, int pageSize, CodeStorage storage) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be at least 1");
+        }
+        this.dataSource = dataSource;
+        this.pageSize = pageSize;
+        this.storage = storage;
+    }
+
+    /**
+     * Write all codes of a request to out in the given format, in insertion order.
+     *
+     * @param generationRequestId Id of the GenerationRequest.
+     * @param format Format of the output.
+     * @param out Stream the codes are written to; flushed but not closed.
+     * @return Number of codes written.
+     * @throws SQLException If reading a page fails.
+     * @throws IOException If writing to out fails.
+     */
+    public long export(long generationRequestId, ExportFormat format, OutputStream out) throws SQLException, IOException {
+        return export(generationRequestId, format, CodeFormat.DEFAULT, out);
+    }
+
+    /**
+     * Write all codes of a request to out in the given format, in insertion order.
+     *
+     * @param generationRequestId Id of the GenerationRequest.
+     * @param format Format of the output.
+     * @param codeFormat Format the codes of the request were generated in.
+     * @param out Stream the codes are written to; flushed but not closed.
+     * @return Number of codes written.
+     * @throws SQLException If reading a page fails.
+     * @throws IOException If writing to out fails.
+     */
+    public long export(long generationRequestId, ExportFormat format, CodeFormat codeFormat, OutputStream out)
+            throws SQLException, IOException {
+        OutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+        String[] page = new String[pageSize];
+        long lastId = 0;
+        long exported = 0;
+
+        format.writeHeader(buffered);
+        int rows;
+        do {
+            rows = 0;
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(PAGE_SQL,
+                         ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(pageSize);
+                statement.setLong(1, generationRequestId);
+                statement.setLong(2, lastId);
+                statement.setInt(3, pageSize);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        lastId = resultSet.getLong(1);
+                        page[rows++] = storage.readCode(resultSet, 2);
+                    }
+                }
+            }
+            for (int i = 0; i < rows; i++) {
+                format.writeCode(page[i], codeFormat, buffered);
+            }
+            exported += rows;
+        } while (rows == pageSize);
+        buffered.flush();
+        return exported;
+    }
+}
@@ -0,0 +1,272 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Text form of codes: an alphabet, a number of digits and an optional trailing check character.
+ *
+ * A code is its numeric value in [0, capacity) written in the base of the alphabet, most significant
+ * digit first and left padded with the alphabet's first character. Conversion is table driven: a
+ * table of all base^2 digit pairs is built once, so every division by base^2 emits two characters,
+ * and that division is a multiplication by a precomputed reciprocal, since the base is not a
+ * constant the JIT could do that for. Codes are written into caller owned char[] or byte[] buffers,
+ * so hot loops allocate nothing per code.
+ *
+ * The check character is Luhn mod N over the alphabet: it catches every single mistyped character
+ * and most swaps of neighbouring ones. It is part of the text form only, never of the value.
+ */
+public final class CodeFormat {
+
+    // Name of the built-in format, used by requests that do not ask for another one
+    public static final String DEFAULT_NAME = "base62";
+    // Width of generated_codes.code, CHAR(7): digits plus check character of every format fit into it
+    public static final int MAX_LENGTH = 7;
+
+    // The 7 character base 62 codes every request gets unless it names another format
+    public static final CodeFormat DEFAULT = new CodeFormat(DEFAULT_NAME, Base62.ALPHANUMERIC, Base62.LENGTH, false);
+
+    private final String name;
+    private final String alphabet;
+    private final int base;
+    private final int pairBase;
+    private final int digits;
+    private final boolean checkDigit;
+    private final long capacity;
+    // value / base^2 == multiplyHigh(value, pairReciprocal) >>> pairShift for every value below 2^61
+    private final long pairReciprocal;
+    private final int pairShift;
+
+    private final char[] symbols;
+    private final byte[] symbolBytes;
+    // Characters of every pair value p in [0, base^2) at 2p and 2p + 1
+    private final char[] pairs;
+    private final byte[] pairBytes;
+    // Luhn mod N: a doubled digit d contributes the digit sum of 2d in base N. Pairs are emitted from the
+    // end, so the right digit of every pair is an even number of places from it and doubled
+    private final int[] pairSums;
+    private final int[] doubledDigits;
+    // Digit of every ASCII character, -1 outside the alphabet
+    private final byte[] digitOf = new byte[128];
+
+    /**
+     * @param name Name requests pick the format by.
+     * @param alphabet Distinct characters of 0-9, A-Z and a-z, in digit order; at least two.
+     * @param digits Number of digits of a code, without the check character.
+     * @param checkDigit Whether a Luhn mod N check character is appended.
+     * @throws IllegalArgumentException If the alphabet is invalid or a code would not fit generated_codes.code.
+     */
+    public CodeFormat(String name, String alphabet, int digits, boolean checkDigit) {
+        if (alphabet == null || alphabet.length() < 2) {
+            throw new IllegalArgumentException("Alphabet of code format " + name + " needs at least two characters");
+        }
+        if (digits < 1 || digits + (checkDigit ? 1 : 0) > MAX_LENGTH) {
+            throw new IllegalArgumentException("Codes of format " + name + " must have 1 to " + MAX_LENGTH
+                    + " characters including the check character");
+        }
+        this.name = name;
+        this.alphabet = alphabet;
+        this.base = alphabet.length();
+        this.pairBase = base * base;
+        this.digits = digits;
+        this.checkDigit = checkDigit;
+
+        Arrays.fill(digitOf, (byte) -1);
+        this.symbols = alphabet.toCharArray();
+        this.symbolBytes = new byte[base];
+        for (int d = 0; d < base; d++) {
+            char symbol = symbols[d];
+            // Codes go unescaped into CSV, JSON and LOAD DATA rows
+            if (Base62.ALPHANUMERIC.indexOf(symbol) < 0) {
+                throw new IllegalArgumentException("Alphabet of code format " + name + " may only use 0-9, A-Z and a-z");
+            }
+            if (digitOf[symbol] >= 0) {
+                throw new IllegalArgumentException("Alphabet of code format " + name + " repeats " + symbol);
+            }
+            digitOf[symbol] = (byte) d;
+            symbolBytes[d] = (byte) symbol;
+        }
+
+        // At most 62^7, so values keep fitting the 42 bits of CodeBlock, BIGINT, the journal and the binary export
+        long space = 1;
+        for (int i = 0; i < digits; i++) {
+            space *= base;
+        }
+        this.capacity = space;
+
+        // With k = 62 + floor(log2(base^2)) the reciprocal ceil(2^k / base^2) is below 2^63 and exact far beyond 62^7
+        int log = 31 - Integer.numberOfLeadingZeros(pairBase);
+        this.pairReciprocal = BigInteger.ONE.shiftLeft(62 + log).add(BigInteger.valueOf(pairBase - 1))
+                .divide(BigInteger.valueOf(pairBase)).longValueExact();
+        this.pairShift = log - 2;
+
+        this.doubledDigits = new int[base];
+        for (int d = 0; d < base; d++) {
+            doubledDigits[d] = 2 * d / base + 2 * d % base;
+        }
+        this.pairs = new char[2 * pairBase];
+        this.pairBytes = new byte[2 * pairBase];
+        this.pairSums = new int[pairBase];
+        for (int p = 0; p < pairBase; p++) {
+            int high = p / base;
+            int low = p % base;
+            pairs[2 * p] = symbols[high];
+            pairs[2 * p + 1] = symbols[low];
+            pairBytes[2 * p] = symbolBytes[high];
+            pairBytes[2 * p + 1] = symbolBytes[low];
+            pairSums[p] = doubledDigits[low] + high;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getAlphabet() {
+        return alphabet;
+    }
+
+    /**
+     * @return Number of digits of a code, without the check character.
+     */
+    public int getDigits() {
+        return digits;
+    }
+
+    public boolean hasCheckDigit() {
+        return checkDigit;
+    }
+
+    /**
+     * @return Number of characters of a code, including the check character.
+     */
+    public int getLength() {
+        return checkDigit ? digits + 1 : digits;
+    }
+
+    /**
+     * @return Number of distinct codes: base^digits.
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Render a value in [0, capacity) as exactly getLength() characters.
+     *
+     * @param value The numeric code value.
+     * @return The code string.
+     */
+    public String format(long value) {
+        char[] code = new char[getLength()];
+        write(value, code);
+        return new String(code);
+    }
+
+    /**
+     * Write the getLength() characters of a value into a caller owned buffer, so hot loops can reuse it.
+     *
+     * @param value The numeric code value.
+     * @param target Buffer of at least getLength() characters.
+     */
+    public void write(long value, char[] target) {
+        checkRange(value);
+        int i = digits;
+        int sum = 0;
+        // Two digits per division, from the least significant pair on
+        while (i > 1) {
+            long quotient = Math.multiplyHigh(value, pairReciprocal) >>> pairShift;
+            int pair = (int) (value - quotient * pairBase);
+            value = quotient;
+            target[--i] = pairs[2 * pair + 1];
+            target[--i] = pairs[2 * pair];
+            sum += pairSums[pair];
+        }
+        if (i == 1) {
+            target[0] = symbols[(int) value];
+            sum += doubledDigits[(int) value];
+        }
+        if (checkDigit) {
+            target[digits] = symbols[checkCharacter(sum)];
+        }
+    }
+
+    /**
+     * Write the getLength() ASCII bytes of a value into a caller owned buffer.
+     *
+     * @param value The numeric code value.
+     * @param target Buffer with room for getLength() bytes at offset.
+     * @param offset Position of the first character.
+     * @return The number of bytes written.
+     */
+    public int write(long value, byte[] target, int offset) {
+        checkRange(value);
+        int i = offset + digits;
+        int sum = 0;
+        while (i > offset + 1) {
+            long quotient = Math.multiplyHigh(value, pairReciprocal) >>> pairShift;
+            int pair = (int) (value - quotient * pairBase);
+            value = quotient;
+            target[--i] = pairBytes[2 * pair + 1];
+            target[--i] = pairBytes[2 * pair];
+            sum += pairSums[pair];
+        }
+        if (i == offset + 1) {
+            target[offset] = symbolBytes[(int) value];
+            sum += doubledDigits[(int) value];
+        }
+        if (checkDigit) {
+            target[offset + digits] = symbolBytes[checkCharacter(sum)];
+        }
+        return getLength();
+    }
+
+    /**
+     * Parse a code of this format back into its numeric value, verifying its check character.
+     *
+     * @param code The code string.
+     * @return The numeric code value.
+     * @throws IllegalArgumentException If the code is not a code of this format.
+     */
+    public long parse(String code) {
+        if (code == null || code.length() != getLength()) {
+            throw new IllegalArgumentException("Code must be exactly " + getLength() + " characters");
+        }
+        long value = 0;
+        int sum = 0;
+        for (int i = 0; i < digits; i++) {
+            int digit = digit(code, i);
+            value = value * base + digit;
+            // Doubled at an even distance from the last digit
+            sum += (digits - 1 - i) % 2 == 0 ? doubledDigits[digit] : digit;
+        }
+        if (checkDigit && digit(code, digits) != checkCharacter(sum)) {
+            throw new IllegalArgumentException("Check character does not match: " + code);
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private void checkRange(long value) {
+        if (value < 0 || value >= capacity) {
+            throw new IllegalArgumentException("Code value out of range: " + value);
+        }
+    }
+
+    private int digit(String code, int index) {
+        char symbol = code.charAt(index);
+        int digit = symbol < digitOf.length ? digitOf[symbol] : -1;
+        if (digit < 0) {
+            throw new IllegalArgumentException("Invalid character in code: " + code);
+        }
+        return digit;
+    }
+
+    private int checkCharacter(int sum) {
+        return (base - sum % base) % base;
+    }
+}
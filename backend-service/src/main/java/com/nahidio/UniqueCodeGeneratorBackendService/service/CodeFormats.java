@@ -0,0 +1,91 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The code formats requests can pick by name, each with the encoder and counter sequence its codes come from.
+ *
+ * The built-in base62 format uses the configured CodeEncoder and the code-counter sequence, so its
+ * codes are the ones every request got before formats existed. Every configured format permutes its
+ * own code space with a FeistelCodeEncoder and draws counters from a sequence of its own, so a
+ * small format is not used up by the counters of the others. Codes of all formats share the unique
+ * index on code though: a code another format already holds collides, and its replacement takes
+ * another counter of the format, so a small format can still run out before its capacity is reached.
+ * The retention profile turns that index into unique (code, generation_request_id), under which such
+ * codes would be stored twice; configured formats therefore refuse to start with retention enabled.
+ */
+public class CodeFormats {
+
+    private record Entry(CodeFormat format, CodeEncoder encoder, CounterRangeAllocator counterAllocator) {
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * @param codeEncoder Encoder of the built-in format.
+     * @param counterAllocator Counter sequence of the built-in format.
+     */
+    public CodeFormats(CodeEncoder codeEncoder, CounterRangeAllocator counterAllocator) {
+        entries.put(CodeFormat.DEFAULT_NAME, new Entry(CodeFormat.DEFAULT, codeEncoder, counterAllocator));
+    }
+
+    /**
+     * Offer another format; only called while the application context is built.
+     *
+     * @param format The format.
+     * @param encoder Maps its counters onto values in [0, format.getCapacity()).
+     * @param counterAllocator Its own counter sequence.
+     * @throws IllegalArgumentException If a format of that name exists.
+     */
+    public void add(CodeFormat format, CodeEncoder encoder, CounterRangeAllocator counterAllocator) {
+        if (entries.putIfAbsent(format.getName(), new Entry(format, encoder, counterAllocator)) != null) {
+            throw new IllegalArgumentException("Code format " + format.getName() + " is defined twice");
+        }
+    }
+
+    /**
+     * Look up a format by its name.
+     *
+     * @param name Name of the format, or null for the built-in one.
+     * @return The format.
+     * @throws IllegalArgumentException If no format has that name.
+     */
+    public CodeFormat get(String name) {
+        if (name == null) {
+            return CodeFormat.DEFAULT;
+        }
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            throw new IllegalArgumentException("Unknown code format: " + name);
+        }
+        return entry.format();
+    }
+
+    public Collection<String> getNames() {
+        return entries.keySet();
+    }
+
+    /**
+     * @return The encoder the codes of the format are generated with.
+     */
+    public CodeEncoder getEncoder(CodeFormat format) {
+        return entry(format).encoder();
+    }
+
+    /**
+     * @return The counter sequence of the format.
+     */
+    public CounterRangeAllocator getCounterAllocator(CodeFormat format) {
+        return entry(format).counterAllocator();
+    }
+
+    private Entry entry(CodeFormat format) {
+        Entry entry = entries.get(format.getName());
+        if (entry == null || entry.format() != format) {
+            throw new IllegalArgumentException("Code format " + format.getName() + " is not registered");
+        }
+        return entry;
+    }
+}
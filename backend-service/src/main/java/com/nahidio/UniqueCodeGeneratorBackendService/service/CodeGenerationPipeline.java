@@ -0,0 +1,252 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded producer/consumer pipeline for one range of counters.
+ *
+ * Generator workers fill fixed-size CodeBlocks and put them on a bounded queue while writer workers
+ * drain it, so generation overlaps insertion. A full queue blocks the generators, which caps memory
+ * at queueCapacity batches whatever the size of the range. Workers run on a caller supplied,
+ * usually application-wide, executor which the pipeline never shuts down.
+ *
+ * A failed batch is counted and the run goes on. A writer hit by an Error stops the generators and
+ * the writers only drain the queue from then on, so no worker is left blocked; run then fails with it.
+ *
+ * With an AdaptiveTuner the batch size is read for every batch and each write is reported back to the
+ * tuner. The run starts as many writers as the tuner's current writer limit and starts more while the
+ * generators run if the limit grows, up to the tuner's maximum; when the limit shrinks, only that many
+ * of the started writers write at the same time.
+ */
+public class CodeGenerationPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(CodeGenerationPipeline.class);
+
+    // Put on the queue once per writer after the last batch
+    private static final CodeBlock END_OF_STREAM = new CodeBlock(-1L, 0);
+
+    // How often a tuned run checks whether the writer limit grew while it waits for the generators
+    private static final long WRITER_CHECK_MILLIS = 50;
+
+    /**
+     * Fills a block with the codes of consecutive counters.
+     */
+    @FunctionalInterface
+    public interface BatchGenerator {
+        void fill(CodeBlock block, long startCounter);
+    }
+
+    /**
+     * Persists one batch.
+     */
+    @FunctionalInterface
+    public interface BatchWriter {
+        void write(CodeBlock block) throws Exception;
+    }
+
+    /**
+     * Busy time of each stage summed over its workers, the wall time of the run and batch outcomes.
+     */
+    public record Stats(long generateNanos, long writeNanos, long wallNanos, long batchesWritten, long batchesFailed) {
+    }
+
+    private final int batchSize;
+    private final int queueCapacity;
+    private final int generatorThreads;
+    private final int writerThreads;
+    private final ExecutorService executor;
+    private final AdaptiveTuner tuner;
+
+    public CodeGenerationPipeline(int batchSize, int queueCapacity, int generatorThreads, int writerThreads,
+                                  ExecutorService executor) {
+        this(batchSize, queueCapacity, generatorThreads, writerThreads, executor, null);
+    }
+
+    /**
+     * @param writerThreads Writers started at most, also with a tuner whose maximum is higher.
+     * @param tuner Adjusts batch size and writer concurrency while the pipeline runs, null for the fixed settings.
+     */
+    public CodeGenerationPipeline(int batchSize, int queueCapacity, int generatorThreads, int writerThreads,
+                                  ExecutorService executor, AdaptiveTuner tuner) {
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        this.generatorThreads = generatorThreads;
+        this.writerThreads = tuner != null ? Math.min(writerThreads, tuner.getMaxWriterThreads()) : writerThreads;
+        this.executor = executor;
+        this.tuner = tuner;
+    }
+
+    /**
+     * Generate and persist count codes for the counters [startCounter, startCounter + count).
+     *
+     * @param generationRequestId Id of the GenerationRequest the codes belong to.
+     * @param startCounter First counter value of the range.
+     * @param count Number of codes in the range.
+     * @param generator Fills each batch.
+     * @param writer Persists each batch.
+     * @return The stage timings of the run.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the workers.
+     */
+    public Stats run(long generationRequestId, long startCounter, long count,
+                     BatchGenerator generator, BatchWriter writer) throws InterruptedException {
+        return run(generationRequestId, CodeFormat.DEFAULT, startCounter, count, generator, writer);
+    }
+
+    /**
+     * Generate and persist count codes of a format for the counters [startCounter, startCounter + count).
+     *
+     * @param generationRequestId Id of the GenerationRequest the codes belong to.
+     * @param format Format of the codes; every batch carries it to the writer.
+     * @param startCounter First counter value of the range.
+     * @param count Number of codes in the range.
+     * @param generator Fills each batch.
+     * @param writer Persists each batch.
+     * @return The stage timings of the run.
+     * @throws InterruptedException If the calling thread is interrupted while waiting for the workers.
+     */
+    public Stats run(long generationRequestId, CodeFormat format, long startCounter, long count,
+                     BatchGenerator generator, BatchWriter writer) throws InterruptedException {
+        long startTime = System.nanoTime();
+        long numberOfBatches = (count + currentBatchSize() - 1) / currentBatchSize();
+        int generators = (int) Math.max(1, Math.min(generatorThreads, numberOfBatches));
+        int maxWriters = (int) Math.max(1, Math.min(writerThreads, numberOfBatches));
+        int writers = tuner != null ? Math.min(maxWriters, tuner.getWriterLimit()) : maxWriters;
+
+        BlockingQueue<CodeBlock> queue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicLong nextOffset = new AtomicLong();
+        AtomicLong generateNanos = new AtomicLong();
+        AtomicLong writeNanos = new AtomicLong();
+        AtomicLong batchesWritten = new AtomicLong();
+        AtomicLong batchesFailed = new AtomicLong();
+        AtomicReference<Throwable> writerError = new AtomicReference<>();
+
+        List<Future<?>> generatorFutures = new ArrayList<>();
+        List<Future<?>> writerFutures = new ArrayList<>();
+        try {
+            for (int g = 0; g < generators; g++) {
+                generatorFutures.add(executor.submit(() -> {
+                    // Each generator claims the next unclaimed counters until the range is exhausted
+                    while (writerError.get() == null) {
+                        int size = currentBatchSize();
+                        long offset = nextOffset.getAndAdd(size);
+                        if (offset >= count) {
+                            break;
+                        }
+                        size = (int) Math.min(size, count - offset);
+                        long start = System.nanoTime();
+                        CodeBlock block = new CodeBlock(generationRequestId, size, format);
+                        generator.fill(block, startCounter + offset);
+                        generateNanos.addAndGet(System.nanoTime() - start);
+                        queue.put(block); // Blocks while the writers are behind
+                    }
+                    return null;
+                }));
+            }
+
+            Callable<Void> writerTask = () -> {
+                CodeBlock block;
+                while ((block = queue.take()) != END_OF_STREAM) {
+                    if (writerError.get() != null) {
+                        batchesFailed.incrementAndGet();
+                        continue;
+                    }
+                    long start = System.nanoTime();
+                    boolean written = false;
+                    if (tuner != null) {
+                        tuner.acquireWriteSlot();
+                    }
+                    long writeStart = System.nanoTime();
+                    try {
+                        writer.write(block);
+                        written = true;
+                        batchesWritten.incrementAndGet();
+                    } catch (Exception e) {
+                        // Keep draining so the generators never block on a full queue
+                        batchesFailed.incrementAndGet();
+                        logger.error("Failed to insert a batch of {} codes", block.size(), e);
+                    } catch (Throwable e) {
+                        // Not worth retrying: only drain the queue from here on and fail the run
+                        batchesFailed.incrementAndGet();
+                        writerError.compareAndSet(null, e);
+                    } finally {
+                        if (tuner != null) {
+                            tuner.releaseWriteSlot();
+                            tuner.record(block.size(), System.nanoTime() - writeStart, written);
+                        }
+                        writeNanos.addAndGet(System.nanoTime() - start);
+                    }
+                }
+                return null;
+            };
+            for (int w = 0; w < writers; w++) {
+                writerFutures.add(executor.submit(writerTask));
+            }
+
+            for (Future<?> generatorFuture : generatorFutures) {
+                while (!await(generatorFuture)) {
+                    // Start the writers a grown writer limit allows
+                    for (int w = writerFutures.size(); w < Math.min(maxWriters, tuner.getWriterLimit()); w++) {
+                        writerFutures.add(executor.submit(writerTask));
+                    }
+                }
+            }
+            for (int w = 0; w < writerFutures.size(); w++) {
+                queue.put(END_OF_STREAM);
+            }
+            awaitAll(writerFutures);
+            if (writerError.get() != null) {
+                throw new IllegalStateException("Pipeline worker failed", writerError.get());
+            }
+        } finally {
+            // Only does something when the run is aborted: unblocks workers waiting on the queue
+            generatorFutures.forEach(future -> future.cancel(true));
+            writerFutures.forEach(future -> future.cancel(true));
+        }
+
+        return new Stats(generateNanos.get(), writeNanos.get(), System.nanoTime() - startTime,
+                batchesWritten.get(), batchesFailed.get());
+    }
+
+    private int currentBatchSize() {
+        return tuner != null ? tuner.getBatchSize() : batchSize;
+    }
+
+    // Waits for a worker, or only briefly with a tuner; returns whether it is done
+    private boolean await(Future<?> future) throws InterruptedException {
+        try {
+            if (tuner == null) {
+                future.get();
+            } else {
+                future.get(WRITER_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Pipeline worker failed", e.getCause());
+        }
+    }
+
+    private void awaitAll(List<Future<?>> futures) throws InterruptedException {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Pipeline worker failed", e.getCause());
+            }
+        }
+    }
+}
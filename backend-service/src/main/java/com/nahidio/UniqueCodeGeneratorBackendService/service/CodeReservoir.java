@@ -0,0 +1,399 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.config.CodeGeneratorProperties;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.ClaimedCodes;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationOptions;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequest;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationStatus;
+import com.nahidio.UniqueCodeGeneratorBackendService.repository.GenerationRequestRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Pool of codes that are already persisted but not yet handed out, for small requests.
+ *
+ * A background thread generates codes into a GenerationRequest in RESERVOIR state whenever fewer
+ * than the low watermark are left, up to the high watermark. A claim takes codes from memory and
+ * moves their rows to a new GenerationRequest with one UPDATE per thousand codes, instead of going
+ * through generation and insertion. Claims the reservoir cannot serve are generated on the spot.
+ *
+ * On start the reservoir takes over the unclaimed rows of RESERVOIR requests of stopped processes,
+ * those whose lease expired (see GenerationLeaseService), up to the high watermark.
+ */
+@Service
+public class CodeReservoir {
+    private static final Logger logger = LoggerFactory.getLogger(CodeReservoir.class);
+
+    // Codes moved to the claiming request per UPDATE statement
+    private static final int CODES_PER_UPDATE = 1000;
+
+    @Autowired
+    private CodeService codeService;
+
+    @Autowired
+    private GenerationRequestRepository requestRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private GenerationLeaseService leaseService;
+
+    private final CodeGeneratorProperties properties;
+    private final CodeGeneratorProperties.Reservoir settings;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition belowLowWatermark = lock.newCondition();
+    // Persisted, unclaimed codes; guarded by lock
+    private final ArrayDeque<CodeBlock> blocks = new ArrayDeque<>();
+    private long available;
+    // System.nanoTime() when the reservoir last fell below the low watermark, 0 while above it
+    private long belowLowWatermarkSince;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer refillLag;
+
+    private TransactionTemplate transactionTemplate;
+    private volatile GenerationRequest reservoirRequest;
+    private volatile boolean running;
+    private Thread refillThread;
+
+    @Autowired
+    public CodeReservoir(CodeGeneratorProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.settings = properties.getReservoir();
+        this.hits = Counter.builder("codegen.reservoir.claims").tag("result", "hit")
+                .description("Claims served from the reservoir")
+                .register(meterRegistry);
+        this.misses = Counter.builder("codegen.reservoir.claims").tag("result", "miss")
+                .description("Claims generated on the spot because the reservoir was short")
+                .register(meterRegistry);
+        this.refillLag = Timer.builder("codegen.reservoir.refill.lag")
+                .description("Time from falling below the low watermark until it is reached again")
+                .register(meterRegistry);
+        Gauge.builder("codegen.reservoir.size", this, CodeReservoir::size)
+                .description("Persisted codes waiting to be claimed")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        if (!settings.isEnabled()) {
+            return;
+        }
+        GenerationRequest request = codeService.createRequest(0, null, GenerationOptions.unstaged());
+        request.setStatus(GenerationStatus.RESERVOIR);
+        reservoirRequest = requestRepository.save(request);
+        takeOverUnclaimed();
+
+        running = true;
+        belowLowWatermarkSince = size() < settings.getLowWatermark() ? System.nanoTime() : 0;
+        refillThread = new Thread(this::refillLoop, "code-reservoir-refill");
+        refillThread.setDaemon(true);
+        refillThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (refillThread != null) {
+            refillThread.interrupt();
+            // Close the holding request, an open one keeps the retention job from expiring anything newer
+            GenerationRequest request = reservoirRequest;
+            request.setCodesUnclaimed(size());
+            request.setEndedAt(LocalDateTime.now());
+            requestRepository.save(request);
+            leaseService.release(request);
+        }
+    }
+
+    /**
+     * Hand out persisted codes and assign them to a new, completed GenerationRequest.
+     *
+     * @param numberOfCodes Number of codes, at most code-generator.reservoir.max-claim.
+     * @return The codes and the id of the request they now belong to.
+     * @throws Exception If the codes could not be assigned or generated.
+     */
+    public ClaimedCodes claim(int numberOfCodes) throws Exception {
+        long[] values = running ? take(numberOfCodes) : null;
+        if (values == null) {
+            misses.increment();
+            return generateClaim(numberOfCodes);
+        }
+        hits.increment();
+
+        GenerationRequest request = codeService.createRequest(numberOfCodes, null, GenerationOptions.unstaged());
+        List<String> codes = new ArrayList<>(values.length);
+        for (long value : values) {
+            codes.add(Base62.format(value));
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> moveCodes(values, request.getId()));
+        } catch (RuntimeException e) {
+            giveBack(values);
+            finish(request, GenerationStatus.FAILED, 0);
+            throw e;
+        }
+        finish(request, GenerationStatus.COMPLETED, values.length);
+        return new ClaimedCodes(request.getId(), codes, true);
+    }
+
+    public int getMaxClaim() {
+        return settings.getMaxClaim();
+    }
+
+    /**
+     * @return Number of persisted codes waiting to be claimed.
+     */
+    public long size() {
+        lock.lock();
+        try {
+            return available;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Add a persisted block to the reservoir.
+     *
+     * @param block Codes already written under the reservoir request.
+     */
+    void add(CodeBlock block) {
+        lock.lock();
+        try {
+            blocks.addLast(block);
+            available += block.size();
+            if (belowLowWatermarkSince != 0 && available >= settings.getLowWatermark()) {
+                refillLag.record(System.nanoTime() - belowLowWatermarkSince, TimeUnit.NANOSECONDS);
+                belowLowWatermarkSince = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remove codes from the reservoir, oldest first.
+     *
+     * @param numberOfCodes Number of codes.
+     * @return Their code values, or null if the reservoir holds fewer.
+     */
+    long[] take(int numberOfCodes) {
+        lock.lock();
+        try {
+            if (available < numberOfCodes) {
+                return null;
+            }
+            long[] values = new long[numberOfCodes];
+            int taken = 0;
+            while (taken < numberOfCodes) {
+                CodeBlock head = blocks.pollFirst();
+                int count = Math.min(head.size(), numberOfCodes - taken);
+                for (int i = 0; i < count; i++) {
+                    values[taken++] = head.get(i);
+                }
+                if (count < head.size()) {
+                    blocks.addFirst(head.slice(count, head.size()));
+                }
+            }
+            available -= numberOfCodes;
+            if (available < settings.getLowWatermark()) {
+                if (belowLowWatermarkSince == 0) {
+                    belowLowWatermarkSince = System.nanoTime();
+                }
+                belowLowWatermark.signal();
+            }
+            return values;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void giveBack(long[] values) {
+        CodeBlock block = new CodeBlock(reservoirRequest.getId(), values.length);
+        for (int i = 0; i < values.length; i++) {
+            block.set(i, values[i]);
+        }
+        lock.lock();
+        try {
+            blocks.addFirst(block);
+            available += values.length;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void moveCodes(long[] values, long generationRequestId) {
+        CodeStorage storage = properties.getStorage().getType();
+        for (int from = 0; from < values.length; from += CODES_PER_UPDATE) {
+            int to = Math.min(from + CODES_PER_UPDATE, values.length);
+            StringBuilder sql = new StringBuilder(
+                    "UPDATE generated_codes SET generation_request_id = ? WHERE generation_request_id = ? AND code IN (");
+            List<Object> args = new ArrayList<>(to - from + 2);
+            args.add(generationRequestId);
+            args.add(reservoirRequest.getId());
+            for (int i = from; i < to; i++) {
+                sql.append(i == from ? "?" : ", ?");
+                args.add(storage.toParameter(values[i], CodeFormat.DEFAULT));
+            }
+            sql.append(')');
+            int moved = jdbcTemplate.update(sql.toString(), args.toArray());
+            if (moved != to - from) {
+                throw new IllegalStateException("Expected to claim " + (to - from) + " reservoir codes but moved " + moved);
+            }
+        }
+    }
+
+    // Moves the rows of reservoirs left by stopped processes to this one's request, then loads them into memory
+    private void takeOverUnclaimed() {
+        long takenOver = 0;
+        for (GenerationRequest previous : requestRepository.findWithUnclaimedCodes(GenerationStatus.RESERVOIR)) {
+            if (takenOver >= settings.getHighWatermark()) {
+                break;
+            }
+            if (previous.getId().equals(reservoirRequest.getId()) || !leaseService.isExpired(previous)
+                    || !leaseService.acquire(previous)) {
+                continue;
+            }
+            try {
+                int moved = jdbcTemplate.update(
+                        "UPDATE generated_codes SET generation_request_id = ? WHERE generation_request_id = ?",
+                        reservoirRequest.getId(), previous.getId());
+                takenOver += moved;
+                previous.setCodesUnclaimed(0L);
+                if (previous.getEndedAt() == null) {
+                    previous.setEndedAt(LocalDateTime.now());
+                }
+                requestRepository.save(previous);
+                logger.info("Took over {} unclaimed codes of reservoir request {}", moved, previous.getId());
+            } finally {
+                leaseService.release(previous);
+            }
+        }
+        if (takenOver == 0) {
+            return;
+        }
+
+        CodeStorage storage = properties.getStorage().getType();
+        List<Long> values = jdbcTemplate.query("SELECT code FROM generated_codes WHERE generation_request_id = ?",
+                (resultSet, row) -> Base62.parse(storage.readCode(resultSet, 1)), reservoirRequest.getId());
+        for (int from = 0; from < values.size(); from += CODES_PER_UPDATE) {
+            int to = Math.min(from + CODES_PER_UPDATE, values.size());
+            CodeBlock block = new CodeBlock(reservoirRequest.getId(), to - from);
+            for (int i = from; i < to; i++) {
+                block.set(i - from, values.get(i));
+            }
+            add(block);
+        }
+        GenerationRequest request = reservoirRequest;
+        request.setCodesUnclaimed(size());
+        requestRepository.save(request);
+    }
+
+    private ClaimedCodes generateClaim(int numberOfCodes) throws Exception {
+        GenerationRequest request = codeService.createRequest(numberOfCodes, null, GenerationOptions.unstaged());
+        List<CodeBlock> persisted = Collections.synchronizedList(new ArrayList<>());
+        try {
+            codeService.generateInto(request, numberOfCodes, persisted::add);
+        } catch (Exception e) {
+            finish(request, GenerationStatus.FAILED, 0);
+            throw e;
+        }
+        List<String> codes = new ArrayList<>(numberOfCodes);
+        for (CodeBlock block : persisted) {
+            for (int i = 0; i < block.size(); i++) {
+                codes.add(Base62.format(block.get(i)));
+            }
+        }
+        finish(request, GenerationStatus.COMPLETED, codes.size());
+        return new ClaimedCodes(request.getId(), codes, false);
+    }
+
+    private void finish(GenerationRequest request, GenerationStatus status, long codesPersisted) {
+        request.setStatus(status);
+        request.setCodesPersisted(codesPersisted);
+        request.setEndedAt(LocalDateTime.now());
+        requestRepository.save(request);
+        leaseService.release(request);
+        eventPublisher.publishEvent(new GenerationRequestFinishedEvent(request.getId()));
+    }
+
+    private void refillLoop() {
+        while (running) {
+            long missing;
+            lock.lock();
+            try {
+                while (running && available >= settings.getLowWatermark()) {
+                    belowLowWatermark.await(1, TimeUnit.SECONDS);
+                }
+                missing = settings.getHighWatermark() - available;
+            } catch (InterruptedException e) {
+                break;
+            } finally {
+                lock.unlock();
+            }
+            if (!running) {
+                break;
+            }
+
+            long started = System.nanoTime();
+            try {
+                codeService.generateInto(reservoirRequest, missing, this::add);
+                recordRefill(missing);
+                // Stay under the configured refill rate
+                long minimumNanos = missing * 1_000_000_000L / Math.max(1, settings.getRefillCodesPerSecond());
+                TimeUnit.NANOSECONDS.sleep(minimumNanos - (System.nanoTime() - started));
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                logger.error("Refilling the code reservoir failed", e);
+                try {
+                    TimeUnit.SECONDS.sleep(1);
+                } catch (InterruptedException interrupted) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void recordRefill(long numberOfCodes) {
+        GenerationRequest request = reservoirRequest;
+        request.setNumberOfCodes(request.getNumberOfCodes() + numberOfCodes);
+        request.setCodesPersisted(request.getNumberOfCodes());
+        request.setCodesUnclaimed(size());
+        requestRepository.save(request);
+        logger.debug("Refilled the code reservoir with {} codes", numberOfCodes);
+    }
+}
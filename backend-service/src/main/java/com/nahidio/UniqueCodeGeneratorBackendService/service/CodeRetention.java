@@ -0,0 +1,264 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Expires the codes of generation requests older than a TTL by dropping whole partitions.
+ *
+ * On MySQL generated_codes is partitioned by RANGE (generation_request_id), requestsPerPartition
+ * request ids per partition. The first run converts an unpartitioned table. Every run drops the
+ * partitions whose requests all started before now - ttl and have ended, then makes sure empty
+ * partitions exist ahead of the newest request. On H2, which has no partitioning, the same request
+ * id ranges are removed with one range DELETE so the behaviour can be tried locally.
+ *
+ * Expired requests keep their GenerationRequest row in EXPIRED state. Rows reclaimed per run are
+ * recorded as codegen.retention.rows.reclaimed.
+ *
+ * The partitioned table can only be unique on (code, generation_request_id), so new codes no longer
+ * collide with stored ones. The conversion therefore refuses a table holding a code that a counter not
+ * handed out yet would encode to, e.g. one of the legacy random encoder.
+ */
+public class CodeRetention {
+    private static final Logger logger = LoggerFactory.getLogger(CodeRetention.class);
+
+    private static final String CATCH_ALL_PARTITION = "p_max";
+    // Rows read per query while checking the codes of a table to convert
+    private static final int CHECK_PAGE_SIZE = 10_000;
+
+    private enum Dialect { MYSQL, H2 }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration ttl;
+    private final long requestsPerPartition;
+    private final Clock clock;
+    private final CodeEncoder codeEncoder;
+    private final CodeStorage storage;
+    private final DistributionSummary rowsReclaimed;
+    private volatile Dialect dialect;
+
+    /**
+     * @param jdbcTemplate Template on the application DataSource.
+     * @param ttl Age after which the codes of a request are dropped.
+     * @param requestsPerPartition Request ids per partition, the unit that is dropped.
+     * @param clock Source of the current time.
+     * @param codeEncoder Encoder of the built-in format, which stored codes are decoded with before the conversion.
+     * @param storage Column representation of generated_codes.code.
+     * @param meterRegistry Registry the reclaimed rows are published to.
+     */
+    public CodeRetention(JdbcTemplate jdbcTemplate, Duration ttl, long requestsPerPartition, Clock clock,
+                         CodeEncoder codeEncoder, CodeStorage storage, MeterRegistry meterRegistry) {
+        if (requestsPerPartition < 1) {
+            throw new IllegalArgumentException("requestsPerPartition must be at least 1");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttl = ttl;
+        this.requestsPerPartition = requestsPerPartition;
+        this.clock = clock;
+        this.codeEncoder = codeEncoder;
+        this.storage = storage;
+        this.rowsReclaimed = DistributionSummary.builder("codegen.retention.rows.reclaimed")
+                .description("Generated codes removed by one retention run")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Drop the codes of every expired request.
+     *
+     * @return Number of code rows removed.
+     */
+    @Scheduled(fixedDelayString = "${code-generator.retention.check-interval:PT1H}")
+    public long expire() {
+        if (dialect() == Dialect.MYSQL) {
+            ensurePartitioned();
+        }
+        long boundary = expiryBoundary();
+        long reclaimed = dialect() == Dialect.MYSQL ? dropPartitionsBelow(boundary) : deleteBelow(boundary);
+        int expiredRequests = jdbcTemplate.update("UPDATE generation_request SET status = 'EXPIRED'"
+                + " WHERE id < ? AND (status IS NULL OR status <> 'EXPIRED')", boundary);
+        if (dialect() == Dialect.MYSQL) {
+            addPartitionsAhead();
+        }
+
+        rowsReclaimed.record(reclaimed);
+        logger.info("Retention run: {} codes of {} requests below id {} reclaimed", reclaimed, expiredRequests, boundary);
+        return reclaimed;
+    }
+
+    // Request ids below the returned value are expired: a multiple of requestsPerPartition at or below
+    // the oldest request that is still running or younger than the TTL
+    private long expiryBoundary() {
+        Timestamp cutoff = Timestamp.valueOf(LocalDateTime.now(clock).minus(ttl));
+        Long oldestLive = jdbcTemplate.queryForObject(
+                "SELECT MIN(id) FROM generation_request WHERE started_at >= ? OR ended_at IS NULL", Long.class, cutoff);
+        if (oldestLive == null) {
+            oldestLive = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) + 1 FROM generation_request", Long.class);
+        }
+        return oldestLive / requestsPerPartition * requestsPerPartition;
+    }
+
+    private long deleteBelow(long boundary) {
+        return jdbcTemplate.update("DELETE FROM generated_codes WHERE generation_request_id < ?", boundary);
+    }
+
+    private long dropPartitionsBelow(long boundary) {
+        long reclaimed = 0;
+        for (Partition partition : partitions()) {
+            if (partition.upperBound() == null || partition.upperBound() > boundary) {
+                continue;
+            }
+            Long rows = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM generated_codes PARTITION (" + partition.name() + ")", Long.class);
+            jdbcTemplate.execute("ALTER TABLE generated_codes DROP PARTITION " + partition.name());
+            reclaimed += rows;
+        }
+        return reclaimed;
+    }
+
+    private void ensurePartitioned() {
+        if (!partitions().isEmpty()) {
+            return;
+        }
+        checkCodesPrecedeTheCounter();
+        logger.info("Converting generated_codes to a table partitioned by generation_request_id");
+        // Every unique key of a partitioned table must contain the partitioning column, and foreign keys
+        // are not supported; codes stay unique through the counter allocator and the bijective encoder
+        List<String> changes = new ArrayList<>();
+        jdbcTemplate.queryForList("SELECT CONSTRAINT_NAME FROM information_schema.TABLE_CONSTRAINTS"
+                + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'generated_codes' AND CONSTRAINT_TYPE = 'FOREIGN KEY'",
+                String.class).forEach(name -> changes.add("DROP FOREIGN KEY " + name));
+        if (!changes.isEmpty()) {
+            jdbcTemplate.execute("ALTER TABLE generated_codes " + String.join(", ", changes));
+            changes.clear();
+        }
+        jdbcTemplate.queryForList("SELECT DISTINCT INDEX_NAME FROM information_schema.STATISTICS"
+                + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'generated_codes' AND NON_UNIQUE = 0"
+                + " AND INDEX_NAME <> 'PRIMARY'", String.class).forEach(name -> changes.add("DROP INDEX " + name));
+        changes.add("DROP PRIMARY KEY");
+        changes.add("ADD PRIMARY KEY (id, generation_request_id)");
+        changes.add("ADD UNIQUE KEY uk_generated_codes_code (code, generation_request_id)");
+        changes.add("ADD KEY idx_generated_codes_request (generation_request_id, id)");
+        jdbcTemplate.execute("ALTER TABLE generated_codes " + String.join(", ", changes));
+
+        long upperBound = nextUpperBound(0);
+        List<String> definitions = new ArrayList<>();
+        for (long bound = requestsPerPartition; bound <= upperBound; bound += requestsPerPartition) {
+            definitions.add(partitionDefinition(bound));
+        }
+        definitions.add("PARTITION " + CATCH_ALL_PARTITION + " VALUES LESS THAN MAXVALUE");
+        jdbcTemplate.execute("ALTER TABLE generated_codes PARTITION BY RANGE (generation_request_id) ("
+                + String.join(", ", definitions) + ")");
+    }
+
+    /**
+     * Make sure no future counter encodes to a stored code, which the table would take twice once it is
+     * only unique per request: every base62 code must decode to a counter below the next one the
+     * allocator hands out. Codes of other lengths, i.e. of other formats, never equal a base62 code.
+     * A legacy code that decodes to a counter handed out but not yet used is not caught.
+     *
+     * @throws IllegalStateException If a stored code could be generated again.
+     */
+    void checkCodesPrecedeTheCounter() {
+        Long nextCounter = jdbcTemplate.query("SELECT next_value FROM counter_reservation WHERE name = ?",
+                resultSet -> resultSet.next() ? resultSet.getLong(1) : null, CounterRangeAllocator.CODE_COUNTER);
+        long next = nextCounter != null ? nextCounter : 0L;
+        long lastId = 0;
+        while (true) {
+            List<Long> ids = new ArrayList<>(CHECK_PAGE_SIZE);
+            List<String> codes = new ArrayList<>(CHECK_PAGE_SIZE);
+            jdbcTemplate.query("SELECT id, code FROM generated_codes WHERE id > ? ORDER BY id LIMIT ?", resultSet -> {
+                ids.add(resultSet.getLong(1));
+                codes.add(storage.readCode(resultSet, 2));
+            }, lastId, CHECK_PAGE_SIZE);
+            for (int i = 0; i < codes.size(); i++) {
+                String code = codes.get(i);
+                if (code.length() == CodeFormat.DEFAULT.getLength() && codeEncoder.decode(code) >= next) {
+                    throw new IllegalStateException("generated_codes row " + ids.get(i) + " holds code " + code
+                            + ", which a counter that was not handed out yet encodes to; it was not written by this"
+                            + " encoder. Without unique (code) it would be generated again, so retention does not"
+                            + " convert the table. Remove such codes or move the code-counter row past them first.");
+                }
+            }
+            if (ids.size() < CHECK_PAGE_SIZE) {
+                return;
+            }
+            lastId = ids.get(ids.size() - 1);
+        }
+    }
+
+    // Split the catch-all partition so the next requests land in partitions of their own
+    private void addPartitionsAhead() {
+        long highest = partitions().stream()
+                .filter(partition -> partition.upperBound() != null)
+                .mapToLong(Partition::upperBound)
+                .max()
+                .orElse(0L);
+        long target = nextUpperBound(highest);
+        if (target <= highest) {
+            return;
+        }
+        List<String> definitions = new ArrayList<>();
+        for (long bound = highest + requestsPerPartition; bound <= target; bound += requestsPerPartition) {
+            definitions.add(partitionDefinition(bound));
+        }
+        definitions.add("PARTITION " + CATCH_ALL_PARTITION + " VALUES LESS THAN MAXVALUE");
+        jdbcTemplate.execute("ALTER TABLE generated_codes REORGANIZE PARTITION " + CATCH_ALL_PARTITION + " INTO ("
+                + String.join(", ", definitions) + ")");
+    }
+
+    // Upper bound of the last partition to keep ready: two partitions beyond the newest request
+    private long nextUpperBound(long highest) {
+        Long newest = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM generation_request", Long.class);
+        long needed = (newest / requestsPerPartition + 2) * requestsPerPartition;
+        return Math.max(highest, needed);
+    }
+
+    private String partitionDefinition(long upperBound) {
+        return "PARTITION p" + upperBound + " VALUES LESS THAN (" + upperBound + ")";
+    }
+
+    private List<Partition> partitions() {
+        return jdbcTemplate.query("SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS"
+                        + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'generated_codes' AND PARTITION_NAME IS NOT NULL"
+                        + " ORDER BY PARTITION_ORDINAL_POSITION",
+                (resultSet, row) -> {
+                    String description = resultSet.getString(2);
+                    Long upperBound = "MAXVALUE".equalsIgnoreCase(description) ? null : Long.valueOf(description);
+                    return new Partition(resultSet.getString(1), upperBound);
+                });
+    }
+
+    private Dialect dialect() {
+        Dialect detected = dialect;
+        if (detected == null) {
+            String product = jdbcTemplate.execute(
+                    (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+            if (product.toLowerCase().contains("mysql")) {
+                detected = Dialect.MYSQL;
+            } else if (product.toLowerCase().contains("h2")) {
+                detected = Dialect.H2;
+            } else {
+                throw new IllegalStateException("Code retention is not supported on " + product);
+            }
+            dialect = detected;
+        }
+        return detected;
+    }
+
+    // upperBound is null for the MAXVALUE partition
+    private record Partition(String name, Long upperBound) {
+    }
+}
@@ -1,30 +1,25 @@
 package com.nahidio.UniqueCodeGeneratorBackendService.service;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.stream.Collectors;
-import java.util.stream.LongStream;
-
-import org.hibernate.SessionFactory;
-import org.hibernate.StatelessSession;
-import org.hibernate.Transaction;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
-import com.nahidio.UniqueCodeGeneratorBackendService.entity.GeneratedCode;
+import com.nahidio.UniqueCodeGeneratorBackendService.config.CodeGeneratorProperties;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.ChunkState;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationChunk;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationOptions;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationPriority;
 import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequest;
-import com.nahidio.UniqueCodeGeneratorBackendService.repository.GeneratedCodeRepository;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationStatus;
+import com.nahidio.UniqueCodeGeneratorBackendService.error.GenerationBacklogFullException;
 import com.nahidio.UniqueCodeGeneratorBackendService.repository.GenerationRequestRepository;
 
 @Service
@@ -32,234 +27,472 @@ public class CodeService {
     private static final Logger logger = LoggerFactory.getLogger(CodeService.class);
 
     @Autowired
-    private SessionFactory sessionFactory;
+    private GenerationRequestRepository requestRepository;
 
     @Autowired
-    private GenerationRequestRepository requestRepository;
+    private CodeEncoder codeEncoder;
 
     @Autowired
-    private GeneratedCodeRepository generatedCodeRepository;
-
-    // A string representation of alphanumeric characters (base 62: 0-9, A-Z, a-z).
-    private static final String ALPHANUMERIC = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
-    // The maximum length of the code string.
-    private static final int MAX_LENGTH = 7;
-    private static AtomicLong lastCodeId = new AtomicLong();
-    private final int DB_INSERTION_CHUNK_SIZE = 10000;
-    private final int MAX_NUMBER_OF_THREADS = 40;
-    private final long CODE_GENERATION_CHUNK_SIZE = 1_000_000L;
-
-    public CodeService() {
-        initializeLastCodeValue();
-    }
+    private CodeGeneratorProperties properties;
+
+    @Autowired
+    private List<CodeSink> codeSinks;
+
+    @Autowired
+    private InsertionScheduler insertionScheduler;
+
+    @Autowired
+    private CounterRangeAllocator counterRangeAllocator;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private CodeStaging codeStaging;
+
+    @Autowired
+    private GenerationCheckpointService checkpointService;
+
+    @Autowired
+    private GenerationMetrics generationMetrics;
+
+    @Autowired
+    private GenerationScheduler generationScheduler;
+
+    @Autowired
+    private RequestCoalescer requestCoalescer;
+
+    @Autowired
+    private CollisionResolver collisionResolver;
+
+    @Autowired
+    private CodeFormats codeFormats;
+
+    @Autowired
+    private GenerationLeaseService leaseService;
+
     /**
-     * Generate and store unique codes.
+     * Generate and store unique codes with the configured CodeSink.
      *
      * @param numberOfCodes Number of unique codes to generate.
      * @throws Exception If there is an issue during code generation or database operations.
      */
     public GenerationRequest generateCodes(long numberOfCodes) throws Exception {
+        return generateCodes(numberOfCodes, new GenerationOptions());
+    }
 
-        // Step 1: Create a new GenerationRequest entity and persist it to the database.
-        // Calculate how many full chunks we'll have, and the size of the final chunk
-        long fullChunks = numberOfCodes / CODE_GENERATION_CHUNK_SIZE;
-        long lastChunkSize = numberOfCodes % CODE_GENERATION_CHUNK_SIZE;
+    /**
+     * Generate and store unique codes once the scheduler admits them.
+     *
+     * @param numberOfCodes Number of unique codes to generate.
+     * @param options Sink, staging, tenant, priority and format of the run; null fields take their defaults.
+     * @throws GenerationBacklogFullException If the scheduler's backlog has no room for the codes.
+     * @throws Exception If there is an issue during code generation or database operations.
+     */
+    public GenerationRequest generateCodes(long numberOfCodes, GenerationOptions options) throws Exception {
+        CodeSink sink = getSink(options.getSink());
+        generationScheduler.admit(numberOfCodes);
+        try {
+            GenerationRequest request = createRequest(numberOfCodes, sink, options);
+            runGeneration(request, sink, new GenerationProgress(numberOfCodes), request.getStaged());
+            return request;
+        } finally {
+            generationScheduler.release(numberOfCodes);
+        }
+    }
+
+    /**
+     * @param staged Staging asked for by the caller, or null.
+     * @return Whether the run goes through a staging table.
+     */
+    public boolean isStaged(Boolean staged) {
+        return staged != null ? staged : properties.getStaging().isEnabled();
+    }
+
+    /**
+     * Step 1: Create a new GenerationRequest entity and persist it to the database.
+     *
+     * A request with a sink can later be resumed by runGeneration; one without, such as a reservoir's,
+     * is not written through a CodeSink and cannot.
+     *
+     * @param numberOfCodes Number of unique codes to generate.
+     * @param sink The CodeSink the codes are written to, or null.
+     * @param options Staging, tenant, priority and format of the run; null fields take their defaults.
+     * @return The saved request in RUNNING state.
+     * @throws IllegalArgumentException If the code format is not configured.
+     */
+    public GenerationRequest createRequest(long numberOfCodes, CodeSink sink, GenerationOptions options) {
+        CodeFormat format = getFormat(options.getCodeFormat());
         GenerationRequest request = new GenerationRequest();
         request.setStartedAt(LocalDateTime.now());
         request.setNumberOfCodes(numberOfCodes);
-        requestRepository.save(request);
-
+        request.setStatus(GenerationStatus.RUNNING);
+        request.setSink(sink != null ? sink.name() : null);
+        request.setStaged(isStaged(options.getStaged()));
+        request.setTenant(options.getTenant() != null
+                ? options.getTenant() : properties.getScheduler().getDefaultTenant());
+        request.setPriority(options.getPriority() != null ? options.getPriority() : GenerationPriority.NORMAL);
+        request.setCodeFormat(format.getName());
+        leaseService.assign(request);
+        return requestRepository.save(request);
+    }
 
-        for (long i = 0; i < fullChunks; i++) {
-            processCodeGenerationChunk(CODE_GENERATION_CHUNK_SIZE, request);
-        }
-        
-        if (lastChunkSize > 0) {
-            processCodeGenerationChunk(lastChunkSize, request);
-        }
-        
-        // Step 4: Update the GenerationRequest record with the end time.
-        LocalDateTime endTime = LocalDateTime.now();
-        request.setEndedAt(endTime);
-        requestRepository.save(request);
-        return request;
+    /**
+     * Generate and store the codes of a saved request chunk by chunk, stopping before the next chunk
+     * once the progress is cancelled.
+     *
+     * Unstaged runs checkpoint every chunk (see GenerationCheckpointService). Chunks a previous run of
+     * the same request completed are skipped and an interrupted one is written again, so calling this
+     * again for an unfinished request resumes it without duplicates.
+     *
+     * A fresh unstaged request of at most code-generator.coalescing.max-request-codes for the default
+     * sink and format is written in a batch shared with other small requests instead (see RequestCoalescer).
+     *
+     * Codes are of the request's CodeFormat, drawn from that format's counter sequence.
+     *
+     * With code-generator.tuning enabled an AdaptiveTuner adjusts batch size and writer concurrency over
+     * the chunks of the run; the settings the run ends with are stored on the request either way.
+     *
+     * A staged run writes into its own staging table and publishes it in one transaction at the end,
+     * after replacing its codes that collide, finishing COMMITTED; when it fails or is cancelled the staging table is dropped and it finishes
+     * ABORTED without a single code in generated_codes.
+     *
+     * @param request The saved GenerationRequest.
+     * @param sink The CodeSink the codes are written to.
+     * @param progress Receives the number of persisted codes from the insert workers.
+     * @param staged Whether to go through a staging table (see CodeStaging).
+     * @throws Exception If there is an issue during code generation or database operations.
+     */
+    public void runGeneration(GenerationRequest request, CodeSink sink, GenerationProgress progress, boolean staged)
+            throws Exception {
+        runGeneration(request, sink, progress, staged, block -> { }, block -> { });
     }
 
-    private void processCodeGenerationChunk(long chunkSize, GenerationRequest request) throws Exception {
-       
-        // Step 2: Generate the list of unique codes.
-        long startGenerateTime = System.nanoTime();
-        List<GeneratedCode> codes = this.createCodeList(chunkSize, request);
-
-        long endGenerateTime = System.nanoTime();
-        double elapsedGenerateTime = (double) (endGenerateTime - startGenerateTime) / 1_000_000_000; // Convert nanoseconds to seconds
-        logger.info("Time taken to generate codes: {} seconds", elapsedGenerateTime);
-
-        // Step 3: Code Insertion Section
-        long startDbTime = System.nanoTime();
-        int numberOfThreads = (int) Math.ceil((double) chunkSize / DB_INSERTION_CHUNK_SIZE);
-        numberOfThreads = numberOfThreads <= MAX_NUMBER_OF_THREADS ? numberOfThreads : MAX_NUMBER_OF_THREADS;
-        logger.info("NR:: Number of threads allocated" + numberOfThreads);
-        // An atomic boolean flag to detect if any chunk operation fails
-        // AtomicBoolean failureFlag = new AtomicBoolean(false); // TODO: Add it back when the problem handling with connection pool get fixed
-
-        // Create a thread pool with a fixed number of threads to limit concurrency
-        ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads); 
-
-        // Partition the list of codes into chunks for processing in parallel
-        List<List<GeneratedCode>> chunks = this.partitionList(codes, DB_INSERTION_CHUNK_SIZE);
-
-        // A list to store the transactions of each thread for later commit or rollback
-        List<Future<Transaction>> futureTransactions = new ArrayList<>();
-        
-        // Using a stateless session for bulk insertion of generated codes.
-        // A stateless session is a lightweight alternative to the standard session,
-        // ideal for bulk database operations as it does not keep track of persistent objects.
-        for (List<GeneratedCode> chunk : chunks) {
-            // For each chunk, process it in a separate thread
-            Future<Transaction> future = executorService.submit(() -> {
-                StatelessSession session = sessionFactory.openStatelessSession();
-                Transaction tx = session.beginTransaction();
-                try {
-                    for (GeneratedCode code : chunk) {
-                        session.insert(code);
+    /**
+     * Generate and store the codes of a saved request like runGeneration(request, sink, progress, staged),
+     * handing every block to onGenerated before it is written and to onPersisted once its transaction
+     * is committed. A callback that blocks holds up the insert worker, and with it the generators.
+     * The one block of a coalesced request is only known once its shared batch is committed, it is
+     * handed to onGenerated and right after to onPersisted then.
+     *
+     * @param request The saved GenerationRequest.
+     * @param sink The CodeSink the codes are written to.
+     * @param progress Receives the number of persisted codes from the insert workers.
+     * @param staged Whether to go through a staging table; its blocks are only visible once it is published.
+     * @param onGenerated Receives each block before it is written, called from the insert workers.
+     * @param onPersisted Receives each committed block, called from the insert workers.
+     * @throws Exception If there is an issue during code generation or database operations.
+     */
+    public void runGeneration(GenerationRequest request, CodeSink sink, GenerationProgress progress, boolean staged,
+                              Consumer<CodeBlock> onGenerated, Consumer<CodeBlock> onPersisted) throws Exception {
+        long numberOfCodes = request.getNumberOfCodes();
+        String stagingTable = null;
+        AdaptiveTuner tuner = createTuner();
+
+        try {
+            CodeFormat format = getFormat(request.getCodeFormat());
+            CounterRangeAllocator counters = codeFormats.getCounterAllocator(format);
+            CodeSink target = sink;
+            List<GenerationChunk> checkpoints = List.of();
+            if (staged) {
+                stagingTable = codeStaging.create(request.getId());
+                target = sink.withTable(stagingTable);
+            } else {
+                checkpoints = checkpointService.findChunks(request.getId());
+            }
+            // Codes without checkpoints were written by a shared batch before the request was interrupted: when all
+            // of them are there it is complete, a batch a collision split and that then failed is written again
+            if (!staged && checkpoints.isEmpty() && request.getResumedAt() != null) {
+                long written = checkpointService.countCodes(request.getId());
+                if (written >= numberOfCodes) {
+                    progress.addResumed(written);
+                    request.setStatus(GenerationStatus.COMPLETED);
+                    return;
+                }
+                if (written > 0) {
+                    checkpointService.discardCodes(request.getId());
+                }
+            }
+            // Without checkpoints no chunk of the request was written, the whole request goes into one shared batch
+            if (!staged && checkpoints.isEmpty() && format == CodeFormat.DEFAULT && isCoalesced(numberOfCodes, sink)) {
+                CodeBlock block = coalesce(request, numberOfCodes, progress);
+                onGenerated.accept(block);
+                onPersisted.accept(block);
+                progress.addPersisted(numberOfCodes);
+                request.setStatus(GenerationStatus.COMPLETED);
+                return;
+            }
+            // A resumed request keeps the chunk size it was started with, its checkpoints are numbered by it
+            long chunkSizeOfRun = checkpoints.isEmpty()
+                    ? properties.getPipeline().getChunkSize()
+                    : checkpoints.get(0).getNumberOfCodes();
+
+            // Calculate how many full chunks we'll have, and the size of the final chunk
+            long fullChunks = numberOfCodes / chunkSizeOfRun;
+            long lastChunkSize = numberOfCodes % chunkSizeOfRun;
+            long numberOfChunks = fullChunks + (lastChunkSize > 0 ? 1 : 0);
+            request.setChunkSize(chunkSizeOfRun);
+
+            GenerationChunk previous = null;
+            for (int i = 0; i < numberOfChunks && !progress.isCancelled(); i++) {
+                long chunkSize = i < fullChunks ? chunkSizeOfRun : lastChunkSize;
+                if (staged) {
+                    try (GenerationScheduler.Slot slot = waitForSlot(request, chunkSize, progress)) {
+                        progress.addStageTimes(processCodeGenerationChunk(counters.allocate(chunkSize), chunkSize,
+                                request, format, target, tuner, progress, onGenerated, block -> {
+                                    progress.addPersisted(block.size());
+                                    onPersisted.accept(block);
+                                }));
                     }
-                    tx.commit(); // TODO: Remove it when the problem handling with connection pool get fixed
-                    // Return the transaction without committing it, 
-                    // to allow centralized commit/rollback later
-                    return tx; 
-                } catch (Exception e) {
-                    // If there's an exception, mark the failureFlag as true
-                    // failureFlag.set(true); // TODO: Add it back when the problem handling with connection pool get fixed
-                    // Rollback the current transaction due to the exception
-                    tx.rollback();
-                    // Close the session after rolling back
-                    // session.close();
-                    // Rethrow the exception so the outer code can detect the error
-                    throw e; 
-                } finally {
-                    session.close(); // TODO: Remove it when the problem handling with connection pool get fixed
+                    continue;
                 }
-            });
-            futureTransactions.add(future);
-        }
 
-        // Process the results of each thread, checking for any exceptions
-        for (Future<Transaction> future : futureTransactions) {
-            try {
-                // This will throw an exception if the thread faced any errors
-                future.get();
-            } catch (ExecutionException e) {
-                Throwable cause = e.getCause();
-                // Handle or log the exception as needed
+                GenerationChunk chunk = i < checkpoints.size() ? checkpoints.get(i) : null;
+                if (chunk != null && chunk.getState() == ChunkState.COMPLETED) {
+                    progress.addResumed(chunk.getCodesPersisted());
+                    previous = chunk;
+                    continue;
+                }
+                try (GenerationScheduler.Slot slot = waitForSlot(request, chunkSize, progress)) {
+                    if (chunk == null) {
+                        chunk = checkpointService.start(request.getId(), i, counters.allocate(chunkSize), chunkSize);
+                    } else {
+                        checkpointService.discardPartialChunk(chunk, previous);
+                    }
+                    LongAdder chunkPersisted = new LongAdder();
+                    progress.addStageTimes(processCodeGenerationChunk(chunk.getStartCounter(), chunkSize, request,
+                            format, target, tuner, progress, onGenerated, block -> {
+                                progress.addPersisted(block.size());
+                                chunkPersisted.add(block.size());
+                                onPersisted.accept(block);
+                            }));
+                    checkpointService.complete(chunk, chunkPersisted.sum());
+                }
+                previous = chunk;
             }
-        }
-        /* TODO: Add it back when the problem handling with connection pool get fixed
-        // After all threads have processed, decide to commit or rollback
-        // Check if there was a failure in any thread
-        if (!failureFlag.get()) {
-            // If all operations were successful, commit all transactions
-            for (Future<Transaction> future : futureTransactions) {
-                Transaction tx = future.get();
-                tx.commit();
+
+            if (progress.isCancelled()) {
+                request.setStatus(staged ? GenerationStatus.ABORTED : GenerationStatus.CANCELLED);
+            } else if (staged) {
+                CollisionResolver.Outcome outcome = codeStaging.publish(stagingTable, format);
+                collisionResolver.count(outcome);
+                progress.addCollisions(outcome);
+                request.setStatus(GenerationStatus.COMMITTED);
+            } else {
+                request.setStatus(GenerationStatus.COMPLETED);
             }
-        } else {
-            // If any operation failed, roll back all transactions
-            for (Future<Transaction> future : futureTransactions) {
-                Transaction tx = future.get();
-                tx.rollback();
+        } catch (Exception e) {
+            request.setStatus(staged ? GenerationStatus.ABORTED : GenerationStatus.FAILED);
+            throw e;
+        } finally {
+            if (stagingTable != null) {
+                dropStagingTable(stagingTable);
             }
+            recordSettings(request, tuner);
+            request.setQueueWaitSeconds(toSeconds(progress.getQueueWaitNanos()));
+            request.setCodeCollisions(progress.getCollisions());
+            request.setCollisionRetries(progress.getCollisionRetries());
+            // Step 4: Update the GenerationRequest record with the end time.
+            LocalDateTime endTime = LocalDateTime.now();
+            request.setEndedAt(endTime);
+            // Nothing of an aborted staged run is left in generated_codes
+            request.setCodesPersisted(request.getStatus() == GenerationStatus.ABORTED ? 0 : progress.getCodesPersisted());
+            requestRepository.save(request);
+            leaseService.release(request);
+            eventPublisher.publishEvent(new GenerationRequestFinishedEvent(request.getId()));
         }
-        */
+    }
 
-        // Gracefully shut down the executor service
-        executorService.shutdown();
-        try {
-            // Wait for all tasks to finish or for a timeout to occur
-            if (!executorService.awaitTermination(10, TimeUnit.MINUTES)) {
-                // Force shutdown if tasks don't finish in the given timeout
-                executorService.shutdownNow();
+    /**
+     * Generate and store codes for a saved request with the configured CodeSink, leaving its status
+     * alone. Every block is handed to onPersisted once it is written; small requests are written in a
+     * batch shared with others.
+     *
+     * @param request The saved GenerationRequest the codes belong to.
+     * @param numberOfCodes Number of unique codes to generate.
+     * @param onPersisted Receives each persisted block, called from the insert workers.
+     * @throws Exception If there is an issue during code generation or database operations.
+     */
+    public void generateInto(GenerationRequest request, long numberOfCodes, Consumer<CodeBlock> onPersisted)
+            throws Exception {
+        CodeSink sink = getSink(null);
+        GenerationProgress progress = new GenerationProgress(numberOfCodes);
+        if (isCoalesced(numberOfCodes, sink)) {
+            onPersisted.accept(coalesce(request, numberOfCodes, progress));
+            return;
+        }
+        long chunkSizeOfRun = properties.getPipeline().getChunkSize();
+        for (long remaining = numberOfCodes; remaining > 0; remaining -= chunkSizeOfRun) {
+            long chunkSize = Math.min(remaining, chunkSizeOfRun);
+            try (GenerationScheduler.Slot slot = waitForSlot(request, chunkSize, progress)) {
+                processCodeGenerationChunk(counterRangeAllocator.allocate(chunkSize), chunkSize, request,
+                        CodeFormat.DEFAULT, sink, null, null, block -> { }, onPersisted);
             }
-        } catch (InterruptedException e) {
-            // Force shutdown if the await gets interrupted
-            executorService.shutdownNow();
         }
+    }
 
-        long endDbTime = System.nanoTime();
-        double elapsedDbTime = (double) (endDbTime - startDbTime) / 1_000_000_000; // Convert nanoseconds to seconds
-        logger.info("Time taken for DB operations: {} seconds", elapsedDbTime);
+    // startValue comes from this node's leased counter block, or from the checkpoint of a resumed chunk;
+    // collisions are counted on progress unless it is null
+    private CodeGenerationPipeline.Stats processCodeGenerationChunk(long startValue, long chunkSize,
+                                                                    GenerationRequest request, CodeFormat format,
+                                                                    CodeSink sink,
+                                                                    AdaptiveTuner tuner, GenerationProgress progress,
+                                                                    Consumer<CodeBlock> onGenerated,
+                                                                    Consumer<CodeBlock> onPersisted) throws Exception {
+        // Step 2 and 3: Generate the codes and insert them concurrently.
+        // Generators push batches of DB insertion size into a bounded queue which the writers drain.
+        String size = GenerationMetrics.sizeBucket(request.getNumberOfCodes());
+        CodeGenerationPipeline.Stats stats = createPipeline(tuner)
+                .run(request.getId(), format, startValue, chunkSize, this::fillCodeBlock, block -> {
+                    onGenerated.accept(block);
+                    // Codes that collide with persisted ones are replaced in the block instead of failing it
+                    CollisionResolver.Outcome outcome = collisionResolver.write(block, part ->
+                            insertionScheduler.write(() -> generationMetrics.recordBatchWrite(size, sink.name(),
+                                    part.size(), () -> sink.write(part))));
+                    if (progress != null) {
+                        progress.addCollisions(outcome);
+                    }
+                    onPersisted.accept(block);
+                });
+        generationMetrics.recordChunk(size, sink.name(), stats);
 
+        // Busy time of each stage is summed over its workers; the two stages overlap within the wall time
+        logger.info("Chunk of {} codes for generation request {}: {} seconds, generate {} s, write {} s "
+                + "({} batches written, {} failed)", chunkSize, request.getId(), toSeconds(stats.wallNanos()), toSeconds(stats.generateNanos()),
+                toSeconds(stats.writeNanos()), stats.batchesWritten(), stats.batchesFailed());
+        if (stats.batchesFailed() > 0) {
+            throw new IllegalStateException(stats.batchesFailed() + " batches of generation request "
+                    + request.getId() + " could not be written");
+        }
+        return stats;
+    }
+
+    private void dropStagingTable(String table) {
+        try {
+            codeStaging.drop(table);
+        } catch (RuntimeException e) {
+            // Only costs space, the next run of the same request id replaces the table
+            logger.warn("Could not drop staging table {}", table, e);
+        }
     }
 
     /**
-     * Convert a given number into an encrypted base 62 alphanumeric representation.
+     * Look up a CodeSink by its configured name.
      *
-     * @param value The number to be converted.
-     * @param request The associated GenerationRequest.
-     * @return A GeneratedCode object with the encrypted code string.
+     * @param name Name of the sink, e.g. "jdbc", or null for code-generator.sink.type.
+     * @return The sink.
+     * @throws IllegalArgumentException If no sink has that name.
      */
-    private GeneratedCode convertToBase62(long value, GenerationRequest request) {
-        // Mix the counter with the generationRequest ID
-        //long mixedValue = value ^ SECRET; // Simple bitwise XOR
-        UUID uuid = UUID.randomUUID();
-        long uuidMostSigBits = uuid.getMostSignificantBits();
-        long mixedValue = value ^ uuidMostSigBits; // Simple bitwise XOR with the most significant bits of UUID
-        StringBuilder codeBuilder = new StringBuilder();
-        try {
-          for (int i = 0; i < MAX_LENGTH; i++) {
-              int index = (int) (Math.abs(mixedValue) % ALPHANUMERIC.length());
-              codeBuilder.insert(0, ALPHANUMERIC.charAt(index));
-              mixedValue /= ALPHANUMERIC.length();
-          }
-
-          String code = codeBuilder.toString();
-
-          GeneratedCode generatedCode = new GeneratedCode();
-          generatedCode.setCode(code);
-          generatedCode.setGenerationRequest(request);
-
-          return generatedCode;
-    
-        } catch (Exception e) {
-            logger.error("Error during code generation", e);
-            throw new RuntimeException("Error during code generation", e);
+    public CodeSink getSink(String name) {
+        if (name == null) {
+            name = properties.getSink().getType();
         }
+        String sinkName = name;
+        return codeSinks.stream()
+                .filter(sink -> sink.name().equalsIgnoreCase(sinkName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown code sink: " + sinkName));
     }
 
     /**
-     * Create a list of unique GeneratedCode objects.
+     * Look up a CodeFormat by its name.
      *
-     * @param numberOfCodes Number of unique codes to generate.
-     * @param request The associated GenerationRequest.
-     * @return A list of GeneratedCode objects.
+     * @param name Name of the format, e.g. "base62", or null for the built-in one.
+     * @return The format.
+     * @throws IllegalArgumentException If no format has that name.
+     */
+    public CodeFormat getFormat(String name) {
+        return codeFormats.get(name);
+    }
+
+    /**
+     * Count the codes a format has left: the counters of its sequence that were not handed out yet.
+     * Counters replacing codes that collided are used up as well, so this may be less than
+     * its capacity minus the codes it holds.
+     *
+     * @param format The format.
+     * @return Codes that can still be generated in it.
      */
-    private List<GeneratedCode> createCodeList(long numberOfCodes, GenerationRequest request) {
-        if (lastCodeId.get() == 0L)
-          lastCodeId.set(1L);
-        long startValue = lastCodeId.getAndAdd(numberOfCodes);  // Atomically increments by numberOfCodes and returns the previous value.
-        
-        return LongStream.range(startValue, startValue + numberOfCodes)
-                .parallel()
-             //   .peek(i -> System.out.println("Mapping value: " + i))
-                .mapToObj(i -> convertToBase62(i, request))
-                .collect(Collectors.toList());
+    public long getRemainingCodes(CodeFormat format) {
+        return codeFormats.getCounterAllocator(format).getRemaining(format.getCapacity());
+    }
+
+    private CodeGenerationPipeline createPipeline(AdaptiveTuner tuner) {
+        CodeGeneratorProperties.Pipeline pipeline = properties.getPipeline();
+        int writerThreads = tuner != null ? properties.getTuning().getMaxWriterThreads() : pipeline.getWriterThreads();
+        // More writers than concurrent writes would only wait for the insertion scheduler
+        writerThreads = Math.min(writerThreads, insertionScheduler.getMaxConcurrentWrites());
+        return new CodeGenerationPipeline(pipeline.getBatchSize(), pipeline.getQueueCapacity(),
+                pipeline.getGeneratorThreads(), writerThreads, insertionScheduler.getExecutor(), tuner);
+    }
+
+    private boolean isCoalesced(long numberOfCodes, CodeSink sink) {
+        return properties.getCoalescing().isEnabled() && requestCoalescer.accepts(numberOfCodes, sink);
     }
 
-    private <T> List<List<T>> partitionList(List<T> list, int size) {
-        List<List<T>> partitions = new ArrayList<>();
-        for (int i = 0; i < list.size(); i += size) {
-            partitions.add(new ArrayList<>(
-                list.subList(i, Math.min(i + size, list.size())))
-            );
+    // A coalesced request takes its turn on the scheduler like a chunk of its size, and gives the slot up once
+    // it is queued for the shared batch: holding it while the batch fills would cap a batch at chunk-slots
+    // requests, and the batch is written under the insertion scheduler's permits like any other
+    private CodeBlock coalesce(GenerationRequest request, long numberOfCodes, GenerationProgress progress)
+            throws Exception {
+        CompletableFuture<CodeBlock> queued;
+        try (GenerationScheduler.Slot slot = waitForSlot(request, numberOfCodes, progress)) {
+            queued = requestCoalescer.submit(request.getId(), (int) numberOfCodes);
         }
-        return partitions;
+        return RequestCoalescer.await(queued);
     }
 
-    private void initializeLastCodeValue() {
-        if (lastCodeId.get() != 0L) {
-            Optional<Long> maxValueOpt = generatedCodeRepository.getMaxId();
-            long maxValue = maxValueOpt.orElse(0L); // Default to 0 if no codes exist
-            lastCodeId.set(maxValue);
+    // Blocks until the scheduler hands this request's next chunk a slot
+    private GenerationScheduler.Slot waitForSlot(GenerationRequest request, long chunkSize, GenerationProgress progress)
+            throws InterruptedException {
+        String tenant = request.getTenant() != null ? request.getTenant() : properties.getScheduler().getDefaultTenant();
+        GenerationPriority priority = request.getPriority() != null ? request.getPriority() : GenerationPriority.NORMAL;
+        progress.setQueued(true);
+        try {
+            GenerationScheduler.Slot slot = generationScheduler.acquire(tenant, priority, chunkSize);
+            progress.addQueueWait(slot.getWaitNanos());
+            progress.setSlot(slot);
+            return slot;
+        } finally {
+            progress.setQueued(false);
+        }
+    }
+
+    // A tuner for one run starting from the pipeline settings, null when tuning is disabled
+    private AdaptiveTuner createTuner() {
+        if (!properties.getTuning().isEnabled()) {
+            return null;
+        }
+        CodeGeneratorProperties.Pipeline pipeline = properties.getPipeline();
+        return new AdaptiveTuner(properties.getTuning(), pipeline.getBatchSize(), pipeline.getWriterThreads());
+    }
+
+    // Keep the settings the run ended with, so runs on different machines and configurations can be compared
+    private void recordSettings(GenerationRequest request, AdaptiveTuner tuner) {
+        CodeGeneratorProperties.Pipeline pipeline = properties.getPipeline();
+        request.setBatchSize(tuner != null ? tuner.getBatchSize() : pipeline.getBatchSize());
+        request.setWriterThreads(tuner != null ? tuner.getWriterLimit() : pipeline.getWriterThreads());
+        request.setAutoTuned(tuner != null);
+        if (tuner != null) {
+            logger.info("Generation request {} tuned to batches of {} codes and {} writers after {} windows",
+                    request.getId(), tuner.getBatchSize(), tuner.getWriterLimit(), tuner.getAdjustments());
+        }
+    }
+
+    private static double toSeconds(long nanos) {
+        return (double) nanos / 1_000_000_000; // Convert nanoseconds to seconds
+    }
+
+    /**
+     * Fill a block with the code values of consecutive counters of its format starting at startValue.
+     *
+     * @param block The block to fill.
+     * @param startValue Counter value of the first code.
+     */
+    void fillCodeBlock(CodeBlock block, long startValue) {
+        CodeEncoder encoder = block.getFormat() == CodeFormat.DEFAULT ? codeEncoder : codeFormats.getEncoder(block.getFormat());
+        for (int i = 0; i < block.size(); i++) {
+            block.set(i, encoder.toCodeValue(startValue + i));
         }
     }
-}
\ No newline at end of file
+}
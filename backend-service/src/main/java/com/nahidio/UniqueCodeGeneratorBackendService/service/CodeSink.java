@@ -0,0 +1,41 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+/**
+ * Destination the insertion workers write batches of generated codes to.
+ * The sink used by default is chosen with code-generator.sink.type.
+ */
+public interface CodeSink {
+
+    /**
+     * Name the sink is selected by in configuration.
+     */
+    String name();
+
+    /**
+     * Persist every code of the block in one transaction.
+     *
+     * @param block The codes to persist, tagged with their GenerationRequest id.
+     * @throws Exception If the batch could not be persisted; nothing of it is committed then.
+     */
+    void write(CodeBlock block) throws Exception;
+
+    /**
+     * @return Whether withTable is supported, i.e. the sink can write staged runs. Requests asking for
+     *         a staged run of a sink that cannot are rejected before anything is saved.
+     */
+    default boolean supportsStaging() {
+        return false;
+    }
+
+    /**
+     * Sink that writes the same way into another table with the columns of generated_codes,
+     * such as a staging table. Only called on sinks that support staging.
+     *
+     * @param table Name of the table.
+     * @return The sink for that table.
+     * @throws UnsupportedOperationException If the sink can only write generated_codes.
+     */
+    default CodeSink withTable(String table) {
+        throw new UnsupportedOperationException("The " + name() + " sink cannot write to " + table);
+    }
+}
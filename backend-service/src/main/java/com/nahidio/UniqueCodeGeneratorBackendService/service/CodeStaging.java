@@ -0,0 +1,148 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Per-request staging tables for all-or-nothing generation.
+ *
+ * A staged run writes its codes into generated_codes_stage_{request id}, which has the columns of
+ * generated_codes but no key or index, so filling it costs no index maintenance. That also means
+ * nothing catches a colliding code while the table fills. Publishing therefore first looks up the
+ * staged codes that generated_codes already holds, or that the table holds twice, and gives those
+ * rows codes of fresh counters of the request's format, the way CollisionResolver does for batches.
+ * Then it copies the whole table into generated_codes with one INSERT ... SELECT in one transaction:
+ * either every code of the request becomes visible or, on any failure, none does. A code another run
+ * published in between is resolved the same way and the copy tried again, at most maxRounds times.
+ * The staging table is dropped afterwards either way, which is also the whole cost of a rollback.
+ */
+public class CodeStaging {
+    private static final Logger logger = LoggerFactory.getLogger(CodeStaging.class);
+
+    public static final String TABLE_PREFIX = "generated_codes_stage_";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CodeFormats codeFormats;
+    private final CodeStorage storage;
+    private final int maxRounds;
+
+    /**
+     * @param jdbcTemplate Template on the application DataSource.
+     * @param transactionTemplate Transaction the publishing INSERT ... SELECT runs in.
+     * @param codeFormats Encoder and counter sequence the replacements of colliding codes come from.
+     * @param storage Representation of the code column.
+     * @param maxRounds Times colliding codes are replaced before publishing fails.
+     */
+    public CodeStaging(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, CodeFormats codeFormats,
+                       CodeStorage storage, int maxRounds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.codeFormats = codeFormats;
+        this.storage = storage;
+        this.maxRounds = maxRounds;
+    }
+
+    /**
+     * Create an empty staging table for a request, replacing one left behind by an earlier process.
+     *
+     * @param generationRequestId Id of the GenerationRequest.
+     * @return Name of the table.
+     */
+    public String create(long generationRequestId) {
+        String table = tableName(generationRequestId);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + table);
+        // Copies the column types, CHAR or BIGINT code alike, but none of the keys or indexes
+        jdbcTemplate.execute("CREATE TABLE " + table
+                + " AS SELECT code, generation_request_id FROM generated_codes WHERE 1 = 0");
+        return table;
+    }
+
+    /**
+     * Replace the colliding staged codes, then move every staged code into generated_codes in one transaction.
+     *
+     * @param table Name of the staging table.
+     * @param format Format of the staged codes.
+     * @return The staged rows whose codes were replaced and the rounds of replacements written.
+     * @throws IllegalStateException If codes still collide after maxRounds replacements; nothing is published then.
+     */
+    public CollisionResolver.Outcome publish(String table, CodeFormat format) {
+        int replaced = 0;
+        int rounds = 0;
+        for (int attempt = 1; ; attempt++) {
+            for (Map<String, Integer> colliding = findCollisions(table); !colliding.isEmpty();
+                    colliding = findCollisions(table)) {
+                if (++rounds > maxRounds) {
+                    throw new IllegalStateException(colliding.size() + " staged codes of " + table
+                            + " still collide after " + maxRounds + " replacements");
+                }
+                replaced += replace(table, format, colliding);
+            }
+            try {
+                Integer published = transactionTemplate.execute(status -> jdbcTemplate.update(
+                        "INSERT INTO generated_codes (code, generation_request_id)"
+                                + " SELECT code, generation_request_id FROM " + table));
+                logger.info("Published {} codes from {} after replacing {} colliding codes", published, table,
+                        replaced);
+                return new CollisionResolver.Outcome(replaced, rounds);
+            } catch (RuntimeException e) {
+                // Another run published one of the codes since they were looked up
+                if (!CollisionResolver.isDuplicateKey(e) || attempt >= maxRounds) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Drop a staging table, discarding whatever it still holds.
+     *
+     * @param table Name of the staging table.
+     */
+    public void drop(String table) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + table);
+    }
+
+    public static String tableName(long generationRequestId) {
+        return TABLE_PREFIX + generationRequestId;
+    }
+
+    // Staged codes that collide, with the number of their rows that need a new code: all of them for a code
+    // generated_codes holds already, all but one for a code staged more than once
+    private Map<String, Integer> findCollisions(String table) {
+        Map<String, Integer> colliding = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT s.code, COUNT(*) FROM " + table + " s"
+                + " WHERE EXISTS (SELECT 1 FROM generated_codes g WHERE g.code = s.code) GROUP BY s.code",
+                resultSet -> {
+                    colliding.put(resultSet.getString(1), resultSet.getInt(2));
+                });
+        jdbcTemplate.query("SELECT code, COUNT(*) FROM " + table + " GROUP BY code HAVING COUNT(*) > 1",
+                resultSet -> {
+                    colliding.putIfAbsent(resultSet.getString(1), resultSet.getInt(2) - 1);
+                });
+        return colliding;
+    }
+
+    // Gives the colliding rows codes of fresh counters, one row per UPDATE since the table has no key
+    private int replace(String table, CodeFormat format, Map<String, Integer> colliding) {
+        int rows = colliding.values().stream().mapToInt(Integer::intValue).sum();
+        CodeEncoder codeEncoder = codeFormats.getEncoder(format);
+        long counter = codeFormats.getCounterAllocator(format).allocate(rows);
+        List<Object[]> updates = new ArrayList<>(rows);
+        for (Map.Entry<String, Integer> code : colliding.entrySet()) {
+            for (int i = 0; i < code.getValue(); i++) {
+                updates.add(new Object[] {storage.toParameter(codeEncoder.toCodeValue(counter++), format),
+                        code.getKey()});
+            }
+        }
+        jdbcTemplate.batchUpdate("UPDATE " + table + " SET code = ? WHERE code = ? LIMIT 1", updates);
+        return rows;
+    }
+}
@@ -0,0 +1,112 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Column representation of generated_codes.code.
+ *
+ * CHAR keeps the code string of its CodeFormat (CHAR(7) utf8mb4_bin). BIGINT keeps the numeric code
+ * value, which needs 42 bits: 8 bytes per row in the unique index instead of up to 28, and integer
+ * comparisons instead of string ones. The string form is produced at the API boundary either way,
+ * so BIGINT only holds codes of the built-in base62 format: values of different formats would be
+ * indistinguishable. The GeneratedCode mapping must match, see META-INF/orm-bigint.xml and the bigint profile.
+ */
+public enum CodeStorage {
+
+    CHAR {
+        @Override
+        public void bind(PreparedStatement statement, int index, long value, CodeFormat format, char[] digits)
+                throws SQLException {
+            format.write(value, digits);
+            // The one allocation left per row on the write path: setString only takes a String
+            statement.setString(index, String.valueOf(digits, 0, format.getLength()));
+        }
+
+        @Override
+        public Object toParameter(long value, CodeFormat format) {
+            return format.format(value);
+        }
+
+        @Override
+        public String readCode(ResultSet resultSet, int column) throws SQLException {
+            // Codes shorter than the column come back padded with spaces from H2, MySQL strips them
+            String code = resultSet.getString(column);
+            return code != null ? code.stripTrailing() : null;
+        }
+
+        @Override
+        int render(long value, CodeFormat format, byte[] target) {
+            return format.write(value, target, 0);
+        }
+    },
+
+    BIGINT {
+        @Override
+        public void bind(PreparedStatement statement, int index, long value, CodeFormat format, char[] digits)
+                throws SQLException {
+            statement.setLong(index, value);
+        }
+
+        @Override
+        public Object toParameter(long value, CodeFormat format) {
+            return value;
+        }
+
+        @Override
+        public String readCode(ResultSet resultSet, int column) throws SQLException {
+            return Base62.format(resultSet.getLong(column));
+        }
+
+        @Override
+        int render(long value, CodeFormat format, byte[] target) {
+            // Decimal digits, least significant first, then reversed in place
+            int length = 0;
+            do {
+                target[length++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            for (int i = 0, j = length - 1; i < j; i++, j--) {
+                byte swap = target[i];
+                target[i] = target[j];
+                target[j] = swap;
+            }
+            return length;
+        }
+    };
+
+    // Longest text form of a code in either representation: 62^7 - 1 has 13 decimal digits
+    static final int MAX_TEXT_LENGTH = 13;
+
+    /**
+     * Bind a code value as a statement parameter.
+     *
+     * @param statement The statement.
+     * @param index Parameter index.
+     * @param value Numeric code value.
+     * @param format Format of the code.
+     * @param digits Caller owned buffer of CodeFormat.MAX_LENGTH characters, reused across calls.
+     */
+    public abstract void bind(PreparedStatement statement, int index, long value, CodeFormat format, char[] digits)
+            throws SQLException;
+
+    /**
+     * @param value Numeric code value.
+     * @param format Format of the code.
+     * @return The value as it is stored in the column, for JdbcTemplate arguments and arrays.
+     */
+    public abstract Object toParameter(long value, CodeFormat format);
+
+    /**
+     * Read a code column and return its string form.
+     *
+     * @param resultSet Result set positioned on a row.
+     * @param column Index of the code column.
+     * @return The code string.
+     */
+    public abstract String readCode(ResultSet resultSet, int column) throws SQLException;
+
+    // Write the text form of a code value, as LOAD DATA reads it, into target; returns its length
+    abstract int render(long value, CodeFormat format, byte[] target);
+}
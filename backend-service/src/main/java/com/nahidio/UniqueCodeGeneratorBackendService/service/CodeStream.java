@@ -0,0 +1,215 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequest;
+
+/**
+ * Hands the batches of one running GenerationRequest to an HTTP client while the run goes on.
+ *
+ * A batch is sent as soon as an insert worker picks it up, and acknowledged in a second event once
+ * its transaction is committed. A client that must not hand out codes that could still be lost only
+ * uses batches it has seen acknowledged; the codes of a batch that is never acknowledged were not
+ * persisted. When codes of a batch collided with persisted ones and were replaced, its
+ * acknowledgement carries the codes as persisted, which supersede those sent before. The queue
+ * between workers and client holds only a few events: a slow client blocks
+ * the workers before they write, which stops the generators through the pipeline's bounded queue.
+ * While they are blocked the chunk's scheduler slot is suspended, so other requests are not held up.
+ * When the client goes away the run is cancelled before its next chunk; codes already written are kept.
+ */
+public class CodeStream {
+
+    // A batch sent to the client, or its acknowledgement once durable, with the codes if some were replaced
+    private record Event(CodeBlock block, long batch, boolean durable, boolean replaced) {
+    }
+
+    // Batch number and codes of a block as sent
+    private record Sent(long batch, long[] codes) {
+    }
+
+    // Marks the end of the run in the queue
+    private static final Event END = new Event(null, 0, false, false);
+
+    private final GenerationRequest request;
+    private final GenerationProgress progress;
+    private final BlockingQueue<Event> events;
+    private final GenerationMetrics generationMetrics;
+    // Blocks sent but not yet committed; CodeBlock compares by identity
+    private final Map<CodeBlock, Sent> unacknowledged = new ConcurrentHashMap<>();
+    private final AtomicLong batches = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+    private volatile boolean closed;
+
+    /**
+     * @param request The saved request whose codes are streamed.
+     * @param progress Progress of its run, cancelled when the client goes away.
+     * @param bufferedBatches Batches held for a client that is behind.
+     * @param generationMetrics Records the time until the first codes are sent.
+     */
+    CodeStream(GenerationRequest request, GenerationProgress progress, int bufferedBatches,
+               GenerationMetrics generationMetrics) {
+        this.request = request;
+        this.progress = progress;
+        // Every batch is queued twice, once with its codes and once as acknowledgement
+        this.events = new ArrayBlockingQueue<>(2 * bufferedBatches);
+        this.generationMetrics = generationMetrics;
+    }
+
+    public GenerationRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * Queue the codes of a batch that is about to be written, waiting while the client is behind.
+     */
+    void generated(CodeBlock block) {
+        long batch = batches.incrementAndGet();
+        long[] codes = new long[block.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = block.get(i);
+        }
+        unacknowledged.put(block, new Sent(batch, codes));
+        put(new Event(block, batch, false, false));
+    }
+
+    /**
+     * Queue the acknowledgement of a committed batch.
+     */
+    void persisted(CodeBlock block) {
+        Sent sent = unacknowledged.remove(block);
+        if (sent == null) {
+            return;
+        }
+        boolean replaced = false;
+        for (int i = 0; i < block.size() && !replaced; i++) {
+            replaced = block.get(i) != sent.codes()[i];
+        }
+        put(new Event(block, sent.batch(), true, replaced));
+    }
+
+    /**
+     * Signal that the run ended; its final status is on the request.
+     */
+    void end() {
+        put(END);
+    }
+
+    /**
+     * Write every event as it arrives, then the outcome of the run, flushing after each event.
+     *
+     * As Server-Sent Events a batch is a "codes" event, its acknowledgement an "ack" event, both with
+     * the batch number as id, and the outcome an "end" event. An "ack" of a batch whose colliding codes
+     * were replaced lists all its codes as persisted. As NDJSON each is one JSON object per
+     * line with its kind in "type".
+     *
+     * @param out The response body.
+     * @param serverSentEvents Whether to frame events as text/event-stream instead of NDJSON.
+     * @return Number of codes acknowledged.
+     * @throws IOException If the client went away; the run is cancelled then.
+     */
+    public long writeTo(OutputStream out, boolean serverSentEvents) throws IOException {
+        long codesSent = 0;
+        long codesAcknowledged = 0;
+        try {
+            while (true) {
+                Event event = events.take();
+                if (event == END) {
+                    write(out, serverSentEvents, "end", 0, "{\"type\":\"end\",\"generationRequestId\":" + request.getId()
+                            + ",\"status\":\"" + request.getStatus() + "\",\"codesPersisted\":" + request.getCodesPersisted() + "}");
+                    return codesAcknowledged;
+                }
+                CodeBlock block = event.block();
+                if (event.durable()) {
+                    codesAcknowledged += block.size();
+                    StringBuilder data = new StringBuilder(event.replaced() ? block.size() * 10 + 128 : 128);
+                    data.append("{\"type\":\"ack\",\"generationRequestId\":").append(request.getId())
+                            .append(",\"batch\":").append(event.batch())
+                            .append(",\"codesPersisted\":").append(codesAcknowledged);
+                    if (event.replaced()) {
+                        appendCodes(data, block);
+                    }
+                    write(out, serverSentEvents, "ack", event.batch(), data.append('}').toString());
+                    continue;
+                }
+                if (codesSent == 0) {
+                    generationMetrics.recordTimeToFirstCodes(System.nanoTime() - startNanos);
+                }
+                codesSent += block.size();
+                StringBuilder data = new StringBuilder(block.size() * 10 + 96);
+                data.append("{\"type\":\"codes\",\"generationRequestId\":").append(request.getId())
+                        .append(",\"batch\":").append(event.batch());
+                appendCodes(data, block);
+                write(out, serverSentEvents, "codes", event.batch(), data.append('}').toString());
+            }
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Streaming generation request " + request.getId() + " was interrupted");
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Stop streaming: cancel the run and release workers waiting for the client.
+     */
+    public void close() {
+        closed = true;
+        progress.cancel();
+        events.clear();
+    }
+
+    // Waits for room while the client is behind, with the chunk's slot suspended; dropped once the client is gone
+    private void put(Event event) {
+        if (events.offer(event)) {
+            return;
+        }
+        GenerationScheduler.Slot slot = progress.getSlot();
+        if (slot != null) {
+            slot.suspend();
+        }
+        try {
+            while (!closed && !events.offer(event, 100, TimeUnit.MILLISECONDS)) {
+                // Check again whether the client went away
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (slot != null) {
+                slot.resume();
+            }
+        }
+    }
+
+    private static void appendCodes(StringBuilder data, CodeBlock block) {
+        data.append(",\"codes\":[");
+        for (int i = 0; i < block.size(); i++) {
+            data.append(i == 0 ? "\"" : ",\"").append(block.getFormat().format(block.get(i))).append('"');
+        }
+        data.append(']');
+    }
+
+    private static void write(OutputStream out, boolean serverSentEvents, String name, long id, String data)
+            throws IOException {
+        String event;
+        if (!serverSentEvents) {
+            event = data + "\n";
+        } else if (id > 0) {
+            event = "event: " + name + "\nid: " + id + "\ndata: " + data + "\n\n";
+        } else {
+            event = "event: " + name + "\ndata: " + data + "\n\n";
+        }
+        out.write(event.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+}
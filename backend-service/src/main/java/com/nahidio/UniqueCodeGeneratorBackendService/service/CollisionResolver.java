@@ -0,0 +1,195 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Writes a batch so that codes already in generated_codes do not cost the whole batch.
+ *
+ * A batch is written as is first. Only when that transaction fails on the unique index is the batch
+ * split in halves, which are written on their own, down to the single rows that collide. Those rows
+ * get codes of fresh counters in place and are written again, until every row is persisted or
+ * maxRounds replacements were tried. The block then holds exactly the codes that are persisted,
+ * so callers hand it on as usual.
+ *
+ * Replacements come from the encoder and counter sequence of the block's CodeFormat. Only an encoder
+ * that is not a bijection, such as the legacy "random" one, or codes of two formats that happen to
+ * spell the same string produce collisions; otherwise the first attempt always succeeds and nothing
+ * here costs anything. Collisions and the extra writes they took are counted in codegen.collisions
+ * and codegen.collision.retries.
+ */
+public class CollisionResolver {
+    private static final Logger logger = LoggerFactory.getLogger(CollisionResolver.class);
+
+    // MySQL's ER_DUP_ENTRY under SQLState 23000, the standard unique violation for everything else
+    private static final String MYSQL_INTEGRITY_VIOLATION = "23000";
+    private static final int MYSQL_DUPLICATE_ENTRY = 1062;
+    private static final String UNIQUE_VIOLATION = "23505";
+
+    /**
+     * Rows of a batch whose codes were replaced and the extra writes it took.
+     */
+    public record Outcome(int collisions, int retries) {
+        public static final Outcome NONE = new Outcome(0, 0);
+    }
+
+    private final CodeFormats codeFormats;
+    private final int maxRounds;
+    private final Counter collisions;
+    private final Counter retries;
+
+    /**
+     * @param codeFormats Encoder and counter sequence the replacements of each format come from.
+     * @param maxRounds Times the colliding rows of a batch are replaced before the batch fails.
+     * @param meterRegistry Registry the collisions are counted in.
+     */
+    public CollisionResolver(CodeFormats codeFormats, int maxRounds, MeterRegistry meterRegistry) {
+        this.codeFormats = codeFormats;
+        this.maxRounds = maxRounds;
+        this.collisions = Counter.builder("codegen.collisions")
+                .description("Generated codes that were already persisted and got replaced")
+                .baseUnit("codes")
+                .register(meterRegistry);
+        this.retries = Counter.builder("codegen.collision.retries")
+                .description("Extra batch writes needed to isolate and replace colliding codes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Persist every row of the block, replacing codes that collide with persisted ones.
+     *
+     * @param block The codes to persist; colliding rows are overwritten with their replacements.
+     * @param attempt Writes a block, or a part of it, in one transaction.
+     * @return The rows replaced and the extra writes it took.
+     * @throws Exception If a write fails for another reason, or rows still collide after maxRounds;
+     *         parts written before stay persisted then.
+     */
+    public Outcome write(CodeBlock block, CodeGenerationPipeline.BatchWriter attempt) throws Exception {
+        try {
+            attempt.write(block);
+            return Outcome.NONE;
+        } catch (Exception e) {
+            if (!isDuplicateKey(e)) {
+                throw e;
+            }
+        }
+        int[] writes = {0};
+        try {
+            List<Integer> colliding = new ArrayList<>();
+            isolate(block, 0, block.size(), attempt, colliding, writes);
+            int replaced = 0;
+            for (int round = 1; !colliding.isEmpty(); round++) {
+                if (round > maxRounds) {
+                    throw new IllegalStateException(colliding.size() + " codes still collide after " + maxRounds
+                            + " replacements");
+                }
+                replaced += colliding.size();
+                collisions.increment(colliding.size());
+                CodeBlock replacement = replace(block, colliding);
+                List<Integer> stillColliding = new ArrayList<>();
+                writes[0]++;
+                try {
+                    attempt.write(replacement);
+                } catch (Exception e) {
+                    if (!isDuplicateKey(e)) {
+                        throw e;
+                    }
+                    List<Integer> rows = new ArrayList<>();
+                    isolate(replacement, 0, replacement.size(), attempt, rows, writes);
+                    for (int row : rows) {
+                        stillColliding.add(colliding.get(row));
+                    }
+                }
+                colliding = stillColliding;
+            }
+            logger.debug("Replaced {} colliding codes of a batch of {} with {} extra writes", replaced, block.size(),
+                    writes[0]);
+            return new Outcome(replaced, writes[0]);
+        } finally {
+            retries.increment(writes[0]);
+        }
+    }
+
+    /**
+     * Count collisions resolved elsewhere, such as in a staging table before it is published.
+     *
+     * @param outcome The rows replaced and the extra writes it took.
+     */
+    public void count(Outcome outcome) {
+        collisions.increment(outcome.collisions());
+        retries.increment(outcome.retries());
+    }
+
+    /**
+     * @return Whether the failure is a unique key violation, the same code written twice.
+     */
+    public static boolean isDuplicateKey(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException && isDuplicateKey(sqlException)) {
+                return true;
+            }
+            // A JDBC batch may only report the failed statement as its next exception
+            if (cause instanceof BatchUpdateException batch && batch.getNextException() != null
+                    && isDuplicateKey(batch.getNextException())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isDuplicateKey(SQLException e) {
+        return UNIQUE_VIOLATION.equals(e.getSQLState())
+                || (MYSQL_INTEGRITY_VIOLATION.equals(e.getSQLState()) && e.getErrorCode() == MYSQL_DUPLICATE_ENTRY);
+    }
+
+    // Writes both halves of [from, to) of a block that failed as a whole, collecting the rows that collide
+    private void isolate(CodeBlock block, int from, int to, CodeGenerationPipeline.BatchWriter attempt,
+                         List<Integer> colliding, int[] writes) throws Exception {
+        if (to - from == 1) {
+            colliding.add(from);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        for (int[] half : new int[][] {{from, middle}, {middle, to}}) {
+            writes[0]++;
+            try {
+                attempt.write(block.slice(half[0], half[1]));
+            } catch (Exception e) {
+                if (!isDuplicateKey(e)) {
+                    throw e;
+                }
+                isolate(block, half[0], half[1], attempt, colliding, writes);
+            }
+        }
+    }
+
+    // Gives the colliding rows codes of fresh counters, in the block and in a block of just those rows
+    private CodeBlock replace(CodeBlock block, List<Integer> rows) {
+        CodeBlock replacement;
+        if (block.isShared()) {
+            long[] generationRequestIds = new long[rows.size()];
+            for (int i = 0; i < rows.size(); i++) {
+                generationRequestIds[i] = block.getGenerationRequestId(rows.get(i));
+            }
+            replacement = new CodeBlock(generationRequestIds);
+        } else {
+            replacement = new CodeBlock(block.getGenerationRequestId(), rows.size(), block.getFormat());
+        }
+        CodeEncoder codeEncoder = codeFormats.getEncoder(block.getFormat());
+        long startCounter = codeFormats.getCounterAllocator(block.getFormat()).allocate(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            long value = codeEncoder.toCodeValue(startCounter + i);
+            replacement.set(i, value);
+            block.set(rows.get(i), value);
+        }
+        return replacement;
+    }
+}
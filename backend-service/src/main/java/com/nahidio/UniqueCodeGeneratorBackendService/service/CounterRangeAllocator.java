@@ -0,0 +1,138 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.CounterReservation;
+import com.nahidio.UniqueCodeGeneratorBackendService.repository.CounterReservationRepository;
+
+/**
+ * Hands out disjoint counter ranges, safe across restarts and across backend instances.
+ *
+ * Hi/lo allocation: the node leases a block of blockSize counters by moving the high-water mark in
+ * the counterReservation table forward in one short transaction, then serves ranges from that block
+ * in memory with a single atomic add. Counters of a block that is not used up before a restart are
+ * skipped, never reused.
+ */
+public class CounterRangeAllocator {
+    private static final Logger logger = LoggerFactory.getLogger(CounterRangeAllocator.class);
+
+    public static final String CODE_COUNTER = "code-counter";
+
+    private static final Lease EXHAUSTED = new Lease(0L, 0L);
+
+    private final CounterReservationRepository reservationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final String counterName;
+    private final long blockSize;
+    private final long initialValue;
+
+    private final AtomicReference<Lease> lease = new AtomicReference<>(EXHAUSTED);
+
+    /**
+     * @param reservationRepository Repository of the reservation table.
+     * @param transactionTemplate Runs each lease in its own transaction.
+     * @param blockSize Counters leased per round trip.
+     * @param initialValue First counter when the reservation row does not exist yet.
+     */
+    public CounterRangeAllocator(CounterReservationRepository reservationRepository,
+                                 TransactionTemplate transactionTemplate, long blockSize, long initialValue) {
+        this(reservationRepository, transactionTemplate, CODE_COUNTER, blockSize, initialValue);
+    }
+
+    /**
+     * @param reservationRepository Repository of the reservation table.
+     * @param transactionTemplate Runs each lease in its own transaction.
+     * @param counterName Reservation row of the counter sequence, one per CodeFormat.
+     * @param blockSize Counters leased per round trip.
+     * @param initialValue First counter when the reservation row does not exist yet.
+     */
+    public CounterRangeAllocator(CounterReservationRepository reservationRepository,
+                                 TransactionTemplate transactionTemplate, String counterName, long blockSize,
+                                 long initialValue) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        this.reservationRepository = reservationRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.counterName = counterName;
+        this.blockSize = blockSize;
+        this.initialValue = initialValue;
+    }
+
+    /**
+     * Reserve count consecutive counters.
+     *
+     * @param count Number of counters.
+     * @return The first counter of the range; the range is [start, start + count).
+     */
+    public long allocate(long count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Count must be positive");
+        }
+        while (true) {
+            Lease current = lease.get();
+            long start = current.next.getAndAdd(count);
+            if (start + count <= current.end) {
+                return start;
+            }
+            // Block used up: one thread leases the next one, the others retry on it
+            synchronized (this) {
+                if (lease.get() == current) {
+                    lease.set(leaseBlock(Math.max(blockSize, count)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Count the counters below end that were not handed out yet, neither by this node nor leased by another.
+     * Counters leased by other nodes but not used yet count as handed out.
+     *
+     * @param end End of the counter space, e.g. the capacity of a CodeFormat.
+     * @return Counters left before end.
+     */
+    public long getRemaining(long end) {
+        Lease current = lease.get();
+        long unleased = reservationRepository.findById(counterName)
+                .map(reservation -> end - reservation.getNextValue())
+                .orElse(end - initialValue);
+        return Math.max(0L, Math.min(current.end, end) - current.next.get()) + Math.max(0L, unleased);
+    }
+
+    private Lease leaseBlock(long size) {
+        try {
+            return transactionTemplate.execute(status -> leaseInTransaction(size));
+        } catch (DataIntegrityViolationException e) {
+            // Another node created the reservation row at the same time, it exists now
+            return transactionTemplate.execute(status -> leaseInTransaction(size));
+        }
+    }
+
+    private Lease leaseInTransaction(long size) {
+        CounterReservation reservation = reservationRepository.findForUpdate(counterName)
+                .orElseGet(() -> new CounterReservation(counterName, initialValue, null));
+        long start = reservation.getNextValue();
+        reservation.setNextValue(start + size);
+        reservation.setUpdatedAt(LocalDateTime.now());
+        reservationRepository.saveAndFlush(reservation);
+        logger.info("Leased {} counters [{}, {})", counterName, start, start + size);
+        return new Lease(start, start + size);
+    }
+
+    private static final class Lease {
+        private final AtomicLong next;
+        private final long end;
+
+        private Lease(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+
+/**
+ * Wire formats of the code export, chosen from the Accept header.
+ *
+ * Codes are ASCII, so every format writes bytes directly without a character encoder.
+ */
+public enum ExportFormat {
+
+    // One code per line after a "code" header line
+    CSV(new MediaType("text", "csv"), "csv") {
+        @Override
+        void writeHeader(OutputStream out) throws IOException {
+            out.write(CSV_HEADER);
+        }
+
+        @Override
+        void writeCode(String code, CodeFormat codeFormat, OutputStream out) throws IOException {
+            writeAscii(code, out);
+            out.write('\n');
+        }
+    },
+
+    // One {"code":"..."} object per line
+    NDJSON(new MediaType("application", "x-ndjson"), "ndjson") {
+        @Override
+        void writeCode(String code, CodeFormat codeFormat, OutputStream out) throws IOException {
+            out.write(NDJSON_PREFIX);
+            writeAscii(code, out);
+            out.write(NDJSON_SUFFIX);
+        }
+    },
+
+    // Numeric code value of every code as 6 big-endian bytes; no format has more than 62^7 < 2^48 codes
+    BINARY(MediaType.APPLICATION_OCTET_STREAM, "bin") {
+        @Override
+        void writeCode(String code, CodeFormat codeFormat, OutputStream out) throws IOException {
+            long value = codeFormat.parse(code);
+            for (int shift = 40; shift >= 0; shift -= 8) {
+                out.write((int) (value >>> shift));
+            }
+        }
+    };
+
+    private static final byte[] CSV_HEADER = {'c', 'o', 'd', 'e', '\n'};
+    private static final byte[] NDJSON_PREFIX = {'{', '"', 'c', 'o', 'd', 'e', '"', ':', '"'};
+    private static final byte[] NDJSON_SUFFIX = {'"', '}', '\n'};
+
+    private final MediaType mediaType;
+    private final String fileExtension;
+
+    ExportFormat(MediaType mediaType, String fileExtension) {
+        this.mediaType = mediaType;
+        this.fileExtension = fileExtension;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    void writeHeader(OutputStream out) throws IOException {
+    }
+
+    abstract void writeCode(String code, CodeFormat codeFormat, OutputStream out) throws IOException;
+
+    /**
+     * Pick the format the client prefers most.
+     *
+     * @param accept Value of the Accept header, null or wildcard for CSV.
+     * @return The format.
+     * @throws HttpMediaTypeNotAcceptableException If no accepted media type is supported.
+     */
+    public static ExportFormat fromAcceptHeader(String accept) throws HttpMediaTypeNotAcceptableException {
+        if (accept == null || accept.isBlank()) {
+            return CSV;
+        }
+        List<MediaType> accepted = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        accepted.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        for (MediaType mediaType : accepted) {
+            if (mediaType.getQualityValue() == 0) {
+                continue;
+            }
+            for (ExportFormat format : values()) {
+                if (mediaType.includes(format.mediaType)) {
+                    return format;
+                }
+            }
+        }
+        throw new HttpMediaTypeNotAcceptableException(List.of(CSV.mediaType, NDJSON.mediaType, BINARY.mediaType));
+    }
+
+    private static void writeAscii(String code, OutputStream out) throws IOException {
+        for (int i = 0; i < code.length(); i++) {
+            out.write(code.charAt(i));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+/**
+ * Keyed, invertible permutation of the code space of a CodeFormat, 62^7 for the default one.
+ *
+ * A balanced Feistel network permutes values of the smallest even number of bits that holds the
+ * capacity (42 bits for 62^7); values that land outside [0, capacity) are fed through the network
+ * again (cycle walking) until they fall inside. Because every step is a bijection, distinct counters
+ * always give distinct codes and every code decodes to its counter.
+ */
+public class FeistelCodeEncoder implements CodeEncoder {
+
+    private static final int ROUNDS = 6;
+
+    private final CodeFormat format;
+    private final long capacity;
+    private final int halfBits;
+    private final long halfMask;
+    private final long[] roundKeys = new long[ROUNDS];
+
+    public FeistelCodeEncoder(long key) {
+        this(key, CodeFormat.DEFAULT);
+    }
+
+    /**
+     * @param key Key of the permutation.
+     * @param format Format whose code space is permuted and whose codes are decoded.
+     */
+    public FeistelCodeEncoder(long key, CodeFormat format) {
+        this.format = format;
+        this.capacity = format.getCapacity();
+        int bits = 64 - Long.numberOfLeadingZeros(capacity - 1);
+        this.halfBits = Math.max(1, (bits + 1) / 2);
+        this.halfMask = (1L << halfBits) - 1;
+        long state = key;
+        for (int i = 0; i < ROUNDS; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            roundKeys[i] = mix(state);
+        }
+    }
+
+    @Override
+    public long toCodeValue(long counter) {
+        if (counter < 0 || counter >= capacity) {
+            throw new IllegalArgumentException("Counter exhausted the code space: " + counter);
+        }
+        long value = counter;
+        do {
+            value = permute(value);
+        } while (value >= capacity);
+        return value;
+    }
+
+    @Override
+    public long decode(String code) {
+        long value = format.parse(code);
+        do {
+            value = unpermute(value);
+        } while (value >= capacity);
+        return value;
+    }
+
+    @Override
+    public String encode(long counter) {
+        return format.format(toCodeValue(counter));
+    }
+
+    private long permute(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (int i = 0; i < ROUNDS; i++) {
+            long next = left ^ round(right, i);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private long unpermute(long value) {
+        long left = value >>> halfBits;
+        long right = value & halfMask;
+        for (int i = ROUNDS - 1; i >= 0; i--) {
+            long previous = right ^ round(left, i);
+            right = left;
+            left = previous;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private long round(long half, int i) {
+        return mix(half ^ roundKeys[i]) & halfMask;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,121 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.ChunkState;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationChunk;
+import com.nahidio.UniqueCodeGeneratorBackendService.repository.GenerationChunkRepository;
+
+/**
+ * Per-chunk checkpoints of generation requests, written by CodeService.runGeneration.
+ *
+ * Chunks of a request run one after the other, so generated_codes ids of a chunk are all above the
+ * maxCodeId recorded when the previous chunk completed. Resuming deletes the rows above that id,
+ * which are exactly the partly written rows of the interrupted chunk, and writes the chunk again
+ * with the same counter range.
+ */
+@Service
+public class GenerationCheckpointService {
+    private static final Logger logger = LoggerFactory.getLogger(GenerationCheckpointService.class);
+
+    @Autowired
+    private GenerationChunkRepository chunkRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * @param generationRequestId Id of the GenerationRequest.
+     * @return Checkpoints of the request ordered by chunk index.
+     */
+    public List<GenerationChunk> findChunks(long generationRequestId) {
+        return chunkRepository.findByGenerationRequestIdOrderByChunkIndex(generationRequestId);
+    }
+
+    /**
+     * Record a chunk as RUNNING before any of its codes is written.
+     *
+     * @param generationRequestId Id of the GenerationRequest.
+     * @param chunkIndex Position of the chunk within the request.
+     * @param startCounter First counter value of the chunk's leased range.
+     * @param numberOfCodes Number of codes in the chunk.
+     * @return The saved checkpoint.
+     */
+    public GenerationChunk start(long generationRequestId, int chunkIndex, long startCounter, long numberOfCodes) {
+        GenerationChunk chunk = new GenerationChunk();
+        chunk.setGenerationRequestId(generationRequestId);
+        chunk.setChunkIndex(chunkIndex);
+        chunk.setStartCounter(startCounter);
+        chunk.setNumberOfCodes(numberOfCodes);
+        chunk.setState(ChunkState.RUNNING);
+        chunk.setUpdatedAt(LocalDateTime.now());
+        return chunkRepository.save(chunk);
+    }
+
+    /**
+     * Mark a chunk COMPLETED.
+     *
+     * @param chunk The checkpoint of the chunk.
+     * @param codesPersisted Codes written for the chunk.
+     */
+    public void complete(GenerationChunk chunk, long codesPersisted) {
+        chunk.setState(ChunkState.COMPLETED);
+        chunk.setCodesPersisted(codesPersisted);
+        chunk.setMaxCodeId(jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(id), 0) FROM generated_codes WHERE generation_request_id = ?",
+                Long.class, chunk.getGenerationRequestId()));
+        chunk.setUpdatedAt(LocalDateTime.now());
+        chunkRepository.save(chunk);
+    }
+
+    /**
+     * Count the codes a request has in generated_codes. Without checkpoints they can only come from the
+     * shared batch of a coalesced request, which is written in one transaction with every row tagged
+     * with its request: all of the request's codes are there, or none, or those of the parts a
+     * collision split the batch into.
+     *
+     * @param generationRequestId Id of the GenerationRequest.
+     * @return Number of rows.
+     */
+    public long countCodes(long generationRequestId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM generated_codes WHERE generation_request_id = ?",
+                Long.class, generationRequestId);
+    }
+
+    /**
+     * Delete every code of a request that has no checkpoints, so it can be written again.
+     *
+     * @param generationRequestId Id of the GenerationRequest.
+     * @return Number of rows deleted.
+     */
+    public long discardCodes(long generationRequestId) {
+        int deleted = jdbcTemplate.update("DELETE FROM generated_codes WHERE generation_request_id = ?",
+                generationRequestId);
+        logger.info("Discarded {} codes of a partly written shared batch of generation request {}",
+                deleted, generationRequestId);
+        return deleted;
+    }
+
+    /**
+     * Delete the codes an interrupted chunk left behind, so it can be written again.
+     *
+     * @param chunk The RUNNING checkpoint of the interrupted chunk.
+     * @param previous The last COMPLETED checkpoint of the request, null if there is none.
+     * @return Number of rows deleted.
+     */
+    public long discardPartialChunk(GenerationChunk chunk, GenerationChunk previous) {
+        long afterId = previous != null ? previous.getMaxCodeId() : 0L;
+        int deleted = jdbcTemplate.update("DELETE FROM generated_codes WHERE generation_request_id = ? AND id > ?",
+                chunk.getGenerationRequestId(), afterId);
+        logger.info("Discarded {} codes of interrupted chunk {} of generation request {}",
+                deleted, chunk.getChunkIndex(), chunk.getGenerationRequestId());
+        return deleted;
+    }
+}
@@ -0,0 +1,442 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.config.CodeGeneratorProperties;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationOptions;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequest;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationStatus;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationStatusResponse;
+import com.nahidio.UniqueCodeGeneratorBackendService.error.GenerationBacklogFullException;
+import com.nahidio.UniqueCodeGeneratorBackendService.error.GenerationRequestNotFoundException;
+import com.nahidio.UniqueCodeGeneratorBackendService.error.GenerationRequestNotResumableException;
+import com.nahidio.UniqueCodeGeneratorBackendService.repository.GenerationRequestRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Runs code generation as background jobs so the HTTP request returns as soon as the
+ * GenerationRequest is saved. Running jobs, and runs a caller waits for, are tracked in memory for
+ * status and cancellation; interrupted ones are resumed from their chunk checkpoints once their
+ * lease has expired (see GenerationLeaseService).
+ */
+@Service
+public class GenerationJobService {
+    private static final Logger logger = LoggerFactory.getLogger(GenerationJobService.class);
+
+    @Autowired
+    private CodeService codeService;
+
+    @Autowired
+    private GenerationRequestRepository requestRepository;
+
+    @Autowired
+    private CodeStaging codeStaging;
+
+    @Autowired
+    private GenerationScheduler generationScheduler;
+
+    @Autowired
+    private GenerationMetrics generationMetrics;
+
+    @Autowired
+    private GenerationLeaseService leaseService;
+
+    private final Map<Long, GenerationProgress> runningJobs = new ConcurrentHashMap<>();
+    private final ExecutorService jobExecutor;
+    private final CodeGeneratorProperties properties;
+    private ScheduledExecutorService recoveryExecutor;
+
+    @Autowired
+    public GenerationJobService(CodeGeneratorProperties properties) {
+        this.properties = properties;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.jobExecutor = Executors.newFixedThreadPool(properties.getJobs().getConcurrency(), runnable -> {
+            Thread thread = new Thread(runnable, "generation-job-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Save a new GenerationRequest and generate its codes on the calling thread once the scheduler admits
+     * them. The run is tracked like a background job, so it can be followed and cancelled meanwhile.
+     *
+     * @param numberOfCodes Number of unique codes to generate.
+     * @param options Sink, staging, tenant, priority and format of the run; null fields take their defaults.
+     * @return The finished request.
+     * @throws GenerationBacklogFullException If the scheduler's backlog has no room for the codes.
+     * @throws Exception If there is an issue during code generation or database operations.
+     */
+    public GenerationRequest generate(long numberOfCodes, GenerationOptions options) throws Exception {
+        CodeSink sink = codeService.getSink(options.getSink());
+        generationScheduler.admit(numberOfCodes);
+        try {
+            GenerationRequest request = codeService.createRequest(numberOfCodes, sink, options);
+            GenerationProgress progress = new GenerationProgress(numberOfCodes);
+            runningJobs.put(request.getId(), progress);
+            try {
+                codeService.runGeneration(request, sink, progress, request.getStaged());
+            } finally {
+                runningJobs.remove(request.getId());
+            }
+            return request;
+        } finally {
+            generationScheduler.release(numberOfCodes);
+        }
+    }
+
+    /**
+     * Save a new GenerationRequest and generate its codes in the background.
+     *
+     * @param numberOfCodes Number of unique codes to generate.
+     * @param options Sink, staging, tenant, priority and format of the run; null fields take their defaults.
+     * @return The saved request, still RUNNING.
+     * @throws GenerationBacklogFullException If the scheduler's backlog has no room for the codes.
+     */
+    public GenerationRequest submit(long numberOfCodes, GenerationOptions options)
+            throws GenerationBacklogFullException {
+        CodeSink sink = codeService.getSink(options.getSink());
+        generationScheduler.admit(numberOfCodes);
+        GenerationRequest request = null;
+        boolean started = false;
+        try {
+            request = codeService.createRequest(numberOfCodes, sink, options);
+            GenerationProgress progress = new GenerationProgress(numberOfCodes);
+            runningJobs.put(request.getId(), progress);
+            start(request, sink, progress, request.getStaged(), numberOfCodes, null);
+            started = true;
+            return request;
+        } finally {
+            if (!started) {
+                abandon(request, numberOfCodes);
+            }
+        }
+    }
+
+    /**
+     * Save a new GenerationRequest and generate its codes in the background, handing every batch to the
+     * returned stream when it is generated and again once it is committed.
+     * Streamed runs are never staged, since staged codes only become durable when the whole run is published.
+     *
+     * @param numberOfCodes Number of unique codes to generate.
+     * @param options Sink, tenant, priority and format of the run; null fields take their defaults.
+     * @return The stream of the saved request, which is RUNNING.
+     * @throws GenerationBacklogFullException If the scheduler's backlog has no room for the codes.
+     * @throws IllegalArgumentException If the options ask for staging, also through code-generator.staging.enabled
+     *         when they leave it null; see GenerationOptions.unstaged().
+     */
+    public CodeStream stream(long numberOfCodes, GenerationOptions options) throws GenerationBacklogFullException {
+        if (codeService.isStaged(options.getStaged())) {
+            throw new IllegalArgumentException("Streamed generation requests cannot be staged");
+        }
+        CodeSink sink = codeService.getSink(options.getSink());
+        generationScheduler.admit(numberOfCodes);
+        GenerationRequest request = null;
+        boolean started = false;
+        try {
+            request = codeService.createRequest(numberOfCodes, sink, options);
+            GenerationProgress progress = new GenerationProgress(numberOfCodes);
+            runningJobs.put(request.getId(), progress);
+            CodeStream stream = new CodeStream(request, progress, properties.getStreaming().getBufferedBatches(),
+                    generationMetrics);
+            start(request, sink, progress, false, numberOfCodes, stream);
+            started = true;
+            return stream;
+        } finally {
+            if (!started) {
+                abandon(request, numberOfCodes);
+            }
+        }
+    }
+
+    /**
+     * Continue an unfinished request in the background after its last completed chunk.
+     *
+     * @param id Id of the GenerationRequest.
+     * @return The request, RUNNING again.
+     * @throws GenerationRequestNotFoundException If there is no such request.
+     * @throws GenerationRequestNotResumableException If the request is running, here or leased to another
+     *         process, finished, staged, was not started through a CodeSink or its code format is no longer configured.
+     * @throws GenerationBacklogFullException If the scheduler's backlog has no room for the remaining codes.
+     */
+    public GenerationRequest resume(long id) throws GenerationRequestNotFoundException,
+            GenerationRequestNotResumableException, GenerationBacklogFullException {
+        GenerationRequest request = findRequest(id);
+        if (!hasConfiguredFormat(request)) {
+            throw new GenerationRequestNotResumableException("Generation request " + id + " cannot be resumed, its code format "
+                    + request.getCodeFormat() + " is no longer configured");
+        }
+        if (!isResumable(request)) {
+            throw new GenerationRequestNotResumableException("Generation request " + id + " cannot be resumed");
+        }
+        GenerationProgress progress = new GenerationProgress(request.getNumberOfCodes());
+        // Claims the request, so concurrent resume calls start it once
+        if (runningJobs.putIfAbsent(id, progress) != null) {
+            throw new GenerationRequestNotResumableException("Generation request " + id + " is already running");
+        }
+        long persisted = request.getCodesPersisted() != null ? request.getCodesPersisted() : 0L;
+        long remaining = Math.max(0L, request.getNumberOfCodes() - persisted);
+        try {
+            generationScheduler.admit(remaining);
+        } catch (GenerationBacklogFullException e) {
+            runningJobs.remove(id);
+            throw e;
+        }
+        boolean leased = false;
+        boolean started = false;
+        try {
+            if (!leaseService.acquire(request)) {
+                throw new GenerationRequestNotResumableException("Generation request " + id + " is running on another instance");
+            }
+            leased = true;
+            request.setStatus(GenerationStatus.RUNNING);
+            request.setEndedAt(null);
+            request.setResumedAt(LocalDateTime.now());
+            requestRepository.save(request);
+            logger.info("Resuming generation request {}", id);
+            start(request, codeService.getSink(request.getSink()), progress, false, remaining, null);
+            started = true;
+            return request;
+        } finally {
+            if (!started) {
+                runningJobs.remove(id);
+                generationScheduler.release(remaining);
+                if (leased) {
+                    leaseService.release(request);
+                }
+            }
+        }
+    }
+
+    /**
+     * With code-generator.resume.on-startup, look for interrupted requests at startup and every lease
+     * duration after it, since a process that just stopped still holds its leases for that long.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startRecovery() {
+        if (!properties.getResume().isOnStartup()) {
+            return;
+        }
+        recoveryExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "generation-recovery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        recoveryExecutor.scheduleWithFixedDelay(this::resumeInterrupted, 0,
+                properties.getResume().getLeaseDuration().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Continue the RUNNING requests whose process stopped, i.e. whose lease expired. Requests that
+     * cannot be resumed are closed as FAILED, staged ones as ABORTED.
+     */
+    public void resumeInterrupted() {
+        for (GenerationRequest request : requestRepository.findByStatusAndEndedAtIsNull(GenerationStatus.RUNNING)) {
+            if (runningJobs.containsKey(request.getId()) || !leaseService.isExpired(request)) {
+                continue;
+            }
+            try {
+                if (isResumable(request)) {
+                    resume(request.getId());
+                } else if (leaseService.acquire(request)) {
+                    closeInterrupted(request);
+                }
+            } catch (GenerationRequestNotResumableException e) {
+                logger.debug("Generation request {} was taken over by another instance", request.getId());
+            } catch (Exception e) {
+                logger.error("Could not recover generation request {}", request.getId(), e);
+            }
+        }
+    }
+
+    // Unstaged requests with a known sink and a configured format that are not running here and did not complete;
+    // journal requests are not, their checkpoints cannot discard a partial chunk that is still in the journal.
+    // Whether another process runs it is up to its lease
+    private boolean isResumable(GenerationRequest request) {
+        if (request.getSink() == null || Boolean.TRUE.equals(request.getStaged())
+                || JournalCodeSink.NAME.equals(request.getSink()) || !hasConfiguredFormat(request)) {
+            return false;
+        }
+        GenerationStatus status = request.getStatus();
+        return (status == GenerationStatus.RUNNING && !runningJobs.containsKey(request.getId()))
+                || status == GenerationStatus.FAILED
+                || status == GenerationStatus.CANCELLED;
+    }
+
+    // A request keeps the name of its format; the format may have been removed from code-generator.formats since
+    private boolean hasConfiguredFormat(GenerationRequest request) {
+        try {
+            codeService.getFormat(request.getCodeFormat());
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private void closeInterrupted(GenerationRequest request) {
+        if (Boolean.TRUE.equals(request.getStaged())) {
+            codeStaging.drop(CodeStaging.tableName(request.getId()));
+            request.setStatus(GenerationStatus.ABORTED);
+            request.setCodesPersisted(0L);
+        } else {
+            request.setStatus(GenerationStatus.FAILED);
+        }
+        request.setEndedAt(LocalDateTime.now());
+        requestRepository.save(request);
+        leaseService.release(request);
+        logger.warn("Generation request {} was interrupted and cannot be resumed, closed as {}",
+                request.getId(), request.getStatus());
+    }
+
+    // Gives back what a new request that could not be started holds: its admitted codes, its place among the
+    // running jobs and, once saved, its lease; the saved request is closed as FAILED
+    private void abandon(GenerationRequest request, long admittedCodes) {
+        generationScheduler.release(admittedCodes);
+        if (request == null || request.getId() == null) {
+            return;
+        }
+        runningJobs.remove(request.getId());
+        try {
+            request.setStatus(GenerationStatus.FAILED);
+            request.setEndedAt(LocalDateTime.now());
+            requestRepository.save(request);
+        } catch (RuntimeException e) {
+            logger.warn("Could not close generation request {} that was not started", request.getId(), e);
+        }
+        leaseService.release(request);
+    }
+
+    // Runs the request on a job thread and gives its admitted codes back to the scheduler when it ends;
+    // a stream, if any, gets every block as it is generated and committed, then the end of the run
+    private void start(GenerationRequest request, CodeSink sink, GenerationProgress progress, boolean staged,
+                       long admittedCodes, CodeStream stream) {
+        jobExecutor.execute(() -> {
+            try {
+                if (stream != null) {
+                    codeService.runGeneration(request, sink, progress, staged, stream::generated, stream::persisted);
+                } else {
+                    codeService.runGeneration(request, sink, progress, staged);
+                }
+            } catch (Exception e) {
+                logger.error("Generation request {} failed", request.getId(), e);
+            } finally {
+                runningJobs.remove(request.getId());
+                generationScheduler.release(admittedCodes);
+                if (stream != null) {
+                    stream.end();
+                }
+            }
+        });
+    }
+
+    /**
+     * Report the progress of a request, live while it runs and from the database afterwards.
+     *
+     * @param id Id of the GenerationRequest.
+     * @return The status of the request.
+     * @throws GenerationRequestNotFoundException If there is no such request.
+     */
+    public GenerationStatusResponse getStatus(long id) throws GenerationRequestNotFoundException {
+        GenerationRequest request = findRequest(id);
+        GenerationStatusResponse status = new GenerationStatusResponse();
+        status.setId(id);
+        status.setNumberOfCodes(request.getNumberOfCodes());
+        status.setStartedAt(request.getStartedAt());
+        status.setResumed(request.getResumedAt() != null);
+        status.setResumedAt(request.getResumedAt());
+        status.setTenant(request.getTenant());
+        status.setPriority(request.getPriority());
+        GenerationProgress progress = runningJobs.get(id);
+        if (progress != null) {
+            long persisted = progress.getCodesPersisted();
+            status.setStatus(GenerationStatus.RUNNING);
+            status.setCodesPersisted(persisted);
+            status.setCodesPerSecond(progress.getCodesPerSecond());
+            status.setEtaSeconds(progress.getEtaSeconds());
+            status.setQueued(progress.isQueued());
+            status.setQueueDepth(generationScheduler.getQueueDepth());
+            status.setQueueWaitSeconds(progress.getQueueWaitNanos() / 1e9);
+            status.setCodesInDatabase(codesInDatabase(request, persisted));
+            status.setCodeCollisions(progress.getCollisions());
+            status.setCollisionRetries(progress.getCollisionRetries());
+            return status;
+        }
+        // Finished (or left behind by a previous process): only the stored outcome is known
+        long persisted = request.getCodesPersisted() != null ? request.getCodesPersisted() : 0L;
+        long inDatabase = codesInDatabase(request, persisted);
+        boolean durable = isDurable(request.getStatus());
+        status.setStatus(request.getStatus());
+        status.setCodesPersisted(persisted);
+        status.setEndedAt(request.getEndedAt());
+        status.setQueueWaitSeconds(request.getQueueWaitSeconds());
+        status.setCodesInDatabase(inDatabase);
+        status.setDurable(durable);
+        status.setInDatabase(durable && inDatabase >= persisted);
+        status.setCodeCollisions(request.getCodeCollisions() != null ? request.getCodeCollisions() : 0L);
+        status.setCollisionRetries(request.getCollisionRetries() != null ? request.getCollisionRetries() : 0L);
+        return status;
+    }
+
+    // Requests that finished successfully, or a reservoir's, which only ever records committed codes: all their
+    // persisted codes are committed, whether written directly, published from a staging table or through the journal
+    private static boolean isDurable(GenerationStatus status) {
+        return status == GenerationStatus.COMPLETED || status == GenerationStatus.COMMITTED
+                || status == GenerationStatus.RESERVOIR;
+    }
+
+    // Every other sink writes straight into generated_codes; journal codes only once drained
+    private static long codesInDatabase(GenerationRequest request, long persisted) {
+        if (!JournalCodeSink.NAME.equals(request.getSink())) {
+            return persisted;
+        }
+        return request.getCodesInDatabase() != null ? request.getCodesInDatabase() : 0L;
+    }
+
+    /**
+     * Stop a running request before its next chunk. Codes already persisted are kept, unless the
+     * request is staged.
+     *
+     * @param id Id of the GenerationRequest.
+     * @return true if the request was running and is now being cancelled.
+     * @throws GenerationRequestNotFoundException If there is no such request.
+     */
+    public boolean cancel(long id) throws GenerationRequestNotFoundException {
+        findRequest(id);
+        GenerationProgress progress = runningJobs.get(id);
+        if (progress == null) {
+            return false;
+        }
+        progress.cancel();
+        return true;
+    }
+
+    private GenerationRequest findRequest(long id) throws GenerationRequestNotFoundException {
+        Optional<GenerationRequest> request = requestRepository.findById(id);
+        return request.orElseThrow(() -> new GenerationRequestNotFoundException("Generation request " + id + " not found"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (recoveryExecutor != null) {
+            recoveryExecutor.shutdownNow();
+        }
+        runningJobs.values().forEach(GenerationProgress::cancel);
+        jobExecutor.shutdown();
+    }
+}
@@ -0,0 +1,165 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.config.CodeGeneratorProperties;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequest;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Leases on generation requests, so backend instances sharing a database never work on the same request.
+ *
+ * A request is leased to its process when it is created or resumed, and the lease is given up when the
+ * run ends. A heartbeat renews the leases of this process every third of code-generator.resume.lease-duration;
+ * a request whose lease expired was left behind by a process that stopped, and another process may take
+ * it over. Taking over is one conditional UPDATE, so of two processes trying at once only one gets it.
+ * Expiry is judged by each process's own clock, which must agree to well within the lease duration.
+ */
+@Service
+public class GenerationLeaseService {
+    private static final Logger logger = LoggerFactory.getLogger(GenerationLeaseService.class);
+
+    private static final String ACQUIRE_SQL = "UPDATE generation_request SET owner = ?, lease_expires_at = ?"
+            + " WHERE id = ? AND (lease_expires_at IS NULL OR lease_expires_at < ? OR owner = ?)";
+    private static final String RENEW_SQL =
+            "UPDATE generation_request SET lease_expires_at = ? WHERE owner = ? AND lease_expires_at IS NOT NULL";
+    private static final String RELEASE_SQL =
+            "UPDATE generation_request SET lease_expires_at = NULL WHERE id = ? AND owner = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration leaseDuration;
+    private final String owner;
+    private final Clock clock;
+    private ScheduledExecutorService heartbeat;
+
+    @Autowired
+    public GenerationLeaseService(JdbcTemplate jdbcTemplate, CodeGeneratorProperties properties) {
+        this(jdbcTemplate, properties.getResume().getLeaseDuration(), processName(), Clock.systemDefaultZone());
+    }
+
+    GenerationLeaseService(JdbcTemplate jdbcTemplate, Duration leaseDuration, String owner, Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.leaseDuration = leaseDuration;
+        this.owner = owner;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void start() {
+        heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "generation-lease-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, leaseDuration.toMillis() / 3);
+        heartbeat.scheduleWithFixedDelay(this::renew, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+        }
+    }
+
+    /**
+     * @return Name of this process in the owner column of its requests.
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Lease a request that is not saved yet to this process.
+     *
+     * @param request The new GenerationRequest.
+     */
+    public void assign(GenerationRequest request) {
+        request.setOwner(owner);
+        request.setLeaseExpiresAt(LocalDateTime.now(clock).plus(leaseDuration));
+    }
+
+    /**
+     * Take a saved request over, if no other process holds a lease on it that has not expired.
+     *
+     * @param request The saved GenerationRequest.
+     * @return true if the request is now leased to this process.
+     */
+    public boolean acquire(GenerationRequest request) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        LocalDateTime expiresAt = now.plus(leaseDuration);
+        if (jdbcTemplate.update(ACQUIRE_SQL, owner, expiresAt, request.getId(), now, owner) != 1) {
+            return false;
+        }
+        request.setOwner(owner);
+        request.setLeaseExpiresAt(expiresAt);
+        return true;
+    }
+
+    /**
+     * Give up the lease on a request whose run ended, so any process may resume it right away.
+     *
+     * @param request The GenerationRequest.
+     */
+    public void release(GenerationRequest request) {
+        try {
+            jdbcTemplate.update(RELEASE_SQL, request.getId(), owner);
+            request.setLeaseExpiresAt(null);
+        } catch (RuntimeException e) {
+            // The heartbeat keeps renewing it, other processes can only resume it once this one stops
+            logger.warn("Could not release the lease on generation request {}", request.getId(), e);
+        }
+    }
+
+    /**
+     * @param request A GenerationRequest as read from the database.
+     * @return Whether no process holds a lease on it any more.
+     */
+    public boolean isExpired(GenerationRequest request) {
+        return request.getLeaseExpiresAt() == null || request.getLeaseExpiresAt().isBefore(LocalDateTime.now(clock));
+    }
+
+    /**
+     * Extend every lease this process holds by the lease duration.
+     *
+     * @return Number of requests renewed.
+     */
+    int renew() {
+        try {
+            return jdbcTemplate.update(RENEW_SQL, LocalDateTime.now(clock).plus(leaseDuration), owner);
+        } catch (RuntimeException e) {
+            logger.warn("Could not renew the leases of {}", owner, e);
+            return 0;
+        }
+    }
+
+    // Host name plus a random part, a restarted process does not hold the leases of its predecessor
+    private static String processName() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        if (host.length() > 48) {
+            host = host.substring(0, 48);
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,153 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Meters of the generation path, published under /actuator/metrics and /actuator/prometheus.
+ *
+ * Every meter is tagged with the size bucket of its request rather than the request id, so the number
+ * of time series stays fixed however many requests run, and with the sink where the write path differs.
+ * Together with the insertion scheduler's admission metrics and hikaricp.connections.* they show where
+ * concurrent requests saturate: generators, the write slots, the pool or the database.
+ */
+@Service
+public class GenerationMetrics {
+
+    // Upper bounds of the size buckets, larger requests fall into "10M+"
+    private static final long[] SIZE_BUCKETS = {10_000L, 100_000L, 1_000_000L, 10_000_000L};
+    private static final String[] SIZE_BUCKET_NAMES = {"10K", "100K", "1M", "10M", "10M+"};
+
+    private final MeterRegistry meterRegistry;
+    // Batches in sink.write per size bucket, read by the codegen.writes.active gauges
+    private final Map<String, AtomicInteger> activeWrites = new ConcurrentHashMap<>();
+
+    @Autowired
+    public GenerationMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param numberOfCodes Codes of a request.
+     * @return The size tag of the request: the smallest bucket of 10K, 100K, 1M or 10M codes it fits in, or 10M+.
+     */
+    public static String sizeBucket(long numberOfCodes) {
+        for (int i = 0; i < SIZE_BUCKETS.length; i++) {
+            if (numberOfCodes <= SIZE_BUCKETS[i]) {
+                return SIZE_BUCKET_NAMES[i];
+            }
+        }
+        return SIZE_BUCKET_NAMES[SIZE_BUCKETS.length];
+    }
+
+    /**
+     * Count a request accepted by an endpoint.
+     *
+     * @param endpoint Which endpoint, e.g. "generate", "submit" or "claim".
+     * @param numberOfCodes Codes asked for.
+     */
+    public void recordRequest(String endpoint, long numberOfCodes) {
+        String size = sizeBucket(numberOfCodes);
+        Counter.builder("codegen.requests")
+                .description("Generation requests accepted")
+                .tags("endpoint", endpoint, "size", size)
+                .register(meterRegistry)
+                .increment();
+        Counter.builder("codegen.codes.requested")
+                .description("Codes asked for by accepted requests")
+                .tags("endpoint", endpoint, "size", size)
+                .register(meterRegistry)
+                .increment(numberOfCodes);
+    }
+
+    /**
+     * Write one batch through the sink, timing it and counting its codes once it is committed.
+     *
+     * @param size Size bucket of the request.
+     * @param sink Name of the sink.
+     * @param codes Codes in the batch.
+     * @param write The write, run on the calling thread.
+     * @throws Exception What the write throws; a failed batch is timed but not counted as persisted.
+     */
+    public void recordBatchWrite(String size, String sink, int codes, InsertionScheduler.Write write) throws Exception {
+        AtomicInteger active = activeWrites(size);
+        active.incrementAndGet();
+        long started = System.nanoTime();
+        boolean written = false;
+        try {
+            write.run();
+            written = true;
+        } finally {
+            active.decrementAndGet();
+            Timer.builder("codegen.batch.write")
+                    .description("Time from sending a batch to the database until it is committed")
+                    .tags("size", size, "sink", sink, "outcome", written ? "success" : "failure")
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+        Counter.builder("codegen.codes.persisted")
+                .description("Codes committed to the database")
+                .tags("size", size, "sink", sink)
+                .register(meterRegistry)
+                .increment(codes);
+    }
+
+    /**
+     * Record the time from opening a code stream until its first batch of codes is sent, as soon as it is
+     * generated and before it is committed.
+     *
+     * @param nanos The time in nanoseconds.
+     */
+    public void recordTimeToFirstCodes(long nanos) {
+        Timer.builder("codegen.stream.first.codes")
+                .description("Time from opening a code stream until its first codes are sent")
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record the stage times of a finished chunk.
+     *
+     * @param size Size bucket of the request.
+     * @param sink Name of the sink.
+     * @param stats Stage times of the chunk's pipeline.
+     */
+    public void recordChunk(String size, String sink, CodeGenerationPipeline.Stats stats) {
+        // Busy time summed over the stage's workers, comparable to the wall time times the worker count
+        chunkTimer("codegen.chunk.generate", "Generator busy time per chunk", size, sink)
+                .record(stats.generateNanos(), TimeUnit.NANOSECONDS);
+        chunkTimer("codegen.chunk.write", "Writer busy time per chunk, admission wait included", size, sink)
+                .record(stats.writeNanos(), TimeUnit.NANOSECONDS);
+        chunkTimer("codegen.chunk.duration", "Wall time per chunk", size, sink)
+                .record(stats.wallNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private Timer chunkTimer(String name, String description, String size, String sink) {
+        return Timer.builder(name)
+                .description(description)
+                .tags("size", size, "sink", sink)
+                .register(meterRegistry);
+    }
+
+    private AtomicInteger activeWrites(String size) {
+        return activeWrites.computeIfAbsent(size, bucket -> {
+            AtomicInteger active = new AtomicInteger();
+            Gauge.builder("codegen.writes.active", active, AtomicInteger::get)
+                    .description("Batches of requests of this size being written right now")
+                    .tag("size", bucket)
+                    .register(meterRegistry);
+            return active;
+        });
+    }
+}
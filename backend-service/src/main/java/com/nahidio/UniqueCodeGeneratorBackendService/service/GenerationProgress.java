@@ -0,0 +1,137 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live progress of one running GenerationRequest.
+ *
+ * Insert workers only add to a LongAdder, so reporting progress costs no lock and no shared
+ * cache line on the hot path; readers sum the adder when the status is polled.
+ */
+public class GenerationProgress {
+
+    private final long numberOfCodes;
+    private final long startNanos = System.nanoTime();
+    private final LongAdder codesPersisted = new LongAdder();
+    // Busy time of the generator and writer stages, summed over chunks and workers
+    private final LongAdder generateNanos = new LongAdder();
+    private final LongAdder writeNanos = new LongAdder();
+    // Time chunks waited for a scheduler slot, and whether one is waiting right now
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private volatile boolean queued;
+    // Slot of the chunk in progress, suspended while its workers wait for a streaming client
+    private volatile GenerationScheduler.Slot slot;
+    // Codes replaced because they were already persisted, and the extra batch writes that took
+    private final LongAdder collisions = new LongAdder();
+    private final LongAdder collisionRetries = new LongAdder();
+    // Codes a previous run of a resumed request persisted, left out of the rate
+    private volatile long codesResumed;
+    private volatile boolean cancelled;
+
+    public GenerationProgress(long numberOfCodes) {
+        this.numberOfCodes = numberOfCodes;
+    }
+
+    public void addPersisted(long codes) {
+        codesPersisted.add(codes);
+    }
+
+    /**
+     * Count codes persisted before the request was resumed.
+     */
+    public void addResumed(long codes) {
+        codesPersisted.add(codes);
+        codesResumed += codes;
+    }
+
+    /**
+     * Add the stage times of a finished chunk.
+     */
+    public void addStageTimes(CodeGenerationPipeline.Stats stats) {
+        generateNanos.add(stats.generateNanos());
+        writeNanos.add(stats.writeNanos());
+    }
+
+    public long getGenerateNanos() {
+        return generateNanos.sum();
+    }
+
+    public long getWriteNanos() {
+        return writeNanos.sum();
+    }
+
+    public void addQueueWait(long nanos) {
+        queueWaitNanos.add(nanos);
+    }
+
+    public long getQueueWaitNanos() {
+        return queueWaitNanos.sum();
+    }
+
+    public void setQueued(boolean queued) {
+        this.queued = queued;
+    }
+
+    public boolean isQueued() {
+        return queued;
+    }
+
+    public void setSlot(GenerationScheduler.Slot slot) {
+        this.slot = slot;
+    }
+
+    public GenerationScheduler.Slot getSlot() {
+        return slot;
+    }
+
+    public void addCollisions(CollisionResolver.Outcome outcome) {
+        collisions.add(outcome.collisions());
+        collisionRetries.add(outcome.retries());
+    }
+
+    public long getCollisions() {
+        return collisions.sum();
+    }
+
+    public long getCollisionRetries() {
+        return collisionRetries.sum();
+    }
+
+    public long getCodesPersisted() {
+        return codesPersisted.sum();
+    }
+
+    public long getNumberOfCodes() {
+        return numberOfCodes;
+    }
+
+    /**
+     * Average persisted codes per second since the run started.
+     */
+    public double getCodesPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        return seconds > 0 ? (getCodesPersisted() - codesResumed) / seconds : 0;
+    }
+
+    /**
+     * Seconds until every code is persisted at the current rate, or null before the first batch.
+     */
+    public Long getEtaSeconds() {
+        double rate = getCodesPerSecond();
+        if (rate <= 0) {
+            return null;
+        }
+        return (long) Math.ceil((numberOfCodes - getCodesPersisted()) / rate);
+    }
+
+    /**
+     * Ask the run to stop before its next chunk.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,9 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+/**
+ * Published once a GenerationRequest has reached its final status and been saved.
+ *
+ * @param generationRequestId Id of the request.
+ */
+public record GenerationRequestFinishedEvent(long generationRequestId) {
+}
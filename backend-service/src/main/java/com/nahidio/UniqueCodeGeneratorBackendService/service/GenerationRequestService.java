@@ -1,34 +1,80 @@
 package com.nahidio.UniqueCodeGeneratorBackendService.service;
 
-import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 
-import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequest;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequestSummary;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationStats;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationStatus;
+import com.nahidio.UniqueCodeGeneratorBackendService.error.GenerationRequestNotFoundException;
 import com.nahidio.UniqueCodeGeneratorBackendService.repository.GenerationRequestRepository;
 
 @Service
 public class GenerationRequestService {
 
+    public static final String STATS_CACHE = "generationStats";
+
     @Autowired
     private GenerationRequestRepository requestRepository;
 
-    public List<GenerationRequest> findAllRequests() {
-        try {
-            List<GenerationRequest> requests = requestRepository.findAll();
-            
-            // // Initializing for each request to prevent lazy initialization issues
-            // for(GenerationRequest request : requests) {
-            //     Hibernate.initialize(request.getGeneratedCodes());
-            // }
-            
-            return requests;
-        } catch(Exception e) {
-            e.printStackTrace(); // Log the full stack trace
+    /**
+     * One page of the generation history as projections, without loading entities.
+     *
+     * @param pageable Page number, size and sort, e.g. by startedAt.
+     * @return The page.
+     */
+    public Page<GenerationRequestSummary> findRequests(Pageable pageable) {
+        return requestRepository.findByStatusIsNullOrStatusNot(GenerationStatus.RESERVOIR, pageable);
+    }
+
+    /**
+     * Aggregates over all completed and committed requests, cached until the next request finishes.
+     *
+     * @return Total codes and throughput percentiles.
+     */
+    @Cacheable(STATS_CACHE)
+    public GenerationStats getStats() {
+        List<GenerationRequestSummary> completed = requestRepository.findByStatusIn(
+                List.of(GenerationStatus.COMPLETED, GenerationStatus.COMMITTED));
+        long totalCodes = 0;
+        for (GenerationRequestSummary request : completed) {
+            totalCodes += request.getCodesPersisted() != null ? request.getCodesPersisted() : request.getNumberOfCodes();
+        }
+        double[] throughputs = completed.stream()
+                .map(GenerationRequestSummary::getCodesPerSecond)
+                .filter(Objects::nonNull)
+                .mapToDouble(Double::doubleValue)
+                .sorted()
+                .toArray();
+        return new GenerationStats(completed.size(), totalCodes, percentile(throughputs, 50), percentile(throughputs, 95));
+    }
+
+    @EventListener
+    @CacheEvict(value = STATS_CACHE, allEntries = true)
+    public void onRequestFinished(GenerationRequestFinishedEvent event) {
+    }
+
+    public GenerationRequest findRequest(long id) throws GenerationRequestNotFoundException {
+        Optional<GenerationRequest> request = requestRepository.findById(id);
+        return request.orElseThrow(() -> new GenerationRequestNotFoundException("Generation request " + id + " not found"));
+    }
+
+    // Nearest-rank percentile of sorted values, 0 when there are none
+    static double percentile(double[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
         }
-        return Collections.emptyList();  // Return an empty list instead of null
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
     }
-}
\ No newline at end of file
+}
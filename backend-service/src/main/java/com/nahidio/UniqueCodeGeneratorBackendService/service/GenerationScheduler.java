@@ -0,0 +1,331 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationPriority;
+import com.nahidio.UniqueCodeGeneratorBackendService.error.GenerationBacklogFullException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Admission control and fair ordering in front of code generation.
+ *
+ * Requests are admitted while the codes of unfinished requests stay within the backlog limit, beyond
+ * it they are rejected. Every chunk of an admitted request then waits for one of a fixed number of
+ * chunk slots. Waiting chunks are granted in start-time fair queuing order: each tenant is a flow
+ * whose chunks are tagged with a virtual start time that advances by chunk size / priority weight,
+ * and the smallest tag runs next. A tenant with one huge request therefore gets its weighted share of
+ * the slots, and a burst of small requests from other tenants is interleaved instead of queued behind it.
+ * A chunk that cannot make progress, e.g. because its workers wait for a slow streaming client, may
+ * suspend its slot: it is given to the next waiting chunk and taken back, ahead of the queue, once the
+ * chunk can go on. At most chunk-slots slots are suspended at once, so no more than twice chunk-slots
+ * chunks, and their writers, are ever in progress.
+ */
+public class GenerationScheduler {
+
+    /**
+     * A granted chunk slot, released by close().
+     */
+    public final class Slot implements AutoCloseable {
+        private final long waitNanos;
+        // Guarded by lock
+        private boolean closed;
+        private boolean held = true;
+        private int suspensions;
+
+        private Slot(long waitNanos) {
+            this.waitNanos = waitNanos;
+        }
+
+        // Time the chunk waited for the slot
+        public long getWaitNanos() {
+            return waitNanos;
+        }
+
+        /**
+         * Give the slot to waiting chunks while this one cannot make progress. Every worker of the chunk
+         * that starts waiting calls it, and resume() when it stops; the slot is given back on the first
+         * call, unless chunk-slots slots are suspended already, and taken again after the last resume().
+         */
+        public void suspend() {
+            lock.lock();
+            try {
+                suspensions++;
+                if (held && !closed && suspended < chunkSlots) {
+                    held = false;
+                    suspended++;
+                    running--;
+                    signalNext();
+                }
+                // A worker of this chunk waiting in resume() does not need the slot any more
+                resumable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * End a suspend() call, waiting for a free slot ahead of the queued chunks if the slot was given away.
+         */
+        public void resume() {
+            lock.lock();
+            try {
+                suspensions--;
+                if (held || closed) {
+                    return;
+                }
+                resuming++;
+                try {
+                    while (running >= chunkSlots && suspensions == 0 && !closed) {
+                        resumable.awaitUninterruptibly();
+                    }
+                } finally {
+                    resuming--;
+                }
+                if (suspensions == 0 && !closed) {
+                    held = true;
+                    suspended--;
+                    running++;
+                }
+                signalNext();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (held) {
+                    release();
+                } else {
+                    suspended--;
+                    signalNext();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // A chunk waiting for a slot; its start tag moves back while earlier chunks of its tenant are granted
+    private static final class Waiter {
+        private final String tenant;
+        private final double cost;
+        private final long sequence;
+        private final Condition turn;
+        private double startTag;
+
+        private Waiter(String tenant, double cost, long sequence, Condition turn, double startTag) {
+            this.tenant = tenant;
+            this.cost = cost;
+            this.sequence = sequence;
+            this.turn = turn;
+            this.startTag = startTag;
+        }
+    }
+
+    private final int chunkSlots;
+    private final long maxBacklogCodes;
+    private final AtomicLong backlogCodes = new AtomicLong();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Guarded by lock
+    private final PriorityQueue<Waiter> waiting = new PriorityQueue<>((a, b) -> a.startTag != b.startTag
+            ? Double.compare(a.startTag, b.startTag)
+            : Long.compare(a.sequence, b.sequence));
+    private final Map<String, Double> lastFinishTag = new HashMap<>();
+    private double virtualTime;
+    private long sequence;
+    private int running;
+    // Slots given away by suspended chunks, and chunks waiting to take theirs back
+    private int suspended;
+    private int resuming;
+    private final Condition resumable = lock.newCondition();
+
+    private final Counter rejected;
+    private final Map<GenerationPriority, Timer> waitTimers = new EnumMap<>(GenerationPriority.class);
+
+    /**
+     * @param chunkSlots Chunks that run at the same time across all requests.
+     * @param maxBacklogCodes Codes of unfinished requests above which new requests are rejected.
+     * @param meterRegistry Registry the queue metrics are published to.
+     */
+    public GenerationScheduler(int chunkSlots, long maxBacklogCodes, MeterRegistry meterRegistry) {
+        if (chunkSlots < 1) {
+            throw new IllegalArgumentException("At least one chunk slot is required");
+        }
+        this.chunkSlots = chunkSlots;
+        this.maxBacklogCodes = maxBacklogCodes;
+        this.rejected = Counter.builder("codegen.scheduler.rejected")
+                .description("Requests rejected because the backlog was full")
+                .register(meterRegistry);
+        Gauge.builder("codegen.scheduler.queue.depth", this, GenerationScheduler::getQueueDepth)
+                .description("Chunks waiting for a slot")
+                .register(meterRegistry);
+        Gauge.builder("codegen.scheduler.running", this, GenerationScheduler::getRunning)
+                .description("Chunks holding a slot")
+                .register(meterRegistry);
+        Gauge.builder("codegen.scheduler.suspended", this, GenerationScheduler::getSuspended)
+                .description("Slots given away by chunks waiting for a streaming client")
+                .register(meterRegistry);
+        Gauge.builder("codegen.scheduler.backlog", backlogCodes, AtomicLong::get)
+                .description("Codes of admitted requests that have not finished")
+                .register(meterRegistry);
+        for (GenerationPriority priority : GenerationPriority.values()) {
+            waitTimers.put(priority, Timer.builder("codegen.scheduler.wait")
+                    .description("Time a chunk waits for a slot")
+                    .tag("priority", priority.name())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Accept the codes of a request into the backlog; release them with release(long) when it ends.
+     *
+     * @param numberOfCodes Codes the request still has to generate.
+     * @throws GenerationBacklogFullException If they do not fit into the backlog.
+     */
+    public void admit(long numberOfCodes) throws GenerationBacklogFullException {
+        long backlog;
+        do {
+            backlog = backlogCodes.get();
+            // A request larger than the whole backlog is still admitted when nothing else is waiting
+            if (backlog > 0 && backlog + numberOfCodes > maxBacklogCodes) {
+                rejected.increment();
+                throw new GenerationBacklogFullException("The generation backlog is full (" + backlog + " of "
+                        + maxBacklogCodes + " codes queued), retry later or ask for fewer codes");
+            }
+        } while (!backlogCodes.compareAndSet(backlog, backlog + numberOfCodes));
+    }
+
+    /**
+     * Take the codes of an ended request out of the backlog.
+     */
+    public void release(long numberOfCodes) {
+        backlogCodes.addAndGet(-numberOfCodes);
+    }
+
+    /**
+     * Wait for a chunk slot in fair order.
+     *
+     * @param tenant Flow the chunk is accounted to.
+     * @param priority Weight of the chunk within its flow's share.
+     * @param chunkSize Codes of the chunk, the cost it is tagged with.
+     * @return The slot, to be closed when the chunk is done.
+     * @throws InterruptedException If interrupted while waiting; no slot is held then.
+     */
+    public Slot acquire(String tenant, GenerationPriority priority, long chunkSize) throws InterruptedException {
+        long started = System.nanoTime();
+        lock.lock();
+        try {
+            double startTag = Math.max(virtualTime, lastFinishTag.getOrDefault(tenant, 0.0));
+            Waiter waiter = new Waiter(tenant, (double) chunkSize / priority.getWeight(), sequence++,
+                    lock.newCondition(), startTag);
+            waiting.add(waiter);
+            try {
+                while (running >= chunkSlots || resuming > 0 || waiting.peek() != waiter) {
+                    waiter.turn.await();
+                }
+            } catch (InterruptedException e) {
+                waiting.remove(waiter);
+                signalNext();
+                throw e;
+            }
+            waiting.poll();
+            running++;
+            virtualTime = Math.max(virtualTime, waiter.startTag);
+            // Only a granted chunk advances its tenant, one that gave up waiting leaves no gap behind
+            double finishTag = waiter.startTag + waiter.cost;
+            lastFinishTag.put(tenant, finishTag);
+            List<Waiter> behind = waiting.stream()
+                    .filter(other -> other.tenant.equals(tenant) && other.startTag < finishTag)
+                    .toList();
+            waiting.removeAll(behind);
+            for (Waiter other : behind) {
+                other.startTag = finishTag;
+                waiting.add(other);
+            }
+            signalNext();
+        } finally {
+            lock.unlock();
+        }
+        long waitNanos = System.nanoTime() - started;
+        waitTimers.get(priority).record(waitNanos, TimeUnit.NANOSECONDS);
+        return new Slot(waitNanos);
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getRunning() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getSuspended() {
+        lock.lock();
+        try {
+            return suspended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getBacklogCodes() {
+        return backlogCodes.get();
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            running--;
+            // Tenants that are no further ahead than the virtual clock start from it again anyway
+            lastFinishTag.values().removeIf(finishTag -> finishTag <= virtualTime);
+            signalNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Wake the chunks taking back a suspended slot if a slot is free, else the head of the queue; called with the lock held
+    private void signalNext() {
+        if (running >= chunkSlots) {
+            return;
+        }
+        if (resuming > 0) {
+            resumable.signalAll();
+            return;
+        }
+        Waiter next = waiting.peek();
+        if (next != null) {
+            next.turn.signal();
+        }
+    }
+}
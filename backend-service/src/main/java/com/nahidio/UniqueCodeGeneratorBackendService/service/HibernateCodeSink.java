@@ -0,0 +1,60 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GeneratedCode;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequest;
+
+/**
+ * Writes batches as GeneratedCode entities through a StatelessSession.
+ * A stateless session is a lightweight alternative to the standard session,
+ * ideal for bulk database operations as it does not keep track of persistent objects.
+ * Because of the IDENTITY id every insert is still its own round trip.
+ */
+public class HibernateCodeSink implements CodeSink {
+
+    public static final String NAME = "hibernate";
+
+    private final SessionFactory sessionFactory;
+
+    public HibernateCodeSink(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public void write(CodeBlock block) {
+        // Only the id of the request is needed for the foreign key
+        GenerationRequest request = null;
+
+        StatelessSession session = sessionFactory.openStatelessSession();
+        Transaction tx = session.beginTransaction();
+        try {
+            for (int i = 0; i < block.size(); i++) {
+                long requestId = block.getGenerationRequestId(i);
+                if (request == null || request.getId() != requestId) {
+                    request = new GenerationRequest();
+                    request.setId(requestId);
+                }
+                GeneratedCode generatedCode = new GeneratedCode();
+                generatedCode.setCode(block.getFormat().format(block.get(i)));
+                generatedCode.setGenerationRequest(request);
+                session.insert(generatedCode);
+            }
+            tx.commit();
+        } catch (RuntimeException e) {
+            // Rollback the current transaction due to the exception
+            tx.rollback();
+            // Rethrow the exception so the outer code can detect the error
+            throw e;
+        } finally {
+            session.close();
+        }
+    }
+}
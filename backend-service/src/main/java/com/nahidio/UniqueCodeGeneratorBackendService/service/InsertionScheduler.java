@@ -0,0 +1,124 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Application-wide executor for the generation pipeline.
+ *
+ * All requests run their generator and writer workers here instead of creating a thread pool per
+ * chunk. Writes are admitted through one fair semaphore sized from the connection pool, so
+ * concurrent requests share the available connections batch by batch instead of competing for them.
+ * The time a write waits for admission is recorded as codegen.insertion.admission.wait. It ends before
+ * the write asks the pool for a connection; the pool wait itself is Hikari's hikaricp.connections.acquire.
+ */
+public class InsertionScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(InsertionScheduler.class);
+
+    /**
+     * A database write run under an admission permit.
+     */
+    @FunctionalInterface
+    public interface Write {
+        void run() throws Exception;
+    }
+
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int maxConcurrentWrites;
+    private final AtomicInteger activeWrites = new AtomicInteger();
+    private final Timer admissionWait;
+
+    /**
+     * @param maxConcurrentWrites Writes allowed at the same time across all requests.
+     * @param virtualThreads Run workers on virtual threads when the JVM supports them.
+     * @param meterRegistry Registry the admission metrics are published to.
+     */
+    public InsertionScheduler(int maxConcurrentWrites, boolean virtualThreads, MeterRegistry meterRegistry) {
+        if (maxConcurrentWrites < 1) {
+            throw new IllegalArgumentException("At least one concurrent write is required");
+        }
+        this.maxConcurrentWrites = maxConcurrentWrites;
+        this.permits = new Semaphore(maxConcurrentWrites, true);
+        this.executor = createExecutor(virtualThreads);
+        this.admissionWait = Timer.builder("codegen.insertion.admission.wait")
+                .description("Time a batch waits for a database write slot")
+                .register(meterRegistry);
+        Gauge.builder("codegen.insertion.writes.active", activeWrites, AtomicInteger::get)
+                .description("Batches being written right now")
+                .register(meterRegistry);
+        Gauge.builder("codegen.insertion.writes.waiting", permits, Semaphore::getQueueLength)
+                .description("Batches waiting for a database write slot")
+                .register(meterRegistry);
+        logger.info("Insertion scheduler admits {} concurrent writes", maxConcurrentWrites);
+    }
+
+    /**
+     * The shared executor the pipeline workers run on. It is unbounded; the number of concurrent
+     * writes is limited by {@link #write(Write)}.
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Run a database write once a slot is free.
+     *
+     * @param write The write to run.
+     * @throws Exception What the write throws, or InterruptedException while waiting for a slot.
+     */
+    public void write(Write write) throws Exception {
+        long start = System.nanoTime();
+        permits.acquire();
+        admissionWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        activeWrites.incrementAndGet();
+        try {
+            write.run();
+        } finally {
+            activeWrites.decrementAndGet();
+            permits.release();
+        }
+    }
+
+    public int getMaxConcurrentWrites() {
+        return maxConcurrentWrites;
+    }
+
+    public int getActiveWrites() {
+        return activeWrites.get();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static ExecutorService createExecutor(boolean virtualThreads) {
+        if (virtualThreads) {
+            try {
+                // Looked up reflectively: virtual threads need Java 21, the build targets 17
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                logger.info("Insertion workers run on virtual threads");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                logger.warn("Virtual threads are not available on this JVM, using platform threads");
+            }
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "insertion-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
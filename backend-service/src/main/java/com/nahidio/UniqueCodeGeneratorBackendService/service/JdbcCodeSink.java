@@ -0,0 +1,117 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+/**
+ * Writes batches with multi-row INSERT statements on a pooled JDBC connection.
+ *
+ * GeneratedCode uses an IDENTITY id, which makes Hibernate give up on JDBC batching, so this sink
+ * bypasses Hibernate: each statement carries rowsPerStatement rows and the statements of a block
+ * are sent as one JDBC batch and committed together.
+ */
+public class JdbcCodeSink implements CodeSink {
+
+    public static final String NAME = "jdbc";
+
+    private final DataSource dataSource;
+    private final int rowsPerStatement;
+    private final CodeStorage storage;
+    private final String insertPrefix;
+    private final String fullInsertSql;
+
+    public JdbcCodeSink(DataSource dataSource, int rowsPerStatement) {
+        this(dataSource, rowsPerStatement, CodeStorage.CHAR);
+    }
+
+    public JdbcCodeSink(DataSource dataSource, int rowsPerStatement, CodeStorage storage) {
+        this(dataSource, rowsPerStatement, storage, "generated_codes");
+    }
+
+    private JdbcCodeSink(DataSource dataSource, int rowsPerStatement, CodeStorage storage, String table) {
+        if (rowsPerStatement < 1) {
+            throw new IllegalArgumentException("rowsPerStatement must be at least 1");
+        }
+        this.dataSource = dataSource;
+        this.rowsPerStatement = rowsPerStatement;
+        this.storage = storage;
+        this.insertPrefix = "INSERT INTO " + table + " (code, generation_request_id) VALUES ";
+        this.fullInsertSql = insertSql(rowsPerStatement);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean supportsStaging() {
+        return true;
+    }
+
+    @Override
+    public CodeSink withTable(String table) {
+        return new JdbcCodeSink(dataSource, rowsPerStatement, storage, table);
+    }
+
+    @Override
+    public void write(CodeBlock block) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                insert(connection, block);
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    // Inserts the rows of the block on a connection whose transaction the caller commits
+    void insert(Connection connection, CodeBlock block) throws SQLException {
+        char[] digits = new char[CodeFormat.MAX_LENGTH];
+        int fullStatements = block.size() / rowsPerStatement;
+        int remainder = block.size() % rowsPerStatement;
+
+        if (fullStatements > 0) {
+            try (PreparedStatement statement = connection.prepareStatement(fullInsertSql)) {
+                for (int s = 0; s < fullStatements; s++) {
+                    bindRows(statement, block, s * rowsPerStatement, rowsPerStatement, digits);
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+            }
+        }
+        if (remainder > 0) {
+            try (PreparedStatement statement = connection.prepareStatement(insertSql(remainder))) {
+                bindRows(statement, block, fullStatements * rowsPerStatement, remainder, digits);
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    private void bindRows(PreparedStatement statement, CodeBlock block, int from, int rows, char[] digits)
+            throws SQLException {
+        int parameter = 1;
+        for (int i = from; i < from + rows; i++) {
+            storage.bind(statement, parameter++, block.get(i), block.getFormat(), digits);
+            statement.setLong(parameter++, block.getGenerationRequestId(i));
+        }
+    }
+
+    private String insertSql(int rows) {
+        StringBuilder sql = new StringBuilder(insertPrefix.length() + rows * 8);
+        sql.append(insertPrefix);
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "(?, ?)" : ", (?, ?)");
+        }
+        return sql.toString();
+    }
+}
@@ -0,0 +1,443 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32C;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Writes batches to a write-ahead journal of memory-mapped segment files instead of the database.
+ *
+ * A block is appended as one record per run of rows of the same GenerationRequest: a 24 byte
+ * header (magic, number of codes, request id, CRC32C of count, id and codes) followed by every
+ * code value as 6 big-endian bytes, like the binary export. write() returns once the records are
+ * forced to disk, so a request written here is durable when it completes, long before its codes
+ * reach generated_codes. The JournalDrainer loads the segments into the database behind the
+ * writers and deletes them once drained.
+ *
+ * Segments have a fixed size and are filled in order; a writer only reserves its region under the
+ * lock and copies and forces it concurrently with the others. A write that fails leaves its region
+ * unreadable while later ones may be durable; the region is remembered so the drainer skips it by its
+ * reserved length. Segments found in the directory at startup were left by an earlier process, their
+ * regions are unknown: the drainer scans past a record whose checksum does not match to the next
+ * valid one. A segment with bytes that could not be read is not deleted but kept aside as damaged,
+ * and records the database rejects for good are moved to a rejected file next to their segment.
+ * New records always go to a new segment.
+ */
+public class JournalCodeSink implements CodeSink {
+    private static final Logger logger = LoggerFactory.getLogger(JournalCodeSink.class);
+
+    public static final String NAME = "journal";
+
+    static final int SEGMENT_MAGIC = 0x43474A53;  // "CGJS"
+    static final int SEGMENT_VERSION = 1;
+    // Magic, version and the random id of the segment
+    static final int SEGMENT_HEADER = 16;
+    static final int RECORD_MAGIC = 0x43474A52;   // "CGJR"
+    // Magic, count, request id, checksum and 4 bytes of padding
+    static final int RECORD_HEADER = 24;
+    static final int CODE_BYTES = 6;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String DAMAGED_SUFFIX = ".damaged";
+    private static final String REJECTED_SUFFIX = ".rejected";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final SecureRandom random = new SecureRandom();
+
+    // Segments not yet drained, by sequence number
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    // Segment new records are appended to; guarded by this
+    private Segment active;
+    private MappedByteBuffer activeBuffer;
+    private long nextSequence;
+    private boolean closed;
+
+    /**
+     * A segment file, either written by this process or left by an earlier one.
+     */
+    static class Segment {
+        private final Path path;
+        private final long sequence;
+        private final String id;
+        private final boolean recovered;
+        // Bytes handed out to writers so far; guarded by the sink
+        private long reserved;
+        // Writes that reserved a region but did not yet copy it; guarded by the sink
+        private int inFlight;
+        private boolean sealed;
+        // Length of the regions whose write failed, by position; guarded by the sink
+        private final Map<Long, Integer> failedWrites = new HashMap<>();
+
+        Segment(Path path, long sequence, String id, boolean recovered, long reserved) {
+            this.path = path;
+            this.sequence = sequence;
+            this.id = id;
+            this.recovered = recovered;
+            this.reserved = reserved;
+            this.sealed = recovered;
+        }
+
+        Path getPath() {
+            return path;
+        }
+
+        long getSequence() {
+            return sequence;
+        }
+
+        // Random id from the segment header, the key of its drain checkpoint
+        String getId() {
+            return id;
+        }
+
+        boolean isRecovered() {
+            return recovered;
+        }
+    }
+
+    /**
+     * @param directory Directory of the segment files, created if missing.
+     * @param segmentSize Bytes of a segment file; a block has to fit into one.
+     * @param meterRegistry Registry the segment count is published to.
+     * @throws IOException If the directory cannot be created or read.
+     */
+    public JournalCodeSink(Path directory, int segmentSize, MeterRegistry meterRegistry) throws IOException {
+        if (segmentSize < SEGMENT_HEADER + RECORD_HEADER + CODE_BYTES) {
+            throw new IllegalArgumentException("A journal segment must hold at least one code");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        recover();
+        Gauge.builder("codegen.journal.segments", segments, ConcurrentSkipListMap::size)
+                .description("Journal segments whose codes are not all in the database yet")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public void write(CodeBlock block) throws IOException {
+        byte[] records = encode(block);
+        if (records.length > segmentSize - SEGMENT_HEADER) {
+            throw new IllegalArgumentException("A block of " + block.size() + " codes does not fit into a journal segment");
+        }
+        Segment segment;
+        MappedByteBuffer buffer;
+        int position;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("The journal is closed");
+            }
+            if (active == null || active.reserved + records.length > segmentSize) {
+                roll();
+            }
+            segment = active;
+            buffer = activeBuffer;
+            position = (int) segment.reserved;
+            segment.reserved += records.length;
+            segment.inFlight++;
+        }
+        boolean written = false;
+        try {
+            buffer.put(position, records);
+            buffer.force(position, records.length);
+            written = true;
+        } finally {
+            synchronized (this) {
+                if (!written) {
+                    // The caller fails its batch, the drainer must not load what may have reached the file
+                    segment.failedWrites.put((long) position, records.length);
+                }
+                segment.inFlight--;
+            }
+        }
+    }
+
+    public void shutdown() {
+        synchronized (this) {
+            closed = true;
+            if (active != null) {
+                active.sealed = true;
+            }
+            active = null;
+            activeBuffer = null;
+        }
+    }
+
+    /**
+     * @return Segments not yet drained, oldest first.
+     */
+    List<Segment> segments() {
+        return new ArrayList<>(segments.values());
+    }
+
+    /**
+     * @return Whether no more records will be written to the segment.
+     */
+    synchronized boolean isComplete(Segment segment) {
+        return segment.sealed && segment.inFlight == 0;
+    }
+
+    /**
+     * @return End of the records reserved in the segment so far.
+     */
+    synchronized long getEnd(Segment segment) {
+        return segment.reserved;
+    }
+
+    /**
+     * @return Length of the region at position whose write failed, 0 if there is none.
+     */
+    synchronized int getFailedWrite(Segment segment, long position) {
+        return segment.failedWrites.getOrDefault(position, 0);
+    }
+
+    /**
+     * Delete a complete segment whose records are all in the database.
+     */
+    void delete(Segment segment) throws IOException {
+        if (!isComplete(segment)) {
+            throw new IllegalStateException("Journal segment " + segment.getPath() + " is still written to");
+        }
+        Files.deleteIfExists(segment.getPath());
+        segments.remove(segment.getSequence());
+    }
+
+    /**
+     * Keep a complete segment with unreadable bytes aside, renamed with a .damaged suffix, instead of deleting it.
+     *
+     * @return The path it was moved to.
+     */
+    Path keepDamaged(Segment segment) throws IOException {
+        if (!isComplete(segment)) {
+            throw new IllegalStateException("Journal segment " + segment.getPath() + " is still written to");
+        }
+        Path damaged = segment.getPath().resolveSibling(segment.getPath().getFileName() + DAMAGED_SUFFIX);
+        Files.move(segment.getPath(), damaged, StandardCopyOption.REPLACE_EXISTING);
+        segments.remove(segment.getSequence());
+        return damaged;
+    }
+
+    /**
+     * Append a record the database does not take to the rejected file of its segment, and force it.
+     *
+     * @return The rejected file.
+     */
+    Path reject(Segment segment, ByteBuffer buffer, int position, int length) throws IOException {
+        Path rejected = segment.getPath().resolveSibling(segment.getPath().getFileName() + REJECTED_SUFFIX);
+        byte[] record = new byte[length];
+        buffer.get(position, record);
+        try (FileChannel channel = FileChannel.open(rejected, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(record));
+            channel.force(true);
+        }
+        return rejected;
+    }
+
+    /**
+     * Map a segment for reading.
+     */
+    MappedByteBuffer map(Segment segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment.getPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Read the record at position of a segment.
+     *
+     * @return The codes of the record, or null if none is there yet, or it is torn or corrupt.
+     */
+    static CodeBlock read(ByteBuffer buffer, int position) {
+        if (position + RECORD_HEADER > buffer.capacity() || buffer.getInt(position) != RECORD_MAGIC) {
+            return null;
+        }
+        int count = buffer.getInt(position + 4);
+        long generationRequestId = buffer.getLong(position + 8);
+        int checksum = buffer.getInt(position + 16);
+        if (count < 1 || position + RECORD_HEADER + (long) count * CODE_BYTES > buffer.capacity()) {
+            return null;
+        }
+        byte[] payload = new byte[count * CODE_BYTES];
+        buffer.get(position + RECORD_HEADER, payload);
+        if (checksum != checksum(count, generationRequestId, payload)) {
+            return null;
+        }
+        CodeBlock block = new CodeBlock(generationRequestId, count);
+        for (int i = 0; i < count; i++) {
+            long value = 0;
+            for (int b = 0; b < CODE_BYTES; b++) {
+                value = (value << 8) | (payload[i * CODE_BYTES + b] & 0xFF);
+            }
+            block.set(i, value);
+        }
+        return block;
+    }
+
+    /**
+     * Find the next valid record after an unreadable one. Records start at even positions, since the
+     * segment header and every record have an even length.
+     *
+     * @return Position of the next record that reads back, or -1 if there is none before end.
+     */
+    static int nextRecord(ByteBuffer buffer, int position, long end) {
+        for (int candidate = position + 2; candidate + RECORD_HEADER <= end; candidate += 2) {
+            if (buffer.getInt(candidate) == RECORD_MAGIC && read(buffer, candidate) != null) {
+                return candidate;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Whether the bytes [position, end) were never written, i.e. are all zero.
+     */
+    static boolean isBlank(ByteBuffer buffer, int position, long end) {
+        for (int i = position; i < end; i++) {
+            if (buffer.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Bytes a record of count codes takes in a segment.
+     */
+    static int recordLength(int count) {
+        return RECORD_HEADER + count * CODE_BYTES;
+    }
+
+    // One record per run of rows of the same request; a shared block has one per request
+    static byte[] encode(CodeBlock block) {
+        List<int[]> runs = new ArrayList<>();
+        int length = 0;
+        int from = 0;
+        for (int i = 1; i <= block.size(); i++) {
+            if (i == block.size() || block.getGenerationRequestId(i) != block.getGenerationRequestId(from)) {
+                runs.add(new int[] {from, i});
+                length += recordLength(i - from);
+                from = i;
+            }
+        }
+        ByteBuffer records = ByteBuffer.allocate(length);
+        for (int[] run : runs) {
+            int count = run[1] - run[0];
+            byte[] payload = new byte[count * CODE_BYTES];
+            for (int i = 0; i < count; i++) {
+                long value = block.get(run[0] + i);
+                for (int b = CODE_BYTES - 1; b >= 0; b--) {
+                    payload[i * CODE_BYTES + b] = (byte) value;
+                    value >>>= 8;
+                }
+            }
+            long generationRequestId = block.getGenerationRequestId(run[0]);
+            records.putInt(RECORD_MAGIC)
+                    .putInt(count)
+                    .putLong(generationRequestId)
+                    .putInt(checksum(count, generationRequestId, payload))
+                    .putInt(0)
+                    .put(payload);
+        }
+        return records.array();
+    }
+
+    private static int checksum(int count, long generationRequestId, byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(ByteBuffer.allocate(12).putInt(count).putLong(generationRequestId).flip());
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    // Seals the active segment and starts the next one; called under the lock
+    private void roll() throws IOException {
+        if (active != null) {
+            active.sealed = true;
+        }
+        long sequence = nextSequence++;
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+        String id = String.format("%016x", random.nextLong());
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        buffer.putInt(0, SEGMENT_MAGIC)
+                .putInt(4, SEGMENT_VERSION)
+                .putLong(8, Long.parseUnsignedLong(id, 16));
+        buffer.force(0, SEGMENT_HEADER);
+        forceDirectory();
+
+        active = new Segment(path, sequence, id, false, SEGMENT_HEADER);
+        activeBuffer = buffer;
+        segments.put(sequence, active);
+        logger.debug("Started journal segment {}", path);
+    }
+
+    // Makes the new file's directory entry durable; not every platform can force a directory
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("Could not force the journal directory {}", directory, e);
+        }
+    }
+
+    private void recover() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : files) {
+                String fileName = path.getFileName().toString();
+                long sequence;
+                try {
+                    sequence = Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(),
+                            fileName.length() - SEGMENT_SUFFIX.length()));
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring journal file {}", path);
+                    continue;
+                }
+                ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER);
+                long size;
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    size = channel.size();
+                    channel.read(header, 0);
+                }
+                if (size < SEGMENT_HEADER || header.getInt(0) != SEGMENT_MAGIC || header.getInt(4) != SEGMENT_VERSION) {
+                    logger.warn("Ignoring journal file {} without a valid segment header", path);
+                    continue;
+                }
+                String id = String.format("%016x", header.getLong(8));
+                segments.put(sequence, new Segment(path, sequence, id, true, size));
+                nextSequence = Math.max(nextSequence, sequence + 1);
+            }
+        }
+        if (!segments.isEmpty()) {
+            logger.info("Found {} journal segments of an earlier run to replay", segments.size());
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.nio.MappedByteBuffer;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Loads the records of the journal into generated_codes in the background, as fast as the database takes them.
+ *
+ * Each record is inserted in its own transaction together with the position drained up to in its
+ * segment (the journalSegment table) and the codesInDatabase of its GenerationRequest. A record is
+ * therefore loaded exactly once, also when the process dies halfway: the next one continues from
+ * the committed position. Complete segments are deleted once drained, then their checkpoint row.
+ *
+ * Regions whose write failed are skipped by their length, their batches were never acknowledged.
+ * Past a record that cannot be read the drainer scans for the next valid one, and a segment that
+ * had such bytes, or ends with any, is kept aside as damaged instead of deleted. A record the
+ * database keeps rejecting for another reason than a lost connection or transaction is moved to the
+ * segment's rejected file after MAX_LOAD_ATTEMPTS, so the records behind it are not held up.
+ *
+ * Codes loaded are counted in codegen.journal.drained, records moved aside in codegen.journal.rejected
+ * and segments kept as damaged in codegen.journal.damaged.
+ */
+public class JournalDrainer {
+    private static final Logger logger = LoggerFactory.getLogger(JournalDrainer.class);
+
+    private static final String SELECT_POSITION = "SELECT drained_position FROM journal_segment WHERE segment_id = ?";
+    private static final String UPDATE_POSITION = "UPDATE journal_segment SET drained_position = ? WHERE segment_id = ?";
+    private static final String INSERT_POSITION = "INSERT INTO journal_segment (segment_id, drained_position) VALUES (?, ?)";
+    private static final String DELETE_POSITION = "DELETE FROM journal_segment WHERE segment_id = ?";
+    private static final String COUNT_CODES =
+            "UPDATE generation_request SET codes_in_database = COALESCE(codes_in_database, 0) + ? WHERE id = ?";
+    // Attempts at loading a record, a second apart, before it is moved aside
+    static final int MAX_LOAD_ATTEMPTS = 5;
+
+    private final JournalCodeSink journal;
+    private final JdbcCodeSink jdbcCodeSink;
+    private final DataSource dataSource;
+    private final long idleNanos;
+    private final Counter drained;
+    private final Counter rejected;
+    private final Counter damaged;
+
+    // Read mapping and drained position of each segment being drained, segments with skipped bytes and
+    // the record that failed to load last; only used by the drain thread
+    private final Map<JournalCodeSink.Segment, MappedByteBuffer> buffers = new HashMap<>();
+    private final Map<JournalCodeSink.Segment, Integer> positions = new HashMap<>();
+    private final Set<JournalCodeSink.Segment> skipped = new HashSet<>();
+    private JournalCodeSink.Segment failingSegment;
+    private int failingPosition;
+    private int failedAttempts;
+
+    private volatile boolean running = true;
+    private final Thread drainThread;
+
+    /**
+     * @param journal The journal to drain.
+     * @param jdbcCodeSink Writes the codes of a record into generated_codes.
+     * @param dataSource Database the codes and checkpoints are written to.
+     * @param idleNanos Time to wait for new records once everything is drained.
+     * @param meterRegistry Registry the drained codes are counted in.
+     */
+    public JournalDrainer(JournalCodeSink journal, JdbcCodeSink jdbcCodeSink, DataSource dataSource, long idleNanos,
+                          MeterRegistry meterRegistry) {
+        this.journal = journal;
+        this.jdbcCodeSink = jdbcCodeSink;
+        this.dataSource = dataSource;
+        this.idleNanos = idleNanos;
+        this.drained = Counter.builder("codegen.journal.drained")
+                .description("Codes loaded from the journal into the database")
+                .baseUnit("codes")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("codegen.journal.rejected")
+                .description("Journal records the database rejected, moved to the rejected file of their segment")
+                .register(meterRegistry);
+        this.damaged = Counter.builder("codegen.journal.damaged")
+                .description("Journal segments kept aside because some of their bytes could not be read")
+                .register(meterRegistry);
+        this.drainThread = new Thread(this::drainLoop, "journal-drainer");
+        this.drainThread.setDaemon(true);
+        this.drainThread.start();
+    }
+
+    /**
+     * Stop draining and wait for a record being loaded, so the DataSource is not closed under it; whatever
+     * is left stays in the journal for the next start.
+     */
+    public void shutdown() {
+        running = false;
+        drainThread.interrupt();
+        try {
+            drainThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Loads every record complete right now and returns the number of codes; the rest is left for the next pass
+    private long drain() throws Exception {
+        long codes = 0;
+        for (JournalCodeSink.Segment segment : journal.segments()) {
+            codes += drain(segment);
+        }
+        return codes;
+    }
+
+    private long drain(JournalCodeSink.Segment segment) throws Exception {
+        // Read before the records, so a segment complete by now has every record in place
+        boolean complete = journal.isComplete(segment);
+        long end = journal.getEnd(segment);
+        MappedByteBuffer buffer = buffers.get(segment);
+        if (buffer == null) {
+            buffer = journal.map(segment);
+            buffers.put(segment, buffer);
+            positions.put(segment, loadPosition(segment));
+        }
+        int position = positions.get(segment);
+        long codes = 0;
+        while (running) {
+            int failedWrite = journal.getFailedWrite(segment, position);
+            CodeBlock block = failedWrite > 0 ? null : JournalCodeSink.read(buffer, position);
+            int next;
+            if (failedWrite > 0) {
+                // Its writer failed the batch, which was never acknowledged, even if the bytes made it to the file
+                next = position + failedWrite;
+                savePosition(segment, next);
+            } else if (block != null) {
+                next = position + JournalCodeSink.recordLength(block.size());
+                if (load(segment, buffer, block, position, next)) {
+                    codes += block.size();
+                    drained.increment(block.size());
+                }
+            } else if (!complete || (next = JournalCodeSink.nextRecord(buffer, position, end)) < 0) {
+                // A record still being written, or the end of the segment
+                break;
+            } else {
+                skipped.add(segment);
+                logger.error("Journal segment {} cannot be read from byte {} to {}, continuing after it",
+                        segment.getPath(), position, next);
+            }
+            positions.put(segment, next);
+            position = next;
+        }
+        if (running && complete) {
+            if (skipped.remove(segment) || !JournalCodeSink.isBlank(buffer, position, end)) {
+                Path kept = journal.keepDamaged(segment);
+                damaged.increment();
+                logger.error("Journal segment {} had bytes that could not be read, kept as {}", segment.getPath(), kept);
+            } else {
+                journal.delete(segment);
+                logger.info("Drained journal segment {}", segment.getPath());
+            }
+            deletePosition(segment);
+            buffers.remove(segment);
+            positions.remove(segment);
+        }
+        return codes;
+    }
+
+    private void drainLoop() {
+        while (running) {
+            try {
+                if (drain() == 0) {
+                    TimeUnit.NANOSECONDS.sleep(idleNanos);
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                logger.error("Draining the journal failed, retrying", e);
+                try {
+                    TimeUnit.SECONDS.sleep(1);
+                } catch (InterruptedException interrupted) {
+                    break;
+                }
+            }
+        }
+    }
+
+    // Loads a record, or moves it aside once the database rejected it MAX_LOAD_ATTEMPTS times in a row
+    // for a reason other than the connection or transaction; returns whether it was loaded
+    private boolean load(JournalCodeSink.Segment segment, MappedByteBuffer buffer, CodeBlock block, int position,
+                         int next) throws Exception {
+        try {
+            load(segment, block, next);
+            return true;
+        } catch (SQLException e) {
+            if (segment != failingSegment || position != failingPosition) {
+                failingSegment = segment;
+                failingPosition = position;
+                failedAttempts = 0;
+            }
+            if (isTransient(e) || ++failedAttempts < MAX_LOAD_ATTEMPTS) {
+                throw e;
+            }
+            Path file = journal.reject(segment, buffer, position, next - position);
+            savePosition(segment, next);
+            rejected.increment();
+            logger.error("Journal record of {} codes of generation request {} at byte {} of {} failed {} times,"
+                    + " moved to {}", block.size(), block.getGenerationRequestId(), position, segment.getPath(),
+                    failedAttempts, file, e);
+            failingSegment = null;
+            return false;
+        }
+    }
+
+    // Errors of the connection or the transaction rather than of the record, retried until the database is back
+    private static boolean isTransient(SQLException e) {
+        String state = e.getSQLState();
+        return e instanceof SQLTransientException || e instanceof SQLRecoverableException
+                || e instanceof SQLNonTransientConnectionException
+                || (state != null && (state.startsWith("08") || state.startsWith("40")));
+    }
+
+    // Codes, drained position and request counter of one record in one transaction
+    private void load(JournalCodeSink.Segment segment, CodeBlock block, int drainedPosition) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                jdbcCodeSink.insert(connection, block);
+                storePosition(connection, segment, drainedPosition);
+                try (PreparedStatement count = connection.prepareStatement(COUNT_CODES)) {
+                    count.setLong(1, block.size());
+                    count.setLong(2, block.getGenerationRequestId());
+                    count.executeUpdate();
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    // Drained position past bytes that are not loaded
+    private void savePosition(JournalCodeSink.Segment segment, int drainedPosition) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            storePosition(connection, segment, drainedPosition);
+        }
+    }
+
+    private static void storePosition(Connection connection, JournalCodeSink.Segment segment, int drainedPosition)
+            throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement(UPDATE_POSITION)) {
+            update.setLong(1, drainedPosition);
+            update.setString(2, segment.getId());
+            if (update.executeUpdate() == 0) {
+                try (PreparedStatement insert = connection.prepareStatement(INSERT_POSITION)) {
+                    insert.setString(1, segment.getId());
+                    insert.setLong(2, drainedPosition);
+                    insert.executeUpdate();
+                }
+            }
+        }
+    }
+
+    private int loadPosition(JournalCodeSink.Segment segment) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement select = connection.prepareStatement(SELECT_POSITION)) {
+            select.setString(1, segment.getId());
+            try (ResultSet result = select.executeQuery()) {
+                return result.next() ? (int) result.getLong(1) : JournalCodeSink.SEGMENT_HEADER;
+            }
+        }
+    }
+
+    private void deletePosition(JournalCodeSink.Segment segment) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement delete = connection.prepareStatement(DELETE_POSITION)) {
+            delete.setString(1, segment.getId());
+            delete.executeUpdate();
+        }
+    }
+}
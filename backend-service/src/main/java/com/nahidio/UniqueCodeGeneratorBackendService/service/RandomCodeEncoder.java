@@ -0,0 +1,24 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.util.UUID;
+
+/**
+ * The original encoder: XORs the counter with random UUID bits.
+ * Costs a SecureRandom call per code, gives no uniqueness guarantee and cannot be decoded.
+ */
+public class RandomCodeEncoder implements CodeEncoder {
+
+    @Override
+    public long toCodeValue(long counter) {
+        UUID uuid = UUID.randomUUID();
+        long uuidMostSigBits = uuid.getMostSignificantBits();
+        long mixedValue = counter ^ uuidMostSigBits; // Simple bitwise XOR with the most significant bits of UUID
+        // floorMod already maps negative values into range; Math.abs only folded them onto the positive ones
+        return Math.floorMod(mixedValue, Base62.CAPACITY);
+    }
+
+    @Override
+    public long decode(String code) {
+        throw new UnsupportedOperationException("Codes of the random encoder cannot be decoded");
+    }
+}
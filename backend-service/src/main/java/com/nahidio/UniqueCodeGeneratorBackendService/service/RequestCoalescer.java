@@ -0,0 +1,260 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Writes the codes of concurrent small requests in shared batches.
+ *
+ * Small requests are dominated by commit overhead: a request for 500 codes pays for a whole
+ * transaction. Requests handed to generate() wait up to the coalescing window for others to join,
+ * until maxBatchCodes are pending. The batch then gets one counter range, is written as a single
+ * CodeBlock in one transaction with every row tagged with its own GenerationRequest id, and each
+ * caller gets its own codes back. Codes that collide with persisted ones are replaced (see
+ * CollisionResolver). A failed write fails every request of the batch; none of their codes are
+ * committed, unless it failed after colliding codes were isolated in parts of the batch.
+ *
+ * The fill ratio of the batches (codes written / maxBatchCodes) is published as
+ * codegen.coalescer.fill.ratio, the requests per batch as codegen.coalescer.requests.
+ */
+public class RequestCoalescer {
+    private static final Logger logger = LoggerFactory.getLogger(RequestCoalescer.class);
+
+    private record Pending(long generationRequestId, int numberOfCodes, CompletableFuture<CodeBlock> result) {
+    }
+
+    private final CodeSink sink;
+    private final CodeEncoder codeEncoder;
+    private final CounterRangeAllocator counterRangeAllocator;
+    private final InsertionScheduler insertionScheduler;
+    private final GenerationMetrics generationMetrics;
+    private final CollisionResolver collisionResolver;
+    private final int maxRequestCodes;
+    private final int maxBatchCodes;
+    private final long windowNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pendingAdded = lock.newCondition();
+    // Requests waiting for the next batch; guarded by lock
+    private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+    private long pendingCodes;
+
+    private final DistributionSummary fillRatio;
+    private final DistributionSummary requestsPerBatch;
+
+    private volatile boolean running = true;
+    private final Thread collector;
+
+    /**
+     * @param sink Sink the shared batches are written to; requests for other sinks are not coalesced.
+     * @param codeEncoder Turns the counters of a batch into code values.
+     * @param counterRangeAllocator Hands out one counter range per batch.
+     * @param insertionScheduler Runs the writes under its admission permits.
+     * @param generationMetrics Records every batch write like those of the pipeline.
+     * @param collisionResolver Replaces codes of a batch that collide with persisted ones.
+     * @param maxRequestCodes Largest request that is coalesced.
+     * @param maxBatchCodes Codes of a shared batch at most, and the size it is flushed at before the window ends.
+     * @param windowNanos Time the first request of a batch waits for others.
+     * @param meterRegistry Registry the batch metrics are published to.
+     */
+    public RequestCoalescer(CodeSink sink, CodeEncoder codeEncoder, CounterRangeAllocator counterRangeAllocator,
+                            InsertionScheduler insertionScheduler, GenerationMetrics generationMetrics,
+                            CollisionResolver collisionResolver, int maxRequestCodes, int maxBatchCodes, long windowNanos, MeterRegistry meterRegistry) {
+        if (maxRequestCodes > maxBatchCodes) {
+            throw new IllegalArgumentException("A coalesced request must fit into one batch");
+        }
+        this.sink = sink;
+        this.codeEncoder = codeEncoder;
+        this.counterRangeAllocator = counterRangeAllocator;
+        this.insertionScheduler = insertionScheduler;
+        this.generationMetrics = generationMetrics;
+        this.collisionResolver = collisionResolver;
+        this.maxRequestCodes = maxRequestCodes;
+        this.maxBatchCodes = maxBatchCodes;
+        this.windowNanos = windowNanos;
+        this.fillRatio = DistributionSummary.builder("codegen.coalescer.fill.ratio")
+                .description("Codes of a shared batch relative to the maximum batch size")
+                .register(meterRegistry);
+        this.requestsPerBatch = DistributionSummary.builder("codegen.coalescer.requests")
+                .description("Generation requests written in one shared batch")
+                .register(meterRegistry);
+        this.collector = new Thread(this::collect, "request-coalescer");
+        this.collector.setDaemon(true);
+        this.collector.start();
+    }
+
+    /**
+     * @param numberOfCodes Codes of the request.
+     * @param target Sink the request writes to.
+     * @return Whether the request is small enough and writes to the coalesced sink.
+     */
+    public boolean accepts(long numberOfCodes, CodeSink target) {
+        return running && numberOfCodes <= maxRequestCodes && target.name().equals(sink.name());
+    }
+
+    /**
+     * Generate and persist the codes of a request in the next shared batch.
+     *
+     * @param generationRequestId Id of the saved GenerationRequest the codes belong to.
+     * @param numberOfCodes Codes of the request, at most maxRequestCodes.
+     * @return The persisted codes of this request.
+     * @throws Exception If the batch could not be written; no code of the request is persisted then.
+     */
+    public CodeBlock generate(long generationRequestId, int numberOfCodes) throws Exception {
+        return await(submit(generationRequestId, numberOfCodes));
+    }
+
+    /**
+     * Queue a request for the next shared batch without waiting for it to be written.
+     *
+     * @param generationRequestId Id of the saved GenerationRequest the codes belong to.
+     * @param numberOfCodes Codes of the request, at most maxRequestCodes.
+     * @return Completed with the persisted codes of this request once its batch is written, see await().
+     */
+    public CompletableFuture<CodeBlock> submit(long generationRequestId, int numberOfCodes) {
+        if (numberOfCodes < 1 || numberOfCodes > maxRequestCodes) {
+            throw new IllegalArgumentException("Only requests of 1 to " + maxRequestCodes + " codes are coalesced");
+        }
+        Pending request = new Pending(generationRequestId, numberOfCodes, new CompletableFuture<>());
+        lock.lock();
+        try {
+            if (!running) {
+                throw new IllegalStateException("The request coalescer is shut down");
+            }
+            pending.addLast(request);
+            pendingCodes += numberOfCodes;
+            pendingAdded.signal();
+        } finally {
+            lock.unlock();
+        }
+        return request.result();
+    }
+
+    /**
+     * Wait for a request queued by submit() to be written.
+     *
+     * @param queued The future submit() returned.
+     * @return The persisted codes of the request.
+     * @throws Exception If the batch could not be written; no code of the request is persisted then.
+     */
+    public static CodeBlock await(CompletableFuture<CodeBlock> queued) throws Exception {
+        try {
+            return queued.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        collector.interrupt();
+        lock.lock();
+        try {
+            for (Pending request : pending) {
+                request.result().completeExceptionally(new IllegalStateException("The request coalescer is shut down"));
+            }
+            pending.clear();
+            pendingCodes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void collect() {
+        while (running) {
+            List<Pending> batch;
+            try {
+                batch = nextBatch();
+            } catch (InterruptedException e) {
+                break;
+            }
+            // The write runs on the shared executor, so the next batch fills while this one commits
+            insertionScheduler.getExecutor().execute(() -> flush(batch));
+        }
+    }
+
+    // Waits for the first request, then for the window to end or the batch to fill
+    private List<Pending> nextBatch() throws InterruptedException {
+        lock.lock();
+        try {
+            while (pending.isEmpty()) {
+                pendingAdded.await();
+            }
+            long deadline = System.nanoTime() + windowNanos;
+            long remaining = windowNanos;
+            while (pendingCodes < maxBatchCodes && remaining > 0) {
+                pendingAdded.awaitNanos(remaining);
+                remaining = deadline - System.nanoTime();
+            }
+            List<Pending> batch = new ArrayList<>();
+            long codes = 0;
+            while (!pending.isEmpty() && codes + pending.peekFirst().numberOfCodes() <= maxBatchCodes) {
+                Pending request = pending.pollFirst();
+                batch.add(request);
+                codes += request.numberOfCodes();
+            }
+            pendingCodes -= codes;
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        int codes = 0;
+        for (Pending request : batch) {
+            codes += request.numberOfCodes();
+        }
+        try {
+            long[] requestIds = new long[codes];
+            int row = 0;
+            for (Pending request : batch) {
+                for (int i = 0; i < request.numberOfCodes(); i++) {
+                    requestIds[row++] = request.generationRequestId();
+                }
+            }
+            CodeBlock block = new CodeBlock(requestIds);
+            long startCounter = counterRangeAllocator.allocate(codes);
+            for (int i = 0; i < codes; i++) {
+                block.set(i, codeEncoder.toCodeValue(startCounter + i));
+            }
+            String size = GenerationMetrics.sizeBucket(codes);
+            collisionResolver.write(block, part -> insertionScheduler.write(() ->
+                    generationMetrics.recordBatchWrite(size, sink.name(), part.size(), () -> sink.write(part))));
+
+            fillRatio.record((double) codes / maxBatchCodes);
+            requestsPerBatch.record(batch.size());
+            logger.debug("Wrote a shared batch of {} codes for {} generation requests", codes, batch.size());
+
+            // Each caller gets a copy of its own rows as persisted, tagged with its request only
+            int from = 0;
+            for (Pending request : batch) {
+                CodeBlock own = new CodeBlock(request.generationRequestId(), request.numberOfCodes());
+                for (int i = 0; i < own.size(); i++) {
+                    own.set(i, block.get(from + i));
+                }
+                from += own.size();
+                request.result().complete(own);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to write a shared batch of {} codes for {} generation requests", codes, batch.size(), e);
+            for (Pending request : batch) {
+                request.result().completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+-- generated_codes of the benchmark profile on an embedded H2: the mapped CHAR(7) COLLATE utf8mb4_bin
+-- only parses in H2's MySQL mode, which loses rows under concurrent multi-row inserts.
+-- Spring only runs this script against embedded databases; an external JDBC URL keeps the mapping.
+-- ddl-auto still logs a failed ALTER of the column to the mapped definition at startup; it stays CHAR(7).
+CREATE TABLE IF NOT EXISTS generated_codes (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    code CHAR(7) NOT NULL,
+    generation_request_id BIGINT NOT NULL,
+    -- Hibernate's name for unique (code), so ddl-auto recreates this constraint instead of adding a second one
+    CONSTRAINT UKmjnym5mini15be6igg41ncpo UNIQUE (code)
+);
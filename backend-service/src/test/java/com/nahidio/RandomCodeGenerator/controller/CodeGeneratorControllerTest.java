@@ -5,22 +5,58 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.nahidio.UniqueCodeGeneratorBackendService.controller.CodeGeneratorController;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.ClaimedCodes;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationOptions;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationPriority;
 import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequest;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationStatus;
 import com.nahidio.UniqueCodeGeneratorBackendService.error.CodeGenerationErrorException;
+import com.nahidio.UniqueCodeGeneratorBackendService.error.GenerationBacklogFullException;
+import com.nahidio.UniqueCodeGeneratorBackendService.error.GenerationRequestNotFoundException;
 import com.nahidio.UniqueCodeGeneratorBackendService.error.InvalidNumberOfCodeRequestedException;
+import com.nahidio.UniqueCodeGeneratorBackendService.error.StagingNotSupportedException;
+import com.nahidio.UniqueCodeGeneratorBackendService.error.UnknownCodeFormatException;
+import com.nahidio.UniqueCodeGeneratorBackendService.error.UnknownCodeSinkException;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeBlock;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeExporter;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeFormat;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeReservoir;
 import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeService;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeSink;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeStream;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeStreams;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.ExportFormat;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.GenerationJobService;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.GenerationMetrics;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.GenerationProgress;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.GenerationRequestService;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.List;
 
 public class CodeGeneratorControllerTest {
 
@@ -30,6 +66,21 @@ public class CodeGeneratorControllerTest {
     @Mock
     CodeService codeService;
 
+    @Mock
+    GenerationJobService jobService;
+
+    @Mock
+    CodeReservoir codeReservoir;
+
+    @Mock
+    GenerationMetrics generationMetrics;
+
+    @Mock
+    GenerationRequestService requestService;
+
+    @Mock
+    CodeExporter codeExporter;
+
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
@@ -39,17 +90,17 @@ public class CodeGeneratorControllerTest {
 
     @Test
     public void testNegativeNumberOfCodes() {
-        assertThrows(InvalidNumberOfCodeRequestedException.class, () -> codeGeneratorController.generateCodes(-5L));
+        assertThrows(InvalidNumberOfCodeRequestedException.class, () -> codeGeneratorController.generateCodes(-5L, new GenerationOptions()));
     }
 
     @Test
     public void testZeroNumberOfCodes() {
-        assertThrows(InvalidNumberOfCodeRequestedException.class, () -> codeGeneratorController.generateCodes(0L));
+        assertThrows(InvalidNumberOfCodeRequestedException.class, () -> codeGeneratorController.generateCodes(0L, new GenerationOptions()));
     }
 
     @Test
     public void testExceedMaxLimitOfCodes() {
-        assertThrows(InvalidNumberOfCodeRequestedException.class, () -> codeGeneratorController.generateCodes(CodeGeneratorController.MAX_CODES + 10));
+        assertThrows(InvalidNumberOfCodeRequestedException.class, () -> codeGeneratorController.generateCodes(CodeFormat.DEFAULT.getCapacity() + 10, new GenerationOptions()));
     }
 
     @Test
@@ -61,17 +112,214 @@ public class CodeGeneratorControllerTest {
         sample.setStartedAt(startTime);
         sample.setEndedAt(endTime);
         sample.setNumberOfCodes(2000);
-        when(codeService.generateCodes(100L)).thenReturn(sample);
-        ResponseEntity<GenerationRequest> response = codeGeneratorController.generateCodes(100L);
-        assertEquals(200, response.getStatusCodeValue());
+        when(jobService.generate(100L, new GenerationOptions())).thenReturn(sample);
+        ResponseEntity<GenerationRequest> response = codeGeneratorController.generateCodes(100L, new GenerationOptions());
+        assertEquals(200, response.getStatusCode().value());
         assertEquals(sample, response.getBody());
     }
 
     @Test
     public void testFailedCodeGeneration() throws Exception {
-        when(codeService.generateCodes(100L)).thenThrow(new RuntimeException("Error generating codes"));
-        assertThrows(CodeGenerationErrorException.class, () -> codeGeneratorController.generateCodes(100L));
+        when(jobService.generate(100L, new GenerationOptions())).thenThrow(new RuntimeException("Error generating codes"));
+        assertThrows(CodeGenerationErrorException.class, () -> codeGeneratorController.generateCodes(100L, new GenerationOptions()));
+    }
+
+    @Test
+    public void testSubmitReturnsAcceptedWithRequestId() throws Exception {
+        GenerationRequest sample = new GenerationRequest();
+        sample.setId(7L);
+        when(jobService.submit(5000L, new GenerationOptions())).thenReturn(sample);
+        ResponseEntity<GenerationRequest> response = codeGeneratorController.submitGenerationRequest(5000L, new GenerationOptions());
+        assertEquals(202, response.getStatusCode().value());
+        assertEquals("/api/generationRequests/7/status", response.getHeaders().getLocation().toString());
+        assertEquals(sample, response.getBody());
+    }
+
+    @Test
+    public void testOptionsAreBoundFromTheQueryParameters() throws Exception {
+        GenerationRequest sample = new GenerationRequest();
+        sample.setId(7L);
+        GenerationOptions options = new GenerationOptions();
+        options.setSink("bulk");
+        options.setStaged(true);
+        options.setTenant("batch");
+        options.setPriority(GenerationPriority.LOW);
+        CodeSink bulk = mock(CodeSink.class);
+        when(bulk.supportsStaging()).thenReturn(true);
+        when(codeService.getSink("bulk")).thenReturn(bulk);
+        when(codeService.isStaged(true)).thenReturn(true);
+        when(jobService.submit(5000L, options)).thenReturn(sample);
+
+        MockMvcBuilders.standaloneSetup(codeGeneratorController).build()
+                .perform(post("/api/generationRequests").param("number", "5000").param("sink", "bulk")
+                        .param("staged", "true").param("tenant", "batch").param("priority", "LOW"))
+                .andExpect(status().isAccepted());
+        verify(jobService).submit(5000L, options);
+    }
+
+    @Test
+    public void testFullBacklogIsNotWrapped() throws Exception {
+        GenerationOptions options = new GenerationOptions();
+        options.setTenant("batch");
+        options.setPriority(GenerationPriority.LOW);
+        when(jobService.submit(5000L, options))
+                .thenThrow(new GenerationBacklogFullException("The generation backlog is full"));
+        assertThrows(GenerationBacklogFullException.class,
+                () -> codeGeneratorController.submitGenerationRequest(5000L, options));
+    }
+
+    @Test
+    public void testSubmitValidatesNumberOfCodes() {
+        assertThrows(InvalidNumberOfCodeRequestedException.class, () -> codeGeneratorController.submitGenerationRequest(0L, new GenerationOptions()));
+    }
+
+    @Test
+    public void testNumberOfCodesIsLimitedByTheCapacityOfTheFormat() throws Exception {
+        CodeFormat pin = new CodeFormat("pin", "0123456789", 6, true);
+        when(codeService.getFormat("pin")).thenReturn(pin);
+        when(codeService.getRemainingCodes(pin)).thenReturn(Long.MAX_VALUE);
+        GenerationOptions options = new GenerationOptions();
+        options.setCodeFormat("pin");
+        when(jobService.submit(1_000_000L, options)).thenReturn(new GenerationRequest());
+
+        assertEquals(202, codeGeneratorController.submitGenerationRequest(1_000_000L, options).getStatusCode().value());
+        assertThrows(InvalidNumberOfCodeRequestedException.class,
+                () -> codeGeneratorController.submitGenerationRequest(1_000_001L, options));
+    }
+
+    @Test
+    public void testNumberOfCodesIsLimitedByTheCountersTheFormatHasLeft() throws Exception {
+        CodeFormat pin = new CodeFormat("pin", "0123456789", 6, true);
+        when(codeService.getFormat("pin")).thenReturn(pin);
+        // Earlier requests and codes replaced after collisions used up all but 500 counters
+        when(codeService.getRemainingCodes(pin)).thenReturn(500L);
+        GenerationOptions options = new GenerationOptions();
+        options.setCodeFormat("pin");
+        when(jobService.submit(500L, options)).thenReturn(new GenerationRequest());
+
+        assertEquals(202, codeGeneratorController.submitGenerationRequest(500L, options).getStatusCode().value());
+        assertThrows(InvalidNumberOfCodeRequestedException.class,
+                () -> codeGeneratorController.submitGenerationRequest(501L, options));
+    }
+
+    @Test
+    public void testUnknownCodeFormat() throws Exception {
+        when(codeService.getFormat("nope")).thenThrow(new IllegalArgumentException("Unknown code format: nope"));
+        GenerationOptions options = new GenerationOptions();
+        options.setCodeFormat("nope");
+        assertThrows(UnknownCodeFormatException.class,
+                () -> codeGeneratorController.submitGenerationRequest(10L, options));
+    }
+
+    @Test
+    public void testExportOfARemovedFormatIsOnlyRefusedAsBinary() throws Exception {
+        GenerationRequest request = new GenerationRequest();
+        request.setId(7L);
+        request.setCodeFormat("pin");
+        when(requestService.findRequest(7L)).thenReturn(request);
+        when(codeService.getFormat("pin")).thenThrow(new IllegalArgumentException("Unknown code format: pin"));
+
+        UnknownCodeFormatException thrown = assertThrows(UnknownCodeFormatException.class,
+                () -> codeGeneratorController.exportCodes(7L, "application/octet-stream", null));
+        assertTrue(thrown.getMessage().contains("pin"), thrown.getMessage());
+
+        // CSV and NDJSON copy the codes as stored and do not need the format
+        ResponseEntity<StreamingResponseBody> csv = codeGeneratorController.exportCodes(7L, "text/csv", null);
+        csv.getBody().writeTo(new ByteArrayOutputStream());
+        verify(codeExporter).export(eq(7L), eq(ExportFormat.CSV), any(CodeFormat.class), any(OutputStream.class));
+    }
+
+    @Test
+    public void testUnknownSink() throws Exception {
+        when(codeService.getSink("bulk")).thenThrow(new IllegalArgumentException("Unknown code sink: bulk"));
+        GenerationOptions options = new GenerationOptions();
+        options.setSink("bulk");
+        assertThrows(UnknownCodeSinkException.class, () -> codeGeneratorController.generateCodes(10L, options));
+        assertThrows(UnknownCodeSinkException.class, () -> codeGeneratorController.submitGenerationRequest(10L, options));
+    }
+
+    @Test
+    public void testStagedRunOfASinkWithoutStagingIsRejected() {
+        CodeSink hibernate = mock(CodeSink.class);
+        when(hibernate.name()).thenReturn("hibernate");
+        when(codeService.getSink("hibernate")).thenReturn(hibernate);
+        when(codeService.isStaged(true)).thenReturn(true);
+        GenerationOptions options = new GenerationOptions();
+        options.setSink("hibernate");
+        options.setStaged(true);
+        assertThrows(StagingNotSupportedException.class, () -> codeGeneratorController.generateCodes(10L, options));
+        assertThrows(StagingNotSupportedException.class,
+                () -> codeGeneratorController.submitGenerationRequest(10L, options));
+    }
+
+    @Test
+    public void testStreamIsFramedByTheAcceptHeader() throws Exception {
+        GenerationRequest request = new GenerationRequest();
+        request.setId(5L);
+        request.setStatus(GenerationStatus.COMPLETED);
+        request.setCodesPersisted(0L);
+        when(jobService.stream(10L, GenerationOptions.unstaged())).thenAnswer(invocation -> {
+            CodeStream stream = CodeStreams.open(request, new GenerationProgress(10L));
+            CodeStreams.end(stream);
+            return stream;
+        });
+
+        ResponseEntity<StreamingResponseBody> events = codeGeneratorController.streamCodes(10L, null, null, null,
+                "text/event-stream, */*");
+        assertEquals(MediaType.TEXT_EVENT_STREAM, events.getHeaders().getContentType());
+        assertEquals("/api/generationRequests/5/status", events.getHeaders().getLocation().toString());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        events.getBody().writeTo(out);
+        assertEquals("event: end\ndata: {\"type\":\"end\",\"generationRequestId\":5,\"status\":\"COMPLETED\","
+                + "\"codesPersisted\":0}\n\n", out.toString(StandardCharsets.US_ASCII));
+
+        for (String accept : new String[] {null, "application/x-ndjson"}) {
+            ResponseEntity<StreamingResponseBody> lines = codeGeneratorController.streamCodes(10L, null, null, null, accept);
+            assertEquals(MediaType.APPLICATION_NDJSON, lines.getHeaders().getContentType());
+            out = new ByteArrayOutputStream();
+            lines.getBody().writeTo(out);
+            assertEquals("{\"type\":\"end\",\"generationRequestId\":5,\"status\":\"COMPLETED\",\"codesPersisted\":0}\n",
+                    out.toString(StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void testStreamClientThatGoesAwayCancelsTheRun() throws Exception {
+        GenerationRequest request = new GenerationRequest();
+        request.setId(6L);
+        request.setStatus(GenerationStatus.RUNNING);
+        GenerationProgress progress = new GenerationProgress(10L);
+        CodeBlock block = new CodeBlock(6L, 1);
+        when(jobService.stream(10L, GenerationOptions.unstaged())).thenReturn(CodeStreams.open(request, progress, block));
+
+        ResponseEntity<StreamingResponseBody> response = codeGeneratorController.streamCodes(10L, null, null, null, null);
+        OutputStream gone = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        assertThrows(IOException.class, () -> response.getBody().writeTo(gone));
+        assertTrue(progress.isCancelled());
+    }
+
+    @Test
+    public void testStatusOfUnknownRequest() throws Exception {
+        when(jobService.getStatus(99L)).thenThrow(new GenerationRequestNotFoundException("Generation request 99 not found"));
+        assertThrows(GenerationRequestNotFoundException.class, () -> codeGeneratorController.getGenerationStatus(99L));
     }
 
     // ... add more tests as per requirements
-}
\ No newline at end of file
+
+    @Test
+    public void testClaimCodes() throws Exception {
+        ClaimedCodes claimed = new ClaimedCodes(3L, List.of("aB3xY9k", "Qw7Rt2m"), true);
+        when(codeReservoir.getMaxClaim()).thenReturn(1000);
+        when(codeReservoir.claim(2)).thenReturn(claimed);
+
+        ResponseEntity<ClaimedCodes> response = codeGeneratorController.claimCodes(2);
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(claimed, response.getBody());
+        assertThrows(InvalidNumberOfCodeRequestedException.class, () -> codeGeneratorController.claimCodes(1001));
+    }
+}
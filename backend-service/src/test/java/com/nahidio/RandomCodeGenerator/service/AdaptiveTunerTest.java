@@ -0,0 +1,80 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.config.CodeGeneratorProperties;
+
+public class AdaptiveTunerTest {
+
+    private static final long FAST = Duration.ofMillis(100).toNanos();
+    private static final long SLOW = Duration.ofSeconds(5).toNanos();
+
+    private final CodeGeneratorProperties.Tuning bounds = new CodeGeneratorProperties.Tuning();
+
+    @BeforeEach
+    public void setup() {
+        bounds.setMinBatchSize(1_000);
+        bounds.setMaxBatchSize(12_000);
+        bounds.setBatchSizeStep(1_000);
+        bounds.setMinWriterThreads(2);
+        bounds.setMaxWriterThreads(16);
+        bounds.setWindowBatches(4);
+    }
+
+    @Test
+    public void testStartsFromThePipelineSettingsWithinTheBounds() {
+        AdaptiveTuner tuner = new AdaptiveTuner(bounds, 100_000, 40);
+
+        assertEquals(12_000, tuner.getBatchSize());
+        assertEquals(16, tuner.getWriterLimit());
+    }
+
+    @Test
+    public void testAddsWhileThroughputGrowsAndReversesWhenItDrops() {
+        AdaptiveTuner tuner = new AdaptiveTuner(bounds, 10_000, 4);
+
+        tuner.adjust(100_000, FAST, 0);
+        tuner.adjust(120_000, FAST, 0);
+        assertEquals(12_000, tuner.getBatchSize());
+        assertEquals(6, tuner.getWriterLimit());
+
+        // The sixth writer cost throughput, so the search turns around
+        tuner.adjust(90_000, FAST, 0);
+        assertEquals(5, tuner.getWriterLimit());
+        tuner.adjust(95_000, FAST, 0);
+        assertEquals(4, tuner.getWriterLimit());
+    }
+
+    @Test
+    public void testHalvesOnSlowCommitsOrFailures() {
+        AdaptiveTuner tuner = new AdaptiveTuner(bounds, 10_000, 12);
+
+        tuner.adjust(100_000, SLOW, 0);
+        assertEquals(5_000, tuner.getBatchSize());
+        assertEquals(6, tuner.getWriterLimit());
+
+        tuner.adjust(100_000, FAST, 1);
+        tuner.adjust(100_000, FAST, 1);
+        tuner.adjust(100_000, FAST, 1);
+        assertEquals(1_000, tuner.getBatchSize());
+        assertEquals(2, tuner.getWriterLimit());
+    }
+
+    @Test
+    public void testAdjustsOncePerWindow() {
+        AdaptiveTuner tuner = new AdaptiveTuner(bounds, 10_000, 4);
+
+        for (int i = 0; i < 7; i++) {
+            tuner.record(10_000, FAST, true);
+        }
+        assertEquals(1, tuner.getAdjustments());
+        tuner.record(10_000, SLOW * 10, true);
+        assertEquals(2, tuner.getAdjustments());
+        assertEquals(5_500, tuner.getBatchSize());
+    }
+}
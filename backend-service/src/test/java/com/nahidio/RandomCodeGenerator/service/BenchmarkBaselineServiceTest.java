@@ -0,0 +1,98 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.nahidio.UniqueCodeGeneratorBackendService.config.CodeGeneratorProperties;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.BenchmarkBaseline;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.BenchmarkBaselines;
+
+public class BenchmarkBaselineServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final CodeGeneratorProperties properties = new CodeGeneratorProperties();
+    private BenchmarkBaselineService baselineService;
+
+    @BeforeEach
+    public void setup() {
+        properties.getBenchmark().setBaselinesFile(directory.resolve("baselines.json").toString());
+        baselineService = new BenchmarkBaselineService();
+        ReflectionTestUtils.setField(baselineService, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(baselineService, "properties", properties);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.execute(ArgumentMatchers.<ConnectionCallback<String>>any())).thenReturn("MySQL");
+        ReflectionTestUtils.setField(baselineService, "jdbcTemplate", jdbcTemplate);
+    }
+
+    @Test
+    public void testNoBaselinesBeforeTheFirstRun() {
+        assertTrue(baselineService.findBaselines(null, null).getBaselines().isEmpty());
+    }
+
+    @Test
+    public void testPicksTheCellsNearestToThePipelineSettings() throws Exception {
+        BenchmarkBaselines measured = new BenchmarkBaselines();
+        measured.setMeasuredAt(Instant.now());
+        measured.setBaselines(List.of(
+                baseline(1_000_000, 1_000_000, 8),
+                baseline(10_000, 1_000_000, 8),
+                baseline(10_000, 1_000_000, 40),
+                baseline(10_000, 100_000, 40)));
+        new BenchmarkHarness(null, null, properties, objectMapper)
+                .write(measured, Path.of(properties.getBenchmark().getBaselinesFile()));
+
+        // Configured: chunks of 1M codes and 40 writers
+        List<BenchmarkBaseline> current = baselineService.findBaselines(null, null).getBaselines();
+        assertEquals(1, current.size());
+        assertEquals(40, current.get(0).getWriterThreads());
+        assertEquals(1_000_000, current.get(0).getChunkSize());
+
+        // No cell with 16 writers, the nearest measured count is 8; ordered by request size
+        List<BenchmarkBaseline> nearest = baselineService.findBaselines(900_000L, 16).getBaselines();
+        assertEquals(List.of(10_000L, 1_000_000L), nearest.stream().map(BenchmarkBaseline::getNumberOfCodes).toList());
+        assertTrue(nearest.stream().allMatch(baseline -> baseline.getWriterThreads() == 8));
+    }
+
+    @Test
+    public void testBaselinesOfAnotherDatabaseAreLabelledAsSuch() throws Exception {
+        BenchmarkBaselines measured = new BenchmarkBaselines();
+        measured.setMeasuredAt(Instant.now());
+        measured.setDatabase("H2 2.1.214 (2022-06-13)");
+        measured.setBaselines(List.of(baseline(10_000, 1_000_000, 40)));
+        Path file = Path.of(properties.getBenchmark().getBaselinesFile());
+        BenchmarkHarness harness = new BenchmarkHarness(null, null, properties, objectMapper);
+        harness.write(measured, file);
+
+        BenchmarkBaselines served = baselineService.findBaselines(null, null);
+        assertEquals("MySQL", served.getServingDatabase());
+        assertFalse(served.isSameDatabase());
+
+        measured.setDatabase("MySQL 8.0.34");
+        harness.write(measured, file);
+        assertTrue(baselineService.findBaselines(null, null).isSameDatabase());
+    }
+
+    private static BenchmarkBaseline baseline(long numberOfCodes, long chunkSize, int writerThreads) {
+        return new BenchmarkBaseline(numberOfCodes, chunkSize, writerThreads, 1.0, 0.1, 0.9, numberOfCodes);
+    }
+}
@@ -0,0 +1,80 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GeneratedCode;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequest;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Maps GeneratedCode with META-INF/orm-bigint.xml and checks that every writer and the exporter
+ * agree on the numeric column.
+ */
+public class BigintCodeStorageTest {
+
+    private static HikariDataSource dataSource;
+    private static SessionFactory sessionFactory;
+
+    private final FeistelCodeEncoder encoder = new FeistelCodeEncoder(13L);
+
+    @BeforeAll
+    public static void setupDatabase() throws Exception {
+        dataSource = H2Database.open("bigint");
+        sessionFactory = H2Database.sessionFactory(dataSource, List.of("META-INF/orm-bigint.xml"),
+                GenerationRequest.class, GeneratedCode.class);
+
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO generation_request (id, started_at, number_of_codes) VALUES (1, CURRENT_TIMESTAMP, 3000)");
+        }
+    }
+
+    @AfterAll
+    public static void closeDatabase() {
+        sessionFactory.close();
+        H2Database.close(dataSource);
+    }
+
+    @Test
+    public void testAllSinksWriteCodeValues() throws Exception {
+        new JdbcCodeSink(dataSource, 300, CodeStorage.BIGINT).write(block(0));
+        new BulkLoadCodeSink(dataSource, CodeStorage.BIGINT).write(block(1000));
+        new HibernateCodeSink(sessionFactory).write(block(2000));
+
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            try (ResultSet columns = connection.getMetaData().getColumns(null, null, "GENERATED_CODES", "CODE")) {
+                columns.next();
+                assertEquals("BIGINT", columns.getString("TYPE_NAME"));
+            }
+            try (ResultSet resultSet = statement.executeQuery("SELECT code FROM generated_codes ORDER BY id LIMIT 1")) {
+                resultSet.next();
+                assertEquals(encoder.toCodeValue(0), resultSet.getLong(1));
+            }
+        }
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        assertEquals(3000, new CodeExporter(dataSource, 1000, CodeStorage.BIGINT).export(1L, ExportFormat.CSV, csv));
+        String[] lines = csv.toString(StandardCharsets.US_ASCII).split("\n");
+        assertEquals(encoder.encode(0), lines[1]);
+        assertEquals(encoder.encode(2999), lines[3000]);
+    }
+
+    private CodeBlock block(long startCounter) {
+        CodeBlock block = new CodeBlock(1L, 1000);
+        for (int i = 0; i < block.size(); i++) {
+            block.set(i, encoder.toCodeValue(startCounter + i));
+        }
+        return block;
+    }
+}
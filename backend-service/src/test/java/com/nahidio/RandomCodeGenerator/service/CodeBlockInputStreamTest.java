@@ -0,0 +1,65 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class CodeBlockInputStreamTest {
+
+    @Test
+    public void testStreamsTabSeparatedRows() throws Exception {
+        CodeBlock block = new CodeBlock(42L, 3);
+        block.set(0, 0L);
+        block.set(1, 61L);
+        block.set(2, Base62.CAPACITY - 1);
+
+        String expected = "0000000\t42\n" + "000000z\t42\n" + "zzzzzzz\t42\n";
+        try (InputStream in = new CodeBlockInputStream(block)) {
+            assertEquals(expected, new String(in.readAllBytes(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void testStreamsDecimalCodeValuesForBigintStorage() throws Exception {
+        CodeBlock block = new CodeBlock(42L, 3);
+        block.set(0, 0L);
+        block.set(1, 61L);
+        block.set(2, Base62.CAPACITY - 1);
+
+        String expected = "0\t42\n" + "61\t42\n" + (Base62.CAPACITY - 1) + "\t42\n";
+        try (InputStream in = new CodeBlockInputStream(block, CodeStorage.BIGINT)) {
+            assertEquals(expected, new String(in.readAllBytes(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void testRowsOfASharedBlockCarryTheirOwnRequest() throws Exception {
+        CodeBlock block = new CodeBlock(new long[] {42L, 42L, 1000L});
+        block.set(0, 0L);
+        block.set(1, 61L);
+        block.set(2, Base62.CAPACITY - 1);
+
+        String expected = "0000000\t42\n" + "000000z\t42\n" + "zzzzzzz\t1000\n";
+        try (InputStream in = new CodeBlockInputStream(block)) {
+            assertEquals(expected, new String(in.readAllBytes(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void testSingleByteReadsMatchBulkReads() throws Exception {
+        CodeBlock block = new CodeBlock(7L, 50);
+        for (int i = 0; i < block.size(); i++) {
+            block.set(i, i * 1_000_003L);
+        }
+        byte[] bulk = new CodeBlockInputStream(block).readAllBytes();
+
+        InputStream in = new CodeBlockInputStream(block);
+        for (byte expected : bulk) {
+            assertEquals(expected & 0xFF, in.read());
+        }
+        assertEquals(-1, in.read());
+    }
+}
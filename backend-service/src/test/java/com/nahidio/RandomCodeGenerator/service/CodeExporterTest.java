@@ -0,0 +1,77 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+public class CodeExporterTest {
+
+    private static HikariDataSource dataSource;
+
+    @BeforeAll
+    public static void setupDatabase() throws Exception {
+        dataSource = H2Database.open("export");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE generated_codes (id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+                    + " code CHAR(7) NOT NULL, generation_request_id BIGINT NOT NULL)");
+            // Codes of request 1 interleaved with another request, 11 of them so pages of 5 end on a partial page
+            for (int i = 0; i < 22; i++) {
+                statement.execute("INSERT INTO generated_codes (code, generation_request_id) VALUES ('"
+                        + Base62.format(i) + "', " + (i % 2 == 0 ? 1 : 2) + ")");
+            }
+        }
+    }
+
+    @AfterAll
+    public static void closeDatabase() {
+        H2Database.close(dataSource);
+    }
+
+    @Test
+    public void testCsvAndNdjson() throws Exception {
+        CodeExporter exporter = new CodeExporter(dataSource, 5);
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        assertEquals(11, exporter.export(1L, ExportFormat.CSV, csv));
+        String[] lines = csv.toString(StandardCharsets.US_ASCII).split("\n");
+        assertEquals(12, lines.length);
+        assertEquals("code", lines[0]);
+        assertEquals(Base62.format(0), lines[1]);
+        assertEquals(Base62.format(20), lines[11]);
+
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        exporter.export(2L, ExportFormat.NDJSON, ndjson);
+        assertEquals("{\"code\":\"" + Base62.format(1) + "\"}", ndjson.toString(StandardCharsets.US_ASCII).split("\n")[0]);
+    }
+
+    @Test
+    public void testBinaryPacksSixBytesPerCode() throws Exception {
+        CodeExporter exporter = new CodeExporter(dataSource, 4);
+
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        exporter.export(2L, ExportFormat.BINARY, binary);
+        byte[] bytes = binary.toByteArray();
+        assertEquals(11 * 6, bytes.length);
+
+        ByteBuffer last = ByteBuffer.allocate(8).put(new byte[2]).put(bytes, 10 * 6, 6).flip();
+        assertEquals(21L, last.getLong());
+    }
+
+    @Test
+    public void testFormatFromAcceptHeader() throws Exception {
+        assertEquals(ExportFormat.CSV, ExportFormat.fromAcceptHeader(null));
+        assertEquals(ExportFormat.CSV, ExportFormat.fromAcceptHeader("*/*"));
+        assertEquals(ExportFormat.NDJSON, ExportFormat.fromAcceptHeader("text/csv;q=0.5, application/x-ndjson"));
+        assertEquals(ExportFormat.BINARY, ExportFormat.fromAcceptHeader("application/octet-stream"));
+    }
+}
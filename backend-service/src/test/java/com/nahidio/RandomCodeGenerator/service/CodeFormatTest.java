@@ -0,0 +1,130 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.config.CodeFormatConfiguration;
+import com.nahidio.UniqueCodeGeneratorBackendService.config.CodeGeneratorProperties;
+
+public class CodeFormatTest {
+
+    // Without 0/O, 1/I/l and the other look-alikes
+    private static final String READABLE = "23456789ABCDEFGHJKLMNPQRSTUVWXYZ";
+
+    @Test
+    public void testDefaultFormatWritesTheCodesOfOneDivisionPerCharacter() {
+        SplittableRandom random = new SplittableRandom(1);
+        char[] digits = new char[CodeFormat.DEFAULT.getLength()];
+        byte[] bytes = new byte[CodeFormat.DEFAULT.getLength() + 1];
+        for (int i = 0; i < 100_000; i++) {
+            long value = i < 2 ? i * (Base62.CAPACITY - 1) : random.nextLong(Base62.CAPACITY);
+            String expected = divisionPerCharacter(value, Base62.ALPHANUMERIC, Base62.LENGTH);
+
+            CodeFormat.DEFAULT.write(value, digits);
+            assertEquals(expected, new String(digits));
+            assertEquals(7, CodeFormat.DEFAULT.write(value, bytes, 1));
+            assertEquals(expected, new String(bytes, 1, 7, StandardCharsets.US_ASCII));
+            assertEquals(value, Base62.parse(expected));
+        }
+    }
+
+    @Test
+    public void testCheckCharacterIsLuhn() {
+        CodeFormat pin = new CodeFormat("pin", "0123456789", 6, true);
+
+        // The classic decimal Luhn check digit
+        assertEquals("1234566", pin.format(123456));
+        assertEquals("0000000", pin.format(0));
+        assertEquals(1_000_000L, pin.getCapacity());
+        assertEquals(7, pin.getLength());
+        assertEquals(123456, pin.parse("1234566"));
+        assertThrows(IllegalArgumentException.class, () -> pin.parse("1234567"));
+    }
+
+    @Test
+    public void testEveryMistypedCharacterIsDetected() {
+        CodeFormat readable = new CodeFormat("readable", READABLE, 6, true);
+        SplittableRandom random = new SplittableRandom(2);
+        for (int i = 0; i < 200; i++) {
+            long value = random.nextLong(readable.getCapacity());
+            String code = readable.format(value);
+            assertEquals(value, readable.parse(code));
+            assertArrayEquals(code.getBytes(StandardCharsets.US_ASCII), bytes(readable, value));
+
+            for (int position = 0; position < code.length(); position++) {
+                for (char typo : READABLE.toCharArray()) {
+                    if (typo == code.charAt(position)) {
+                        continue;
+                    }
+                    String mistyped = code.substring(0, position) + typo + code.substring(position + 1);
+                    assertThrows(IllegalArgumentException.class, () -> readable.parse(mistyped), mistyped);
+                }
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> readable.parse("O0I1l2" + "A"));
+    }
+
+    @Test
+    public void testInvalidFormatsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new CodeFormat("repeated", "0123456789A0", 6, false));
+        assertThrows(IllegalArgumentException.class, () -> new CodeFormat("punctuation", "0123456789,", 6, false));
+        assertThrows(IllegalArgumentException.class, () -> new CodeFormat("wide", Base62.ALPHANUMERIC, 7, true));
+        assertThrows(IllegalArgumentException.class, () -> new CodeFormat("single", "0", 6, false));
+        assertThrows(IllegalArgumentException.class, () -> CodeFormat.DEFAULT.format(Base62.CAPACITY));
+    }
+
+    @Test
+    public void testFormatsRefuseToStartWithRetention() {
+        CodeGeneratorProperties properties = new CodeGeneratorProperties();
+        properties.getFormats().put("pin", new CodeGeneratorProperties.Format());
+        properties.getRetention().setEnabled(true);
+
+        // The partitioned table's unique key includes the request, codes of other formats would not collide
+        assertThrows(IllegalStateException.class,
+                () -> new CodeFormatConfiguration().codeFormats(properties, null, null, null, null));
+    }
+
+    @Test
+    public void testFeistelPermutesTheSpaceOfTheFormat() {
+        CodeFormat small = new CodeFormat("small", "0123456789", 4, false);
+        FeistelCodeEncoder encoder = new FeistelCodeEncoder(9L, small);
+
+        Set<Long> values = new HashSet<>();
+        for (long counter = 0; counter < small.getCapacity(); counter++) {
+            long value = encoder.toCodeValue(counter);
+            assertTrue(value >= 0 && value < small.getCapacity());
+            values.add(value);
+            assertEquals(counter, encoder.decode(small.format(value)));
+        }
+        assertEquals(small.getCapacity(), values.size());
+        assertThrows(IllegalArgumentException.class, () -> encoder.toCodeValue(small.getCapacity()));
+        // The built-in format keeps the codes it had before formats existed
+        assertEquals("u523nsS", new FeistelCodeEncoder(9L).encode(42L));
+        assertEquals("YjIsDif", new FeistelCodeEncoder(9L).encode(1_000_000L));
+    }
+
+    private static byte[] bytes(CodeFormat format, long value) {
+        byte[] target = new byte[format.getLength()];
+        format.write(value, target, 0);
+        return target;
+    }
+
+    // The conversion before the digit tables, as reference
+    private static String divisionPerCharacter(long value, String alphabet, int length) {
+        char[] digits = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            digits[i] = alphabet.charAt((int) (value % alphabet.length()));
+            value /= alphabet.length();
+        }
+        return new String(digits);
+    }
+}
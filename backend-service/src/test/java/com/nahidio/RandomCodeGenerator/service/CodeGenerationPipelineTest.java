@@ -0,0 +1,174 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.config.CodeGeneratorProperties;
+
+public class CodeGenerationPipelineTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    public void shutdownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testEveryCounterIsWrittenOnce() throws Exception {
+        BitSet seen = new BitSet();
+        CodeGenerationPipeline pipeline = new CodeGenerationPipeline(1000, 4, 3, 5, executor);
+
+        CodeGenerationPipeline.Stats stats = pipeline.run(1L, 100L, 25_500L,
+                (block, start) -> {
+                    for (int i = 0; i < block.size(); i++) {
+                        block.set(i, start + i);
+                    }
+                },
+                block -> {
+                    synchronized (seen) {
+                        for (int i = 0; i < block.size(); i++) {
+                            assertTrue(!seen.get((int) block.get(i)), "Counter written twice");
+                            seen.set((int) block.get(i));
+                        }
+                    }
+                });
+
+        assertEquals(25_500, seen.cardinality());
+        assertEquals(100, seen.nextSetBit(0));
+        assertEquals(26, stats.batchesWritten());
+        assertEquals(0, stats.batchesFailed());
+    }
+
+    @Test
+    public void testSlowWritersBoundBatchesInFlight() throws Exception {
+        int queueCapacity = 2;
+        int generators = 2;
+        int writers = 2;
+        AtomicInteger generated = new AtomicInteger();
+        AtomicInteger written = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        CodeGenerationPipeline pipeline = new CodeGenerationPipeline(100, queueCapacity, generators, writers, executor);
+
+        pipeline.run(1L, 1L, 5_000L,
+                (block, start) -> {
+                    int inFlight = generated.incrementAndGet() - written.get();
+                    maxInFlight.accumulateAndGet(inFlight, Math::max);
+                },
+                block -> {
+                    Thread.sleep(2);
+                    written.incrementAndGet();
+                });
+
+        assertEquals(50, written.get());
+        // Queued batches plus the one each worker holds
+        assertTrue(maxInFlight.get() <= queueCapacity + generators + writers, "In flight: " + maxInFlight.get());
+    }
+
+    @Test
+    public void testFailedBatchDoesNotStallPipeline() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CodeGenerationPipeline pipeline = new CodeGenerationPipeline(10, 1, 1, 1, executor);
+
+        CodeGenerationPipeline.Stats stats = pipeline.run(1L, 1L, 100L,
+                (block, start) -> { },
+                block -> {
+                    if (calls.incrementAndGet() == 3) {
+                        throw new IllegalStateException("boom");
+                    }
+                });
+
+        assertEquals(9, stats.batchesWritten());
+        assertEquals(1, stats.batchesFailed());
+    }
+
+    @Test
+    public void testWriterErrorFailsTheRunInsteadOfStallingIt() {
+        AtomicInteger calls = new AtomicInteger();
+        StackOverflowError error = new StackOverflowError("boom");
+        // One writer and a queue of one batch: without draining, the generator blocks on the third batch for good
+        CodeGenerationPipeline pipeline = new CodeGenerationPipeline(10, 1, 1, 1, executor);
+
+        IllegalStateException thrown = assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+                assertThrows(IllegalStateException.class, () -> pipeline.run(1L, 1L, 1000L,
+                        (block, start) -> { },
+                        block -> {
+                            if (calls.incrementAndGet() == 2) {
+                                throw error;
+                            }
+                        })));
+
+        assertSame(error, thrown.getCause());
+        assertEquals(2, calls.get(), "No batch is written after the error");
+    }
+
+    @Test
+    public void testTunedPipelineWritesEveryCounterOnceWithinTheWriterLimit() throws Exception {
+        CodeGeneratorProperties.Tuning bounds = new CodeGeneratorProperties.Tuning();
+        bounds.setMinBatchSize(100);
+        bounds.setBatchSizeStep(100);
+        bounds.setMaxWriterThreads(8);
+        bounds.setWindowBatches(4);
+        AdaptiveTuner tuner = new AdaptiveTuner(bounds, 100, 2);
+        BitSet seen = new BitSet();
+        AtomicInteger writing = new AtomicInteger();
+        AtomicInteger maxWriting = new AtomicInteger();
+        AtomicInteger maxWriterLimit = new AtomicInteger();
+        CodeGenerationPipeline pipeline = new CodeGenerationPipeline(1000, 4, 2, 40, executor, tuner);
+
+        pipeline.run(1L, 0L, 30_000L,
+                (block, start) -> {
+                    for (int i = 0; i < block.size(); i++) {
+                        block.set(i, start + i);
+                    }
+                },
+                block -> {
+                    maxWriting.accumulateAndGet(writing.incrementAndGet(), Math::max);
+                    maxWriterLimit.accumulateAndGet(tuner.getWriterLimit(), Math::max);
+                    synchronized (seen) {
+                        for (int i = 0; i < block.size(); i++) {
+                            assertTrue(!seen.get((int) block.get(i)), "Counter written twice");
+                            seen.set((int) block.get(i));
+                        }
+                    }
+                    writing.decrementAndGet();
+                });
+
+        assertEquals(30_000, seen.cardinality());
+        assertTrue(tuner.getAdjustments() > 0);
+        // Batches grew from 100 codes by one step per window
+        assertTrue(tuner.getBatchSize() > 100, "Batch size: " + tuner.getBatchSize());
+        // Throughput did not drop, so the writer limit climbed from 2, and no more wrote at once than it allowed
+        assertTrue(maxWriterLimit.get() > 2, "Writer limit: " + maxWriterLimit.get());
+        assertTrue(maxWriting.get() <= maxWriterLimit.get(), "Writing at once: " + maxWriting.get());
+    }
+
+    @Test
+    public void testTunedPipelineStartsTheWritersOfTheCurrentLimit() throws Exception {
+        CodeGeneratorProperties.Tuning bounds = new CodeGeneratorProperties.Tuning();
+        bounds.setMaxWriterThreads(64);
+        // No window ever completes, the limit stays at 2
+        bounds.setWindowBatches(1_000);
+        AdaptiveTuner tuner = new AdaptiveTuner(bounds, 1000, 2);
+        ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+        CodeGenerationPipeline pipeline = new CodeGenerationPipeline(1000, 4, 1, 40, pool, tuner);
+
+        pipeline.run(1L, 0L, 100_000L, (block, start) -> { }, block -> { });
+
+        // One generator and two writers, not the tuner's maximum of 64
+        assertEquals(3, pool.getTaskCount());
+    }
+}
@@ -0,0 +1,114 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.AdditionalAnswers.returnsFirstArg;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.config.CodeGeneratorProperties;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationOptions;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequest;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationStatus;
+import com.nahidio.UniqueCodeGeneratorBackendService.repository.GenerationRequestRepository;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class CodeReservoirTest {
+
+    @Test
+    public void testTakeSpansBlocksAndRecordsRefillLag() {
+        CodeGeneratorProperties properties = new CodeGeneratorProperties();
+        properties.getReservoir().setLowWatermark(4);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        CodeReservoir reservoir = new CodeReservoir(properties, registry);
+        reservoir.add(block(1, 2, 3));
+        reservoir.add(block(4, 5, 6));
+
+        assertArrayEquals(new long[] {1, 2}, reservoir.take(2));
+        assertArrayEquals(new long[] {3, 4, 5}, reservoir.take(3));
+        assertNull(reservoir.take(2));
+        assertEquals(1, reservoir.size());
+
+        // Back at the low watermark: the time spent below it is recorded once
+        reservoir.add(block(7, 8, 9));
+        assertEquals(1, registry.get("codegen.reservoir.refill.lag").timer().count());
+        assertArrayEquals(new long[] {6, 7, 8, 9}, reservoir.take(4));
+    }
+
+    @Test
+    public void testStartTakesOverTheUnclaimedCodesOfStoppedReservoirs() {
+        HikariDataSource dataSource = H2Database.open("reservoir");
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+            jdbcTemplate.execute("CREATE TABLE generated_codes (id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+                    + " code CHAR(7) NOT NULL, generation_request_id BIGINT NOT NULL)");
+            jdbcTemplate.update("INSERT INTO generated_codes (code, generation_request_id) VALUES"
+                    + " ('aaaaaab', 1), ('aaaaaac', 1), ('aaaaaad', 2)");
+
+            // Request 1 belongs to a stopped instance, request 2 to one that still renews its lease
+            GenerationRequest stopped = reservoirRequest(1L);
+            GenerationRequest live = reservoirRequest(2L);
+            GenerationRequest current = reservoirRequest(3L);
+            CodeService codeService = mock(CodeService.class);
+            when(codeService.createRequest(0, null, GenerationOptions.unstaged())).thenReturn(current);
+            GenerationRequestRepository requestRepository = mock(GenerationRequestRepository.class);
+            when(requestRepository.save(any(GenerationRequest.class))).then(returnsFirstArg());
+            when(requestRepository.findWithUnclaimedCodes(GenerationStatus.RESERVOIR))
+                    .thenReturn(List.of(stopped, live, current));
+            GenerationLeaseService leaseService = mock(GenerationLeaseService.class);
+            when(leaseService.isExpired(stopped)).thenReturn(true);
+            when(leaseService.acquire(stopped)).thenReturn(true);
+
+            CodeGeneratorProperties properties = new CodeGeneratorProperties();
+            properties.getReservoir().setEnabled(true);
+            properties.getReservoir().setLowWatermark(1);
+            CodeReservoir reservoir = new CodeReservoir(properties, new SimpleMeterRegistry());
+            ReflectionTestUtils.setField(reservoir, "codeService", codeService);
+            ReflectionTestUtils.setField(reservoir, "requestRepository", requestRepository);
+            ReflectionTestUtils.setField(reservoir, "jdbcTemplate", jdbcTemplate);
+            ReflectionTestUtils.setField(reservoir, "transactionManager", mock(PlatformTransactionManager.class));
+            ReflectionTestUtils.setField(reservoir, "leaseService", leaseService);
+            reservoir.start();
+            try {
+                assertEquals(2, reservoir.size());
+                assertEquals(2L, current.getCodesUnclaimed());
+                assertEquals(0L, stopped.getCodesUnclaimed());
+                assertEquals(List.of(2L, 3L, 3L), jdbcTemplate.queryForList(
+                        "SELECT generation_request_id FROM generated_codes ORDER BY generation_request_id", Long.class));
+                assertArrayEquals(new long[] {Base62.parse("aaaaaab"), Base62.parse("aaaaaac")}, reservoir.take(2));
+            } finally {
+                reservoir.stop();
+            }
+        } finally {
+            H2Database.close(dataSource);
+        }
+    }
+
+    private static GenerationRequest reservoirRequest(long id) {
+        GenerationRequest request = new GenerationRequest();
+        request.setId(id);
+        request.setStartedAt(LocalDateTime.now());
+        request.setStatus(GenerationStatus.RESERVOIR);
+        return request;
+    }
+
+    private static CodeBlock block(long... values) {
+        CodeBlock block = new CodeBlock(1L, values.length);
+        for (int i = 0; i < values.length; i++) {
+            block.set(i, values[i]);
+        }
+        return block;
+    }
+}
@@ -0,0 +1,116 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class CodeRetentionTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-31T12:00:00Z");
+
+    private final FeistelCodeEncoder encoder = new FeistelCodeEncoder(13L);
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setupDatabase() {
+        dataSource = H2Database.open("retention");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE generation_request (id BIGINT PRIMARY KEY, started_at TIMESTAMP,"
+                + " ended_at TIMESTAMP, status VARCHAR(16))");
+        jdbcTemplate.execute("CREATE TABLE generated_codes (id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+                + " code CHAR(7) NOT NULL, generation_request_id BIGINT NOT NULL)");
+
+        LocalDateTime now = LocalDateTime.ofInstant(NOW, ZoneOffset.UTC);
+        // Requests 1-3 are old and finished, 4 is old but still running, 5 is recent
+        addRequest(1, now.minusDays(20), now.minusDays(20), "COMPLETED");
+        addRequest(2, now.minusDays(20), now.minusDays(20), "FAILED");
+        addRequest(3, now.minusDays(15), now.minusDays(15), "COMPLETED");
+        addRequest(4, now.minusDays(15), null, "RUNNING");
+        addRequest(5, now.minusDays(1), now.minusDays(1), "COMPLETED");
+    }
+
+    @AfterEach
+    public void closeDatabase() {
+        H2Database.close(dataSource);
+    }
+
+    @Test
+    public void testExpiresWholePartitionsBelowTheOldestLiveRequest() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CodeRetention retention = new CodeRetention(jdbcTemplate, Duration.ofDays(10), 2,
+                Clock.fixed(NOW, ZoneOffset.UTC), encoder, CodeStorage.CHAR, meterRegistry);
+
+        // Request 4 is live, so only the partitions below id 4 (requests 1-3) can go
+        assertEquals(6, retention.expire());
+        assertEquals(List.of(4L, 5L), jdbcTemplate.queryForList(
+                "SELECT DISTINCT generation_request_id FROM generated_codes ORDER BY 1", Long.class));
+        assertEquals(List.of("EXPIRED", "EXPIRED", "EXPIRED", "RUNNING", "COMPLETED"),
+                jdbcTemplate.queryForList("SELECT status FROM generation_request ORDER BY id", String.class));
+
+        assertEquals(0, retention.expire());
+        DistributionSummary reclaimed = meterRegistry.get("codegen.retention.rows.reclaimed").summary();
+        assertEquals(2, reclaimed.count());
+        assertEquals(6, reclaimed.totalAmount());
+    }
+
+    @Test
+    public void testKeepsPartitionsThatStillHoldLiveRequests() {
+        CodeRetention retention = new CodeRetention(jdbcTemplate, Duration.ofDays(10), 3,
+                Clock.fixed(NOW, ZoneOffset.UTC), encoder, CodeStorage.CHAR, new SimpleMeterRegistry());
+
+        // Request 3 shares the partition of ids 3-5 with the live request 4, so it stays
+        assertEquals(4, retention.expire());
+        assertEquals(List.of("EXPIRED", "EXPIRED", "COMPLETED", "RUNNING", "COMPLETED"),
+                jdbcTemplate.queryForList("SELECT status FROM generation_request ORDER BY id", String.class));
+    }
+
+    @Test
+    public void testRefusesToConvertATableWithCodesAFutureCounterGenerates() {
+        CodeRetention retention = new CodeRetention(jdbcTemplate, Duration.ofDays(10), 2,
+                Clock.fixed(NOW, ZoneOffset.UTC), encoder, CodeStorage.CHAR, new SimpleMeterRegistry());
+        jdbcTemplate.execute("CREATE TABLE counter_reservation (name VARCHAR(64) PRIMARY KEY, next_value BIGINT)");
+        jdbcTemplate.update("INSERT INTO counter_reservation (name, next_value) VALUES (?, 100)",
+                CounterRangeAllocator.CODE_COUNTER);
+        jdbcTemplate.update("DELETE FROM generated_codes");
+        // Codes of counters handed out already, and a code of a 6 character format
+        for (long counter : new long[] {1, 50, 99}) {
+            jdbcTemplate.update("INSERT INTO generated_codes (code, generation_request_id) VALUES (?, 1)",
+                    encoder.encode(counter));
+        }
+        jdbcTemplate.update("INSERT INTO generated_codes (code, generation_request_id) VALUES ('482913', 1)");
+        retention.checkCodesPrecedeTheCounter();
+
+        // A code counter 100 still generates, e.g. written by the random encoder
+        jdbcTemplate.update("INSERT INTO generated_codes (code, generation_request_id) VALUES (?, 1)",
+                encoder.encode(100));
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, retention::checkCodesPrecedeTheCounter);
+        assertTrue(thrown.getMessage().contains(encoder.encode(100)), thrown.getMessage());
+    }
+
+    private void addRequest(long id, LocalDateTime startedAt, LocalDateTime endedAt, String status) {
+        jdbcTemplate.update("INSERT INTO generation_request (id, started_at, ended_at, status) VALUES (?, ?, ?, ?)",
+                id, startedAt, endedAt, status);
+        for (int i = 0; i < 2; i++) {
+            jdbcTemplate.update("INSERT INTO generated_codes (code, generation_request_id) VALUES (?, ?)",
+                    Base62.format(id * 10 + i), id);
+        }
+    }
+}
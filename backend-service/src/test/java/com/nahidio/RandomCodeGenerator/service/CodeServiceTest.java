@@ -1,8 +1,21 @@
 package com.nahidio.UniqueCodeGeneratorBackendService.service;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -12,11 +25,18 @@ import org.hibernate.SessionFactory;
 import org.hibernate.StatelessSession;
 import org.hibernate.Transaction;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import com.nahidio.UniqueCodeGeneratorBackendService.config.CodeGeneratorProperties;
 import com.nahidio.UniqueCodeGeneratorBackendService.entity.GeneratedCode;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationPriority;
 import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequest;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationStatus;
 import com.nahidio.UniqueCodeGeneratorBackendService.repository.GenerationRequestRepository;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 public class CodeServiceTest {
 
     @Mock
@@ -32,6 +52,140 @@ public class CodeServiceTest {
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(codeService, "codeEncoder", new FeistelCodeEncoder(7L));
+    }
+
+    @Test
+    public void testPackedGenerationAllocatesNearlyNothingPerCode() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        CodeBlock block = new CodeBlock(1L, 100_000);
+
+        // Warm up so the measured pass runs compiled code
+        for (int i = 0; i < 20; i++) {
+            codeService.fillCodeBlock(block, 1L + i);
+        }
+
+        long before = threads.getThreadAllocatedBytes(threadId);
+        codeService.fillCodeBlock(block, 1_000_000L);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        double bytesPerCode = (double) allocated / block.size();
+        assertTrue(bytesPerCode < 0.5, "Allocated " + bytesPerCode + " bytes per code");
+        assertEquals(Base62.parse(new FeistelCodeEncoder(7L).encode(1_000_000L)), block.get(0));
+    }
+
+    @Test
+    public void testCharStorageAllocatesOneStringPerBoundCode() throws SQLException {
+        CodeBlock block = new CodeBlock(1L, 1000);
+        codeService.fillCodeBlock(block, 1L);
+        StringBuilder sql = new StringBuilder("INSERT INTO codes (code, generation_request_id) VALUES (?, ?)");
+        sql.append(", (?, ?)".repeat(block.size() - 1));
+
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:bind;MODE=MySQL")) {
+            connection.createStatement().execute("CREATE TABLE codes (code CHAR(7), generation_request_id BIGINT)");
+            try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+                double charBytes = bytesPerBoundCode(statement, block, CodeStorage.CHAR);
+                double bigintBytes = bytesPerBoundCode(statement, block, CodeStorage.BIGINT);
+
+                // Both bind the same driver value objects; CHAR adds the 7 character String, 48 bytes
+                assertTrue(charBytes - bigintBytes <= 56, "CHAR allocated " + charBytes
+                        + " bytes per code, BIGINT " + bigintBytes);
+            }
+        }
+    }
+
+    @Test
+    public void testResumedRequestWhoseSharedBatchCommittedIsNotWrittenAgain() throws Exception {
+        GenerationCheckpointService checkpointService = runGenerationWith(new GenerationScheduler(1, Long.MAX_VALUE,
+                new SimpleMeterRegistry()));
+        GenerationRequest request = request(3L, 500L);
+        request.setResumedAt(LocalDateTime.now());
+        when(checkpointService.countCodes(3L)).thenReturn(500L);
+
+        codeService.runGeneration(request, mock(CodeSink.class), new GenerationProgress(500L), false);
+
+        assertEquals(GenerationStatus.COMPLETED, request.getStatus());
+        assertEquals(500L, request.getCodesPersisted());
+        verify(checkpointService, never()).discardCodes(anyLong());
+    }
+
+    @Test
+    public void testCoalescedRequestWaitsForASchedulerSlot() throws Exception {
+        GenerationScheduler scheduler = new GenerationScheduler(1, Long.MAX_VALUE, new SimpleMeterRegistry());
+        runGenerationWith(scheduler);
+        CodeSink jdbc = mock(CodeSink.class);
+        RequestCoalescer coalescer = mock(RequestCoalescer.class);
+        when(coalescer.accepts(500L, jdbc)).thenReturn(true);
+        when(coalescer.submit(4L, 500)).thenReturn(CompletableFuture.completedFuture(new CodeBlock(4L, 500)));
+        ReflectionTestUtils.setField(codeService, "requestCoalescer", coalescer);
+        GenerationRequest request = request(4L, 500L);
+
+        GenerationScheduler.Slot held = scheduler.acquire("other", GenerationPriority.NORMAL, 1_000_000L);
+        Thread run = new Thread(() -> {
+            try {
+                codeService.runGeneration(request, jdbc, new GenerationProgress(500L), false);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        run.start();
+        run.join(300);
+        assertEquals(1, scheduler.getQueueDepth());
+        verify(coalescer, never()).submit(anyLong(), anyInt());
+
+        held.close();
+        run.join(5000);
+        assertEquals(GenerationStatus.COMPLETED, request.getStatus());
+        assertEquals(0, scheduler.getRunning());
+    }
+
+    // Mocks what runGeneration needs besides its sink; returns the checkpoints, which have none
+    private GenerationCheckpointService runGenerationWith(GenerationScheduler scheduler) {
+        GenerationCheckpointService checkpointService = mock(GenerationCheckpointService.class);
+        when(checkpointService.findChunks(anyLong())).thenReturn(List.of());
+        CodeFormats codeFormats = mock(CodeFormats.class);
+        when(codeFormats.get(null)).thenReturn(CodeFormat.DEFAULT);
+        ReflectionTestUtils.setField(codeService, "properties", new CodeGeneratorProperties());
+        ReflectionTestUtils.setField(codeService, "checkpointService", checkpointService);
+        ReflectionTestUtils.setField(codeService, "codeFormats", codeFormats);
+        ReflectionTestUtils.setField(codeService, "generationScheduler", scheduler);
+        ReflectionTestUtils.setField(codeService, "leaseService", mock(GenerationLeaseService.class));
+        ReflectionTestUtils.setField(codeService, "eventPublisher", mock(ApplicationEventPublisher.class));
+        return checkpointService;
+    }
+
+    private static GenerationRequest request(long id, long numberOfCodes) {
+        GenerationRequest request = new GenerationRequest();
+        request.setId(id);
+        request.setNumberOfCodes(numberOfCodes);
+        request.setStatus(GenerationStatus.RUNNING);
+        return request;
+    }
+
+    // Bytes allocated per code by binding the block, the way JdbcCodeSink does, once compiled
+    private static double bytesPerBoundCode(PreparedStatement statement, CodeBlock block, CodeStorage storage)
+            throws SQLException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        char[] digits = new char[CodeFormat.MAX_LENGTH];
+        for (int i = 0; i < 200; i++) {
+            bind(statement, block, storage, digits);
+        }
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100; i++) {
+            bind(statement, block, storage, digits);
+        }
+        return (double) (threads.getThreadAllocatedBytes(threadId) - before) / (100L * block.size());
+    }
+
+    private static void bind(PreparedStatement statement, CodeBlock block, CodeStorage storage, char[] digits)
+            throws SQLException {
+        int parameter = 1;
+        for (int i = 0; i < block.size(); i++) {
+            storage.bind(statement, parameter++, block.get(i), block.getFormat(), digits);
+            statement.setLong(parameter++, block.getGenerationRequestId(i));
+        }
     }
 
     // @Test
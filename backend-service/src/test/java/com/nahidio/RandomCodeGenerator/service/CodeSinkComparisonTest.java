@@ -0,0 +1,98 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GeneratedCode;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequest;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Writes the same codes through every sink against an in-memory H2 and logs their throughput.
+ */
+public class CodeSinkComparisonTest {
+    private static final Logger logger = LoggerFactory.getLogger(CodeSinkComparisonTest.class);
+
+    private static final int CODES = 20_000;
+    private static final int BATCH_SIZE = 5_000;
+
+    private static HikariDataSource dataSource;
+    private static SessionFactory sessionFactory;
+
+    private final FeistelCodeEncoder encoder = new FeistelCodeEncoder(11L);
+
+    @BeforeAll
+    public static void setupDatabase() {
+        dataSource = H2Database.open("sinks");
+        sessionFactory = H2Database.sessionFactory(dataSource, GenerationRequest.class, GeneratedCode.class);
+    }
+
+    @AfterAll
+    public static void closeDatabase() {
+        sessionFactory.close();
+        H2Database.close(dataSource);
+    }
+
+    @BeforeEach
+    public void cleanTables() throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DELETE FROM generated_codes");
+            statement.execute("DELETE FROM generation_request");
+            statement.execute("INSERT INTO generation_request (id, started_at, number_of_codes) VALUES (1, CURRENT_TIMESTAMP, " + CODES + ")");
+        }
+    }
+
+    @Test
+    public void testJdbcSink() throws Exception {
+        measure(new JdbcCodeSink(dataSource, 500));
+    }
+
+    @Test
+    public void testJdbcSinkWithRemainderStatement() throws Exception {
+        measure(new JdbcCodeSink(dataSource, 999));
+    }
+
+    @Test
+    public void testBulkLoadSink() throws Exception {
+        measure(new BulkLoadCodeSink(dataSource));
+    }
+
+    @Test
+    public void testHibernateSink() throws Exception {
+        measure(new HibernateCodeSink(sessionFactory));
+    }
+
+    private void measure(CodeSink sink) throws Exception {
+        long start = System.nanoTime();
+        for (int offset = 0; offset < CODES; offset += BATCH_SIZE) {
+            CodeBlock block = new CodeBlock(1L, BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                block.set(i, encoder.toCodeValue(1L + offset + i));
+            }
+            sink.write(block);
+        }
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        logger.info("{} sink wrote {} codes in {} seconds ({} codes/sec)", sink.name(), CODES, seconds, (long) (CODES / seconds));
+
+        assertEquals(CODES, countRows());
+    }
+
+    private long countRows() throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             ResultSet rs = connection.createStatement().executeQuery("SELECT COUNT(*) FROM generated_codes")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
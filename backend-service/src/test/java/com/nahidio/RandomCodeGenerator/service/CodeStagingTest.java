@@ -0,0 +1,109 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+public class CodeStagingTest {
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private CodeStaging staging;
+
+    @BeforeEach
+    public void setupDatabase() {
+        dataSource = H2Database.open("staging");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE generated_codes (id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+                + " code CHAR(7) NOT NULL UNIQUE, generation_request_id BIGINT NOT NULL)");
+        staging = staging(10);
+    }
+
+    @AfterEach
+    public void closeDatabase() {
+        H2Database.close(dataSource);
+    }
+
+    @Test
+    public void testStagedCodesOnlyAppearWhenPublished() throws Exception {
+        String table = staging.create(5L);
+        CodeSink sink = new JdbcCodeSink(dataSource, 3).withTable(table);
+        sink.write(block(5L, 0, 10));
+        sink.write(block(5L, 10, 10));
+
+        assertEquals(0, count("generated_codes"));
+        assertEquals(20, count(table));
+
+        assertEquals(CollisionResolver.Outcome.NONE, staging.publish(table, CodeFormat.DEFAULT));
+        staging.drop(table);
+        assertEquals(20, count("generated_codes"));
+    }
+
+    @Test
+    public void testCollidingStagedCodesAreReplacedBeforePublishing() throws Exception {
+        new JdbcCodeSink(dataSource, 3).write(block(1L, 15, 1));
+
+        String table = staging.create(6L);
+        CodeSink sink = new BulkLoadCodeSink(dataSource).withTable(table);
+        sink.write(block(6L, 0, 20));
+        // Code 3 is staged twice, code 15 already belongs to request 1
+        sink.write(block(6L, 3, 1));
+
+        CollisionResolver.Outcome outcome = staging.publish(table, CodeFormat.DEFAULT);
+        staging.drop(table);
+
+        assertEquals(2, outcome.collisions());
+        assertEquals(1, outcome.retries());
+        assertEquals(22, count("generated_codes"));
+        assertEquals(21, jdbcTemplate.queryForObject(
+                "SELECT COUNT(DISTINCT code) FROM generated_codes WHERE generation_request_id = 6", Long.class));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT generation_request_id FROM generated_codes WHERE code = ?",
+                Long.class, CodeFormat.DEFAULT.format(15)));
+    }
+
+    @Test
+    public void testFailedPublishLeavesNothingBehind() throws Exception {
+        new JdbcCodeSink(dataSource, 3).write(block(1L, 15, 1));
+
+        String table = staging.create(6L);
+        new BulkLoadCodeSink(dataSource).withTable(table).write(block(6L, 0, 20));
+
+        // Without replacements code 15 keeps colliding, so none of the 20 codes may be published
+        assertThrows(IllegalStateException.class, () -> staging(0).publish(table, CodeFormat.DEFAULT));
+        staging.drop(table);
+        assertEquals(1, count("generated_codes"));
+    }
+
+    private CodeStaging staging(int maxRounds) {
+        CounterRangeAllocator allocator = mock(CounterRangeAllocator.class);
+        AtomicLong next = new AtomicLong(1_000_000);
+        when(allocator.allocate(anyLong())).thenAnswer(invocation -> next.getAndAdd(invocation.getArgument(0)));
+        return new CodeStaging(jdbcTemplate, new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                new CodeFormats(new FeistelCodeEncoder(5L), allocator), CodeStorage.CHAR, maxRounds);
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+
+    private static CodeBlock block(long generationRequestId, long firstValue, int size) {
+        CodeBlock block = new CodeBlock(generationRequestId, size);
+        for (int i = 0; i < size; i++) {
+            block.set(i, firstValue + i);
+        }
+        return block;
+    }
+}
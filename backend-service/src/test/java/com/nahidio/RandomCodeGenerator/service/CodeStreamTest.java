@@ -0,0 +1,95 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationPriority;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequest;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationStatus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class CodeStreamTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    public void testBatchesAreAcknowledgedOnceDurable() throws Exception {
+        GenerationRequest request = request();
+        CodeStream stream = new CodeStream(request, new GenerationProgress(3), 4, new GenerationMetrics(registry));
+        CodeBlock first = block(0L, 61L);
+        CodeBlock second = block(Base62.CAPACITY - 1);
+        stream.generated(first);
+        stream.generated(second);
+        stream.persisted(second);
+        // The first batch failed to commit and is never acknowledged
+        request.setStatus(GenerationStatus.FAILED);
+        request.setCodesPersisted(1L);
+        stream.end();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(1, stream.writeTo(out, true));
+        String expected = "event: codes\nid: 1\ndata: {\"type\":\"codes\",\"generationRequestId\":9,\"batch\":1,\"codes\":[\"0000000\",\"000000z\"]}\n\n"
+                + "event: codes\nid: 2\ndata: {\"type\":\"codes\",\"generationRequestId\":9,\"batch\":2,\"codes\":[\"zzzzzzz\"]}\n\n"
+                + "event: ack\nid: 2\ndata: {\"type\":\"ack\",\"generationRequestId\":9,\"batch\":2,\"codesPersisted\":1}\n\n"
+                + "event: end\ndata: {\"type\":\"end\",\"generationRequestId\":9,\"status\":\"FAILED\",\"codesPersisted\":1}\n\n";
+        assertEquals(expected, out.toString(StandardCharsets.US_ASCII));
+        assertEquals(1, registry.get("codegen.stream.first.codes").timer().count());
+    }
+
+    @Test
+    public void testSlowClientBlocksWritersUntilItGoesAway() throws Exception {
+        GenerationProgress progress = new GenerationProgress(10);
+        GenerationScheduler scheduler = new GenerationScheduler(1, Long.MAX_VALUE, registry);
+        progress.setSlot(scheduler.acquire("stream", GenerationPriority.NORMAL, 10));
+        CodeStream stream = new CodeStream(request(), progress, 1, new GenerationMetrics(registry));
+        stream.generated(block(1L));
+        stream.generated(block(2L));
+        assertEquals(0, scheduler.getSuspended());
+
+        // The buffer is full, the next batch waits for the client before it is written, and lends its slot meanwhile
+        Thread writer = new Thread(() -> stream.generated(block(3L)));
+        writer.start();
+        writer.join(300);
+        assertTrue(writer.isAlive());
+        assertEquals(1, scheduler.getSuspended());
+        assertEquals(0, scheduler.getRunning());
+
+        OutputStream gone = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        assertThrows(IOException.class, () -> stream.writeTo(gone, false));
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+        assertFalse(writer.isAlive());
+        assertTrue(progress.isCancelled());
+        assertEquals(1, scheduler.getRunning());
+    }
+
+    private static GenerationRequest request() {
+        GenerationRequest request = new GenerationRequest();
+        request.setId(9L);
+        request.setStatus(GenerationStatus.RUNNING);
+        return request;
+    }
+
+    private static CodeBlock block(long... values) {
+        CodeBlock block = new CodeBlock(9L, values.length);
+        for (int i = 0; i < values.length; i++) {
+            block.set(i, values[i]);
+        }
+        return block;
+    }
+}
@@ -0,0 +1,35 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Opens CodeStreams without a GenerationJobService, for tests outside of this package.
+ */
+public final class CodeStreams {
+
+    private CodeStreams() {
+    }
+
+    /**
+     * @param request The request whose codes are streamed.
+     * @param progress Progress of its run.
+     * @param generated Blocks queued as generated, before the stream is returned.
+     * @return The stream.
+     */
+    public static CodeStream open(GenerationRequest request, GenerationProgress progress, CodeBlock... generated) {
+        CodeStream stream = new CodeStream(request, progress, 4, new GenerationMetrics(new SimpleMeterRegistry()));
+        for (CodeBlock block : generated) {
+            stream.generated(block);
+        }
+        return stream;
+    }
+
+    /**
+     * Queue the end of the run.
+     */
+    public static void end(CodeStream stream) {
+        stream.end();
+    }
+}
@@ -0,0 +1,138 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class CollisionResolverTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final FeistelCodeEncoder encoder = new FeistelCodeEncoder(5L);
+    // generated_codes with its unique index on code
+    private final Set<Long> table = new HashSet<>();
+    private final AtomicInteger writes = new AtomicInteger();
+
+    @Test
+    public void testBatchWithoutCollisionsIsWrittenOnce() throws Exception {
+        CodeBlock block = block(1, 1000);
+
+        CollisionResolver.Outcome outcome = resolver(encoder).write(block, this::insert);
+
+        assertSame(CollisionResolver.Outcome.NONE, outcome);
+        assertEquals(1, writes.get());
+        assertEquals(1000, table.size());
+    }
+
+    @Test
+    public void testCollidingCodesAreReplacedAndTheRestKept() throws Exception {
+        CodeBlock block = block(1, 1000);
+        // Three codes are persisted already and one is generated twice within the batch
+        table.add(block.get(10));
+        table.add(block.get(500));
+        table.add(block.get(999));
+        block.set(700, block.get(100));
+
+        CollisionResolver.Outcome outcome = resolver(encoder).write(block, this::insert);
+
+        assertEquals(4, outcome.collisions());
+        assertEquals(writes.get() - 1, outcome.retries());
+        assertEquals(1003, table.size());
+        Set<Long> persisted = new HashSet<>();
+        for (int i = 0; i < block.size(); i++) {
+            assertTrue(table.contains(block.get(i)));
+            persisted.add(block.get(i));
+        }
+        assertEquals(1000, persisted.size(), "The block holds exactly the persisted codes");
+        assertEquals(4.0, registry.get("codegen.collisions").counter().count());
+    }
+
+    @Test
+    public void testRowsThatKeepCollidingFailTheBatch() {
+        CodeBlock block = block(1, 100);
+        table.add(block.get(42));
+        // Every replacement is the same, already persisted code
+        CodeEncoder stuck = new CodeEncoder() {
+            @Override
+            public long toCodeValue(long counter) {
+                return block.get(42);
+            }
+
+            @Override
+            public long decode(String code) {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        assertThrows(IllegalStateException.class, () -> resolver(stuck).write(block, this::insert));
+        assertEquals(100, table.size(), "Every other row is persisted");
+    }
+
+    @Test
+    public void testOtherFailuresAreNotRetried() {
+        SQLException down = new SQLException("Communications link failure", "08S01");
+
+        SQLException thrown = assertThrows(SQLException.class, () -> resolver(encoder).write(block(1, 1000), part -> {
+            writes.incrementAndGet();
+            throw down;
+        }));
+
+        assertSame(down, thrown);
+        assertEquals(1, writes.get());
+    }
+
+    @Test
+    public void testDuplicateKeysOfEveryDriverAreRecognised() {
+        assertTrue(CollisionResolver.isDuplicateKey(new SQLIntegrityConstraintViolationException("H2", "23505")));
+        assertTrue(CollisionResolver.isDuplicateKey(
+                new RuntimeException(new SQLIntegrityConstraintViolationException("MySQL", "23000", 1062))));
+        BatchUpdateException batch = new BatchUpdateException("Batch failed", null, 0, new int[0]);
+        batch.setNextException(new SQLIntegrityConstraintViolationException("MySQL", "23000", 1062));
+        assertTrue(CollisionResolver.isDuplicateKey(batch));
+        assertFalse(CollisionResolver.isDuplicateKey(new SQLIntegrityConstraintViolationException("Null", "23000", 1048)));
+        assertFalse(CollisionResolver.isDuplicateKey(new IllegalStateException()));
+    }
+
+    // One transaction: every row goes in, or none if a code is in the table or twice in the part
+    private void insert(CodeBlock part) throws SQLException {
+        writes.incrementAndGet();
+        Set<Long> codes = new HashSet<>();
+        for (int i = 0; i < part.size(); i++) {
+            if (table.contains(part.get(i)) || !codes.add(part.get(i))) {
+                throw new SQLIntegrityConstraintViolationException("Duplicate entry", "23505");
+            }
+        }
+        table.addAll(codes);
+    }
+
+    private CollisionResolver resolver(CodeEncoder codeEncoder) {
+        CounterRangeAllocator allocator = mock(CounterRangeAllocator.class);
+        AtomicLong next = new AtomicLong(1_000_000);
+        when(allocator.allocate(anyLong())).thenAnswer(invocation -> next.getAndAdd(invocation.getArgument(0)));
+        return new CollisionResolver(new CodeFormats(codeEncoder, allocator), 10, registry);
+    }
+
+    private CodeBlock block(long generationRequestId, int size) {
+        CodeBlock block = new CodeBlock(generationRequestId, size);
+        for (int i = 0; i < size; i++) {
+            block.set(i, encoder.toCodeValue(i));
+        }
+        return block;
+    }
+}
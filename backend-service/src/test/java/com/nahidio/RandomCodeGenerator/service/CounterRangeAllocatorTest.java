@@ -0,0 +1,98 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.CounterReservation;
+import com.nahidio.UniqueCodeGeneratorBackendService.repository.CounterReservationRepository;
+
+public class CounterRangeAllocatorTest {
+
+    private CounterReservationRepository repository;
+    private TransactionTemplate transactionTemplate;
+    // Stands in for the database row shared by all nodes
+    private CounterReservation row;
+
+    @BeforeEach
+    public void setup() {
+        repository = mock(CounterReservationRepository.class);
+        transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+        when(repository.findForUpdate(CounterRangeAllocator.CODE_COUNTER))
+                .thenAnswer(invocation -> Optional.ofNullable(row));
+        when(repository.saveAndFlush(any(CounterReservation.class))).thenAnswer(invocation -> {
+            row = invocation.getArgument(0);
+            return row;
+        });
+    }
+
+    @Test
+    public void testRangesAreServedFromMemoryWithinALease() {
+        CounterRangeAllocator allocator = new CounterRangeAllocator(repository, transactionTemplate, 1000, 1);
+
+        assertEquals(1, allocator.allocate(100));
+        assertEquals(101, allocator.allocate(100));
+        assertEquals(1001, row.getNextValue());
+        verify(repository, times(1)).saveAndFlush(any(CounterReservation.class));
+
+        // A range larger than the block gets a lease of its own
+        assertEquals(1001, allocator.allocate(5000));
+        assertEquals(6001, row.getNextValue());
+    }
+
+    @Test
+    public void testRemainingCountersExcludeThoseLeasedByOtherNodes() {
+        when(repository.findById(CounterRangeAllocator.CODE_COUNTER)).thenAnswer(invocation -> Optional.ofNullable(row));
+        CounterRangeAllocator nodeA = new CounterRangeAllocator(repository, transactionTemplate, 1000, 1);
+        CounterRangeAllocator nodeB = new CounterRangeAllocator(repository, transactionTemplate, 1000, 1);
+
+        assertEquals(9_999, nodeA.getRemaining(10_000));
+        nodeA.allocate(100);
+        // Node A still has the rest of its lease, node B only what nobody leased
+        assertEquals(9_899, nodeA.getRemaining(10_000));
+        assertEquals(8_999, nodeB.getRemaining(10_000));
+        assertEquals(0, nodeB.getRemaining(500));
+    }
+
+    @Test
+    public void testNodesAndRestartsNeverShareCounters() throws Exception {
+        CounterRangeAllocator nodeA = new CounterRangeAllocator(repository, transactionTemplate, 1000, 1);
+        CounterRangeAllocator nodeB = new CounterRangeAllocator(repository, transactionTemplate, 1000, 1);
+        ConcurrentSkipListSet<Long> starts = new ConcurrentSkipListSet<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    // The reservation row itself is locked by the database, here by the allocators' monitor
+                    assertTrue(starts.add(nodeA.allocate(10)));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        // Node B, or node A after a restart, continues after everything node A leased
+        long leasedByA = row.getNextValue();
+        assertEquals(leasedByA, nodeB.allocate(10));
+        assertEquals(4000, starts.size());
+        assertEquals(1 + 4000 * 10, leasedByA);
+    }
+}
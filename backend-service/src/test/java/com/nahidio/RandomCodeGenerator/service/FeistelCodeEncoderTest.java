@@ -0,0 +1,46 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class FeistelCodeEncoderTest {
+
+    private final FeistelCodeEncoder encoder = new FeistelCodeEncoder(42L);
+
+    @Test
+    public void testCodesAreUniqueAndWellFormed() {
+        Set<String> codes = new HashSet<>();
+        for (long counter = 1; counter <= 200_000; counter++) {
+            String code = encoder.encode(counter);
+            assertEquals(Base62.LENGTH, code.length());
+            assertTrue(codes.add(code), "Duplicate code for counter " + counter);
+        }
+    }
+
+    @Test
+    public void testDecodeReturnsCounter() {
+        long[] counters = {0L, 1L, 2L, 999_999L, 123_456_789_012L, Base62.CAPACITY - 1};
+        for (long counter : counters) {
+            assertEquals(counter, encoder.decode(encoder.encode(counter)));
+        }
+    }
+
+    @Test
+    public void testKeyChangesCodes() {
+        FeistelCodeEncoder other = new FeistelCodeEncoder(43L);
+        assertNotEquals(encoder.encode(1L), other.encode(1L));
+    }
+
+    @Test
+    public void testCounterOutsideCodeSpaceIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> encoder.encode(Base62.CAPACITY));
+        assertThrows(IllegalArgumentException.class, () -> encoder.encode(-1L));
+    }
+}
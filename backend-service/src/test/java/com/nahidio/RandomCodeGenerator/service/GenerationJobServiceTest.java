@@ -0,0 +1,221 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.config.CodeGeneratorProperties;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationOptions;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequest;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationStatus;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationStatusResponse;
+import com.nahidio.UniqueCodeGeneratorBackendService.error.GenerationRequestNotResumableException;
+import com.nahidio.UniqueCodeGeneratorBackendService.repository.GenerationRequestRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class GenerationJobServiceTest {
+
+    private final CodeService codeService = mock(CodeService.class);
+    private final GenerationRequestRepository requestRepository = mock(GenerationRequestRepository.class);
+    private final CodeStaging codeStaging = mock(CodeStaging.class);
+    private final GenerationLeaseService leaseService = mock(GenerationLeaseService.class);
+    private GenerationJobService jobService;
+
+    @BeforeEach
+    public void setup() {
+        jobService = new GenerationJobService(new CodeGeneratorProperties());
+        ReflectionTestUtils.setField(jobService, "codeService", codeService);
+        ReflectionTestUtils.setField(jobService, "requestRepository", requestRepository);
+        ReflectionTestUtils.setField(jobService, "codeStaging", codeStaging);
+        ReflectionTestUtils.setField(jobService, "generationScheduler", new GenerationScheduler(4, 1_000_000L, new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(jobService, "leaseService", leaseService);
+        when(leaseService.acquire(any(GenerationRequest.class))).thenReturn(true);
+        when(leaseService.isExpired(any(GenerationRequest.class))).thenReturn(true);
+    }
+
+    @AfterEach
+    public void shutdown() {
+        jobService.shutdown();
+    }
+
+    @Test
+    public void testResumeContinuesWithTheRecordedSink() throws Exception {
+        GenerationRequest failed = request(1L, GenerationStatus.FAILED, "bulk", false);
+        CodeSink bulk = mock(CodeSink.class);
+        when(codeService.getSink("bulk")).thenReturn(bulk);
+
+        jobService.resume(1L);
+
+        assertEquals(GenerationStatus.RUNNING, failed.getStatus());
+        assertNotNull(failed.getResumedAt());
+        verify(codeService, timeout(1000)).runGeneration(eq(failed), eq(bulk), any(GenerationProgress.class), eq(false));
+        assertEquals(true, jobService.getStatus(1L).isResumed());
+    }
+
+    @Test
+    public void testFinishedStagedAndClaimRequestsAreNotResumable() {
+        request(1L, GenerationStatus.COMPLETED, "jdbc", false);
+        request(2L, GenerationStatus.FAILED, "jdbc", true);
+        request(3L, GenerationStatus.RUNNING, null, false);
+
+        for (long id = 1; id <= 3; id++) {
+            long requestId = id;
+            assertThrows(GenerationRequestNotResumableException.class, () -> jobService.resume(requestId));
+        }
+    }
+
+    @Test
+    public void testInterruptedStagedRequestIsAbortedAtStartup() {
+        GenerationRequest staged = request(4L, GenerationStatus.RUNNING, "jdbc", true);
+        when(requestRepository.findByStatusAndEndedAtIsNull(GenerationStatus.RUNNING)).thenReturn(List.of(staged));
+
+        jobService.resumeInterrupted();
+
+        verify(codeStaging).drop(CodeStaging.tableName(4L));
+        assertEquals(GenerationStatus.ABORTED, staged.getStatus());
+        assertEquals(0L, staged.getCodesPersisted());
+        assertNotNull(staged.getEndedAt());
+    }
+
+    @Test
+    public void testRequestLeasedByAnotherInstanceIsNotTakenOver() throws Exception {
+        GenerationRequest running = request(5L, GenerationStatus.RUNNING, "jdbc", false);
+        GenerationRequest staged = request(6L, GenerationStatus.RUNNING, "jdbc", true);
+        when(requestRepository.findByStatusAndEndedAtIsNull(GenerationStatus.RUNNING)).thenReturn(List.of(running, staged));
+        when(leaseService.isExpired(any(GenerationRequest.class))).thenReturn(false);
+        when(leaseService.acquire(running)).thenReturn(false);
+
+        jobService.resumeInterrupted();
+        assertThrows(GenerationRequestNotResumableException.class, () -> jobService.resume(5L));
+
+        verify(codeStaging, never()).drop(any());
+        assertEquals(GenerationStatus.RUNNING, staged.getStatus());
+        verify(codeService, never()).runGeneration(any(), any(), any(), eq(false));
+        // The admitted codes went back to the scheduler
+        assertEquals(0L, ((GenerationScheduler) ReflectionTestUtils.getField(jobService, "generationScheduler")).getBacklogCodes());
+    }
+
+    @Test
+    public void testRequestOfARemovedFormatIsClosedInsteadOfResumed() throws Exception {
+        GenerationRequest failed = request(11L, GenerationStatus.FAILED, "jdbc", false);
+        failed.setCodeFormat("pin");
+        GenerationRequest running = request(12L, GenerationStatus.RUNNING, "jdbc", false);
+        running.setCodeFormat("pin");
+        when(codeService.getFormat("pin")).thenThrow(new IllegalArgumentException("Unknown code format: pin"));
+        when(requestRepository.findByStatusAndEndedAtIsNull(GenerationStatus.RUNNING)).thenReturn(List.of(running));
+
+        GenerationRequestNotResumableException thrown = assertThrows(GenerationRequestNotResumableException.class,
+                () -> jobService.resume(11L));
+        assertTrue(thrown.getMessage().contains("pin"), thrown.getMessage());
+        jobService.resumeInterrupted();
+
+        assertEquals(GenerationStatus.FAILED, running.getStatus());
+        assertNotNull(running.getEndedAt());
+        verify(codeService, never()).runGeneration(any(), any(), any(), eq(false));
+        assertEquals(0L, ((GenerationScheduler) ReflectionTestUtils.getField(jobService, "generationScheduler")).getBacklogCodes());
+    }
+
+    @Test
+    public void testJournalRequestIsDurableBeforeItsCodesAreInTheDatabase() throws Exception {
+        GenerationRequest journaled = request(13L, GenerationStatus.COMPLETED, JournalCodeSink.NAME, false);
+        journaled.setCodesPersisted(1_000L);
+        journaled.setCodesInDatabase(400L);
+
+        GenerationStatusResponse status = jobService.getStatus(13L);
+        assertEquals(400L, status.getCodesInDatabase());
+        assertTrue(status.isDurable());
+        assertFalse(status.isInDatabase());
+
+        journaled.setCodesInDatabase(1_000L);
+        assertTrue(jobService.getStatus(13L).isInDatabase());
+    }
+
+    @Test
+    public void testPublishedStagedRequestIsDurableAndInTheDatabase() throws Exception {
+        GenerationRequest published = request(14L, GenerationStatus.COMMITTED, "jdbc", true);
+        published.setCodesPersisted(1_000L);
+        GenerationRequest aborted = request(15L, GenerationStatus.ABORTED, "jdbc", true);
+        aborted.setCodesPersisted(0L);
+
+        GenerationStatusResponse status = jobService.getStatus(14L);
+        assertEquals(GenerationStatus.COMMITTED, status.getStatus());
+        assertEquals(1_000L, status.getCodesInDatabase());
+        assertTrue(status.isDurable());
+        assertTrue(status.isInDatabase());
+        assertFalse(jobService.getStatus(15L).isDurable());
+    }
+
+    @Test
+    public void testSynchronousRunCanBeFollowedAndCancelled() throws Exception {
+        GenerationRequest created = request(8L, GenerationStatus.RUNNING, "jdbc", false);
+        CodeSink jdbc = mock(CodeSink.class);
+        when(jdbc.name()).thenReturn("jdbc");
+        when(codeService.getSink(null)).thenReturn(jdbc);
+        when(codeService.createRequest(1_000L, jdbc, new GenerationOptions())).thenReturn(created);
+        doAnswer(invocation -> {
+            assertEquals(true, jobService.cancel(8L));
+            assertEquals(GenerationStatus.RUNNING, jobService.getStatus(8L).getStatus());
+            return null;
+        }).when(codeService).runGeneration(eq(created), eq(jdbc), any(GenerationProgress.class), eq(false));
+
+        assertSame(created, jobService.generate(1_000L, new GenerationOptions()));
+        assertEquals(false, jobService.cancel(8L));
+    }
+
+    @Test
+    public void testRequestThatCannotBeStartedGivesBackItsCodes() throws Exception {
+        GenerationRequest failed = request(9L, GenerationStatus.FAILED, "jdbc", false);
+        GenerationRequest created = request(10L, GenerationStatus.RUNNING, "jdbc", false);
+        CodeSink jdbc = mock(CodeSink.class);
+        when(jdbc.name()).thenReturn("jdbc");
+        when(codeService.getSink(null)).thenReturn(jdbc);
+        when(codeService.createRequest(1_000L, jdbc, new GenerationOptions())).thenReturn(created);
+        when(requestRepository.save(failed)).thenThrow(new IllegalStateException("database down"));
+
+        assertThrows(IllegalStateException.class, () -> jobService.resume(9L));
+        verify(leaseService).release(failed);
+        // A job service that was shut down rejects new jobs
+        jobService.shutdown();
+        assertThrows(RejectedExecutionException.class, () -> jobService.submit(1_000L, new GenerationOptions()));
+
+        assertEquals(GenerationStatus.FAILED, created.getStatus());
+        verify(leaseService).release(created);
+        assertEquals(false, jobService.cancel(9L));
+        assertEquals(false, jobService.cancel(10L));
+        assertEquals(0L, ((GenerationScheduler) ReflectionTestUtils.getField(jobService, "generationScheduler")).getBacklogCodes());
+    }
+
+    private GenerationRequest request(long id, GenerationStatus status, String sink, boolean staged) {
+        GenerationRequest request = new GenerationRequest();
+        request.setId(id);
+        request.setStartedAt(LocalDateTime.now());
+        request.setNumberOfCodes(1_000L);
+        request.setStatus(status);
+        request.setSink(sink);
+        request.setStaged(staged);
+        when(requestRepository.findById(id)).thenReturn(Optional.of(request));
+        return request;
+    }
+}
@@ -0,0 +1,81 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequest;
+import com.zaxxer.hikari.HikariDataSource;
+
+public class GenerationLeaseServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-31T12:00:00Z");
+    private static final Duration LEASE = Duration.ofSeconds(30);
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setupDatabase() {
+        dataSource = H2Database.open("leases");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE generation_request (id BIGINT PRIMARY KEY, owner VARCHAR(64),"
+                + " lease_expires_at TIMESTAMP)");
+    }
+
+    @AfterEach
+    public void closeDatabase() {
+        H2Database.close(dataSource);
+    }
+
+    @Test
+    public void testOnlyOneProcessTakesOverAnExpiredLease() {
+        GenerationLeaseService first = leases("first", NOW);
+        GenerationLeaseService second = leases("second", NOW);
+        GenerationRequest request = request(1L, "stopped", NOW.minusSeconds(1));
+
+        assertTrue(second.isExpired(request));
+        assertTrue(first.acquire(request));
+        assertFalse(second.acquire(request));
+        assertEquals("first", jdbcTemplate.queryForObject("SELECT owner FROM generation_request", String.class));
+    }
+
+    @Test
+    public void testLeaseIsKeptByTheHeartbeatAndFreedOnRelease() {
+        GenerationLeaseService owner = leases("owner", NOW);
+        GenerationRequest request = request(1L, "owner", NOW.plusSeconds(5));
+        GenerationLeaseService later = leases("other", NOW.plusSeconds(20));
+
+        assertEquals(1, leases("owner", NOW.plusSeconds(10)).renew());
+        assertFalse(later.acquire(request));
+
+        owner.release(request);
+        assertEquals(0, owner.renew());
+        assertTrue(later.acquire(request));
+    }
+
+    private GenerationLeaseService leases(String owner, Instant now) {
+        return new GenerationLeaseService(jdbcTemplate, LEASE, owner, Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private GenerationRequest request(long id, String owner, Instant leaseExpiresAt) {
+        LocalDateTime expiresAt = LocalDateTime.ofInstant(leaseExpiresAt, ZoneOffset.UTC);
+        jdbcTemplate.update("INSERT INTO generation_request VALUES (?, ?, ?)", id, owner, expiresAt);
+        GenerationRequest request = new GenerationRequest();
+        request.setId(id);
+        request.setOwner(owner);
+        request.setLeaseExpiresAt(expiresAt);
+        return request;
+    }
+}
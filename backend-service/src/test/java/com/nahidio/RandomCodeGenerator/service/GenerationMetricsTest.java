@@ -0,0 +1,39 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class GenerationMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final GenerationMetrics metrics = new GenerationMetrics(registry);
+
+    @Test
+    public void testSizeBuckets() {
+        assertEquals("10K", GenerationMetrics.sizeBucket(1));
+        assertEquals("10K", GenerationMetrics.sizeBucket(10_000));
+        assertEquals("100K", GenerationMetrics.sizeBucket(10_001));
+        assertEquals("1M", GenerationMetrics.sizeBucket(1_000_000));
+        assertEquals("10M+", GenerationMetrics.sizeBucket(10_000_001));
+    }
+
+    @Test
+    public void testBatchWritesCountOnlyCommittedCodes() throws Exception {
+        metrics.recordBatchWrite("1M", "jdbc", 500, () ->
+                assertEquals(1.0, registry.get("codegen.writes.active").tag("size", "1M").gauge().value()));
+        assertThrows(IllegalStateException.class, () -> metrics.recordBatchWrite("1M", "jdbc", 500, () -> {
+            throw new IllegalStateException("Duplicate entry");
+        }));
+
+        assertEquals(500.0, registry.get("codegen.codes.persisted").tags("size", "1M", "sink", "jdbc").counter().count());
+        assertEquals(1, registry.get("codegen.batch.write").tags("size", "1M", "outcome", "success").timer().count());
+        assertEquals(1, registry.get("codegen.batch.write").tags("size", "1M", "outcome", "failure").timer().count());
+        assertEquals(0.0, registry.get("codegen.writes.active").tag("size", "1M").gauge().value());
+        assertNull(registry.find("codegen.writes.active").tag("size", "10K").gauge());
+    }
+}
@@ -0,0 +1,71 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequestSummary;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationStats;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationStatus;
+import com.nahidio.UniqueCodeGeneratorBackendService.repository.GenerationRequestRepository;
+
+public class GenerationRequestServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2023, 9, 21, 14, 0);
+
+    @Mock
+    private GenerationRequestRepository requestRepository;
+
+    @InjectMocks
+    private GenerationRequestService requestService;
+
+    private final SpelAwareProxyProjectionFactory projectionFactory = new SpelAwareProxyProjectionFactory();
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    public void testStatsFromCompletedRequests() {
+        // 1000, 2000, 3000 and 10000 codes per second
+        when(requestRepository.findByStatusIn(List.of(GenerationStatus.COMPLETED, GenerationStatus.COMMITTED))).thenReturn(List.of(
+                summary(1_000, 1), summary(4_000, 2), summary(9_000, 3), summary(50_000, 5)));
+
+        GenerationStats stats = requestService.getStats();
+
+        assertEquals(4, stats.getCompletedRequests());
+        assertEquals(64_000, stats.getTotalCodes());
+        assertEquals(2_000, stats.getP50CodesPerSecond(), 0.001);
+        assertEquals(10_000, stats.getP95CodesPerSecond(), 0.001);
+    }
+
+    @Test
+    public void testRunningRequestHasNoThroughput() {
+        GenerationRequestSummary running = projectionFactory.createProjection(GenerationRequestSummary.class,
+                Map.of("id", 1L, "startedAt", START, "numberOfCodes", 10L));
+        assertNull(running.getDurationSeconds());
+        assertNull(running.getCodesPerSecond());
+    }
+
+    private GenerationRequestSummary summary(long codes, long seconds) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("numberOfCodes", codes);
+        values.put("codesPersisted", codes);
+        values.put("startedAt", START);
+        values.put("endedAt", START.plusSeconds(seconds));
+        return projectionFactory.createProjection(GenerationRequestSummary.class, values);
+    }
+}
@@ -0,0 +1,158 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationPriority;
+import com.nahidio.UniqueCodeGeneratorBackendService.error.GenerationBacklogFullException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class GenerationSchedulerTest {
+
+    @Test
+    public void testBacklogRejectsOnceFull() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        GenerationScheduler scheduler = new GenerationScheduler(1, 1000, registry);
+
+        // A single request larger than the backlog is admitted while nothing else is queued
+        scheduler.admit(5000);
+        assertThrows(GenerationBacklogFullException.class, () -> scheduler.admit(1));
+        scheduler.release(5000);
+
+        scheduler.admit(600);
+        scheduler.admit(400);
+        assertThrows(GenerationBacklogFullException.class, () -> scheduler.admit(1));
+        assertEquals(2.0, registry.get("codegen.scheduler.rejected").counter().count());
+        scheduler.release(400);
+        scheduler.admit(400);
+        assertEquals(1000, scheduler.getBacklogCodes());
+    }
+
+    @Test
+    public void testSmallTenantIsNotQueuedBehindALargeOne() throws Exception {
+        GenerationScheduler scheduler = new GenerationScheduler(1, Long.MAX_VALUE, new SimpleMeterRegistry());
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        // Hold the only slot while the queue fills up
+        GenerationScheduler.Slot held = scheduler.acquire("bulk", GenerationPriority.NORMAL, 1000);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            threads.add(start(scheduler, order, "bulk", GenerationPriority.NORMAL, 1000));
+            awaitQueueDepth(scheduler, threads.size());
+        }
+        threads.add(start(scheduler, order, "interactive", GenerationPriority.NORMAL, 1000));
+        awaitQueueDepth(scheduler, threads.size());
+
+        held.close();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+        // The bulk tenant's queued chunks carry later start tags than the newcomer's first one
+        assertEquals("interactive", order.get(0));
+        assertEquals(4, order.size());
+        assertEquals(0, scheduler.getRunning());
+    }
+
+    @Test
+    public void testHigherPriorityGetsALargerShare() throws Exception {
+        GenerationScheduler scheduler = new GenerationScheduler(1, Long.MAX_VALUE, new SimpleMeterRegistry());
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        GenerationScheduler.Slot held = scheduler.acquire("warmup", GenerationPriority.NORMAL, 1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(start(scheduler, order, "low", GenerationPriority.LOW, 1000));
+            awaitQueueDepth(scheduler, threads.size());
+            threads.add(start(scheduler, order, "high", GenerationPriority.HIGH, 1000));
+            awaitQueueDepth(scheduler, threads.size());
+        }
+
+        held.close();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+        // Chunks of a HIGH tenant advance its virtual time four times slower than those of a LOW one
+        assertEquals(List.of("low", "high", "high", "high", "high", "low", "low", "low"), order);
+    }
+
+    @Test
+    public void testChunkThatGaveUpWaitingDoesNotPushItsTenantBack() throws Exception {
+        GenerationScheduler scheduler = new GenerationScheduler(1, Long.MAX_VALUE, new SimpleMeterRegistry());
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        GenerationScheduler.Slot held = scheduler.acquire("warmup", GenerationPriority.NORMAL, 1);
+        Thread abandoned = start(scheduler, order, "a", GenerationPriority.NORMAL, 1000);
+        awaitQueueDepth(scheduler, 1);
+        abandoned.interrupt();
+        abandoned.join(5000);
+        Thread first = start(scheduler, order, "a", GenerationPriority.NORMAL, 1000);
+        awaitQueueDepth(scheduler, 1);
+        Thread second = start(scheduler, order, "b", GenerationPriority.NORMAL, 1000);
+        awaitQueueDepth(scheduler, 2);
+
+        held.close();
+        first.join(5000);
+        second.join(5000);
+        // Both start at the same virtual time, the interrupted chunk was never granted and cost "a" nothing
+        assertEquals(List.of("a", "b"), order);
+    }
+
+    @Test
+    public void testSuspendedSlotIsLentToTheQueueAndTakenBackFirst() throws Exception {
+        GenerationScheduler scheduler = new GenerationScheduler(1, Long.MAX_VALUE, new SimpleMeterRegistry());
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        GenerationScheduler.Slot streaming = scheduler.acquire("stream", GenerationPriority.NORMAL, 1000);
+        streaming.suspend();
+        assertEquals(1, scheduler.getSuspended());
+        // The only slot is free again while the streaming chunk waits for its client
+        GenerationScheduler.Slot other = scheduler.acquire("other", GenerationPriority.NORMAL, 1000);
+        Thread queued = start(scheduler, order, "queued", GenerationPriority.NORMAL, 1000);
+        awaitQueueDepth(scheduler, 1);
+        Thread resumer = new Thread(() -> {
+            streaming.resume();
+            order.add("stream");
+            streaming.close();
+        });
+        resumer.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (resumer.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        other.close();
+        resumer.join(5000);
+        queued.join(5000);
+        assertEquals(List.of("stream", "queued"), order);
+        assertEquals(0, scheduler.getSuspended());
+        assertEquals(0, scheduler.getRunning());
+    }
+
+    private static Thread start(GenerationScheduler scheduler, List<String> order, String tenant,
+                                GenerationPriority priority, long chunkSize) {
+        Thread thread = new Thread(() -> {
+            try (GenerationScheduler.Slot slot = scheduler.acquire(tenant, priority, chunkSize)) {
+                order.add(tenant);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitQueueDepth(GenerationScheduler scheduler, int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.getQueueDepth() < depth && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+}
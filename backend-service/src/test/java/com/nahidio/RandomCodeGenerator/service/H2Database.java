@@ -0,0 +1,76 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * In-memory H2 databases in MySQL mode, for the tests that run real SQL.
+ */
+public final class H2Database {
+
+    private H2Database() {
+    }
+
+    /**
+     * @param name Name of the database; tests running at the same time use different names.
+     * @return A pool on the database, which lives until close(HikariDataSource) drops it.
+     */
+    public static HikariDataSource open(String name) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        return dataSource;
+    }
+
+    /**
+     * Map entities the way the application does and create their tables.
+     *
+     * @param dataSource The database.
+     * @param entities Annotated entity classes.
+     * @return The session factory, to be closed before the database.
+     */
+    public static SessionFactory sessionFactory(DataSource dataSource, Class<?>... entities) {
+        return sessionFactory(dataSource, List.of(), entities);
+    }
+
+    /**
+     * @param dataSource The database.
+     * @param mappings orm.xml resources applied on top of the annotations.
+     * @param entities Annotated entity classes.
+     * @return The session factory, to be closed before the database.
+     */
+    public static SessionFactory sessionFactory(DataSource dataSource, List<String> mappings, Class<?>... entities) {
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.DATASOURCE, dataSource)
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "create")
+                .applySetting(AvailableSettings.PHYSICAL_NAMING_STRATEGY, new CamelCaseToUnderscoresNamingStrategy())
+                .build();
+        MetadataSources sources = new MetadataSources(registry);
+        for (Class<?> entity : entities) {
+            sources.addAnnotatedClass(entity);
+        }
+        for (String mapping : mappings) {
+            sources.addResource(mapping);
+        }
+        return sources.buildMetadata().buildSessionFactory();
+    }
+
+    /**
+     * Drop every table of the database and close the pool.
+     */
+    public static void close(HikariDataSource dataSource) {
+        new JdbcTemplate(dataSource).execute("DROP ALL OBJECTS");
+        dataSource.close();
+    }
+}
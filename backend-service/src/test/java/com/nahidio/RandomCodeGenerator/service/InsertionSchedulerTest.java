@@ -0,0 +1,54 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class InsertionSchedulerTest {
+
+    @Test
+    public void testConcurrentWritesNeverExceedPermits() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        InsertionScheduler scheduler = new InsertionScheduler(3, false, registry);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        List<Future<?>> futures = new ArrayList<>();
+        // Two "requests" with ten writers each share the same three slots
+        for (int i = 0; i < 20; i++) {
+            futures.add(scheduler.getExecutor().submit(() -> {
+                for (int batch = 0; batch < 5; batch++) {
+                    scheduler.write(() -> {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        Thread.sleep(1);
+                        running.decrementAndGet();
+                    });
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        scheduler.shutdown();
+
+        assertTrue(maxRunning.get() <= 3, "Max concurrent writes: " + maxRunning.get());
+        assertEquals(100, registry.get("codegen.insertion.admission.wait").timer().count());
+        assertEquals(0, scheduler.getActiveWrites());
+    }
+
+    @Test
+    public void testVirtualThreadsFallBackOnOlderJvms() throws Exception {
+        InsertionScheduler scheduler = new InsertionScheduler(1, true, new SimpleMeterRegistry());
+        assertEquals(42, scheduler.getExecutor().submit(() -> 42).get());
+        scheduler.shutdown();
+    }
+}
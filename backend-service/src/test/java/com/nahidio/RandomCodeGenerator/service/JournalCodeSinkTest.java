@@ -0,0 +1,259 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GeneratedCode;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.GenerationRequest;
+import com.nahidio.UniqueCodeGeneratorBackendService.entity.JournalSegment;
+import com.zaxxer.hikari.HikariDataSource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Writes codes through the journal and drains them into an in-memory H2.
+ */
+public class JournalCodeSinkTest {
+
+    private static final int SEGMENT_SIZE = 16 * 1024;
+
+    private static HikariDataSource dataSource;
+    private static SessionFactory sessionFactory;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final FeistelCodeEncoder encoder = new FeistelCodeEncoder(13L);
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    public static void setupDatabase() {
+        dataSource = H2Database.open("journal");
+        sessionFactory = H2Database.sessionFactory(dataSource, GenerationRequest.class, GeneratedCode.class, JournalSegment.class);
+    }
+
+    @AfterAll
+    public static void closeDatabase() {
+        sessionFactory.close();
+        H2Database.close(dataSource);
+    }
+
+    @BeforeEach
+    public void cleanTables() throws Exception {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DELETE FROM generated_codes");
+            statement.execute("DELETE FROM journal_segment");
+            statement.execute("DELETE FROM generation_request");
+            statement.execute("INSERT INTO generation_request (id, started_at, number_of_codes) VALUES (1, CURRENT_TIMESTAMP, 6000)");
+            statement.execute("INSERT INTO generation_request (id, started_at, number_of_codes) VALUES (2, CURRENT_TIMESTAMP, 300)");
+        }
+    }
+
+    @Test
+    public void testJournaledCodesAreDrainedIntoTheDatabase() throws Exception {
+        JournalCodeSink sink = new JournalCodeSink(directory, SEGMENT_SIZE, registry);
+        JournalDrainer drainer = new JournalDrainer(sink, new JdbcCodeSink(dataSource, 500), dataSource,
+                1_000_000L, registry);
+        try {
+            // Two blocks of 1000 codes fill a segment of 16 KB; the shared block is split into one record per request
+            long counter = 0;
+            for (int b = 0; b < 6; b++) {
+                sink.write(block(1, counter, 1000));
+                counter += 1000;
+            }
+            long[] shared = new long[500];
+            for (int i = 0; i < shared.length; i++) {
+                shared[i] = i < 200 ? 1 : 2;
+            }
+            CodeBlock sharedBlock = new CodeBlock(shared);
+            for (int i = 0; i < shared.length; i++) {
+                sharedBlock.set(i, encoder.toCodeValue(counter++));
+            }
+            sink.write(sharedBlock);
+
+            // Sealing the last segment lets the drainer delete it as well
+            sink.shutdown();
+            await(() -> sink.segments().isEmpty());
+
+            assertEquals(6500, count("SELECT COUNT(DISTINCT code) FROM generated_codes"));
+            assertEquals(6200, count("SELECT codes_in_database FROM generation_request WHERE id = 1"));
+            assertEquals(300, count("SELECT codes_in_database FROM generation_request WHERE id = 2"));
+            assertEquals(0, count("SELECT COUNT(*) FROM journal_segment"));
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(0, files.count());
+            }
+        } finally {
+            drainer.shutdown();
+        }
+    }
+
+    @Test
+    public void testTornTailIsReplayedUpToAndItsSegmentKeptAsDamaged() throws Exception {
+        JournalCodeSink crashed = new JournalCodeSink(directory, SEGMENT_SIZE, registry);
+        crashed.write(block(1, 0, 1000));
+        crashed.write(block(1, 1000, 1000));
+        crashed.shutdown();
+
+        // A crash halfway through copying the second record leaves a checksum that does not match
+        List<JournalCodeSink.Segment> segments = crashed.segments();
+        assertEquals(1, segments.size());
+        int second = JournalCodeSink.SEGMENT_HEADER + JournalCodeSink.recordLength(1000);
+        tear(segments.get(0), second);
+        assertNull(JournalCodeSink.read(crashed.map(segments.get(0)), second));
+
+        JournalCodeSink restarted = new JournalCodeSink(directory, SEGMENT_SIZE, registry);
+        assertTrue(restarted.segments().get(0).isRecovered());
+        JournalDrainer drainer = new JournalDrainer(restarted, new JdbcCodeSink(dataSource, 500), dataSource,
+                1_000_000L, registry);
+        try {
+            await(() -> restarted.segments().isEmpty());
+            assertEquals(1000, count("SELECT COUNT(*) FROM generated_codes"));
+            assertEquals(1000, count("SELECT codes_in_database FROM generation_request WHERE id = 1"));
+            // The unread tail is not deleted with the segment
+            assertTrue(Files.exists(Path.of(segments.get(0).getPath() + ".damaged")));
+            assertEquals(1.0, registry.get("codegen.journal.damaged").counter().count());
+
+            // New records go to a segment after the replayed one
+            restarted.write(block(2, 2000, 300));
+            assertEquals(1, restarted.segments().size());
+            assertTrue(restarted.segments().get(0).getSequence() > segments.get(0).getSequence());
+        } finally {
+            drainer.shutdown();
+            restarted.shutdown();
+        }
+    }
+
+    @Test
+    public void testRecordsAfterATornOneAreReplayed() throws Exception {
+        JournalCodeSink crashed = new JournalCodeSink(directory, SEGMENT_SIZE, registry);
+        crashed.write(block(1, 0, 800));
+        crashed.write(block(1, 800, 800));
+        crashed.write(block(2, 1600, 300));
+        crashed.shutdown();
+        // The second write was torn by the crash, the third was already forced
+        JournalCodeSink.Segment segment = crashed.segments().get(0);
+        tear(segment, JournalCodeSink.SEGMENT_HEADER + JournalCodeSink.recordLength(800));
+
+        JournalCodeSink restarted = new JournalCodeSink(directory, SEGMENT_SIZE, registry);
+        JournalDrainer drainer = new JournalDrainer(restarted, new JdbcCodeSink(dataSource, 500), dataSource,
+                1_000_000L, registry);
+        try {
+            await(() -> restarted.segments().isEmpty());
+            assertEquals(800, count("SELECT codes_in_database FROM generation_request WHERE id = 1"));
+            assertEquals(300, count("SELECT codes_in_database FROM generation_request WHERE id = 2"));
+            assertTrue(Files.exists(Path.of(segment.getPath() + ".damaged")));
+        } finally {
+            drainer.shutdown();
+            restarted.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailedWriteIsSkippedByItsLength() throws Exception {
+        JournalCodeSink sink = new JournalCodeSink(directory, SEGMENT_SIZE, registry);
+        sink.write(block(1, 0, 800));
+        sink.write(block(1, 800, 800));
+        sink.write(block(2, 1600, 300));
+        // The force of the second write failed after its bytes reached the file: its batch failed, it is not loaded
+        JournalCodeSink.Segment segment = sink.segments().get(0);
+        @SuppressWarnings("unchecked")
+        Map<Long, Integer> failedWrites = (Map<Long, Integer>) ReflectionTestUtils.getField(segment, "failedWrites");
+        failedWrites.put((long) JournalCodeSink.SEGMENT_HEADER + JournalCodeSink.recordLength(800),
+                JournalCodeSink.recordLength(800));
+        sink.shutdown();
+
+        JournalDrainer drainer = new JournalDrainer(sink, new JdbcCodeSink(dataSource, 500), dataSource,
+                1_000_000L, registry);
+        try {
+            await(() -> sink.segments().isEmpty());
+            assertEquals(800, count("SELECT codes_in_database FROM generation_request WHERE id = 1"));
+            assertEquals(300, count("SELECT codes_in_database FROM generation_request WHERE id = 2"));
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(0, files.count());
+            }
+        } finally {
+            drainer.shutdown();
+        }
+    }
+
+    @Test
+    public void testRecordTheDatabaseRejectsIsMovedAside() throws Exception {
+        JournalCodeSink sink = new JournalCodeSink(directory, SEGMENT_SIZE, registry);
+        JdbcCodeSink jdbcCodeSink = new JdbcCodeSink(dataSource, 500);
+        // A code of the first record is in the database already, its inserts fail on the unique index
+        jdbcCodeSink.write(block(2, 10, 1));
+        sink.write(block(1, 0, 800));
+        sink.write(block(1, 800, 800));
+        sink.shutdown();
+        JournalCodeSink.Segment segment = sink.segments().get(0);
+
+        JournalDrainer drainer = new JournalDrainer(sink, jdbcCodeSink, dataSource, 1_000_000L, registry);
+        try {
+            await(() -> sink.segments().isEmpty());
+            assertEquals(800, count("SELECT codes_in_database FROM generation_request WHERE id = 1"));
+            assertEquals(1.0, registry.get("codegen.journal.rejected").counter().count());
+            Path rejected = Path.of(segment.getPath() + ".rejected");
+            assertEquals(JournalCodeSink.recordLength(800), Files.size(rejected));
+            try (FileChannel channel = FileChannel.open(rejected, StandardOpenOption.READ)) {
+                CodeBlock moved = JournalCodeSink.read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), 0);
+                assertEquals(encoder.toCodeValue(10), moved.get(10));
+            }
+        } finally {
+            drainer.shutdown();
+        }
+    }
+
+    // Overwrite part of the payload of the record at position, like a crash halfway through copying it
+    private static void tear(JournalCodeSink.Segment segment, int position) throws Exception {
+        try (FileChannel channel = FileChannel.open(segment.getPath(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[100]), position + JournalCodeSink.RECORD_HEADER + 600);
+        }
+    }
+
+    private CodeBlock block(long generationRequestId, long startCounter, int size) {
+        CodeBlock block = new CodeBlock(generationRequestId, size);
+        for (int i = 0; i < size; i++) {
+            block.set(i, encoder.toCodeValue(startCounter + i));
+        }
+        return block;
+    }
+
+    private static long count(String sql) throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(sql)) {
+            result.next();
+            return result.getLong(1);
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 20_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for the journal to drain");
+            Thread.sleep(10);
+        }
+    }
+}
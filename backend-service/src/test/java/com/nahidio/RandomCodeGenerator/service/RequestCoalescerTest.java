@@ -0,0 +1,139 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class RequestCoalescerTest {
+
+    private final List<CodeBlock> written = new CopyOnWriteArrayList<>();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final InsertionScheduler insertionScheduler = new InsertionScheduler(4, false, registry);
+    private final ExecutorService callers = Executors.newFixedThreadPool(20);
+    private volatile boolean failWrites;
+    private RequestCoalescer coalescer;
+
+    @AfterEach
+    public void shutdown() {
+        coalescer.shutdown();
+        callers.shutdownNow();
+        insertionScheduler.shutdown();
+    }
+
+    @Test
+    public void testConcurrentRequestsShareBatches() throws Exception {
+        coalescer = coalescer(TimeUnit.SECONDS.toNanos(1));
+
+        // 20 requests of 500 codes fill two batches of 5000 long before the window ends
+        List<Future<CodeBlock>> results = new ArrayList<>();
+        for (long id = 1; id <= 20; id++) {
+            long requestId = id;
+            results.add(callers.submit(() -> coalescer.generate(requestId, 500)));
+        }
+
+        Set<Long> codes = new HashSet<>();
+        for (int i = 0; i < results.size(); i++) {
+            CodeBlock own = results.get(i).get(5, TimeUnit.SECONDS);
+            assertEquals(i + 1L, own.getGenerationRequestId());
+            assertEquals(500, own.size());
+            for (int row = 0; row < own.size(); row++) {
+                codes.add(own.get(row));
+            }
+        }
+        assertEquals(10_000, codes.size());
+
+        assertEquals(2, written.size());
+        for (CodeBlock block : written) {
+            assertTrue(block.isShared());
+            assertEquals(5000, block.size());
+            // Every request has its 500 rows in a single batch
+            assertEquals(10, countRequests(block));
+        }
+        assertEquals(1.0, registry.get("codegen.coalescer.fill.ratio").summary().mean());
+        assertEquals(10.0, registry.get("codegen.coalescer.requests").summary().mean());
+    }
+
+    @Test
+    public void testWindowFlushesAPartialBatch() throws Exception {
+        coalescer = coalescer(TimeUnit.MILLISECONDS.toNanos(5));
+
+        assertEquals(300, coalescer.generate(7L, 300).size());
+        assertEquals(1, written.size());
+        assertEquals(7L, written.get(0).getGenerationRequestId(299));
+        assertEquals(0.06, registry.get("codegen.coalescer.fill.ratio").summary().mean(), 1e-9);
+    }
+
+    @Test
+    public void testFailedBatchFailsEveryRequestOfIt() {
+        coalescer = coalescer(TimeUnit.MILLISECONDS.toNanos(5));
+        failWrites = true;
+
+        assertThrows(IllegalStateException.class, () -> coalescer.generate(1L, 100));
+    }
+
+    @Test
+    public void testOnlySmallRequestsOfTheSinkAreAccepted() {
+        coalescer = coalescer(TimeUnit.MILLISECONDS.toNanos(5));
+        CodeSink other = mock(CodeSink.class);
+        when(other.name()).thenReturn("bulk");
+
+        assertTrue(coalescer.accepts(1000, sink("jdbc")));
+        assertFalse(coalescer.accepts(1001, sink("jdbc")));
+        assertFalse(coalescer.accepts(10, other));
+    }
+
+    private RequestCoalescer coalescer(long windowNanos) {
+        CounterRangeAllocator allocator = mock(CounterRangeAllocator.class);
+        AtomicLong next = new AtomicLong(1);
+        when(allocator.allocate(anyLong())).thenAnswer(invocation -> next.getAndAdd(invocation.getArgument(0)));
+        return new RequestCoalescer(sink("jdbc"), new FeistelCodeEncoder(3L), allocator, insertionScheduler,
+                new GenerationMetrics(registry), new CollisionResolver(
+                        new CodeFormats(new FeistelCodeEncoder(3L), allocator), 10, registry),
+                1000, 5000, windowNanos, registry);
+    }
+
+    private CodeSink sink(String name) {
+        return new CodeSink() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public void write(CodeBlock block) {
+                if (failWrites) {
+                    throw new IllegalStateException("boom");
+                }
+                written.add(block);
+            }
+        };
+    }
+
+    private static int countRequests(CodeBlock block) {
+        Set<Long> requestIds = new HashSet<>();
+        for (int i = 0; i < block.size(); i++) {
+            requestIds.add(block.getGenerationRequestId(i));
+        }
+        return requestIds.size();
+    }
+}
@@ -0,0 +1,72 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.benchmarks;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.service.Base62;
+
+/**
+ * Base 62 conversion of one code: the String per code of the original convertToBase62, the reusable
+ * buffer the sinks write with, and parsing back. Scores and allocations are per code.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Base62Benchmark {
+
+    private static final int CODES = 1024;
+
+    private final long[] values = new long[CODES];
+    private final String[] codes = new String[CODES];
+    private final char[] digits = new char[Base62.LENGTH];
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < CODES; i++) {
+            values[i] = random.nextLong(Base62.CAPACITY);
+            codes[i] = Base62.format(values[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CODES)
+    public void format(Blackhole blackhole) {
+        for (long value : values) {
+            blackhole.consume(Base62.format(value));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CODES)
+    public void writeIntoBuffer(Blackhole blackhole) {
+        for (long value : values) {
+            Base62.write(value, digits);
+            blackhole.consume(digits);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CODES)
+    public void parse(Blackhole blackhole) {
+        for (String code : codes) {
+            blackhole.consume(Base62.parse(code));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeEncoder;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.FeistelCodeEncoder;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.RandomCodeEncoder;
+
+/**
+ * Counter to code value mapping of each CodeEncoder. Scores and allocations are per code; the
+ * random encoder pays for a UUID.randomUUID() per code.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodeEncoderBenchmark {
+
+    private static final int CODES = 1024;
+
+    @Param({"feistel", "random"})
+    public String encoder;
+
+    private CodeEncoder codeEncoder;
+    private long counter;
+
+    @Setup
+    public void setup() {
+        codeEncoder = "random".equals(encoder) ? new RandomCodeEncoder() : new FeistelCodeEncoder(0x5DEECE66DL);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CODES)
+    public void toCodeValue(Blackhole blackhole) {
+        long start = counter;
+        for (int i = 0; i < CODES; i++) {
+            blackhole.consume(codeEncoder.toCodeValue(start + i));
+        }
+        counter = start + CODES;
+    }
+}
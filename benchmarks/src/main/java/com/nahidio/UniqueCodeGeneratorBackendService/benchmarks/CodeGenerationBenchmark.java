@@ -0,0 +1,109 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.service.Base62;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeBlock;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeEncoder;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeGenerationPipeline;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.FeistelCodeEncoder;
+
+/**
+ * Generating one chunk of codes without writing it, per chunkSize and thread count.
+ *
+ * stringList* build the List of code Strings of the original createCodeList, sequentially and as a
+ * parallel stream on a pool of the given threads. packedBlock fills one CodeBlock of code values as
+ * CodeService.fillCodeBlock does, and pipeline runs CodeGenerationPipeline with that many generators
+ * and a writer that only consumes the batches. Scores are per chunk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodeGenerationBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int chunkSize;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"10000"})
+    public int batchSize;
+
+    private final CodeEncoder encoder = new FeistelCodeEncoder(0x5DEECE66DL);
+    private ForkJoinPool forkJoinPool;
+    private ExecutorService pipelineExecutor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        forkJoinPool = new ForkJoinPool(threads);
+        // Generators plus the writer
+        pipelineExecutor = Executors.newFixedThreadPool(threads + 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        forkJoinPool.shutdown();
+        pipelineExecutor.shutdown();
+    }
+
+    @Benchmark
+    public List<String> stringListSequential() {
+        return LongStream.range(1, chunkSize + 1)
+                .mapToObj(counter -> Base62.format(encoder.toCodeValue(counter)))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<String> stringListParallel() throws Exception {
+        return forkJoinPool.submit(() -> LongStream.range(1, chunkSize + 1)
+                .parallel()
+                .mapToObj(counter -> Base62.format(encoder.toCodeValue(counter)))
+                .collect(Collectors.toList())).get();
+    }
+
+    @Benchmark
+    public CodeBlock packedBlock() {
+        CodeBlock block = new CodeBlock(1L, chunkSize);
+        for (int i = 0; i < block.size(); i++) {
+            block.set(i, encoder.toCodeValue(1L + i));
+        }
+        return block;
+    }
+
+    @Benchmark
+    public CodeGenerationPipeline.Stats pipeline(Blackhole blackhole) throws InterruptedException {
+        CodeGenerationPipeline pipeline = new CodeGenerationPipeline(batchSize, 8, threads, 1, pipelineExecutor);
+        return pipeline.run(1L, 1L, chunkSize,
+                (block, startCounter) -> {
+                    for (int i = 0; i < block.size(); i++) {
+                        block.set(i, encoder.toCodeValue(startCounter + i));
+                    }
+                },
+                blackhole::consume);
+    }
+}
@@ -0,0 +1,66 @@
+package com.nahidio.UniqueCodeGeneratorBackendService.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nahidio.UniqueCodeGeneratorBackendService.service.Base62;
+import com.nahidio.UniqueCodeGeneratorBackendService.service.CodeBlock;
+
+/**
+ * Splitting a chunk into insert batches: copied sublists of a List of Strings as the original
+ * partitionList did, against views of a CodeBlock. Scores are per chunk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PartitionBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int chunkSize;
+
+    @Param({"1000", "10000"})
+    public int batchSize;
+
+    private List<String> codes;
+    private CodeBlock block;
+
+    @Setup
+    public void setup() {
+        codes = new ArrayList<>(chunkSize);
+        block = new CodeBlock(1L, chunkSize);
+        for (int i = 0; i < chunkSize; i++) {
+            codes.add(Base62.format(i));
+            block.set(i, i);
+        }
+    }
+
+    @Benchmark
+    public List<List<String>> partitionList() {
+        List<List<String>> batches = new ArrayList<>();
+        for (int i = 0; i < codes.size(); i += batchSize) {
+            batches.add(new ArrayList<>(codes.subList(i, Math.min(i + batchSize, codes.size()))));
+        }
+        return batches;
+    }
+
+    @Benchmark
+    public List<CodeBlock> blockSlices() {
+        return block.slices(batchSize);
+    }
+}